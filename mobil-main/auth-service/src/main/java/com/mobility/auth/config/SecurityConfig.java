@@ -1,6 +1,7 @@
 // ─────────────────────────────────────────────────────────────
 // FILE : auth-service/src/main/java/com/mobility/auth/config/SecurityConfig.java
 // v2025-10-06 – JWT HS256, CORS, préflight, handlers 401/403, method security
+// v2025-10-16 – claim « role » → ROLE_* (hasRole(...) sur les endpoints chauffeur)
 // ─────────────────────────────────────────────────────────────
 package com.mobility.auth.config;
 
@@ -19,17 +20,23 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.oauth2.server.resource.web.BearerTokenAuthenticationEntryPoint;
 import org.springframework.security.oauth2.server.resource.web.access.BearerTokenAccessDeniedHandler;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 import javax.crypto.SecretKey;
+import java.util.ArrayList;
+import java.util.Collection;
 
 @Configuration
 @EnableWebSecurity
@@ -105,6 +112,20 @@ public class SecurityConfig {
                 .build();
     }
 
+    /* ─────────── Autorités JWT : SCOPE_* (claim scope) + ROLE_* (claim role) ─────────── */
+    @Bean
+    public JwtAuthenticationConverter jwtAuthenticationConverter() {
+        JwtGrantedAuthoritiesConverter scopes = new JwtGrantedAuthoritiesConverter();
+        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(jwt -> {
+            Collection<GrantedAuthority> authorities = new ArrayList<>(scopes.convert(jwt));
+            String role = jwt.getClaimAsString("role");
+            if (role != null && !role.isBlank()) authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
+            return authorities;
+        });
+        return converter;
+    }
+
     /* ─────────── Intercepteur WebSocket JWT ─────────── */
     @Bean
     public JwtHandshakeInterceptor jwtHandshakeInterceptor(JwtDecoder decoder) {
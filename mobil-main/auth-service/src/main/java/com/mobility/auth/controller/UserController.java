@@ -1,21 +1,30 @@
 // ─────────────────────────────────────────────────────────────
 //  FILE : src/main/java/com/mobility/auth/controller/UserController.java
 //  v2025‑09‑20 – ajoute /me/push-tokens et /me/kyc/* (+ clean import)
+//  v2025-10-16 – photos servies depuis le magasin de fichiers (sendfile, ETag)
+//  v2025-10-16 – ?size= : vignette 64 / 128 / 512 px (AvatarPipeline)
+//  v2025-10-17 – cache immuable réservé à un ?v= complet (16 caractères)
 // ─────────────────────────────────────────────────────────────
 package com.mobility.auth.controller;
 
 import com.mobility.auth.dto.*;
 import com.mobility.auth.model.*;
+import com.mobility.auth.service.AvatarPipeline;
 import com.mobility.auth.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.*;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.List;
 
 import static org.springframework.http.MediaType.MULTIPART_FORM_DATA_VALUE;
@@ -41,26 +50,23 @@ public class UserController {
         return ResponseEntity.ok(userService.updateProfile(jwt.getSubject(), body));
     }
 
-    /* ────── profile picture (blob) ────── */
+    /* ────── profile picture (magasin de fichiers) ────── */
 
     @PostMapping(path = "/me/picture", consumes = MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Void> uploadProfilePicture(
             @AuthenticationPrincipal Jwt jwt,
             @RequestPart("file") MultipartFile file) throws IOException {
 
-        userService.saveProfilePicture(jwt.getSubject(), file.getContentType(), file.getBytes());
+        userService.saveProfilePicture(jwt.getSubject(), file);
         return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/me/picture")
-    public ResponseEntity<byte[]> getMyProfilePicture(@AuthenticationPrincipal Jwt jwt) {
+    public ResponseEntity<?> getMyProfilePicture(@AuthenticationPrincipal Jwt jwt,
+                                                 WebRequest web,
+                                                 HttpServletRequest req) throws IOException {
         ProfilePicture pic = userService.getProfilePicture(jwt.getSubject());
-        if (pic == null) return ResponseEntity.noContent().build();
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(pic.getMimeType()))
-                .cacheControl(CacheControl.noCache())
-                .body(pic.getData());
+        return photo(pic, CacheControl.noCache().cachePrivate(), web, req);
     }
 
     /* ═══════════ Addresses ═══════════ */
@@ -155,14 +161,70 @@ public class UserController {
 
     /* ═══════════ NEW : photo publique d’un autre utilisateur ═══════════ */
 
+    /**
+     * URL versionnée ({@code ?v=} = début de la clé SHA-256, voir
+     * {@link ProfilePicture#publicUrl}) ⇒ cache immuable ; sinon
+     * revalidation par ETag. {@code ?size=} sélectionne la plus petite
+     * vignette suffisante ; tant qu'elle n'existe pas, l'original est
+     * servi sans cache immuable.
+     */
     @GetMapping("/{id}/photo")
-    public ResponseEntity<byte[]> getPhoto(@PathVariable Long id) {
-        ProfilePicture pic = userService.getProfilePictureById(id);
+    public ResponseEntity<?> getPhoto(@PathVariable Long id,
+                                      @RequestParam(name = "v", required = false) String v,
+                                      @RequestParam(name = "size", required = false) Integer size,
+                                      WebRequest web,
+                                      HttpServletRequest req) throws IOException {
+        ProfilePicture pic = userService.getProfilePictureById(id, size);
+        int     wanted  = size == null ? 0 : AvatarPipeline.bucket(size);
+        boolean current = pic != null && pic.getKey() != null
+                && v != null && v.length() == ProfilePicture.VERSION_LENGTH && pic.getKey().startsWith(v)
+                && (wanted == 0 || pic.getKey().endsWith("-" + wanted));
+        CacheControl cc = current
+                ? CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable()
+                : CacheControl.noCache();
+        return photo(pic, cc, web, req);
+    }
+
+    /* ═══════════ Helpers ═══════════ */
+
+    private static final String SENDFILE = "org.apache.tomcat.sendfile";
+
+    /**
+     * Sert une photo : 304 si l'ETag (clé SHA-256) correspond, sinon
+     * envoi zéro-copie par le connecteur Tomcat (sendfile) quand il le
+     * propose, flux du fichier à défaut. Les photos encore en BLOB partent
+     * telles quelles, sans cache.
+     */
+    private static ResponseEntity<?> photo(ProfilePicture pic, CacheControl cc,
+                                           WebRequest web, HttpServletRequest req) throws IOException {
         if (pic == null) return ResponseEntity.noContent().build();
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(pic.getMimeType()))
-                .cacheControl(CacheControl.noCache())
-                .body(pic.getData());
+        MediaType type = MediaType.parseMediaType(pic.getMimeType());
+
+        if (pic.getFile() == null) {
+            return ResponseEntity.ok()
+                    .contentType(type)
+                    .cacheControl(CacheControl.noCache())
+                    .body(pic.getData());
+        }
+
+        String etag = "\"" + pic.getKey() + "\"";
+        if (web.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cc).build();
+        }
+
+        long size = Files.size(pic.getFile());
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .contentType(type)
+                .contentLength(size)
+                .eTag(etag)
+                .cacheControl(cc);
+
+        if (Boolean.TRUE.equals(req.getAttribute(SENDFILE + ".support"))) {
+            req.setAttribute(SENDFILE + ".filename", pic.getFile().toString());
+            req.setAttribute(SENDFILE + ".start", 0L);
+            req.setAttribute(SENDFILE + ".end", size);
+            return ok.build();
+        }
+        return ok.body(new FileSystemResource(pic.getFile()));
     }
 }
@@ -1,25 +1,80 @@
 package com.mobility.auth.dto;
 
+import java.nio.file.Path;
+
 /**
  * Transport de la photo de profil :
- * • data     = octets bruts de l'image (BLOB)
+ * • file     = fichier du magasin adressé par contenu (StorageService)
+ * • key      = clé SHA-256 du fichier, sert d'ETag
+ * • data     = octets bruts de l'image (ancien BLOB, en attente de migration)
  * • mimeType = type MIME de l'image ("image/jpeg", "image/png", ...)
  */
 public class ProfilePicture {
 
+    /** Vignette utilisée dans les listes de courses et l'écran « match ». */
+    public static final int THUMB = 128;
+
+    /** Longueur du paramètre {@code v} : préfixe de la clé SHA-256. */
+    public static final int VERSION_LENGTH = 16;
+
     private final byte[] data;
+    private final Path   file;
+    private final String key;
     private final String mimeType;
 
+    /** Photo encore en BLOB dans la table users. */
     public ProfilePicture(byte[] data, String mimeType) {
-        this.data = data;
+        this(data, null, null, mimeType);
+    }
+
+    /** Photo servie depuis le magasin de fichiers. */
+    public ProfilePicture(Path file, String key, String mimeType) {
+        this(null, file, key, mimeType);
+    }
+
+    private ProfilePicture(byte[] data, Path file, String key, String mimeType) {
+        this.data     = data;
+        this.file     = file;
+        this.key      = key;
         this.mimeType = mimeType;
     }
 
-    /** Octets bruts de l'image. Peut être null si pas de photo. */
+    /**
+     * URL publique de la photo de {@code userId} ; le paramètre {@code v}
+     * (début de la clé) change avec le contenu, ce qui autorise un cache
+     * client immuable.
+     */
+    public static String publicUrl(Long userId, String key) {
+        return publicUrl(userId, key, null);
+    }
+
+    /** Idem, vignette d'au moins {@code size} px (null ⇒ original). */
+    public static String publicUrl(Long userId, String key, Integer size) {
+        StringBuilder url = new StringBuilder("/api/v1/users/").append(userId).append("/photo");
+        char sep = '?';
+        if (key != null) {
+            url.append(sep).append("v=").append(key, 0, Math.min(VERSION_LENGTH, key.length()));
+            sep = '&';
+        }
+        if (size != null) url.append(sep).append("size=").append(size);
+        return url.toString();
+    }
+
+    /** Octets bruts de l'image (ancien BLOB). Null si servie depuis un fichier. */
     public byte[] getData() {
         return data;
     }
 
+    /** Fichier de l'image. Null pour une photo encore en BLOB. */
+    public Path getFile() {
+        return file;
+    }
+
+    /** Clé SHA-256 du fichier (suffixée « -128 » pour une vignette). Null pour une photo encore en BLOB. */
+    public String getKey() {
+        return key;
+    }
+
     /** Type MIME (Content-Type) de l'image. */
     public String getMimeType() {
         return mimeType;
@@ -77,10 +77,10 @@ public interface UserMapper {
     @Mapping(target = "rating",        source = "rating")
     @Mapping(target = "ratingCount",   source = "ratingCount")
 
-    /* photo : expose l’endpoint si le BLOB existe */
+    /* photo : expose l’endpoint si une photo existe (fichier ou ancien BLOB) */
     @Mapping(
             target      = "profilePictureUrl",
-            expression  = "java(user.getProfilePicture()!=null ? \"/api/v1/users/me/picture\" : null)"
+            expression  = "java(user.getProfilePictureKey()!=null || user.getProfilePicture()!=null ? \"/api/v1/users/me/picture\" : null)"
     )
 
     /* Wallet & monnaie */
@@ -64,6 +64,7 @@ public class User {
     private OffsetDateTime dateOfBirth;
 
     /* ─────────── Photo de profil ─────────── */
+    /** Ancien stockage : vidé par ProfilePictureMigration, plus jamais écrit. */
     @Lob
     @Column(name = "profile_picture", columnDefinition = "LONGBLOB")
     private byte[] profilePicture;
@@ -71,6 +72,7 @@ public class User {
     @Column(name = "profile_picture_mime", length = 32)
     private String profilePictureMimeType;
 
+    /** Clé SHA-256 du fichier dans StorageService (sert aussi d’ETag). */
     @Column(length = 255)
     private String profilePictureKey;
 
@@ -1,6 +1,7 @@
 // ─────────────────────────────────────────────────────────────
 //  FILE : src/main/java/com/mobility/auth/repository/PushTokenRepository.java
 //  v2025-10-11 – ajout findAllByUserIdIn(...)
+//  v2025-10-16 – findAllByToken(...) pour l’élagage des tokens morts
 // ─────────────────────────────────────────────────────────────
 package com.mobility.auth.repository;
 
@@ -18,6 +19,9 @@ public interface PushTokenRepository extends JpaRepository<PushToken, Long> {
     /* jetons d’un ensemble d’utilisateurs – utilisé par ChatService */
     List<PushToken> findAllByUserIdIn(List<Long> userIds);
 
+    /* toutes les occurrences d’un token (élagage DeviceNotRegistered) */
+    List<PushToken> findAllByToken(String token);
+
     /* révocation d’un token précis */
     void deleteByTokenAndUser(String token, User user);
 }
@@ -3,18 +3,27 @@
 //  v2025-09-05 – ré-expose findByExternalUid (compat RideUserService)
 //               + projections « snippet » Driver/Rider
 //               + verrou PESSIMISTIC_WRITE pour MAJ de solde
+//  v2025-10-14 – updateLastLocation (write-back groupé des positions chauffeur)
+//  v2025-10-16 – snippets sans BLOB photo + ids à migrer vers le magasin
+//  v2025-10-16 – projection UserDisplayView (flux de courses, UserDisplayCache)
 // ─────────────────────────────────────────────────────────────────────────────
 package com.mobility.auth.repository;
 
 import com.mobility.auth.model.Role;
 import com.mobility.auth.model.User;
+import com.mobility.auth.repository.view.UserDisplayView;
 import com.mobility.auth.repository.view.UserSnippetView;
 import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -51,8 +60,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
            select u.id                     as id,
                   u.firstName              as firstName,
                   u.lastName               as lastName,
-                  u.profilePicture         as profilePicture,
-                  u.profilePictureMimeType as profilePictureMimeType,
+                  u.profilePictureKey      as profilePictureKey,
+                  case when u.profilePicture is not null then true else false end
+                                           as legacyPicture,
                   u.rating                 as rating
              from User u
             where u.id = :id
@@ -63,11 +73,49 @@ public interface UserRepository extends JpaRepository<User, Long> {
            select u.id                     as id,
                   u.firstName              as firstName,
                   u.lastName               as lastName,
-                  u.profilePicture         as profilePicture,
-                  u.profilePictureMimeType as profilePictureMimeType,
+                  u.profilePictureKey      as profilePictureKey,
+                  case when u.profilePicture is not null then true else false end
+                                           as legacyPicture,
                   u.rating                 as rating
              from User u
             where u.id = :id
            """)
     Optional<UserSnippetView> findRiderSnippetById(@Param("id") Long id);
+
+    /* ══════════════ Projection « display » (flux de courses) ══════════════ */
+    @Query("""
+           select u.id                as id,
+                  u.firstName         as firstName,
+                  u.lastName          as lastName,
+                  u.phoneNumber       as phoneNumber,
+                  u.profilePictureKey as profilePictureKey,
+                  case when u.profilePicture is not null then true else false end
+                                      as legacyPicture
+             from User u
+            where u.id in :ids
+           """)
+    List<UserDisplayView> findDisplayViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /* ══════════════ Migration des photos (ProfilePictureMigration) ══════════════ */
+    @Query("""
+           select u.id from User u
+            where u.profilePicture is not null and u.id > :after
+            order by u.id
+           """)
+    List<Long> findIdsWithPictureBlob(@Param("after") Long after, Pageable page);
+
+    /* ══════════════ Position « live » (write-back DriverLocationService) ══════════════ */
+    @Modifying
+    @Query("""
+           update User u
+              set u.lastLat        = :lat,
+                  u.lastLon        = :lon,
+                  u.lastLocationAt = :at
+            where u.id = :id
+              and (u.lastLocationAt is null or u.lastLocationAt < :at)
+           """)
+    int updateLastLocation(@Param("id")  Long id,
+                           @Param("lat") Double lat,
+                           @Param("lon") Double lon,
+                           @Param("at")  OffsetDateTime at);
 }
@@ -0,0 +1,17 @@
+// ───────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/auth/repository/view/UserDisplayView.java
+// ───────────────────────────────────────────────────────────
+package com.mobility.auth.repository.view;
+
+/**
+ * Champs affichés pour un rider / chauffeur dans les flux de courses
+ * (nom, téléphone, photo) : ni BLOB, ni collections, ni colonnes métier.
+ */
+public interface UserDisplayView {
+    Long    getId();
+    String  getFirstName();
+    String  getLastName();
+    String  getPhoneNumber();
+    String  getProfilePictureKey();
+    Boolean getLegacyPicture();
+}
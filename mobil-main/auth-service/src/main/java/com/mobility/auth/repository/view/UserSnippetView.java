@@ -6,13 +6,14 @@ package com.mobility.auth.repository.view;
 /**
  * Charge uniquement les champs utiles à l’écran « match ».
  * La vue est mappée directement sur le résultat SQL
- * → pas de surcharge mémoire.
+ * → pas de surcharge mémoire : la photo n’est référencée que par sa clé,
+ * l’ancien BLOB seulement testé (non lu).
  */
 public interface UserSnippetView {
-    Long   getId();
-    String getFirstName();
-    String getLastName();
-    byte[] getProfilePicture();
-    String getProfilePictureMimeType();
-    Double getRating();
+    Long    getId();
+    String  getFirstName();
+    String  getLastName();
+    String  getProfilePictureKey();
+    Boolean getLegacyPicture();
+    Double  getRating();
 }
@@ -1,51 +1,84 @@
-// src/main/java/com/mobility/auth/service/AuthenticatedUserService.java
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/auth/service/AuthenticatedUserService.java
+//  v2025-10-16 – id lu dans la claim « uid » du Jwt déjà validé par le
+//                resource-server ; cache externalUid → id pour les anciens tokens
+// ─────────────────────────────────────────────────────────────
 package com.mobility.auth.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mobility.auth.model.User;
 import com.mobility.auth.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
-import javax.crypto.SecretKey;
-import io.jsonwebtoken.io.Decoders;
-import io.jsonwebtoken.security.Keys;
-
-import java.util.Map;
+import java.time.Duration;
 
 /**
  * <h2>AuthenticatedUserService</h2>
  *
- * <p>
- * Extrait l’ID interne (Long) de l’utilisateur authentifié à partir du token JWT.
- * On récupère la claim "sub" (externalUid) depuis l’objet org.springframework.security.oauth2.jwt.Jwt,
- * puis on recherche l’utilisateur en base via UserRepository.findByExternalUid(...).
- * </p>
+ * <p>Résout l’ID interne (Long) de l’utilisateur authentifié, sans
+ * re-décoder le token ni interroger la base à chaque appel :</p>
+ * <ul>
+ *   <li>le {@link Jwt} est celui déjà décodé et vérifié par le filtre
+ *       resource-server (contexte Spring Security) ; le {@link JwtDecoder}
+ *       partagé n’est utilisé qu’en dehors de ce filtre ;</li>
+ *   <li>l’ID est la claim {@code uid} posée par {@code JwtService} ;</li>
+ *   <li>anciens tokens sans {@code uid} : {@code sub} (externalUid) résolu
+ *       en base puis mis en cache (borné, {@code app.auth.uid-cache}) ;</li>
+ *   <li>résultat mémorisé pour la durée de la requête HTTP.</li>
+ * </ul>
  */
 @Service
 public class AuthenticatedUserService {
 
-    private final UserRepository userRepository;
-    private final JwtDecoder jwtDecoder;
+    private static final String REQUEST_ATTR = AuthenticatedUserService.class.getName() + ".userId";
+
+    private final UserRepository      userRepository;
+    private final JwtDecoder          jwtDecoder;
+    private final Cache<String, Long> idsByExternalUid;
 
     /**
-     * @param userRepository  Repository JPA permettant de récupérer l’utilisateur par externalUid
-     * @param secretB64       Clé HS256 encodée en Base64 (configurée dans application.properties)
+     * @param userRepository Repository JPA (anciens tokens uniquement)
+     * @param jwtDecoder     Décodeur HS256 partagé (SecurityConfig)
      */
-    public AuthenticatedUserService(
-            UserRepository userRepository,
-            @Value("${app.jwt.secret}") String secretB64
-    ) {
-        this.userRepository = userRepository;
+    public AuthenticatedUserService(UserRepository userRepository,
+                                    JwtDecoder jwtDecoder,
+                                    MeterRegistry metrics,
+                                    @Value("${app.auth.uid-cache.max-size:100000}") long maxSize,
+                                    @Value("${app.auth.uid-cache.ttl-min:60}")      long ttlMin) {
+        this.userRepository   = userRepository;
+        this.jwtDecoder       = jwtDecoder;
+        this.idsByExternalUid = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMin))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(metrics, idsByExternalUid, "auth.uid");
+    }
 
-        // Décodage de la clé Base64 pour construire un JwtDecoder HS256
-        SecretKey key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretB64));
-        this.jwtDecoder = NimbusJwtDecoder.withSecretKey(key).build();
+    /**
+     * ID interne de l’utilisateur de la requête courante.
+     * @throws IllegalArgumentException aucun Jwt authentifié, ou utilisateur inconnu
+     */
+    public Long currentUserId() {
+        Jwt jwt = currentJwt();
+        if (jwt == null) throw new IllegalArgumentException("MISSING_OR_INVALID_AUTHORIZATION_HEADER");
+        return memoized(jwt);
     }
 
     /**
      * Extrait l’ID interne (Long) depuis le header Authorization (Bearer <token>).
+     * Si ce token est celui déjà authentifié pour la requête, aucun décodage
+     * n’est refait.
      *
      * @param bearerToken Valeur brute du header "Authorization" (ex. : "Bearer eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...")
      * @return l’ID interne (Long) de l’utilisateur
@@ -58,22 +91,54 @@ public class AuthenticatedUserService {
         }
         String token = bearerToken.substring(7);
 
+        Jwt current = currentJwt();
+        if (current != null && token.equals(current.getTokenValue())) return memoized(current);
+
         Jwt jwt;
         try {
-            jwt = (Jwt) jwtDecoder.decode(token);
+            jwt = jwtDecoder.decode(token);
         } catch (Exception ex) {
-            throw new IllegalArgumentException("INVALID_JWT_TOKEN");
+            throw new IllegalArgumentException("INVALID_JWT_TOKEN", ex);
         }
+        return resolve(jwt);
+    }
+
+    /* ═════════════ Helpers ═════════════ */
 
-        // La méthode getSubject() renvoie la claim "sub" directement
-        String externalUid = jwt.getSubject();
+    private static Jwt currentJwt() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.getPrincipal() instanceof Jwt jwt ? jwt : null;
+    }
+
+    /** Une seule résolution par requête HTTP (plusieurs appels possibles par contrôleur). */
+    private Long memoized(Jwt jwt) {
+        RequestAttributes req = RequestContextHolder.getRequestAttributes();
+        if (req == null) return resolve(jwt);
+        Object hit = req.getAttribute(REQUEST_ATTR, RequestAttributes.SCOPE_REQUEST);
+        if (hit instanceof Long id) return id;
+        Long id = resolve(jwt);
+        req.setAttribute(REQUEST_ATTR, id, RequestAttributes.SCOPE_REQUEST);
+        return id;
+    }
+
+    private Long resolve(Jwt jwt) {
+        Object uid = jwt.getClaims().get("uid");                 // convention : uid = id interne
+        if (uid instanceof Number n) return n.longValue();
+        if (uid instanceof String s && !s.isBlank()) {
+            try {
+                return Long.valueOf(s);
+            } catch (NumberFormatException ignore) { /* repli sur « sub » */ }
+        }
+
+        String externalUid = jwt.getSubject();                   // champ « sub »
         if (externalUid == null || externalUid.isBlank()) {
             throw new IllegalArgumentException("JWT_MISSING_SUBJECT");
         }
-
-        // Recherche l’utilisateur en base via externalUid (String) → récupère son ID interne (Long)
-        return userRepository.findByExternalUid(externalUid)
-                .map(user -> user.getId())
-                .orElseThrow(() -> new IllegalArgumentException("USER_NOT_FOUND"));
+        Long id = idsByExternalUid.get(externalUid, sub -> userRepository.findByUid(sub)
+                .or(() -> userRepository.findByExternalUid(sub))
+                .map(User::getId)
+                .orElse(null));
+        if (id == null) throw new IllegalArgumentException("USER_NOT_FOUND");
+        return id;
     }
 }
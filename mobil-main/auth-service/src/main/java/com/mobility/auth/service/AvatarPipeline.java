@@ -0,0 +1,266 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/auth/service/AvatarPipeline.java
+//  v2025-10-16 – déclinaisons 64 / 128 / 512 px des photos de profil
+//  v2025-10-17 – plafond de pixels, lecture du seul carré central
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.auth.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h2>AvatarPipeline</h2>
+ *
+ * <p>Produit, hors du thread de la requête, les déclinaisons carrées
+ * {@link #SIZES} (JPEG) d’une photo du magasin :</p>
+ * <ul>
+ *   <li>dimensions lues avant tout décodage : au-delà de
+ *       {@code max-pixels} (largeur × hauteur) la photo est refusée ;</li>
+ *   <li>décodage unique du seul carré central, sous-échantillonné dès la
+ *       lecture (jamais plus de ~2× la plus grande déclinaison de côté en
+ *       mémoire, quelles que soient les proportions) ;</li>
+ *   <li>réductions successives 512 → 128 → 64 ;</li>
+ *   <li>fichiers rangés à côté de l’original
+ *       ({@link StorageService#putVariant}) ; l’original reste servi tant
+ *       qu’une déclinaison manque.</li>
+ * </ul>
+ *
+ * <p>Pool borné ({@code threads}, file de {@code queue-capacity}) : file
+ * pleine ⇒ travail abandonné, il sera redemandé à la première lecture
+ * ({@link #ensure}). Métriques {@code avatar.variants.*}.</p>
+ */
+@Slf4j
+@Component
+public class AvatarPipeline {
+
+    /** Côtés produits (px), du plus grand au plus petit. */
+    public static final int[] SIZES = { 512, 128, 64 };
+
+    private final StorageService storage;
+    private final int            threads;
+    private final int            capacity;
+    private final float          quality;
+    private final long           maxPixels;
+
+    /** Tâche d’une photo (clé conservée pour le dédoublonnage). */
+    private record Job(String key, Runnable work) implements Runnable {
+        @Override public void run() { work.run(); }
+    }
+
+    private final BlockingQueue<Runnable> queue;
+    private final Set<String>             inFlight = ConcurrentHashMap.newKeySet();
+    private final Set<String>             broken   = ConcurrentHashMap.newKeySet();   // illisibles : pas de nouvel essai
+    private ThreadPoolExecutor            pool;
+
+    private final Timer   duration;
+    private final Counter generated;
+    private final Counter dropped;
+    private final Counter failed;
+
+    public AvatarPipeline(StorageService storage,
+                          MeterRegistry metrics,
+                          @Value("${app.storage.avatars.threads:2}")          int   threads,
+                          @Value("${app.storage.avatars.queue-capacity:200}") int   capacity,
+                          @Value("${app.storage.avatars.jpeg-quality:0.82}")  float quality,
+                          @Value("${app.storage.avatars.max-pixels:50000000}") long maxPixels) {
+        this.storage  = storage;
+        this.threads  = threads;
+        this.capacity = capacity;
+        this.quality  = quality;
+        this.maxPixels = maxPixels;
+        this.queue    = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("avatar.variants.queue", queue, BlockingQueue::size).register(metrics);
+        this.duration  = Timer.builder("avatar.variants.duration").publishPercentiles(0.5, 0.99).register(metrics);
+        this.generated = Counter.builder("avatar.variants.generated").register(metrics);
+        this.dropped   = Counter.builder("avatar.variants.dropped").register(metrics);
+        this.failed    = Counter.builder("avatar.variants.failed").register(metrics);
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicInteger n = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+                r -> daemon(r, "avatar-" + n.incrementAndGet()),
+                (r, ex) -> {
+                    if (r instanceof Job j) inFlight.remove(j.key());
+                    dropped.increment();
+                });
+        log.info("🖼️  AvatarPipeline démarrée – {} thread(s), file de {}", threads, capacity);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (pool != null) pool.shutdownNow();
+    }
+
+    /* ═════════════ 1) Entrées ═════════════ */
+
+    /** Planifie les déclinaisons de {@code key} (dédoublonné tant qu’en cours). */
+    public void submit(String key) {
+        if (key == null || pool == null || broken.contains(key) || !inFlight.add(key)) return;
+        pool.execute(new Job(key, () -> {
+            try {
+                generate(key);
+            } finally {
+                inFlight.remove(key);
+            }
+        }));
+    }
+
+    /** Déclinaison la plus proche (≥ {@code size}) si elle existe ; sinon planifiée, {@code null}. */
+    public Path ensure(String key, int size) {
+        String name = variantName(size);
+        if (name == null) return null;
+        if (storage.hasVariant(key, name)) return storage.variant(key, name);
+        submit(key);
+        return null;
+    }
+
+    /** Côté produit pour une taille demandée ({@code 0} ⇒ original). */
+    public static int bucket(int size) {
+        int best = 0;
+        for (int s : SIZES) if (s >= size) best = s;
+        return best;
+    }
+
+    public static String variantName(int size) {
+        int b = bucket(size);
+        return b == 0 ? null : b + ".jpg";
+    }
+
+    /* ═════════════ 2) Traitement (threads avatar-n) ═════════════ */
+
+    private void generate(String key) {
+        long t0 = System.nanoTime();
+        try {
+            BufferedImage img = square(decode(storage.path(key), SIZES[0] * 2, maxPixels));
+            for (int size : SIZES) {
+                img = scale(img, size);
+                storage.putVariant(key, size + ".jpg", jpeg(img));
+                generated.increment();
+            }
+        } catch (Exception ex) {
+            failed.increment();
+            if (broken.size() > 10_000) broken.clear();
+            broken.add(key);
+            log.warn("⚠️  Déclinaisons de la photo {} impossibles : {}", key, ex.getMessage());
+        } finally {
+            duration.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Décode une seule fois le carré central, sous-échantillonné au-delà de
+     * {@code target} px de côté ; refuse les images de plus de {@code maxPixels}.
+     */
+    static BufferedImage decode(Path file, int target, long maxPixels) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> it = ImageIO.getImageReaders(in);
+            if (!it.hasNext()) throw new IOException("format d’image non reconnu");
+            ImageReader reader = it.next();
+            try {
+                reader.setInput(in, true, true);
+                int w = reader.getWidth(0), h = reader.getHeight(0);
+                if ((long) w * h > maxPixels)
+                    throw new IOException("image trop grande : " + w + "×" + h + " px");
+                int side = Math.min(w, h);
+                ImageReadParam p = reader.getDefaultReadParam();
+                p.setSourceRegion(new Rectangle((w - side) / 2, (h - side) / 2, side, side));
+                int step = Math.max(1, side / target);
+                if (step > 1) p.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, p);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Recadrage carré centré, fond blanc (JPEG sans alpha). */
+    private static BufferedImage square(BufferedImage src) {
+        int side = Math.min(src.getWidth(), src.getHeight());
+        int x = (src.getWidth() - side) / 2, y = (src.getHeight() - side) / 2;
+        BufferedImage out = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, side, side);
+            g.drawImage(src, 0, 0, side, side, x, y, x + side, y + side, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    /** Réduction par moitiés successives (qualité) jusqu’à {@code size}. */
+    private static BufferedImage scale(BufferedImage src, int size) {
+        BufferedImage cur = src;
+        while (cur.getWidth() > size) {
+            int next = Math.max(size, cur.getWidth() / 2);
+            BufferedImage out = new BufferedImage(next, next, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = out.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(cur, 0, 0, next, next, null);
+            } finally {
+                g.dispose();
+            }
+            cur = out;
+        }
+        return cur;
+    }
+
+    private byte[] jpeg(BufferedImage img) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(16 * 1024);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(buf)) {
+            writer.setOutput(out);
+            ImageWriteParam p = writer.getDefaultWriteParam();
+            p.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            p.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(img, null, null), p);
+        } finally {
+            writer.dispose();
+        }
+        return buf.toByteArray();
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,110 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/auth/service/ProfilePictureMigration.java
+//  v2025-10-16 – sortie des photos BLOB de la table users vers StorageService
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.auth.service;
+
+import com.mobility.auth.model.User;
+import com.mobility.auth.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * <h2>ProfilePictureMigration</h2>
+ *
+ * <p>Au démarrage, un thread {@code picture-migration} parcourt les
+ * utilisateurs dont {@code profile_picture} est encore renseigné, par lots
+ * de {@code batch-size} (ordre d’id) :</p>
+ * <ul>
+ *   <li>octets écrits dans le magasin ({@link StorageService#put}) ;</li>
+ *   <li>{@code profilePictureKey} renseignée, BLOB remis à {@code NULL},
+ *       dans une transaction par utilisateur.</li>
+ * </ul>
+ *
+ * <p>Idempotent (clé = haché du contenu) et reprenable : plusieurs instances
+ * peuvent tourner, un utilisateur déjà migré n’est plus sélectionné. Une
+ * fois la table vide de BLOB, la lecture d’une ligne {@code users} ne
+ * transporte plus d’image.</p>
+ */
+@Slf4j
+@Component
+public class ProfilePictureMigration {
+
+    private final UserRepository      userRepo;
+    private final StorageService      storage;
+    private final UserDisplayCache    displayCache;
+    private final TransactionTemplate tx;
+    private final boolean             enabled;
+    private final int                 batchSize;
+
+    public ProfilePictureMigration(UserRepository userRepo,
+                                   StorageService storage,
+                                   UserDisplayCache displayCache,
+                                   TransactionTemplate tx,
+                                   @Value("${app.storage.migration.enabled:true}") boolean enabled,
+                                   @Value("${app.storage.migration.batch-size:50}") int    batchSize) {
+        this.userRepo     = userRepo;
+        this.storage      = storage;
+        this.displayCache = displayCache;
+        this.tx           = tx;
+        this.enabled      = enabled;
+        this.batchSize    = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!enabled) return;
+        Thread t = new Thread(this::run, "picture-migration");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    void run() {
+        long after = 0, moved = 0, failed = 0;
+        try {
+            List<Long> ids;
+            do {
+                final long from = after;
+                ids = tx.execute(st -> userRepo.findIdsWithPictureBlob(from, PageRequest.of(0, batchSize)));
+                if (ids == null) return;
+                for (Long id : ids) {
+                    try {
+                        tx.executeWithoutResult(st -> migrate(id));
+                        moved++;
+                    } catch (Exception ex) {
+                        failed++;
+                        log.warn("⚠️  Photo de l’utilisateur #{} non migrée : {}", id, ex.getMessage());
+                    }
+                    after = id;
+                }
+            } while (ids.size() == batchSize);
+        } catch (Exception ex) {
+            log.error("❌ Migration des photos interrompue : {}", ex.getMessage(), ex);
+        }
+        if (moved + failed > 0)
+            log.info("🗄️  Migration des photos – {} déplacée(s), {} en échec", moved, failed);
+    }
+
+    private void migrate(Long id) {
+        User u = userRepo.findById(id).orElse(null);
+        if (u == null || u.getProfilePicture() == null) return;
+        try {
+            u.setProfilePictureKey(storage.put(new ByteArrayInputStream(u.getProfilePicture())));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (u.getProfilePictureMimeType() == null) u.setProfilePictureMimeType("image/jpeg");
+        u.setProfilePicture(null);
+        displayCache.invalidate(id);
+    }
+}
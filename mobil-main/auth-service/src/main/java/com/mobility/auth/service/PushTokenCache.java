@@ -0,0 +1,131 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/auth/service/PushTokenCache.java
+//  v2025-10-16 – cache userId → tokens push (Caffeine, chargement groupé)
+// ─────────────────────────────────────────────────────────────
+package com.mobility.auth.service;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.mobility.auth.model.PushToken;
+import com.mobility.auth.repository.PushTokenRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tokens push par utilisateur, servis depuis un cache Caffeine.
+ *
+ * <ul>
+ *   <li>{@link #tokensOf(Collection)} : un seul {@code findAllByUserIdIn}
+ *       pour tous les destinataires absents du cache (fan-out rider +
+ *       chauffeur) ; un utilisateur sans token est aussi mis en cache ;</li>
+ *   <li>{@link #invalidate(Long)} après commit de
+ *       {@code UserService.addPushToken / deletePushToken} ;</li>
+ *   <li>{@link #prune(String)} supprime un token signalé mort par la
+ *       passerelle ({@code DeviceNotRegistered}).</li>
+ * </ul>
+ *
+ * <p>Les autres instances se resynchronisent à l’expiration
+ * ({@code app.push.tokens.cache.ttl-min}).</p>
+ */
+@Slf4j
+@Component
+public class PushTokenCache {
+
+    private final PushTokenRepository             repo;
+    private final TransactionTemplate             tx;
+    private final LoadingCache<Long, List<String>> cache;
+
+    public PushTokenCache(PushTokenRepository repo,
+                          TransactionTemplate tx,
+                          MeterRegistry metrics,
+                          @Value("${app.push.tokens.cache.max-size:100000}") long maxSize,
+                          @Value("${app.push.tokens.cache.ttl-min:10}")      long ttlMin) {
+        this.repo  = repo;
+        this.tx    = tx;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMin))
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public List<String> load(Long userId) {
+                        return loadAll(Set.of(userId)).getOrDefault(userId, List.of());
+                    }
+
+                    @Override
+                    public Map<Long, List<String>> loadAll(Set<? extends Long> userIds) {
+                        return fetch(userIds);
+                    }
+                });
+        CaffeineCacheMetrics.monitor(metrics, cache, "push.tokens");
+    }
+
+    /* ═════════════ 1) Lectures ═════════════ */
+
+    public List<String> tokensOf(Long userId) {
+        return userId == null ? List.of() : cache.get(userId);
+    }
+
+    /** userId → tokens (liste vide si aucun) ; ids {@code null} ignorés. */
+    public Map<Long, List<String>> tokensOf(Collection<Long> userIds) {
+        Set<Long> ids = new LinkedHashSet<>(userIds);
+        ids.remove(null);
+        return ids.isEmpty() ? Map.of() : cache.getAll(ids);
+    }
+
+    /* ═════════════ 2) Invalidation ═════════════ */
+
+    /** Invalide l’entrée après commit (immédiatement hors transaction). */
+    public void invalidate(Long userId) {
+        if (userId == null) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidate(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCommit() { cache.invalidate(userId); }
+        });
+    }
+
+    /** Supprime un token mort (toutes occurrences) et invalide ses propriétaires. */
+    public void prune(String token) {
+        if (token == null || token.isBlank()) return;
+        List<Long> owners = tx.execute(st -> {
+            List<PushToken> rows = repo.findAllByToken(token);
+            repo.deleteAllInBatch(rows);
+            return rows.stream().map(t -> t.getUser().getId()).toList();
+        });
+        if (owners == null || owners.isEmpty()) return;
+        cache.invalidateAll(owners);
+        log.info("🧹 Push token élagué (DeviceNotRegistered) – {} utilisateur(s)", owners.size());
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private Map<Long, List<String>> fetch(Collection<? extends Long> userIds) {
+        Map<Long, List<String>> out = new HashMap<>();
+        for (Long id : userIds) out.put(id, new ArrayList<>());
+        for (PushToken t : repo.findAllByUserIdIn(List.copyOf(userIds))) {
+            Long owner = t.getUser().getId();
+            out.computeIfAbsent(owner, k -> new ArrayList<>()).add(t.getToken());
+        }
+        out.replaceAll((k, v) -> v.stream().distinct().toList());
+        return out;
+    }
+}
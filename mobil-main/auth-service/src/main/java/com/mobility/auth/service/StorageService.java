@@ -1,44 +1,173 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/auth/service/StorageService.java
+//  v2025-10-16 – magasin local adressé par contenu (SHA-256, répertoires
+//                fragmentés, écriture en flux)
+//  v2025-10-16 – déclinaisons rangées à côté de l’original (AvatarPipeline)
+//  v2025-10-17 – documents KYC hors du magasin public (stub d’origine rétabli)
+// ─────────────────────────────────────────────────────────────
 package com.mobility.auth.service;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
-import java.net.URL;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 /**
- * Service de stockage abstrait (ex : S3, GCS, Azure Blob…).
- * Ici en stub local, à remplacer par l’intégration réelle.
+ * Magasin de blobs local, adressé par contenu.
+ *
+ * <ul>
+ *   <li>clé = SHA-256 hexadécimal du contenu : deux dépôts identiques
+ *       partagent le même fichier, et la clé sert d’ETag ;</li>
+ *   <li>fichier rangé sous {@code base-path/ab/cd/abcd…} (deux niveaux de
+ *       fragmentation : pas de répertoire à des millions d’entrées) ;</li>
+ *   <li>écriture en flux dans {@code base-path/tmp} avec calcul du haché au
+ *       passage, puis déplacement atomique : jamais de fichier partiel
+ *       visible, jamais l’image entière en mémoire ;</li>
+ *   <li>déclinaisons (ex. vignettes) à côté de l’original :
+ *       {@code abcd…-128.jpg}.</li>
+ * </ul>
+ *
+ * <p>Les blobs sont immuables ; un blob orphelin (transaction annulée après
+ * écriture) est inoffensif.</p>
+ *
+ * <p>Réservé aux contenus publics (photos de profil) : les documents KYC
+ * n’y sont jamais écrits, ils attendent un stockage chiffré à accès
+ * contrôlé.</p>
  */
+@Slf4j
 @Service
 public class StorageService {
 
+    private static final Pattern KEY     = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern VARIANT = Pattern.compile("[0-9a-z]+\\.[a-z]+");
+
     /**
-     * Chemin de base local (pour stub). Peut être un bucket S3 en prod.
+     * Répertoire racine du magasin (volume persistant en prod).
      */
     @Value("${app.storage.base-path:storage}")
     private String basePath;
 
+    private Path root;
+    private Path tmp;
+
     @PostConstruct
-    public void init() {
-        // Ici on pourrait créer le répertoire local, ou initialiser le client S3, etc.
-        System.out.println("StorageService initialisé avec basePath=" + basePath);
+    public void init() throws IOException {
+        root = Paths.get(basePath).toAbsolutePath().normalize();
+        tmp  = root.resolve("tmp");
+        Files.createDirectories(tmp);
+        log.info("🗄️  StorageService – magasin adressé par contenu sous {}", root);
+    }
+
+    /* ═════════════ 1) Écriture ═════════════ */
+
+    /**
+     * Écrit le flux dans le magasin et renvoie sa clé (SHA-256).
+     * Le flux est lu jusqu’au bout mais n’est pas fermé.
+     */
+    public String put(InputStream in) throws IOException {
+        Path part = Files.createTempFile(tmp, "put-", ".part");
+        try {
+            MessageDigest sha = sha256();
+            try (DigestInputStream din = new DigestInputStream(in, sha)) {
+                Files.copy(din, part, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String key    = HexFormat.of().formatHex(sha.digest());
+            Path   target = path(key);
+            if (Files.exists(target)) return key;                      // contenu déjà présent
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException race) {
+                // écrit entre-temps par un dépôt identique
+            }
+            return key;
+        } finally {
+            Files.deleteIfExists(part);
+        }
     }
 
     /**
      * Stocke un document (bytes) et renvoie la clé interne (UUID).
-     * @param data       contenu binaire du fichier
+     * @param data        contenu binaire du fichier
      * @param contentType type MIME
      * @return clé pour récupérer ce document
      */
     public String storeDocument(byte[] data, String contentType) {
-        // TODO : écrire dans S3/GCS/Azure
+        // TODO : écrire dans un stockage chiffré (S3/GCS/Azure) – jamais dans le magasin public
         // Stub : on génère juste un UUID comme "clé"
         return "doc/" + UUID.randomUUID();
     }
 
+    /**
+     * Stocke une photo de profil (bytes) et renvoie la clé interne.
+     * @param userId identifiant externe de l’utilisateur
+     * @param data   contenu binaire de l’image
+     * @return clé pour récupérer la photo
+     */
+    public String storeProfilePicture(String userId, byte[] data) {
+        return putBytes(data);
+    }
+
+    /**
+     * Range une déclinaison de {@code key} (même répertoire, remplacement
+     * atomique).
+     */
+    public void putVariant(String key, String name, byte[] data) throws IOException {
+        Path target = variant(key, name);
+        Path part   = Files.createTempFile(tmp, "var-", ".part");
+        try {
+            Files.write(part, data);
+            Files.createDirectories(target.getParent());
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    /* ═════════════ 2) Lecture ═════════════ */
+
+    /**
+     * Chemin du blob {@code key} (existant ou non).
+     * @throws IllegalArgumentException clé mal formée
+     */
+    public Path path(String key) {
+        if (key == null || !KEY.matcher(key).matches())
+            throw new IllegalArgumentException("INVALID_STORAGE_KEY");
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    public boolean exists(String key) {
+        return key != null && KEY.matcher(key).matches() && Files.isRegularFile(path(key));
+    }
+
+    /** Chemin de la déclinaison {@code name} (ex. « 128.jpg ») de {@code key}. */
+    public Path variant(String key, String name) {
+        if (name == null || !VARIANT.matcher(name).matches())
+            throw new IllegalArgumentException("INVALID_VARIANT");
+        return path(key).resolveSibling(key + "-" + name);
+    }
+
+    public boolean hasVariant(String key, String name) {
+        return exists(key) && Files.isRegularFile(variant(key, name));
+    }
+
     /**
      * Génère une URL présignée pour accéder au document stocké.
      * @param key clé renvoyée par storeDocument()
@@ -50,14 +179,21 @@ public class StorageService {
         return "https://static.example.com/" + key + "?expires=" + Duration.ofMinutes(15).toSeconds();
     }
 
-    /**
-     * Stocke une photo de profil (bytes) et renvoie la clé interne.
-     * @param userId identifiant externe de l’utilisateur
-     * @param data   contenu binaire de l’image
-     * @return clé pour récupérer la photo
-     */
-    public String storeProfilePicture(String userId, byte[] data) {
-        // TODO : même mécanisme que storeDocument, dans un dossier /profile-pics/
-        return "profile/" + userId + "/" + UUID.randomUUID();
+    /* ═════════════ Helpers ═════════════ */
+
+    private String putBytes(byte[] data) {
+        try {
+            return put(new ByteArrayInputStream(data));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
     }
 }
@@ -0,0 +1,123 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/auth/service/UserDisplayCache.java
+//  v2025-10-16 – cache userId → nom / téléphone / photo (flux de courses)
+// ─────────────────────────────────────────────────────────────
+package com.mobility.auth.service;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.mobility.auth.dto.ProfilePicture;
+import com.mobility.auth.repository.UserRepository;
+import com.mobility.auth.repository.view.UserDisplayView;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Données d’affichage d’un utilisateur, servies depuis un cache Caffeine.
+ *
+ * <ul>
+ *   <li>{@link #of(Collection)} : un seul {@code findDisplayViewsByIdIn}
+ *       (projection {@link UserDisplayView}) pour tous les ids absents du
+ *       cache – plus aucune entité {@code User} chargée pour mapper une
+ *       course ;</li>
+ *   <li>{@link #invalidate(Long)} après commit de
+ *       {@code UserService.updateProfile / saveProfilePicture} et de la
+ *       migration des photos.</li>
+ * </ul>
+ *
+ * <p>Les autres instances se resynchronisent à l’expiration
+ * ({@code app.users.display-cache.ttl-min}).</p>
+ */
+@Component
+public class UserDisplayCache {
+
+    /** Valeur mise en cache (immuable). */
+    public record UserDisplay(Long id, String firstName, String lastName, String phoneNumber,
+                              String pictureKey, boolean hasPicture) {
+
+        /** « Prénom Nom », ou « — » si vide. */
+        public String displayName() {
+            String n = ((firstName == null ? "" : firstName) + " " + (lastName == null ? "" : lastName)).trim();
+            return n.isBlank() ? "—" : n;
+        }
+
+        /** URL de la vignette ({@link ProfilePicture#THUMB}), {@code null} sans photo. */
+        public String photoUrl() {
+            return hasPicture ? ProfilePicture.publicUrl(id, pictureKey, ProfilePicture.THUMB) : null;
+        }
+    }
+
+    private final UserRepository                  repo;
+    private final LoadingCache<Long, UserDisplay> cache;
+
+    public UserDisplayCache(UserRepository repo,
+                            MeterRegistry metrics,
+                            @Value("${app.users.display-cache.max-size:50000}") long maxSize,
+                            @Value("${app.users.display-cache.ttl-min:10}")     long ttlMin) {
+        this.repo  = repo;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMin))
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public UserDisplay load(Long userId) {
+                        return loadAll(Set.of(userId)).get(userId);
+                    }
+
+                    @Override
+                    public Map<Long, UserDisplay> loadAll(Set<? extends Long> userIds) {
+                        return fetch(userIds);
+                    }
+                });
+        CaffeineCacheMetrics.monitor(metrics, cache, "users.display");
+    }
+
+    /* ═════════════ 1) Lectures ═════════════ */
+
+    /** userId → affichage ; ids {@code null} ou inconnus absents du résultat. */
+    public Map<Long, UserDisplay> of(Collection<Long> userIds) {
+        Set<Long> ids = new LinkedHashSet<>(userIds);
+        ids.remove(null);
+        return ids.isEmpty() ? Map.of() : cache.getAll(ids);
+    }
+
+    /* ═════════════ 2) Invalidation ═════════════ */
+
+    /** Invalide l’entrée après commit (immédiatement hors transaction). */
+    public void invalidate(Long userId) {
+        if (userId == null) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidate(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCommit() { cache.invalidate(userId); }
+        });
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private Map<Long, UserDisplay> fetch(Collection<? extends Long> userIds) {
+        Map<Long, UserDisplay> out = new HashMap<>();
+        for (UserDisplayView v : repo.findDisplayViewsByIdIn(List.copyOf(userIds))) {
+            boolean pic = v.getProfilePictureKey() != null || Boolean.TRUE.equals(v.getLegacyPicture());
+            out.put(v.getId(), new UserDisplay(v.getId(), v.getFirstName(), v.getLastName(),
+                    v.getPhoneNumber(), v.getProfilePictureKey(), pic));
+        }
+        return out;
+    }
+}
@@ -1,6 +1,10 @@
 // ─────────────────────────────────────────────────────────────
 //  FILE : src/main/java/com/mobility/auth/service/UserService.java
 //  v2025-09-13 – + getProfilePictureById(Long userId)
+//  v2025-10-16 – invalidation du cache des tokens push (PushTokenCache)
+//  v2025-10-16 – photo de profil dans le magasin adressé par contenu
+//  v2025-10-16 – vignettes 64 / 128 / 512 px (AvatarPipeline)
+//  v2025-10-16 – invalidation de UserDisplayCache (nom, photo)
 // ─────────────────────────────────────────────────────────────
 package com.mobility.auth.service;
 
@@ -18,7 +22,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.List;
@@ -32,6 +39,9 @@ import java.util.stream.Collectors;
  * • 2025-05 : photo de profil stockée en BLOB dans la table <em>users</em>.
  * • 2025-07 : champs chauffeur (permis, inspection, etc.) mis à jour via PATCH / users/me.
  * • 2025-09-13 : lecture de photo par ID numérique (getProfilePictureById).
+ * • 2025-10-16 : photo écrite en flux dans StorageService (clé SHA-256), le BLOB
+ *   n'est plus que lu, le temps de la migration (ProfilePictureMigration).
+ * • 2025-10-16 : vignettes produites en tâche de fond, servies selon ?size=.
  */
 @Slf4j
 @Service
@@ -43,9 +53,12 @@ public class UserService {
     private final PaymentMethodRepository paymentMethodRepo;
     private final AddressRepository       addressRepo;
     private final PushTokenRepository     pushTokenRepo;
+    private final PushTokenCache          pushTokenCache;
+    private final UserDisplayCache        userDisplayCache;
     private final UserDocumentRepository  documentRepo;
     private final RefreshTokenRepository  refreshTokenRepo;
     private final StorageService          storageService;
+    private final AvatarPipeline          avatarPipeline;
     private final UserMapper              mapper;
     private final PasswordEncoder         passwordEncoder;
     private final AuthenticationManager   authManager;
@@ -176,6 +189,7 @@ public class UserService {
         }
 
         userRepo.save(u);
+        userDisplayCache.invalidate(u.getId());
         return mapper.toResponse(u);
     }
 
@@ -246,12 +260,17 @@ public class UserService {
     }
     @Transactional
     public PushToken addPushToken(String uid, PushToken t) {
-        t.setUser(findUser(uid));
-        return pushTokenRepo.save(t);
+        User u = findUser(uid);
+        t.setUser(u);
+        PushToken saved = pushTokenRepo.save(t);
+        pushTokenCache.invalidate(u.getId());
+        return saved;
     }
     @Transactional
     public void deletePushToken(String uid, String token) {
-        pushTokenRepo.deleteByTokenAndUser(token, findUser(uid));
+        User u = findUser(uid);
+        pushTokenRepo.deleteByTokenAndUser(token, u);
+        pushTokenCache.invalidate(u.getId());
     }
 
     /* KYC & documents */
@@ -320,32 +339,53 @@ public class UserService {
         return List.copyOf(u.getBlockedUsers());
     }
 
-    /* ═══════════════ PHOTO DE PROFIL (BLOB) ═══════════════ */
+    /* ═══════════════ PHOTO DE PROFIL (magasin de fichiers) ═══════════════ */
 
+    /** Écrit l'image en flux dans le magasin, ne garde que sa clé et lance les vignettes. */
     @Transactional
-    public void saveProfilePicture(String uid, String mimeType, byte[] data) {
-        if (data == null || data.length == 0) throw new IllegalArgumentException("EMPTY_IMAGE");
+    public void saveProfilePicture(String uid, MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) throw new IllegalArgumentException("EMPTY_IMAGE");
         User u = findUser(uid);
-        u.setProfilePicture(data);
-        u.setProfilePictureMimeType(mimeType);
-        u.setProfilePictureKey(null);
+        String key;
+        try (InputStream in = file.getInputStream()) {
+            key = storageService.put(in);
+        }
+        u.setProfilePictureKey(key);
+        u.setProfilePictureMimeType(file.getContentType());
+        u.setProfilePicture(null);
         userRepo.save(u);
+        userDisplayCache.invalidate(u.getId());
+        avatarPipeline.submit(key);
     }
 
     @Transactional(readOnly = true)
     public ProfilePicture getProfilePicture(String uid) {
-        User u = findUser(uid);
-        byte[] img = u.getProfilePicture();
-        return (img == null) ? null : new ProfilePicture(img, u.getProfilePictureMimeType());
+        return toPicture(findUser(uid), null);
     }
 
-    /** ▼ NOUVEAU : récupération de la photo par ID interne (Long) */
+    /**
+     * ▼ NOUVEAU : récupération de la photo par ID interne (Long).
+     * @param size côté souhaité (px) : plus petite vignette suffisante,
+     *             original si absente (elle est alors planifiée) ou si null
+     */
     @Transactional(readOnly = true)
-    public ProfilePicture getProfilePictureById(Long userId) {
+    public ProfilePicture getProfilePictureById(Long userId, Integer size) {
         User u = userRepo.findById(userId)
                 .orElseThrow(() -> new EntityNotFoundException("USER_NOT_FOUND"));
+        return toPicture(u, size);
+    }
+
+    private ProfilePicture toPicture(User u, Integer size) {
+        String mime = u.getProfilePictureMimeType() == null ? "image/jpeg" : u.getProfilePictureMimeType();
+        String key  = u.getProfilePictureKey();
+        if (storageService.exists(key)) {
+            Path thumb = size == null ? null : avatarPipeline.ensure(key, size);
+            if (thumb != null)
+                return new ProfilePicture(thumb, key + "-" + AvatarPipeline.bucket(size), "image/jpeg");
+            return new ProfilePicture(storageService.path(key), key, mime);
+        }
         byte[] img = u.getProfilePicture();
-        return (img == null) ? null : new ProfilePicture(img, u.getProfilePictureMimeType());
+        return (img == null) ? null : new ProfilePicture(img, mime);
     }
 
     /* ───────────────────── Utilitaire interne ───────────────────── */
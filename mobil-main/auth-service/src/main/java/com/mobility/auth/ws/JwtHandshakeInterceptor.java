@@ -1,27 +1,41 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/auth/ws/JwtHandshakeInterceptor.java
+//  v2025-10-14 – Principal = claim « uid » (id interne), fallback « sub »
+//               (le cast en io.jsonwebtoken.Claims échouait systématiquement)
+//  v2025-10-16 – autorité ROLE_* issue de la claim « role » (contrôles STOMP)
+//  v2025-10-17 – hasRole(Principal, role) partagé par les handlers STOMP
+// ─────────────────────────────────────────────────────────────
 package com.mobility.auth.ws;
 
-import io.jsonwebtoken.Claims;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.lang.NonNull;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
 
-import java.util.Collections;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Intercepte le handshake WebSocket et transforme le JWT
  * « Authorization: Bearer xxx » en Principal Spring.
+ *
+ * <p>Le Principal est déposé dans les attributs de session sous la clé
+ * {@link #PRINCIPAL_ATTR} puis repris par {@link JwtPrincipalHandshakeHandler}.</p>
  */
 public class JwtHandshakeInterceptor implements HandshakeInterceptor {
 
+    public static final String PRINCIPAL_ATTR = "principal";
+
     private final JwtDecoder decoder;
 
     public JwtHandshakeInterceptor(JwtDecoder decoder) {
@@ -39,19 +53,30 @@ public class JwtHandshakeInterceptor implements HandshakeInterceptor {
             String token = auth.substring(7);
             try {
                 Jwt jwt = decoder.decode(token);
-                Claims claims = (Claims) jwt.getClaims();
-                String userId = claims.getSubject();          // convention : sub = id
+                Object uid    = jwt.getClaims().get("uid");   // convention : uid = id interne
+                String userId = uid != null ? uid.toString() : jwt.getSubject();
+                List<SimpleGrantedAuthority> authorities = new ArrayList<>();
+                authorities.add(new SimpleGrantedAuthority("USER"));
+                String role = jwt.getClaimAsString("role");
+                if (role != null && !role.isBlank()) authorities.add(new SimpleGrantedAuthority("ROLE_" + role));
                 UsernamePasswordAuthenticationToken principal =
-                        new UsernamePasswordAuthenticationToken(
-                                userId,
-                                null,
-                                Collections.singletonList(new SimpleGrantedAuthority("USER")));
-                attrs.put("principal", principal);
+                        new UsernamePasswordAuthenticationToken(userId, null, authorities);
+                attrs.put(PRINCIPAL_ATTR, principal);
             } catch (Exception ignore) { /* handshake allowed but unauthenticated */ }
         }
         return true; // toujours laisser passer : contrôle dans l’appli
     }
 
+    /**
+     * Contrôle de rôle côté STOMP (pas de {@code @PreAuthorize} sur les
+     * {@code @MessageMapping} : le Principal est celui du handshake).
+     */
+    public static boolean hasRole(Principal principal, String role) {
+        String wanted = "ROLE_" + role;
+        return principal instanceof Authentication auth
+                && auth.getAuthorities().stream().anyMatch(a -> wanted.equals(a.getAuthority()));
+    }
+
     @Override
     public void afterHandshake(@NonNull ServerHttpRequest request,
                                @NonNull ServerHttpResponse response,
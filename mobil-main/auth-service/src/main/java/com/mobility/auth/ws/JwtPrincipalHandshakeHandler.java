@@ -0,0 +1,28 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/auth/ws/JwtPrincipalHandshakeHandler.java
+//  v2025-10-14 – expose le Principal JWT à la session STOMP
+// ─────────────────────────────────────────────────────────────
+package com.mobility.auth.ws;
+
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Reprend le Principal posé par {@link JwtHandshakeInterceptor} ;
+ * sans lui, {@code Principal} reste {@code null} dans les {@code @MessageMapping}.
+ */
+public class JwtPrincipalHandshakeHandler extends DefaultHandshakeHandler {
+
+    @Override
+    protected Principal determineUser(@NonNull ServerHttpRequest request,
+                                      @NonNull WebSocketHandler wsHandler,
+                                      @NonNull Map<String, Object> attributes) {
+        Object p = attributes.get(JwtHandshakeInterceptor.PRINCIPAL_ATTR);
+        return p instanceof Principal principal ? principal : super.determineUser(request, wsHandler, attributes);
+    }
+}
@@ -44,6 +44,9 @@ public class CorsConfig implements WebMvcConfigurer {
                 // Autoriser tous les en-têtes (ou lister explicitement si vous préférez)
                 .allowedHeaders("*")
 
+                // En-têtes lisibles côté navigateur (curseur de l’historique paginé)
+                .exposedHeaders("X-Next-Cursor")
+
                 // Permettre l'envoi des cookies / Authorization header (si besoin)
                 .allowCredentials(true)
 
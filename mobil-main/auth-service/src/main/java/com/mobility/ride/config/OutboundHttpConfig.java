@@ -0,0 +1,158 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/config/OutboundHttpConfig.java
+//  v2025-10-16 – clients sortants par destination (pool JDK, HTTP/2, cloison)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h2>OutboundHttpConfig</h2>
+ *
+ * <p>Remplace l’unique {@code RestTemplate} partagé
+ * ({@code SimpleClientHttpRequestFactory} : une connexion par appel, mêmes
+ * délais pour tout le monde) par un client isolé par destination :</p>
+ * <ul>
+ *   <li>{@link HttpClient} JDK propre à la destination : connexions
+ *       persistantes (keep-alive) réutilisées, HTTP/2 multiplexé quand
+ *       {@code http2} est actif ;</li>
+ *   <li>délais de connexion / lecture propres ({@link OutboundHttpProperties}) ;</li>
+ *   <li>cloison : au plus {@code max-concurrency} appels simultanés, au-delà
+ *       attente de {@code acquire-timeout-ms} puis {@link ResourceAccessException}
+ *       – une destination lente ne bloque plus les threads des autres ;</li>
+ *   <li>construit via {@link RestTemplateBuilder} : timers Micrometer
+ *       {@code http.client.requests} par hôte, plus
+ *       {@code http.client.inflight{client}} et
+ *       {@code http.client.rejected{client}}.</li>
+ * </ul>
+ */
+@Slf4j
+@Configuration
+public class OutboundHttpConfig {
+
+    private final OutboundHttpProperties props;
+    private final RestTemplateBuilder    builder;
+    private final MeterRegistry          metrics;
+
+    public OutboundHttpConfig(OutboundHttpProperties props,
+                              RestTemplateBuilder builder,
+                              MeterRegistry metrics) {
+        this.props   = props;
+        this.builder = builder;
+        this.metrics = metrics;
+    }
+
+    /** Google Geocoding (GeoServiceImpl, GeoLocationService). */
+    @Bean
+    public RestTemplate googleRestTemplate() {
+        return client("google");
+    }
+
+    /** OSM Nominatim – repli du géocodage inverse (policy : faible débit). */
+    @Bean
+    public RestTemplate osmRestTemplate() {
+        return client("osm");
+    }
+
+    /** Expo push : envoi et reçus, HTTP/2. */
+    @Bean
+    public RestTemplate expoRestTemplate() {
+        return client("expo");
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private RestTemplate client(String name) {
+        OutboundHttpProperties.Client c = props.client(name);
+
+        HttpClient http = HttpClient.newBuilder()
+                .version(c.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(c.getConnectTimeoutMs()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        log.info("🌐 Client HTTP « {} » – {}, connect {} ms, read {} ms, {} appel(s) max",
+                name, c.isHttp2() ? "HTTP/2" : "HTTP/1.1",
+                c.getConnectTimeoutMs(), c.getReadTimeoutMs(), c.getMaxConcurrency());
+
+        return builder
+                .requestFactory(() -> {
+                    JdkClientHttpRequestFactory f = new JdkClientHttpRequestFactory(http);
+                    f.setReadTimeout(Duration.ofMillis(c.getReadTimeoutMs()));
+                    return f;
+                })
+                .additionalInterceptors(defaultHeaders(c), new Bulkhead(name, c, metrics))
+                .build();
+    }
+
+    private static ClientHttpRequestInterceptor defaultHeaders(OutboundHttpProperties.Client c) {
+        return (req, body, ex) -> {
+            HttpHeaders h = req.getHeaders();
+            h.addIfAbsent(HttpHeaders.USER_AGENT, c.getUserAgent());
+            h.addIfAbsent(HttpHeaders.ACCEPT, "application/json");
+            if (c.getAcceptLanguage() != null)
+                h.addIfAbsent(HttpHeaders.ACCEPT_LANGUAGE, c.getAcceptLanguage());
+            return ex.execute(req, body);
+        };
+    }
+
+    /** Limite d’appels simultanés vers une destination. */
+    private static final class Bulkhead implements ClientHttpRequestInterceptor {
+
+        private final String    name;
+        private final Semaphore permits;
+        private final long      acquireMs;
+        private final Counter   rejected;
+
+        Bulkhead(String name, OutboundHttpProperties.Client c, MeterRegistry metrics) {
+            int max = Math.max(1, c.getMaxConcurrency());
+            this.name      = name;
+            this.permits   = new Semaphore(max);
+            this.acquireMs = c.getAcquireTimeoutMs();
+            this.rejected  = Counter.builder("http.client.rejected").tag("client", name).register(metrics);
+            Gauge.builder("http.client.inflight", permits, p -> max - p.availablePermits())
+                    .tag("client", name)
+                    .register(metrics);
+        }
+
+        @Override
+        public ClientHttpResponse intercept(HttpRequest req, byte[] body, ClientHttpRequestExecution ex)
+                throws IOException {
+            try {
+                if (!permits.tryAcquire(acquireMs, TimeUnit.MILLISECONDS)) {
+                    rejected.increment();
+                    throw new ResourceAccessException("Client HTTP « " + name + " » saturé");
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Client HTTP « " + name + " » interrompu");
+            }
+            try {
+                return ex.execute(req, body);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+// ============================================================================
+//  PACKAGE : com.mobility.ride.config
+//  FILE    : OutboundHttpProperties.java
+//  ---------------------------------------------------------------------------
+//  Clients HTTP sortants (`app.http.clients.<destination>`) – un pool par
+//  destination, consommé par OutboundHttpConfig
+//  • connectTimeoutMs / readTimeoutMs : délais propres à la destination
+//  • maxConcurrency   : appels simultanés autorisés (cloison)
+//  • acquireTimeoutMs : attente max d’une place avant rejet immédiat
+//  • http2            : négociation HTTP/2 (ALPN), repli HTTP/1.1 sinon
+//  • userAgent / acceptLanguage : en-têtes ajoutés s’ils sont absents
+// ============================================================================
+
+package com.mobility.ride.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "app.http")
+@Getter @Setter
+public class OutboundHttpProperties {
+
+    /** clé = destination (google, osm, expo, …) */
+    private Map<String, Client> clients = new HashMap<>();
+
+    /** Réglages d’une destination ; valeur par défaut si la clé est absente. */
+    public Client client(String name) {
+        return clients.getOrDefault(name, new Client());
+    }
+
+    /* ──────────────────────────── */
+    /*  Objet imbriqué “Client”    */
+    /* ──────────────────────────── */
+    @Getter @Setter
+    public static class Client {
+
+        private long    connectTimeoutMs = 1_000;
+        private long    readTimeoutMs    = 2_000;
+        private int     maxConcurrency   = 32;
+        private long    acquireTimeoutMs = 100;
+        private boolean http2            = false;
+        private String  userAgent        = "mobility-app/1.0";
+
+        /** Optionnel : {@code Accept-Language} par défaut (ex. « fr »). */
+        private String  acceptLanguage;
+    }
+}
@@ -13,10 +13,12 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * Configuration centrale du {@link TaskScheduler} utilisé par :
- *  • {@code WaitTimeService} (grâce & frais d’attente) ;<br>
- *  • {@code CancellationPenaltyService} (frais no-show, auto-cancel) ;<br>
+ *  • les tâches {@code @Scheduled} ;<br>
  *  • tout autre composant déclarant un {@code TaskScheduler} en injection.<br><br>
  *
+ * Les minuteurs par course (grâce / frais d’attente, no-show) n’y passent
+ * plus : voir {@code RideTimerService} (roue temporelle, traitement par lots).<br><br>
+ *
  * Le bean est annoté {@link Primary} de façon à ce qu’il soit
  * sélectionné lorsqu’il existe d’autres schedulers dans le contexte
  * (ex. {@code messageBrokerTaskScheduler} créé par Spring WebSocket).
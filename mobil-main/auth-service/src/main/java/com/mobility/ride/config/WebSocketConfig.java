@@ -1,10 +1,13 @@
 // ─────────────────────────────────────────────────────────────
 //  FILE : src/main/java/com/mobility/ride/config/WebSocketConfig.java
 //  v2025-10-11 – handshake JWT interceptor branché
+//  v2025-10-14 – handshake handler : Principal JWT propagé aux @MessageMapping
+//  v2025-10-15 – destinations utilisateur (/user/queue/…) pour le feed d’offres
 // ─────────────────────────────────────────────────────────────
 package com.mobility.ride.config;
 
 import com.mobility.auth.ws.JwtHandshakeInterceptor;
+import com.mobility.auth.ws.JwtPrincipalHandshakeHandler;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
@@ -20,14 +23,16 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry cfg) {
-        cfg.enableSimpleBroker("/topic");                // destinations WS sortantes
+        cfg.enableSimpleBroker("/topic", "/queue");      // destinations WS sortantes
         cfg.setApplicationDestinationPrefixes("/app");   // destinations WS entrantes
+        cfg.setUserDestinationPrefix("/user");           // /user/queue/offers (par session)
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry reg) {
         reg.addEndpoint("/ws")
                 .addInterceptors(jwtHandshakeInterceptor)     // ⬅️  handshake JWT → Principal
+                .setHandshakeHandler(new JwtPrincipalHandshakeHandler())
                 .setAllowedOriginPatterns("*");               // CORS libre (prod : restreindre)
         // Optionnel : SockJS fallback
         // reg.addEndpoint("/ws").withSockJS();
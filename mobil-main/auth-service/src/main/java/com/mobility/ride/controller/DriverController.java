@@ -1,17 +1,31 @@
 /* ------------------------------------------------------------------ */
-/* DriverController.java – nouveau                                     */
+/* DriverController.java – positions chauffeurs (lecture + ingestion)  */
+/*  v2025-10-14 – index live : REST batch, STOMP, k plus proches       */
+/*  v2025-10-16 – ingestion réservée au rôle DRIVER (REST + STOMP)      */
+/*  v2025-10-17 – id chauffeur via AuthenticatedUserService (repli sub) */
 /* ------------------------------------------------------------------ */
 package com.mobility.ride.controller;
 
+import com.mobility.auth.service.AuthenticatedUserService;
+import com.mobility.auth.ws.JwtHandshakeInterceptor;
 import com.mobility.ride.dto.DriverLocationDto;
+import com.mobility.ride.dto.DriverPositionUpdate;
 import com.mobility.ride.service.DriverLocationService;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.List;
 
 @RestController
@@ -19,7 +33,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class DriverController {
 
-    private final DriverLocationService driverLocationService;
+    private final DriverLocationService    driverLocationService;
+    private final AuthenticatedUserService authenticatedUsers;
 
     /**
      * Liste les chauffeurs proches du drop-off.
@@ -36,4 +51,46 @@ public class DriverController {
                 .findNearby(dropoffLat, dropoffLng, radiusKm == null ? 3.0 : radiusKm);
         return ResponseEntity.ok(list);
     }
+
+    /**
+     * k chauffeurs les plus proches (triés par distance).
+     *
+     * Ex.  GET /api/v1/drivers/nearest?lat=0.41&lng=9.46&k=5
+     */
+    @GetMapping("/nearest")
+    public ResponseEntity<List<DriverLocationDto>> nearest(
+            @RequestParam @DecimalMin("-90.0")  @DecimalMax("90.0")  Double lat,
+            @RequestParam @DecimalMin("-180.0") @DecimalMax("180.0") Double lng,
+            @RequestParam(defaultValue = "5")  @Min(1) @Max(50)      Integer k,
+            @RequestParam(defaultValue = "10") @DecimalMin("0.1") @DecimalMax("50.0") Double maxRadiusKm
+    ) {
+        return ResponseEntity.ok(driverLocationService.findNearest(lat, lng, k, maxRadiusKm));
+    }
+
+    /* ═══════════ Ingestion des positions (app chauffeur) ═══════════ */
+
+    /** Lot de pings (ex. renvoyés après une coupure réseau). */
+    @PostMapping("/me/locations")
+    @PreAuthorize("hasRole('DRIVER')")
+    public ResponseEntity<Void> pushLocations(
+            @RequestBody @NotEmpty @Size(max = 100) List<@Valid DriverPositionUpdate> batch) {
+
+        driverLocationService.updateBatch(authenticatedUsers.currentUserId(), batch);
+        return ResponseEntity.accepted().build();
+    }
+
+    /** Fin de service : le chauffeur disparaît immédiatement des recherches. */
+    @DeleteMapping("/me/location")
+    @PreAuthorize("hasRole('DRIVER')")
+    public ResponseEntity<Void> goOffline() {
+        driverLocationService.goOffline(authenticatedUsers.currentUserId());
+        return ResponseEntity.noContent().build();
+    }
+
+    /** Ping unitaire via STOMP : client → /app/driver.location */
+    @MessageMapping("/driver.location")
+    public void wsLocation(@Valid DriverPositionUpdate body, Principal principal) {
+        if (!JwtHandshakeInterceptor.hasRole(principal, "DRIVER")) return;   // non authentifié / pas chauffeur
+        driverLocationService.update(Long.valueOf(principal.getName()), body);
+    }
 }
@@ -1,25 +1,36 @@
 // ──────────────────────────────────────────────────────────────
 //  FILE : src/main/java/com/mobility/ride/controller/DriverOfferController.java
 //  v2025-09-07 – ajout gestion 409 + documentation OpenAPI
+//  v2025-10-15 – feed poussé : /app/offers.subscribe → /user/queue/offers
+//  v2025-10-15 – refus d’une offre exclusive du DispatchEngine
+//  v2025-10-17 – id chauffeur via AuthenticatedUserService (tokens sans « uid »)
+//  v2025-10-17 – abonnement STOMP au feed réservé au rôle DRIVER
 // ──────────────────────────────────────────────────────────────
 package com.mobility.ride.controller;
 
+import com.mobility.auth.service.AuthenticatedUserService;
+import com.mobility.auth.ws.JwtHandshakeInterceptor;
+import com.mobility.ride.dto.OfferSubscribeRequest;
 import com.mobility.ride.dto.RideOfferDto;
 import com.mobility.ride.service.DriverFeedService;
 import com.mobility.ride.service.DriverRideActionService;
+import com.mobility.ride.service.OfferFeedService;
+import com.mobility.ride.service.dispatch.DispatchEngine;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.*;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.security.Principal;
 import java.util.List;
 
 /**
@@ -27,12 +38,14 @@ import java.util.List;
  *
  * <ul>
  *   <li>Feed d’offres (rides, colis, planifiées)</li>
+ *   <li>Feed poussé (STOMP) : abonnement + deltas sur <code>/user/queue/offers</code></li>
  *   <li>Actions temps-réel sur une course : accept, decline, en-route, arrive, start, finish</li>
  * </ul>
  *
  * <p><b>driverId</b> est automatiquement déduit du JWT (claim
- * <code>"uid"</code> par défaut) ; aucun paramètre supplémentaire n’est
- * nécessaire côté mobile.</p>
+ * <code>"uid"</code>, repli sur <code>"sub"</code> pour les anciens tokens,
+ * via {@link AuthenticatedUserService}) ; aucun paramètre supplémentaire
+ * n’est nécessaire côté mobile.</p>
  */
 @Tag(name = "Driver – Ride offers",
         description = "Nearby ride / parcel offers & ride actions for drivers")
@@ -44,6 +57,9 @@ public class DriverOfferController {
     /* ─── Services ───────────────────────────────────────────── */
     private final DriverFeedService       feedService;
     private final DriverRideActionService actionService;
+    private final OfferFeedService        offerFeed;
+    private final DispatchEngine          dispatch;
+    private final AuthenticatedUserService authenticatedUsers;
 
     private static final double DEF_RADIUS_KM = 3.0;
 
@@ -101,14 +117,32 @@ public class DriverOfferController {
                 radiusKm == null ? DEF_RADIUS_KM : radiusKm);
     }
 
+    /* ════════════════════════════════════════════════════════════
+       1-bis) FEED POUSSÉ (WebSocket STOMP) – remplace le polling
+       ════════════════════════════════════════════════════════════ */
+
+    /** client → /app/offers.subscribe ; SNAPSHOT puis deltas sur /user/queue/offers */
+    @MessageMapping("/offers.subscribe")
+    public void wsSubscribe(@Valid OfferSubscribeRequest body,
+                            SimpMessageHeaderAccessor headers,
+                            Principal principal) {
+        if (!JwtHandshakeInterceptor.hasRole(principal, "DRIVER")) return;   // non authentifié / pas chauffeur
+        offerFeed.subscribe(headers.getSessionId(), principal.getName(), body);
+    }
+
+    /** client → /app/offers.unsubscribe (fin de service, passage hors-ligne) */
+    @MessageMapping("/offers.unsubscribe")
+    public void wsUnsubscribe(SimpMessageHeaderAccessor headers) {
+        offerFeed.unsubscribe(headers.getSessionId());
+    }
+
     /* ════════════════════════════════════════════════════════════
        2) ACTIONS CHAUFFEUR
        ════════════════════════════════════════════════════════════ */
 
-    /** Helper : extrait l’ID numérique du chauffeur depuis le JWT. */
-    private Long driverId(@AuthenticationPrincipal Jwt jwt) {
-        // Convention : claim "uid" = id interne
-        return jwt.getClaim("uid");
+    /** Helper : ID interne du chauffeur authentifié (claim "uid", repli "sub"). */
+    private Long driverId() {
+        return authenticatedUsers.currentUserId();
     }
 
     /** Acceptation d’une offre. */
@@ -119,11 +153,10 @@ public class DriverOfferController {
                     @ApiResponse(responseCode = "409",
                             description = "Ride already accepted or cancelled")
             })
-    public ResponseEntity<Void> accept(@PathVariable Long rideId,
-                                       @AuthenticationPrincipal Jwt jwt) {
+    public ResponseEntity<Void> accept(@PathVariable Long rideId) {
 
         try {
-            actionService.accept(rideId, driverId(jwt));
+            actionService.accept(rideId, driverId());
             return ResponseEntity.noContent().build();         // 204 OK
         } catch (IllegalStateException ex) {
             // ► Course déjà prise ou annulée : 409 CONFLICT
@@ -136,10 +169,24 @@ public class DriverOfferController {
     @PostMapping("/rides/{rideId}/decline")
     @Operation(summary = "Driver declines a ride request",
             responses = @ApiResponse(responseCode = "204"))
-    public ResponseEntity<Void> decline(@PathVariable Long rideId,
-                                        @AuthenticationPrincipal Jwt jwt) {
+    public ResponseEntity<Void> decline(@PathVariable Long rideId) {
+
+        actionService.decline(rideId, driverId());
+        return ResponseEntity.noContent().build();
+    }
+
+    /** Refus d’une offre exclusive (dispatch) : la course reste ouverte. */
+    @PostMapping("/rides/{rideId}/offer/reject")
+    @Operation(summary = "Driver rejects an exclusive dispatch offer",
+            responses = {
+                    @ApiResponse(responseCode = "204"),
+                    @ApiResponse(responseCode = "404",
+                            description = "No pending offer for this driver")
+            })
+    public ResponseEntity<Void> rejectOffer(@PathVariable Long rideId) {
 
-        actionService.decline(rideId, driverId(jwt));
+        if (!dispatch.reject(rideId, driverId()))
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No pending offer");
         return ResponseEntity.noContent().build();
     }
 
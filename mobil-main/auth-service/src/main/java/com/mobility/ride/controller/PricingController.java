@@ -1,14 +1,18 @@
 // ============================================================================
 //  PACKAGE : com.mobility.ride.controller
 //  FILE    : PricingController.java               (v2025-07-02)
+//  v2025-10-16 – marché résolu localement (MarketResolver, sans Google)
+//  v2025-10-16 – POST /pricing/quotes : tous les produits en un appel
 // ============================================================================
 package com.mobility.ride.controller;
 
+import com.mobility.ride.dto.MultiQuoteRequest;
+import com.mobility.ride.dto.MultiQuoteResponse;
 import com.mobility.ride.dto.PriceQuoteRequest;
 import com.mobility.ride.dto.PriceQuoteResponse;
 import com.mobility.ride.dto.SurgeInfoResponse;
 import com.mobility.ride.geo.CityInfo;
-import com.mobility.ride.geo.GeoLocationService;
+import com.mobility.ride.geo.MarketResolver;
 import com.mobility.ride.model.DeliveryZone;
 import com.mobility.ride.model.ProductType;
 import com.mobility.ride.service.SurgePricingService;
@@ -29,6 +33,7 @@ import org.springframework.web.bind.annotation.*;
  * <p>Expose :</p>
  * <ul>
  *   <li><strong>POST /pricing/quote</strong> – prix fixe (up-front) pour courses & livraisons</li>
+ *   <li><strong>POST /pricing/quotes</strong> – idem pour tous les produits (sélecteur)</li>
  *   <li><strong>GET  /pricing/surge</strong> – multiplicateur temps-réel</li>
  * </ul>
  */
@@ -40,7 +45,7 @@ public class PricingController {
 
     private final UpfrontPriceService upfrontPriceService;
     private final SurgePricingService surgePricingService;
-    private final GeoLocationService geoLocationService;
+    private final MarketResolver      marketResolver;
 
     /* ═══════════ Up-front fare ═══════════ */
     @Operation(
@@ -55,13 +60,9 @@ public class PricingController {
     public ResponseEntity<PriceQuoteResponse> quote(
             @Valid @RequestBody PriceQuoteRequest req
     ) {
-        // 1) Résolution cityId & currency via géoloc
-        CityInfo info;
-        try {
-            info = geoLocationService.resolve(req.pickup());
-        } catch (Exception ex) {
-            info = new CityInfo(req.cityId(), req.currency());
-        }
+        // 1) Résolution cityId & currency (polygones marchés en mémoire)
+        CityInfo info = marketResolver.resolve(req.pickup())
+                .orElseGet(() -> new CityInfo(req.cityId(), req.currency()));
 
         // 2) Défaut de zone à LOCAL si non fourni
         DeliveryZone zone = req.deliveryZone() == null
@@ -88,6 +89,26 @@ public class PricingController {
         return ResponseEntity.ok(resp);
     }
 
+    /* ═══════════ Up-front fares – tous les produits ═══════════ */
+    @Operation(
+            summary   = "Get upfront price quotes for every product in one call",
+            responses = @ApiResponse(
+                    responseCode = "200",
+                    description  = "Quotes OK",
+                    content      = @Content(schema = @Schema(implementation = MultiQuoteResponse.class))
+            )
+    )
+    @PostMapping("/quotes")
+    public ResponseEntity<MultiQuoteResponse> quotes(
+            @Valid @RequestBody MultiQuoteRequest req
+    ) {
+        // Marché résolu une seule fois pour tous les produits
+        CityInfo info = marketResolver.resolve(req.pickup())
+                .orElseGet(() -> new CityInfo(req.cityId(), req.currency()));
+
+        return ResponseEntity.ok(upfrontPriceService.quoteAll(req, info));
+    }
+
     /* ═══════════ Surge multiplier ═══════════ */
     @Operation(
             summary   = "Get surge multiplier",
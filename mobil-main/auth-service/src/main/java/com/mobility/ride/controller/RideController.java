@@ -3,6 +3,7 @@
 // v2025-10-13 – routes complètes pour Rides feed (active/upcoming/history),
 //               endpoints driver miroir, “current”, offres proches, transitions,
 //               currency côté serveur, règles poids colis, alias compat.
+// v2025-10-16 – historique paginé (?cursor=&limit=, header X-Next-Cursor)
 // ─────────────────────────────────────────────────────────────
 package com.mobility.ride.controller;
 
@@ -37,6 +38,8 @@ public class RideController {
     private final RideLifecycleService rideLifecycleSvc;
     private final CurrencyResolver     currencyResolver;
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     /* ═════════════════════ 1) DEMANDE IMMÉDIATE (rider) ═════════════ */
     @PostMapping("/rides/request")
     public ResponseEntity<RideResponse> requestRide(
@@ -128,9 +131,11 @@ public class RideController {
 
     @GetMapping("/rides/history")
     public ResponseEntity<List<RideResponse>> listHistoryRider(
-            @RequestHeader("Authorization") String auth) {
+            @RequestHeader("Authorization") String auth,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit",  required = false) Integer limit) {
         Long riderId = rideUserService.getAuthenticatedUserId(auth);
-        return ResponseEntity.ok(rideService.listHistoryForRider(riderId));
+        return historyPage(rideService.historyForRider(riderId, cursor, limit));
     }
 
     @GetMapping("/rides/current")
@@ -159,9 +164,11 @@ public class RideController {
 
     @GetMapping("/rides/driver/history")
     public ResponseEntity<List<RideResponse>> listHistoryDriver(
-            @RequestHeader("Authorization") String auth) {
+            @RequestHeader("Authorization") String auth,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit",  required = false) Integer limit) {
         Long driverId = rideUserService.getAuthenticatedUserId(auth);
-        return ResponseEntity.ok(rideService.listHistoryForDriver(driverId));
+        return historyPage(rideService.historyForDriver(driverId, cursor, limit));
     }
 
     @GetMapping("/rides/driver/current")
@@ -268,4 +275,13 @@ public class RideController {
         rideLifecycleSvc.completeRide(rideId, finalFare);
         return ResponseEntity.noContent().build();
     }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    /** Corps inchangé (liste) ; page suivante annoncée par {@code X-Next-Cursor}, absent en fin d’historique. */
+    private static ResponseEntity<List<RideResponse>> historyPage(RideService.HistoryPage page) {
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (page.nextCursor() != null) ok.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        return ok.body(page.items());
+    }
 }
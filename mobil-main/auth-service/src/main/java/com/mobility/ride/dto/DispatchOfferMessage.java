@@ -0,0 +1,33 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/dto/DispatchOfferMessage.java
+//  v2025-10-15 – offre exclusive poussée par le DispatchEngine
+// ─────────────────────────────────────────────────────────────
+package com.mobility.ride.dto;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Message poussé sur <code>/user/queue/dispatch</code> :
+ * <ul>
+ *   <li><b>OFFER</b>   – course réservée à ce chauffeur jusqu’à {@code expiresAt} ;</li>
+ *   <li><b>REVOKED</b> – offre expirée ou course annulée : fermer l’écran.</li>
+ * </ul>
+ * L’acceptation passe par <code>POST /api/v1/drivers/rides/{id}/accept</code>,
+ * le refus par <code>POST /api/v1/drivers/rides/{id}/offer/reject</code>.
+ */
+public record DispatchOfferMessage(
+        Type           type,
+        Long           rideId,
+        RideOfferDto   offer,        // OFFER uniquement
+        OffsetDateTime expiresAt     // OFFER uniquement
+) {
+    public enum Type { OFFER, REVOKED }
+
+    public static DispatchOfferMessage offer(RideOfferDto offer, OffsetDateTime expiresAt) {
+        return new DispatchOfferMessage(Type.OFFER, offer.getRideId(), offer, expiresAt);
+    }
+
+    public static DispatchOfferMessage revoked(Long rideId) {
+        return new DispatchOfferMessage(Type.REVOKED, rideId, null, null);
+    }
+}
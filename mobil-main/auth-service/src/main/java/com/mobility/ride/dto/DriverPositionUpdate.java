@@ -0,0 +1,33 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/dto/DriverPositionUpdate.java
+//  v2025-10-14 – ping de position chauffeur (REST batch + STOMP)
+// ─────────────────────────────────────────────────────────────
+package com.mobility.ride.dto;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Position GPS émise par l’app chauffeur :
+ *   • WS    /app/driver.location                 (un ping)
+ *   • POST  /api/v1/drivers/me/locations          (lot, ex. après coupure réseau)
+ *
+ * <p><b>recordedAt</b> est facultatif : à défaut, l’heure serveur est utilisée.
+ * Dans un lot, seule la position la plus récente est indexée.</p>
+ *
+ * Exemple :
+ * <pre>
+ * { "lat": 0.4162, "lng": 9.4673, "heading": 270, "recordedAt": "2025-10-14T08:30:05Z" }
+ * </pre>
+ */
+public record DriverPositionUpdate(
+        @NotNull @DecimalMin("-90.0")  @DecimalMax("90.0")  Double lat,
+        @NotNull @DecimalMin("-180.0") @DecimalMax("180.0") Double lng,
+        @Min(0) @Max(359)                                   Integer heading,
+        OffsetDateTime                                      recordedAt
+) {}
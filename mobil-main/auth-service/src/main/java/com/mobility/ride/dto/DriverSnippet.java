@@ -1,6 +1,7 @@
 // ─────────────────────────────────────────────────────────────
 //  FILE : src/main/java/com/mobility/ride/dto/DriverSnippet.java
 //  v2025-09-04 – DTO “avatar” chauffeur (6 champs)
+//  v2025-10-16 – photo transmise par URL (plus d’octets dans le payload STOMP)
 // ─────────────────────────────────────────────────────────────
 package com.mobility.ride.dto;
 
@@ -12,7 +13,6 @@ public record DriverSnippet(
         Long   id,
         String firstName,
         String lastName,
-        byte[] profilePicture,
-        String profilePictureMimeType,
+        String photoUrl,
         Double rating
 ) {}
@@ -0,0 +1,64 @@
+// ============================================================================
+//  FILE    : MultiQuoteRequest.java
+//  PACKAGE : com.mobility.ride.dto
+//  ---------------------------------------------------------------------------
+//  v2025-10-16 – devis de tous les produits en un appel (sélecteur de produits)
+// ============================================================================
+package com.mobility.ride.dto;
+
+import com.mobility.ride.model.DeliveryZone;
+import com.mobility.ride.model.LatLng;
+import com.mobility.ride.model.ProductType;
+import com.mobility.ride.model.RideOption;
+import jakarta.annotation.Nullable;
+import jakarta.validation.constraints.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Même trajet que {@link PriceQuoteRequest}, sans {@code productType} :
+ * {@code products} restreint la liste (null / vide ⇒ tous les produits).
+ */
+public record MultiQuoteRequest(
+
+        /* ─────────────────── EXIGÉS ─────────────────── */
+        @NotNull
+        LatLng      pickup,
+
+        @NotNull
+        LatLng      dropoff,
+
+        @NotNull
+        @Positive(message = "distanceKm doit être strictement positif")
+        Double      distanceKm,
+
+        @NotNull
+        @Positive(message = "durationMin doit être strictement positif")
+        Integer     durationMin,
+
+        /* ─────────────────── OPTIONNELS ─────────────── */
+        /** Marché de secours si la géolocalisation échoue. */
+        @Nullable
+        Long        cityId,
+
+        @Size(max = 3, message = "currency doit être ISO-4217 (3 lettres)")
+        @Nullable
+        String      currency,
+
+        /** Produits à chiffrer (null ou vide ⇒ tous). */
+        @Nullable
+        List<ProductType> products,
+
+        @Nullable
+        RideOption[] options,
+
+        @Nullable
+        @DecimalMin(value = "0.1", inclusive = true,
+                message = "weightKg doit être ≥ 0.1 pour les livraisons interurbain/international")
+        BigDecimal  weightKg,
+
+        @Nullable
+        DeliveryZone deliveryZone
+
+) {}
@@ -0,0 +1,21 @@
+// ============================================================================
+//  FILE    : MultiQuoteResponse.java
+//  PACKAGE : com.mobility.ride.dto
+//  ---------------------------------------------------------------------------
+//  v2025-10-16 – réponse de POST /pricing/quotes (un devis par produit)
+// ============================================================================
+package com.mobility.ride.dto;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Devis groupés : marché, devise et expiration communs, puis un
+ * {@link PriceQuoteResponse} par produit, dans l’ordre demandé.
+ */
+public record MultiQuoteResponse(
+        Long                     cityId,
+        String                   currency,
+        OffsetDateTime           expiresAt,
+        List<PriceQuoteResponse> quotes
+) {}
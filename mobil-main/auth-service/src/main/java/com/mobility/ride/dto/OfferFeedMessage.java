@@ -0,0 +1,36 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/dto/OfferFeedMessage.java
+//  v2025-10-15 – message poussé sur /user/queue/offers
+// ─────────────────────────────────────────────────────────────
+package com.mobility.ride.dto;
+
+import java.util.List;
+
+/**
+ * Message du feed d’offres chauffeur :
+ * <ul>
+ *   <li><b>SNAPSHOT</b> – liste complète (réponse à un abonnement) ;</li>
+ *   <li><b>ADDED</b>    – nouvelle course REQUESTED dans le rayon ;</li>
+ *   <li><b>REMOVED</b>  – course acceptée / annulée : à retirer de l’écran.</li>
+ * </ul>
+ */
+public record OfferFeedMessage(
+        Type               type,
+        Long               rideId,     // ADDED / REMOVED
+        RideOfferDto       offer,      // ADDED
+        List<RideOfferDto> offers      // SNAPSHOT
+) {
+    public enum Type { SNAPSHOT, ADDED, REMOVED }
+
+    public static OfferFeedMessage snapshot(List<RideOfferDto> offers) {
+        return new OfferFeedMessage(Type.SNAPSHOT, null, null, offers);
+    }
+
+    public static OfferFeedMessage added(RideOfferDto offer) {
+        return new OfferFeedMessage(Type.ADDED, offer.getRideId(), offer, null);
+    }
+
+    public static OfferFeedMessage removed(Long rideId) {
+        return new OfferFeedMessage(Type.REMOVED, rideId, null, null);
+    }
+}
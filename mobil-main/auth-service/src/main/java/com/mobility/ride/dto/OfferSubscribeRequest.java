@@ -0,0 +1,27 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/dto/OfferSubscribeRequest.java
+//  v2025-10-15 – abonnement au feed d’offres poussé (STOMP)
+// ─────────────────────────────────────────────────────────────
+package com.mobility.ride.dto;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Payload JSON pour <code>WS /app/offers.subscribe</code>.
+ *
+ * <p>Renvoyé à chaque déplacement significatif du chauffeur : l’abonnement
+ * de la session est alors remplacé et un nouvel instantané est poussé sur
+ * <code>/user/queue/offers</code>.</p>
+ *
+ * Exemple :
+ * <pre>
+ * { "lat": 0.4162, "lng": 9.4673, "radiusKm": 3 }
+ * </pre>
+ */
+public record OfferSubscribeRequest(
+        @NotNull @DecimalMin("-90.0")  @DecimalMax("90.0")  Double lat,
+        @NotNull @DecimalMin("-180.0") @DecimalMax("180.0") Double lng,
+        @DecimalMin("0.1")             @DecimalMax("20.0")  Double radiusKm   // défaut : 3 km
+) {}
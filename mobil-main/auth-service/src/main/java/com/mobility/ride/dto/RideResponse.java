@@ -1,6 +1,7 @@
 // ============================
 // src/main/java/com/mobility/ride/dto/RideResponse.java
 // v2025-10-13 – +completedAt (pour HISTORY), rider/driver metadata alignés
+// v2025-10-16 – +waitingSec / waitFee (dérivés de arrivedAt)
 // ============================
 package com.mobility.ride.dto;
 
@@ -56,6 +57,9 @@ public class RideResponse {
     /* ───────── Tarification ─────────── */
     private BigDecimal totalFare;
     private String     currency;
+    /** Attente facturable (s) et frais associés, calculés depuis l’arrivée du chauffeur. */
+    private Integer    waitingSec;
+    private BigDecimal waitFee;
 
     /* ───────── Livraison ────────────── */
     /** Poids du colis en kilogrammes (null si course classique). */
@@ -8,6 +8,5 @@ public record RiderSnippet(
         Long    id,
         String  firstName,
         String  lastName,
-        byte[]  profilePicture,
-        String  profilePictureMimeType
+        String  photoUrl
 ) {}
@@ -0,0 +1,35 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  PACKAGE : com.mobility.ride.event
+//  FILE    : OpenRideChangedEvent.java
+//  v2025-10-15 – entrée / sortie d’une course dans OpenRideIndex
+// ----------------------------------------------------------------------------
+package com.mobility.ride.event;
+
+import com.mobility.ride.service.OpenRideIndex.OpenRide;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Publié par {@code OpenRideIndex} <em>après</em> mise à jour de l’index
+ * (donc après commit de la transition).
+ *
+ * <p>Pour {@link Change#REMOVED}, {@link #getRide()} est le dernier instantané
+ * connu : les coordonnées de pickup restent disponibles même si la transition
+ * d’origine était un UPDATE « bulk » sans entité.</p>
+ */
+public class OpenRideChangedEvent extends ApplicationEvent {
+
+    public enum Change { ADDED, UPDATED, REMOVED }
+
+    private final Change   change;
+    private final OpenRide ride;
+
+    public OpenRideChangedEvent(Object source, Change change, OpenRide ride) {
+        super(source);
+        this.change = change;
+        this.ride   = ride;
+    }
+
+    // ═══════════ Getters (no setters) ═══════════
+    public Change   getChange() { return change; }
+    public OpenRide getRide()   { return ride; }
+}
@@ -0,0 +1,50 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  PACKAGE : com.mobility.ride.event
+//  FILE    : RideStatusChangedEvent.java
+//  v2025-10-14 – transition de statut d’une course (index mémoire, feeds, …)
+// ----------------------------------------------------------------------------
+package com.mobility.ride.event;
+
+import com.mobility.ride.model.Ride;
+import com.mobility.ride.model.RideStatus;
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Optional;
+
+/**
+ * Publié à chaque changement de statut d’une course (création incluse).
+ *
+ * <p>Les transitions « bulk » (UPDATE JPQL conditionnel) ne disposent pas de
+ * l’entité : seul {@code rideId / status / driverId} est alors renseigné.
+ * Les écouteurs doivent s’abonner en {@code AFTER_COMMIT} pour ne jamais
+ * refléter une transaction annulée.</p>
+ */
+public class RideStatusChangedEvent extends ApplicationEvent {
+
+    private final Long       rideId;
+    private final RideStatus status;
+    private final Long       driverId;
+    private final Ride       ride;          // nullable (transition bulk)
+
+    public RideStatusChangedEvent(Object source, Ride ride) {
+        super(source);
+        this.rideId   = ride.getId();
+        this.status   = ride.getStatus();
+        this.driverId = ride.getDriverId();
+        this.ride     = ride;
+    }
+
+    public RideStatusChangedEvent(Object source, Long rideId, RideStatus status, Long driverId) {
+        super(source);
+        this.rideId   = rideId;
+        this.status   = status;
+        this.driverId = driverId;
+        this.ride     = null;
+    }
+
+    // ═══════════ Getters (no setters) ═══════════
+    public Long           getRideId()   { return rideId; }
+    public RideStatus     getStatus()   { return status; }
+    public Long           getDriverId() { return driverId; }
+    public Optional<Ride> getRide()     { return Optional.ofNullable(ride); }
+}
@@ -0,0 +1,338 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/geo/DriverPositionIndex.java
+//  v2025-10-14 – index spatial en mémoire des chauffeurs en ligne
+//               • grille régulière shardée (verrou lecture/écriture par shard)
+//               • cellules = tableaux primitifs parallèles (zéro boxing en lecture)
+//               • requêtes rayon + k plus proches (anneaux concentriques)
+//               • expiration des positions périmées
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Index des dernières positions connues des chauffeurs.
+ *
+ * <p>Chaque chauffeur n’existe que dans une seule cellule ; la table
+ * {@code cellOfDriver} sert à la fois d’annuaire (driverId → cellule) et de
+ * point de sérialisation : toutes les écritures d’un même chauffeur passent
+ * par {@link ConcurrentHashMap#compute}, ce qui garantit qu’un déplacement
+ * entre deux cellules (éventuellement sur deux shards) reste atomique.</p>
+ *
+ * <p>Les lectures ne prennent que le verrou « lecture » du shard visité et
+ * n’allouent que les {@link Hit} retournés.</p>
+ */
+public final class DriverPositionIndex {
+
+    /** Résultat d’une requête ; {@code heading = -1} si inconnu. */
+    public record Hit(long driverId, double lat, double lng, int heading,
+                      long updatedAtMs, double distanceKm) { }
+
+    private static final Comparator<Hit> BY_DISTANCE = Comparator.comparingDouble(Hit::distanceKm);
+
+    private final double  cellDeg;
+    private final Shard[] shards;
+    private final int     mask;
+
+    private final ConcurrentHashMap<Long, Long> cellOfDriver = new ConcurrentHashMap<>();
+
+    /**
+     * @param cellDeg    taille d’une cellule en degrés (0.01° ≈ 1,1 km)
+     * @param shardCount nombre de shards (arrondi à la puissance de 2 supérieure)
+     */
+    public DriverPositionIndex(double cellDeg, int shardCount) {
+        if (cellDeg <= 0) throw new IllegalArgumentException("cellDeg must be > 0");
+        int n = shardCount <= 1 ? 1 : Integer.highestOneBit(shardCount - 1) << 1;
+        this.cellDeg = cellDeg;
+        this.shards  = new Shard[n];
+        this.mask    = n - 1;
+        for (int i = 0; i < n; i++) shards[i] = new Shard();
+    }
+
+    /* ═════════════ 1) Écritures ═════════════ */
+
+    /**
+     * Insère ou déplace un chauffeur. Une position plus ancienne que celle
+     * déjà indexée est ignorée (pings reçus dans le désordre).
+     */
+    public void upsert(long driverId, double lat, double lng, int heading, long updatedAtMs) {
+        final long newCell = GeoGrid.cellKey(lat, lng, cellDeg);
+        cellOfDriver.compute(driverId, (id, oldCell) -> {
+            if (oldCell != null) {
+                Shard old = shardOf(oldCell);
+                if (old.timestampOf(oldCell, id) > updatedAtMs) return oldCell;
+                if (oldCell != newCell) old.remove(oldCell, id);
+            }
+            shardOf(newCell).put(newCell, id, lat, lng, heading, updatedAtMs);
+            return newCell;
+        });
+    }
+
+    /** Retire un chauffeur (passage hors-ligne). */
+    public boolean remove(long driverId) {
+        boolean[] removed = { false };
+        cellOfDriver.computeIfPresent(driverId, (id, cell) -> {
+            removed[0] = shardOf(cell).remove(cell, id);
+            return null;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Supprime toutes les positions antérieures à {@code cutoffMs}.
+     *
+     * @param onEvicted rappel pour chaque chauffeur expiré (peut être {@code null})
+     * @return nombre de chauffeurs expirés
+     */
+    public int evictOlderThan(long cutoffMs, LongConsumer onEvicted) {
+        int evicted = 0;
+        for (Shard shard : shards) {
+            long[] candidates = shard.collectOlderThan(cutoffMs);
+            for (int i = 0; i < candidates.length; i += 2) {
+                long cell = candidates[i];
+                long id   = candidates[i + 1];
+                boolean[] done = { false };
+                cellOfDriver.computeIfPresent(id, (k, c) -> {
+                    if (c != cell || shard.timestampOf(cell, k) >= cutoffMs) return c;
+                    shard.remove(cell, k);
+                    done[0] = true;
+                    return null;
+                });
+                if (done[0]) {
+                    evicted++;
+                    if (onEvicted != null) onEvicted.accept(id);
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /* ═════════════ 2) Lectures ═════════════ */
+
+    /** Dernière position connue, ou {@code null}. */
+    public Hit get(long driverId) {
+        Long cell = cellOfDriver.get(driverId);
+        return cell == null ? null : shardOf(cell).find(cell, driverId);
+    }
+
+    public int size() {
+        return cellOfDriver.size();
+    }
+
+    /** Identifiants actuellement indexés (copie). */
+    public long[] driverIds() {
+        return cellOfDriver.keySet().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Chauffeurs dans un rayon, triés par distance croissante.
+     *
+     * @param minUpdatedAtMs positions plus anciennes ignorées
+     * @param limit          nombre maximum de résultats ({@code <= 0} = illimité)
+     */
+    public List<Hit> withinRadius(double lat, double lng, double radiusKm,
+                                  long minUpdatedAtMs, int limit) {
+        double dLat = GeoGrid.latDelta(radiusKm);
+        double dLng = Math.min(180.0, GeoGrid.lngDelta(radiusKm, lat));
+        int r0 = GeoGrid.row(lat - dLat, cellDeg), r1 = GeoGrid.row(lat + dLat, cellDeg);
+        int c0 = GeoGrid.col(lng - dLng, cellDeg), c1 = GeoGrid.col(lng + dLng, cellDeg);
+
+        List<Hit> out = new ArrayList<>();
+        for (int r = r0; r <= r1; r++)
+            for (int c = c0; c <= c1; c++)
+                scan(GeoGrid.key(r, c), lat, lng, radiusKm, minUpdatedAtMs, out);
+
+        out.sort(BY_DISTANCE);
+        return limit > 0 && out.size() > limit ? new ArrayList<>(out.subList(0, limit)) : out;
+    }
+
+    /**
+     * k plus proches chauffeurs dans la limite de {@code maxRadiusKm}.
+     * Les cellules sont visitées par anneaux concentriques ; la recherche
+     * s’arrête dès que le k-ième résultat est plus proche que toute cellule
+     * non encore visitée.
+     */
+    public List<Hit> nearest(double lat, double lng, int k, double maxRadiusKm, long minUpdatedAtMs) {
+        if (k <= 0) return List.of();
+        int row = GeoGrid.row(lat, cellDeg), col = GeoGrid.col(lng, cellDeg);
+        double extent  = GeoGrid.minCellExtentKm(cellDeg, Math.abs(lat) + GeoGrid.latDelta(maxRadiusKm));
+        int    maxRing = (int) Math.ceil(maxRadiusKm / extent) + 1;
+
+        List<Hit> out = new ArrayList<>();
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (ring == 0) {
+                scan(GeoGrid.key(row, col), lat, lng, maxRadiusKm, minUpdatedAtMs, out);
+            } else {
+                for (int c = col - ring; c <= col + ring; c++) {
+                    scan(GeoGrid.key(row - ring, c), lat, lng, maxRadiusKm, minUpdatedAtMs, out);
+                    scan(GeoGrid.key(row + ring, c), lat, lng, maxRadiusKm, minUpdatedAtMs, out);
+                }
+                for (int r = row - ring + 1; r <= row + ring - 1; r++) {
+                    scan(GeoGrid.key(r, col - ring), lat, lng, maxRadiusKm, minUpdatedAtMs, out);
+                    scan(GeoGrid.key(r, col + ring), lat, lng, maxRadiusKm, minUpdatedAtMs, out);
+                }
+            }
+            if (out.size() >= k) {
+                out.sort(BY_DISTANCE);
+                if (out.get(k - 1).distanceKm() <= ring * extent) break;
+            }
+        }
+        out.sort(BY_DISTANCE);
+        return out.size() > k ? new ArrayList<>(out.subList(0, k)) : out;
+    }
+
+    /* ═════════════ 3) Internes ═════════════ */
+
+    private void scan(long cell, double lat, double lng, double maxKm, long minTs, List<Hit> out) {
+        shardOf(cell).scan(cell, lat, lng, maxKm, minTs, out);
+    }
+
+    private Shard shardOf(long cell) {
+        long h = cell * 0x9E37_79B9_7F4A_7C15L;
+        return shards[(int) (h >>> 40) & mask];
+    }
+
+    /** Un shard = un ensemble de cellules protégé par un seul verrou. */
+    private static final class Shard {
+        private final ReentrantReadWriteLock lock  = new ReentrantReadWriteLock();
+        private final Map<Long, Bucket>      cells = new HashMap<>();
+
+        void put(long cell, long id, double lat, double lng, int heading, long ts) {
+            lock.writeLock().lock();
+            try {
+                cells.computeIfAbsent(cell, c -> new Bucket()).put(id, lat, lng, heading, ts);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        boolean remove(long cell, long id) {
+            lock.writeLock().lock();
+            try {
+                Bucket b = cells.get(cell);
+                if (b == null || !b.remove(id)) return false;
+                if (b.size == 0) cells.remove(cell);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        long timestampOf(long cell, long id) {
+            lock.readLock().lock();
+            try {
+                Bucket b = cells.get(cell);
+                int i = b == null ? -1 : b.indexOf(id);
+                return i < 0 ? Long.MIN_VALUE : b.ts[i];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Hit find(long cell, long id) {
+            lock.readLock().lock();
+            try {
+                Bucket b = cells.get(cell);
+                int i = b == null ? -1 : b.indexOf(id);
+                return i < 0 ? null
+                        : new Hit(id, b.lat[i], b.lng[i], b.heading[i], b.ts[i], 0.0);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void scan(long cell, double lat, double lng, double maxKm, long minTs, List<Hit> out) {
+            lock.readLock().lock();
+            try {
+                Bucket b = cells.get(cell);
+                if (b == null) return;
+                for (int i = 0; i < b.size; i++) {
+                    if (b.ts[i] < minTs) continue;
+                    double d = GeoGrid.haversineKm(lat, lng, b.lat[i], b.lng[i]);
+                    if (d <= maxKm)
+                        out.add(new Hit(b.ids[i], b.lat[i], b.lng[i], b.heading[i], b.ts[i], d));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /** Paires (cellule, driverId) à plat des entrées périmées. */
+        long[] collectOlderThan(long cutoff) {
+            lock.readLock().lock();
+            try {
+                long[] acc = new long[16];
+                int    n   = 0;
+                for (Map.Entry<Long, Bucket> e : cells.entrySet()) {
+                    Bucket b = e.getValue();
+                    for (int i = 0; i < b.size; i++) {
+                        if (b.ts[i] >= cutoff) continue;
+                        if (n + 2 > acc.length) acc = Arrays.copyOf(acc, acc.length * 2);
+                        acc[n++] = e.getKey();
+                        acc[n++] = b.ids[i];
+                    }
+                }
+                return Arrays.copyOf(acc, n);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /** Cellule : tableaux parallèles, suppression par « swap with last ». */
+    private static final class Bucket {
+        long[]   ids     = new long[4];
+        double[] lat     = new double[4];
+        double[] lng     = new double[4];
+        long[]   ts      = new long[4];
+        short[]  heading = new short[4];
+        int      size;
+
+        int indexOf(long id) {
+            for (int i = 0; i < size; i++) if (ids[i] == id) return i;
+            return -1;
+        }
+
+        void put(long id, double la, double ln, int hd, long t) {
+            int i = indexOf(id);
+            if (i < 0) {
+                if (size == ids.length) grow();
+                i = size++;
+                ids[i] = id;
+            }
+            lat[i]     = la;
+            lng[i]     = ln;
+            heading[i] = (short) hd;
+            ts[i]      = t;
+        }
+
+        boolean remove(long id) {
+            int i = indexOf(id);
+            if (i < 0) return false;
+            int last = --size;
+            ids[i]     = ids[last];
+            lat[i]     = lat[last];
+            lng[i]     = lng[last];
+            heading[i] = heading[last];
+            ts[i]      = ts[last];
+            return true;
+        }
+
+        private void grow() {
+            int n = ids.length * 2;
+            ids     = Arrays.copyOf(ids, n);
+            lat     = Arrays.copyOf(lat, n);
+            lng     = Arrays.copyOf(lng, n);
+            ts      = Arrays.copyOf(ts, n);
+            heading = Arrays.copyOf(heading, n);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/geo/Gazetteer.java
+//  v2025-10-16 – gazetteer hors-ligne (rues / POI) projeté en mémoire (mmap)
+//               • lecture sans copie ni désérialisation : MappedByteBuffer
+//               • index grille trié + recherche dichotomique par cellule
+//               • grille pays grossière (détection de marché sans réseau)
+//  v2025-10-16 – CLI de construction déplacée en scope test (GazetteerBuilder)
+//  v2025-10-17 – cellules pays frontalières marquées « mixtes » : point le plus proche
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * <h2>Gazetteer</h2>
+ *
+ * <p>Fichier binaire immuable produit hors-ligne depuis un extrait OSM
+ * (rues nommées + POI, un point par entrée), puis projeté en mémoire. Le
+ * système d’exploitation ne charge que les pages réellement lues ; le tas
+ * Java ne contient que l’en-tête.</p>
+ *
+ * <pre>
+ *  en-tête   : magic 'MGZ1', version, cellDeg, countryCellDeg,
+ *              cellCount, pointCount, countryCount,
+ *              pointsOffset, countryOffset, stringsOffset
+ *  cellules  : cellCount    × (long key, int first, int count)   – triées par key
+ *  points    : pointCount   × (float lat, float lng, int label, short cc, short –)
+ *  pays      : countryCount × (long key, short cc, short mixte)  – triées par key
+ *  libellés  : (short len, UTF-8) dédupliqués
+ * </pre>
+ *
+ * <p>Une cellule pays contenant des points de plusieurs pays (frontière)
+ * est marquée mixte : {@link #countryCode} y répond par le pays du point
+ * le plus proche, ou rien (l’appelant passe alors aux polygones / au
+ * géocodeur).</p>
+ *
+ * <p>Un fichier par marché (≤ 2 Go, limite d’un {@link MappedByteBuffer}).
+ * Construction : {@link #write}, appelée par l’outil {@code GazetteerBuilder}
+ * (scope test) depuis un TSV {@code lat⇥lng⇥CC⇥libellé} (ex. export
+ * {@code osmium} post-traité).</p>
+ */
+public final class Gazetteer {
+
+    private static final int MAGIC   = 0x4D475A31;          // "MGZ1"
+    private static final int VERSION = 1;
+    private static final int HEADER  = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 8 + 8 + 8;
+    private static final int CELL    = 16;
+    private static final int POINT   = 16;
+    private static final int COUNTRY = 12;
+
+    /** Rayon de recherche du point le plus proche dans une cellule pays mixte. */
+    static final double BORDER_NEAREST_KM = 2.0;
+
+    /** Entrée source (construction). */
+    public record Entry(double lat, double lng, String countryCode, String label) { }
+
+    /** Résultat : point le plus proche. */
+    public record Place(String label, String countryCode, double distanceKm) { }
+
+    private final Path             file;
+    private final MappedByteBuffer buf;
+    private final double           cellDeg;
+    private final double           countryCellDeg;
+    private final int              cellCount;
+    private final int              pointCount;
+    private final int              countryCount;
+    private final int              pointsOffset;
+    private final int              countryOffset;
+    private final int              stringsOffset;
+
+    private Gazetteer(Path file, MappedByteBuffer buf) {
+        this.file = file;
+        this.buf  = buf;
+        buf.order(ByteOrder.BIG_ENDIAN);
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+            throw new IllegalArgumentException("Not a gazetteer file: " + file);
+        this.cellDeg        = buf.getDouble(8);
+        this.countryCellDeg = buf.getDouble(16);
+        this.cellCount      = buf.getInt(24);
+        this.pointCount     = buf.getInt(28);
+        this.countryCount   = buf.getInt(32);
+        this.pointsOffset   = (int) buf.getLong(36);
+        this.countryOffset  = (int) buf.getLong(44);
+        this.stringsOffset  = (int) buf.getLong(52);
+    }
+
+    /** Projette le fichier en lecture seule (le canal peut être fermé ensuite). */
+    public static Gazetteer open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE)
+                throw new IOException("Gazetteer > 2 GB, split it per market: " + file);
+            return new Gazetteer(file, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    public Path file()      { return file; }
+    public int  size()      { return pointCount; }
+
+    /* ═════════════ 1) Recherches ═════════════ */
+
+    /** Point le plus proche à moins de {@code maxKm} (cellules couvrant le rayon). */
+    public Optional<Place> nearest(double lat, double lng, double maxKm) {
+        double dLat = GeoGrid.latDelta(maxKm);
+        double dLng = Math.min(180.0, GeoGrid.lngDelta(maxKm, lat));
+        int r0 = GeoGrid.row(lat - dLat, cellDeg), r1 = GeoGrid.row(lat + dLat, cellDeg);
+        int c0 = GeoGrid.col(lng - dLng, cellDeg), c1 = GeoGrid.col(lng + dLng, cellDeg);
+
+        int    best  = -1;
+        double bestD = maxKm;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = findCell(GeoGrid.key(r, c));
+                if (cell < 0) continue;
+                int at    = HEADER + cell * CELL;
+                int first = buf.getInt(at + 8);
+                int count = buf.getInt(at + 12);
+                for (int p = first; p < first + count; p++) {
+                    int    o = pointsOffset + p * POINT;
+                    double d = GeoGrid.haversineKm(lat, lng, buf.getFloat(o), buf.getFloat(o + 4));
+                    if (d <= bestD) { bestD = d; best = p; }
+                }
+            }
+        }
+        if (best < 0) return Optional.empty();
+        int o = pointsOffset + best * POINT;
+        return Optional.of(new Place(string(buf.getInt(o + 8)), cc(buf.getShort(o + 12)), bestD));
+    }
+
+    /**
+     * Pays de la cellule grossière contenant le point ; cellule frontalière
+     * (plusieurs pays) : pays du point le plus proche à moins de
+     * {@value #BORDER_NEAREST_KM} km, sinon vide.
+     */
+    public Optional<String> countryCode(double lat, double lng) {
+        long key = GeoGrid.cellKey(lat, lng, countryCellDeg);
+        int lo = 0, hi = countryCount - 1;
+        while (lo <= hi) {
+            int  mid = (lo + hi) >>> 1;
+            int  at  = countryOffset + mid * COUNTRY;
+            long k   = buf.getLong(at);
+            if      (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else if (buf.getShort(at + 10) != 0) return nearest(lat, lng, BORDER_NEAREST_KM).map(Place::countryCode);
+            else return Optional.of(cc(buf.getShort(at + 8)));
+        }
+        return Optional.empty();
+    }
+
+    private int findCell(long key) {
+        int lo = 0, hi = cellCount - 1;
+        while (lo <= hi) {
+            int  mid = (lo + hi) >>> 1;
+            long k   = buf.getLong(HEADER + mid * CELL);
+            if      (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private String string(int offset) {
+        int    at  = stringsOffset + offset;
+        int    len = Short.toUnsignedInt(buf.getShort(at));
+        byte[] b   = new byte[len];
+        buf.get(at + 2, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static String cc(short v) {
+        return new String(new char[] { (char) ((v >> 8) & 0xFF), (char) (v & 0xFF) });
+    }
+
+    private static short cc(String code) {
+        String c = code == null || code.length() != 2 ? "ZZ" : code.toUpperCase();
+        return (short) ((c.charAt(0) << 8) | c.charAt(1));
+    }
+
+    /* ═════════════ 2) Construction (hors-ligne) ═════════════ */
+
+    public static void write(Path out, double cellDeg, double countryCellDeg, List<Entry> entries) throws IOException {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingLong(e -> GeoGrid.cellKey(e.lat(), e.lng(), cellDeg)));
+
+        /* Cellules fines (contiguës après tri) */
+        List<long[]> cells = new ArrayList<>();                       // {key, first, count}
+        for (int i = 0; i < sorted.size(); i++) {
+            long key = GeoGrid.cellKey(sorted.get(i).lat(), sorted.get(i).lng(), cellDeg);
+            long[] last = cells.isEmpty() ? null : cells.get(cells.size() - 1);
+            if (last != null && last[0] == key) last[2]++;
+            else cells.add(new long[] { key, i, 1 });
+        }
+
+        /* Libellés dédupliqués */
+        Map<String, Integer> labels = new HashMap<>();
+        ByteBufferOut strings = new ByteBufferOut();
+        int[] labelOf = new int[sorted.size()];
+        for (int i = 0; i < sorted.size(); i++) {
+            String label = sorted.get(i).label();
+            labelOf[i] = labels.computeIfAbsent(label, l -> strings.putString(l));
+        }
+
+        /* Pays majoritaire par cellule grossière (plusieurs pays ⇒ cellule mixte) */
+        Map<Long, Map<Short, Integer>> votes = new TreeMap<>();
+        for (Entry e : sorted)
+            votes.computeIfAbsent(GeoGrid.cellKey(e.lat(), e.lng(), countryCellDeg), k -> new HashMap<>())
+                 .merge(cc(e.countryCode()), 1, Integer::sum);
+
+        long pointsOffset  = HEADER + (long) cells.size() * CELL;
+        long countryOffset = pointsOffset + (long) sorted.size() * POINT;
+        long stringsOffset = countryOffset + (long) votes.size() * COUNTRY;
+        if (stringsOffset + strings.size() > Integer.MAX_VALUE)
+            throw new IOException("Gazetteer would exceed 2 GB, split it per market");
+
+        ByteBuffer b = ByteBuffer.allocate((int) (stringsOffset + strings.size())).order(ByteOrder.BIG_ENDIAN);
+        b.putInt(MAGIC).putInt(VERSION).putDouble(cellDeg).putDouble(countryCellDeg)
+         .putInt(cells.size()).putInt(sorted.size()).putInt(votes.size())
+         .putLong(pointsOffset).putLong(countryOffset).putLong(stringsOffset);
+        for (long[] c : cells)
+            b.putLong(c[0]).putInt((int) c[1]).putInt((int) c[2]);
+        for (int i = 0; i < sorted.size(); i++) {
+            Entry e = sorted.get(i);
+            b.putFloat((float) e.lat()).putFloat((float) e.lng()).putInt(labelOf[i])
+             .putShort(cc(e.countryCode())).putShort((short) 0);
+        }
+        votes.forEach((key, v) -> b.putLong(key)
+                .putShort(v.entrySet().stream().max(Map.Entry.comparingByValue()).orElseThrow().getKey())
+                .putShort((short) (v.size() > 1 ? 1 : 0)));
+        b.put(strings.toArray());
+
+        Files.write(out, b.array());
+    }
+
+    /** Tampon extensible pour le pool de libellés. */
+    private static final class ByteBufferOut {
+        private byte[] data = new byte[1 << 16];
+        private int    size;
+
+        void write(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = (byte) v;
+        }
+
+        int putString(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            int len = Math.min(b.length, 0xFFFF);
+            int at  = size;
+            write(len >>> 8);
+            write(len);
+            for (int i = 0; i < len; i++) write(b[i]);
+            return at;
+        }
+
+        int    size()    { return size; }
+        byte[] toArray() { return Arrays.copyOf(data, size); }
+    }
+}
@@ -0,0 +1,76 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/geo/GeoGrid.java
+//  v2025-10-14 – grille lat/lng régulière (clé de cellule 64 bits) + haversine
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+/**
+ * Outils « grille » partagés par les index géographiques en mémoire.
+ *
+ * <p>Une cellule est identifiée par une clé {@code long} :
+ * 32 bits de poids fort = ligne (latitude), 32 bits de poids faible = colonne
+ * (longitude). Aucune allocation, aucun objet intermédiaire.</p>
+ */
+public final class GeoGrid {
+
+    public static final double EARTH_RADIUS_KM = 6_371.0088;
+    /** Cohérent avec {@link #haversineKm} : sinon boîtes et bornes d’anneaux sont sous-estimées. */
+    public static final double KM_PER_DEG_LAT  = EARTH_RADIUS_KM * Math.PI / 180.0;
+
+    private GeoGrid() { }
+
+    /* ═════════════ 1) Cellules ═════════════ */
+
+    public static int row(double lat, double cellDeg) {
+        return (int) Math.floor((lat + 90.0) / cellDeg);
+    }
+
+    public static int col(double lng, double cellDeg) {
+        return (int) Math.floor((lng + 180.0) / cellDeg);
+    }
+
+    public static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xFFFF_FFFFL);
+    }
+
+    public static long cellKey(double lat, double lng, double cellDeg) {
+        return key(row(lat, cellDeg), col(lng, cellDeg));
+    }
+
+    public static int rowOf(long key) { return (int) (key >> 32); }
+
+    public static int colOf(long key) { return (int) key; }
+
+    /* ═════════════ 2) Distances ═════════════ */
+
+    /** Distance orthodromique en km. */
+    public static double haversineKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                 + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                 * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /** Demi-hauteur (°) d’une boîte englobant un rayon donné. */
+    public static double latDelta(double radiusKm) {
+        return radiusKm / KM_PER_DEG_LAT;
+    }
+
+    /** Demi-largeur (°) d’une boîte englobant un rayon donné, à une latitude donnée. */
+    public static double lngDelta(double radiusKm, double lat) {
+        double edge = Math.abs(lat) + latDelta(radiusKm);        // bord le plus « polaire »
+        double cos  = Math.cos(Math.toRadians(Math.min(89.0, edge)));
+        return radiusKm / (KM_PER_DEG_LAT * cos);
+    }
+
+    /**
+     * Plus petite dimension (km) d’une cellule à la latitude {@code lat} :
+     * sert de borne inférieure de distance lors des recherches en anneaux.
+     */
+    public static double minCellExtentKm(double cellDeg, double lat) {
+        double cos = Math.cos(Math.toRadians(Math.min(89.0, Math.abs(lat))));
+        return cellDeg * KM_PER_DEG_LAT * cos;
+    }
+}
@@ -1,6 +1,7 @@
 // ============================================================================
 //  FILE    : GeoLocationService.java
 //  PACKAGE : com.mobility.ride.geo
+//  v2025-10-16 – pays résolu hors-ligne (OfflineGazetteer), Google en secours
 // ----------------------------------------------------------------------------
 package com.mobility.ride.geo;
 
@@ -8,6 +9,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.mobility.ride.config.PricingProperties;
 import com.mobility.ride.model.LatLng;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -18,7 +20,8 @@ import java.util.Optional;
 
 /**
  * Service de géolocalisation inverse :
- * - interroge l'API Google Geocoding pour obtenir le country code d'un LatLng
+ * - lit le country code d'un LatLng dans le gazetteer hors-ligne ;
+ *   à défaut, interroge l'API Google Geocoding
  * - traduit ce code en clé (« gabon », « france », « usa »)
  * - renvoie un CityInfo(cityId, currency) d'après PricingProperties
  */
@@ -27,15 +30,18 @@ public class GeoLocationService {
 
     private final PricingProperties pricingProperties;
     private final RestTemplate       restTemplate;
+    private final OfflineGazetteer   gazetteer;
     private final String             googleApiKey;
 
     public GeoLocationService(
             PricingProperties pricingProperties,
-            RestTemplate restTemplate,
+            @Qualifier("googleRestTemplate") RestTemplate restTemplate,
+            OfflineGazetteer gazetteer,
             @Value("${app.geocoding.api-key}") String googleApiKey
     ) {
         this.pricingProperties = pricingProperties;
         this.restTemplate      = restTemplate;
+        this.gazetteer         = gazetteer;
         this.googleApiKey      = googleApiKey;
     }
 
@@ -43,25 +49,11 @@ public class GeoLocationService {
      * Résout un CityInfo (cityId + currency) pour un LatLng donné.
      */
     public CityInfo resolve(LatLng latLng) {
-        // 1) Appel à Google Geocoding API
-        String url = "https://maps.googleapis.com/maps/api/geocode/json" +
-                "?latlng=" + latLng.getLat() + "," + latLng.getLng() +
-                "&key=" + googleApiKey;
-        GeocodeResponse resp = restTemplate.getForObject(url, GeocodeResponse.class);
-
-        if (resp == null || !"OK".equals(resp.status)) {
-            throw new RuntimeException("Erreur géocodage : " + (resp == null ? "null" : resp.status));
-        }
+        // 1) Code pays : gazetteer local, sinon Google (ex. « GA », « FR », « US »)
+        String countryCode = gazetteer.countryCode(latLng.getLat(), latLng.getLng())
+                .orElseGet(() -> googleCountryCode(latLng));
 
-        // 2) Extraction du code pays (ex. « GA », « FR », « US »)
-        String countryCode = resp.results.stream()
-                .flatMap(r -> r.addressComponents.stream())
-                .filter(ac -> ac.types.contains("country"))
-                .findFirst()
-                .map(ac -> ac.shortName)
-                .orElseThrow(() -> new RuntimeException("Country code non trouvé"));
-
-        // 3) Mapping vers votre clé pricing
+        // 2) Mapping vers votre clé pricing
         String key = switch (countryCode) {
             case "GA" -> "gabon";
             case "FR" -> "france";
@@ -69,7 +61,7 @@ public class GeoLocationService {
             default   -> throw new RuntimeException("Pays non supporté : " + countryCode);
         };
 
-        // 4) Récupération de la config tarifaire
+        // 3) Récupération de la config tarifaire
         Map<String, PricingProperties.Country> map = pricingProperties.getCountry();
         PricingProperties.Country cfg = Optional.ofNullable(map.get(key))
                 .orElseThrow(() ->
@@ -79,6 +71,25 @@ public class GeoLocationService {
         return new CityInfo(cfg.getCityId(), cfg.getCurrency());
     }
 
+    /** Appel à Google Geocoding API (secours : point hors gazetteer). */
+    private String googleCountryCode(LatLng latLng) {
+        String url = "https://maps.googleapis.com/maps/api/geocode/json" +
+                "?latlng=" + latLng.getLat() + "," + latLng.getLng() +
+                "&key=" + googleApiKey;
+        GeocodeResponse resp = restTemplate.getForObject(url, GeocodeResponse.class);
+
+        if (resp == null || !"OK".equals(resp.status)) {
+            throw new RuntimeException("Erreur géocodage : " + (resp == null ? "null" : resp.status));
+        }
+
+        return resp.results.stream()
+                .flatMap(r -> r.addressComponents.stream())
+                .filter(ac -> ac.types.contains("country"))
+                .findFirst()
+                .map(ac -> ac.shortName)
+                .orElseThrow(() -> new RuntimeException("Country code non trouvé"));
+    }
+
     // ───────────────────────────
     // Classes internes pour désérialiser la réponse JSON de Google
     // ───────────────────────────
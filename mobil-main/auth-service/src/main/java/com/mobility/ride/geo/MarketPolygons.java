@@ -0,0 +1,218 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/geo/MarketPolygons.java
+//  v2025-10-16 – polygones de marché (GeoJSON) indexés sur grille, sans Spring
+//               • point-dans-polygone (ray casting, trous, MultiPolygon)
+//               • test « aucune frontière dans la boîte » pour le cache par cellule
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Ensemble immuable de polygones de marché, chargé par {@link MarketResolver}.
+ *
+ * <p>{@code FeatureCollection} de {@code Polygon} / {@code MultiPolygon},
+ * propriétés {@code market} (clé {@code pricing.country.*}) et, facultatifs,
+ * {@code cityId} / {@code currency} qui priment sur la clé. Polygones
+ * imbriqués : le plus petit gagne (ville avant pays).</p>
+ */
+public final class MarketPolygons {
+
+    public static final MarketPolygons EMPTY = new MarketPolygons(List.of(), 1.0, List.of());
+
+    /** Polygone (anneaux [lng,lat], trous inclus) et marché associé. */
+    private record Market(String name, CityInfo info, List<double[][]> outers, List<double[][]> holes,
+                          double minLat, double maxLat, double minLng, double maxLng, double area) {
+
+        boolean contains(double lat, double lng) {
+            if (lat < minLat || lat > maxLat || lng < minLng || lng > maxLng) return false;
+            boolean in = false;
+            for (double[][] ring : outers) if (inRing(ring, lat, lng)) { in = true; break; }
+            if (!in) return false;
+            for (double[][] ring : holes) if (inRing(ring, lat, lng)) return false;
+            return true;
+        }
+
+        /** Une arête (extérieure ou trou) touche-t-elle la boîte ? */
+        boolean crosses(double minLat, double minLng, double maxLat, double maxLng) {
+            if (maxLat < this.minLat || minLat > this.maxLat || maxLng < this.minLng || minLng > this.maxLng)
+                return false;
+            for (double[][] ring : outers) if (ringHitsBox(ring, minLat, minLng, maxLat, maxLng)) return true;
+            for (double[][] ring : holes)  if (ringHitsBox(ring, minLat, minLng, maxLat, maxLng)) return true;
+            return false;
+        }
+    }
+
+    private final List<Market>            markets;
+    private final double                  indexCellDeg;
+    /** Cellule d’index → polygones candidats (triés par aire croissante). */
+    private final Map<Long, List<Market>> index = new HashMap<>();
+    private final List<String>            skipped;
+
+    private MarketPolygons(List<Market> markets, double indexCellDeg, List<String> skipped) {
+        this.markets      = markets;
+        this.indexCellDeg = indexCellDeg;
+        this.skipped      = skipped;
+        for (Market m : markets)
+            for (int r = GeoGrid.row(m.minLat(), indexCellDeg); r <= GeoGrid.row(m.maxLat(), indexCellDeg); r++)
+                for (int c = GeoGrid.col(m.minLng(), indexCellDeg); c <= GeoGrid.col(m.maxLng(), indexCellDeg); c++)
+                    index.computeIfAbsent(GeoGrid.key(r, c), k -> new ArrayList<>()).add(m);
+    }
+
+    /* ═════════════ 1) Construction ═════════════ */
+
+    /**
+     * @param defaults clé {@code market} → cityId / devise par défaut ({@code null} si inconnue)
+     */
+    public static MarketPolygons fromGeoJson(JsonNode featureCollection, double indexCellDeg,
+                                             Function<String, CityInfo> defaults) {
+        List<Market> markets = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+        for (JsonNode f : featureCollection.path("features")) {
+            Market m = parse(f, defaults);
+            if (m != null) markets.add(m);
+            else skipped.add(f.path("properties").path("market").asText("?"));
+        }
+        markets.sort(Comparator.comparingDouble(Market::area));
+        return new MarketPolygons(List.copyOf(markets), indexCellDeg, List.copyOf(skipped));
+    }
+
+    private static Market parse(JsonNode feature, Function<String, CityInfo> defaults) {
+        JsonNode p      = feature.path("properties");
+        String   name   = p.path("market").asText(null);
+        Long     cityId = p.hasNonNull("cityId") ? p.get("cityId").asLong() : null;
+        String   cur    = p.path("currency").asText(null);
+
+        CityInfo cfg = name == null ? null : defaults.apply(name);
+        if (cityId == null && cfg != null) cityId = cfg.cityId();
+        if (cur    == null && cfg != null) cur    = cfg.currency();
+        if (cityId == null || cur == null) return null;
+
+        JsonNode geom = feature.path("geometry");
+        List<JsonNode> polygons = new ArrayList<>();
+        switch (geom.path("type").asText()) {
+            case "Polygon"      -> polygons.add(geom.path("coordinates"));
+            case "MultiPolygon" -> geom.path("coordinates").forEach(polygons::add);
+            default             -> { return null; }
+        }
+
+        List<double[][]> outers = new ArrayList<>(), holes = new ArrayList<>();
+        double minLat = 90, maxLat = -90, minLng = 180, maxLng = -180, area = 0;
+        for (JsonNode poly : polygons) {
+            for (int i = 0; i < poly.size(); i++) {
+                JsonNode ringNode = poly.get(i);
+                double[][] ring = new double[ringNode.size()][];
+                for (int k = 0; k < ring.length; k++)
+                    ring[k] = new double[] { ringNode.get(k).get(0).asDouble(), ringNode.get(k).get(1).asDouble() };
+                if (i == 0) {
+                    outers.add(ring);
+                    area += Math.abs(signedArea(ring));
+                    for (double[] pt : ring) {
+                        minLng = Math.min(minLng, pt[0]); maxLng = Math.max(maxLng, pt[0]);
+                        minLat = Math.min(minLat, pt[1]); maxLat = Math.max(maxLat, pt[1]);
+                    }
+                } else {
+                    holes.add(ring);
+                }
+            }
+        }
+        if (outers.isEmpty()) return null;
+        return new Market(name, new CityInfo(cityId, cur), outers, holes, minLat, maxLat, minLng, maxLng, area);
+    }
+
+    public boolean      isEmpty()    { return markets.isEmpty(); }
+    public int          size()       { return markets.size(); }
+    public int          indexCells() { return index.size(); }
+    /** Clés {@code market} des entités ignorées (cityId / devise inconnus, géométrie non gérée). */
+    public List<String> skipped()    { return skipped; }
+
+    /* ═════════════ 2) Requêtes ═════════════ */
+
+    /** Plus petit marché contenant le point. */
+    public Optional<CityInfo> locate(double lat, double lng) {
+        List<Market> candidates = index.get(GeoGrid.cellKey(lat, lng, indexCellDeg));
+        if (candidates == null) return Optional.empty();
+        for (Market m : candidates)
+            if (m.contains(lat, lng)) return Optional.of(m.info());
+        return Optional.empty();
+    }
+
+    /**
+     * {@code true} si aucune frontière ne traverse ni ne touche la boîte :
+     * tous ses points appartiennent alors aux mêmes polygones, et donc au
+     * même marché (un petit polygone entièrement inclus est détecté).
+     */
+    public boolean uniform(double minLat, double minLng, double maxLat, double maxLng) {
+        List<Market> seen = new ArrayList<>();
+        for (int r = GeoGrid.row(minLat, indexCellDeg); r <= GeoGrid.row(maxLat, indexCellDeg); r++) {
+            for (int c = GeoGrid.col(minLng, indexCellDeg); c <= GeoGrid.col(maxLng, indexCellDeg); c++) {
+                List<Market> candidates = index.get(GeoGrid.key(r, c));
+                if (candidates == null) continue;
+                for (Market m : candidates) {
+                    if (seen.contains(m)) continue;
+                    seen.add(m);
+                    if (m.crosses(minLat, minLng, maxLat, maxLng)) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /* ═════════════ Géométrie ═════════════ */
+
+    /** Ray casting (anneau [lng,lat]). */
+    static boolean inRing(double[][] ring, double lat, double lng) {
+        boolean in = false;
+        for (int i = 0, j = ring.length - 1; i < ring.length; j = i++) {
+            double xi = ring[i][0], yi = ring[i][1];
+            double xj = ring[j][0], yj = ring[j][1];
+            if ((yi > lat) != (yj > lat) && lng < (xj - xi) * (lat - yi) / (yj - yi) + xi) in = !in;
+        }
+        return in;
+    }
+
+    private static boolean ringHitsBox(double[][] ring, double minLat, double minLng, double maxLat, double maxLng) {
+        for (int i = 0, j = ring.length - 1; i < ring.length; j = i++)
+            if (segmentHitsBox(ring[j][0], ring[j][1], ring[i][0], ring[i][1], minLng, minLat, maxLng, maxLat))
+                return true;
+        return false;
+    }
+
+    /** Liang–Barsky : le segment (x0,y0)–(x1,y1) a-t-il un point dans la boîte fermée ? */
+    static boolean segmentHitsBox(double x0, double y0, double x1, double y1,
+                                  double minX, double minY, double maxX, double maxY) {
+        double dx = x1 - x0, dy = y1 - y0, t0 = 0, t1 = 1;
+        for (int side = 0; side < 4; side++) {
+            double p = switch (side) { case 0 -> -dx; case 1 -> dx; case 2 -> -dy; default -> dy; };
+            double q = switch (side) {
+                case 0  -> x0 - minX;
+                case 1  -> maxX - x0;
+                case 2  -> y0 - minY;
+                default -> maxY - y0;
+            };
+            if (p == 0) {
+                if (q < 0) return false;                         // parallèle et dehors
+            } else {
+                double t = q / p;
+                if (p < 0) { if (t > t1) return false; if (t > t0) t0 = t; }
+                else       { if (t < t0) return false; if (t < t1) t1 = t; }
+            }
+        }
+        return true;
+    }
+
+    private static double signedArea(double[][] ring) {
+        double a = 0;
+        for (int i = 0, j = ring.length - 1; i < ring.length; j = i++)
+            a += (ring[j][0] + ring[i][0]) * (ring[j][1] - ring[i][1]);
+        return a / 2;
+    }
+}
@@ -0,0 +1,175 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/geo/MarketResolver.java
+//  v2025-10-16 – marché (cityId + devise) par point-dans-polygone, en local
+//               • polygones GeoJSON chargés au démarrage, index grille
+//               • cache par cellule fine (cellules non frontalières)
+//               • GeoLocationService (gazetteer / Google) si aucun polygone
+//  v2025-10-16 – géométrie extraite dans MarketPolygons ; une cellule n’est
+//               cachée que si aucune frontière ne la touche (plus les 4 coins)
+//  v2025-10-17 – sans polygones : réponse du géocodeur cachée par cellule fine ;
+//               source=default ne compte que les vrais replis (échec géocodeur)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mobility.ride.config.PricingProperties;
+import com.mobility.ride.model.LatLng;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * <h2>MarketResolver</h2>
+ *
+ * <p>Remplace l’appel Google bloquant (un par devis, un par course) par un
+ * test point-dans-polygone en mémoire, en quelques microsecondes.</p>
+ *
+ * <p>Fichier {@code geo.markets.file} : {@code FeatureCollection} de
+ * {@code Polygon} / {@code MultiPolygon}, propriétés :</p>
+ * <ul>
+ *   <li>{@code market} – clé {@code pricing.country.*} (gabon, france, usa) ;</li>
+ *   <li>{@code cityId}, {@code currency} – facultatifs, priment sur la clé
+ *       (polygone de ville inclus dans celui du pays).</li>
+ * </ul>
+ * <p>Polygones imbriqués : le plus petit gagne (ville avant pays). Exemple
+ * de fichier : {@code classpath:geo/markets.sample.geojson}. Sans fichier,
+ * le géocodeur est interrogé une fois par cellule fine ({@code cache-cell-deg}) :
+ * seules ses réponses positives sont cachées (une panne n’est pas mémorisée),
+ * au prix d’une précision limitée à la cellule près d’une frontière.</p>
+ */
+@Slf4j
+@Service
+public class MarketResolver {
+
+    private final PricingProperties  pricing;
+    private final GeoLocationService fallback;
+    private final ResourceLoader     resources;
+    private final ObjectMapper       json;
+    private final String             file;
+    private final double             indexCellDeg;
+    private final double             cacheCellDeg;
+
+    private MarketPolygons polygons = MarketPolygons.EMPTY;
+
+    /**
+     * Cellule fine → marché (Optional.empty = hors marché). Polygones : cellules
+     * non frontalières seulement ; géocodeur : réponses positives seulement.
+     */
+    private final Cache<Long, Optional<CityInfo>> cellCache;
+
+    private final Counter polygonHits;
+    private final Counter remoteLookups;
+    private final Counter fallbacks;
+
+    public MarketResolver(PricingProperties pricing,
+                          GeoLocationService fallback,
+                          ResourceLoader resources,
+                          ObjectMapper json,
+                          MeterRegistry metrics,
+                          @Value("${geo.markets.file:}")                String file,
+                          @Value("${geo.markets.index-cell-deg:0.5}")   double indexCellDeg,
+                          @Value("${geo.markets.cache-cell-deg:0.01}")  double cacheCellDeg,
+                          @Value("${geo.markets.cache-size:100000}")    long   cacheSize) {
+        this.pricing      = pricing;
+        this.fallback     = fallback;
+        this.resources    = resources;
+        this.json         = json;
+        this.file         = file;
+        this.indexCellDeg = indexCellDeg;
+        this.cacheCellDeg = cacheCellDeg;
+
+        this.cellCache = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build();
+        CaffeineCacheMetrics.monitor(metrics, cellCache, "geo.markets");
+        this.polygonHits   = Counter.builder("geo.markets.resolve").tag("source", "polygon").register(metrics);
+        this.remoteLookups = Counter.builder("geo.markets.resolve").tag("source", "geocoder").register(metrics);
+        this.fallbacks     = Counter.builder("geo.markets.resolve").tag("source", "default").register(metrics);
+    }
+
+    /* ═════════════ 1) Chargement ═════════════ */
+
+    @PostConstruct
+    void load() {
+        if (!StringUtils.hasText(file)) {
+            log.info("🌍 MarketResolver : aucun fichier geo.markets.file – géocodeur utilisé");
+            return;
+        }
+        Resource res = resources.getResource(file);
+        try (InputStream in = res.getInputStream()) {
+            polygons = MarketPolygons.fromGeoJson(json.readTree(in), indexCellDeg, this::configured);
+        } catch (Exception ex) {
+            log.error("❌ MarketResolver : {} illisible – géocodeur utilisé", file, ex);
+            return;
+        }
+        polygons.skipped().forEach(name -> log.warn(
+                "⚠️  MarketResolver : polygone « {} » ignoré (cityId / currency inconnus ou géométrie non gérée)", name));
+        log.info("🌍 MarketResolver : {} polygone(s), {} cellule(s) d’index", polygons.size(), polygons.indexCells());
+    }
+
+    /** Valeurs {@code pricing.country.<market>} (cityId, devise). */
+    private CityInfo configured(String market) {
+        PricingProperties.Country cfg = pricing.getCountry() == null ? null : pricing.getCountry().get(market);
+        return cfg == null ? null : new CityInfo(cfg.getCityId(), cfg.getCurrency());
+    }
+
+    /* ═════════════ 2) Résolution ═════════════ */
+
+    public Optional<CityInfo> resolve(LatLng p) {
+        return p == null || p.getLat() == null || p.getLng() == null
+                ? Optional.empty() : resolve(p.getLat(), p.getLng());
+    }
+
+    /**
+     * Marché du point ; vide si hors de tout marché couvert ou si le
+     * géocodeur n’a pas répondu (l’appelant applique alors sa valeur par
+     * défaut – seul ce second cas est compté dans {@code source=default}).
+     */
+    public Optional<CityInfo> resolve(double lat, double lng) {
+        long               cell = GeoGrid.cellKey(lat, lng, cacheCellDeg);
+        Optional<CityInfo> out  = cellCache.getIfPresent(cell);
+        if (polygons.isEmpty()) {
+            if (out == null) {
+                out = remote(lat, lng);
+                if (out.isPresent()) cellCache.put(cell, out);
+            }
+            return out;
+        }
+        if (out == null) {
+            out = polygons.locate(lat, lng);
+            if (uniformCell(cell)) cellCache.put(cell, out);
+        }
+        if (out.isPresent()) polygonHits.increment();
+        return out;
+    }
+
+    /** Cellule cachable si aucune frontière de marché ne la traverse ni ne la touche. */
+    private boolean uniformCell(long cell) {
+        double lat0 = GeoGrid.rowOf(cell) * cacheCellDeg - 90.0;
+        double lng0 = GeoGrid.colOf(cell) * cacheCellDeg - 180.0;
+        return polygons.uniform(lat0, lng0, lat0 + cacheCellDeg, lng0 + cacheCellDeg);
+    }
+
+    private Optional<CityInfo> remote(double lat, double lng) {
+        remoteLookups.increment();
+        try {
+            Optional<CityInfo> out = Optional.ofNullable(fallback.resolve(new LatLng(lat, lng)));
+            if (out.isEmpty()) fallbacks.increment();
+            return out;
+        } catch (Exception ex) {
+            fallbacks.increment();
+            log.debug("MarketResolver : géocodeur en échec ({},{}) → {}", lat, lng, ex.getMessage());
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/geo/OfflineGazetteer.java
+//  v2025-10-16 – gazetteers hors-ligne des marchés (gabon, france, usa)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+import com.mobility.ride.geo.Gazetteer.Place;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Charge les fichiers {@code geo.offline.files} (un par marché) au démarrage.
+ * Aucun fichier ⇒ {@link #isEnabled()} faux et toutes les recherches vides :
+ * les appelants retombent sur Google / Nominatim.
+ */
+@Slf4j
+@Component
+public class OfflineGazetteer {
+
+    private final List<String> files;
+    private final double       streetRadiusKm;
+    private final List<Gazetteer> loaded = new ArrayList<>();
+
+    public OfflineGazetteer(@Value("${geo.offline.files:}")             List<String> files,
+                            @Value("${geo.offline.street-radius-m:150}") double       streetRadiusM) {
+        this.files          = files;
+        this.streetRadiusKm = streetRadiusM / 1_000;
+    }
+
+    @PostConstruct
+    void load() {
+        for (String f : files) {
+            if (!StringUtils.hasText(f)) continue;
+            try {
+                Gazetteer g = Gazetteer.open(Path.of(f.strip()));
+                loaded.add(g);
+                log.info("🗺️  Gazetteer hors-ligne {} – {} point(s)", g.file(), g.size());
+            } catch (Exception ex) {
+                log.warn("⚠️  Gazetteer {} ignoré : {}", f, ex.getMessage());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return !loaded.isEmpty();
+    }
+
+    /** Rue / POI le plus proche à moins de {@code street-radius-m}. */
+    public Optional<Place> nearestStreet(double lat, double lng) {
+        return loaded.stream()
+                .map(g -> g.nearest(lat, lng, streetRadiusKm))
+                .flatMap(Optional::stream)
+                .min(Comparator.comparingDouble(Place::distanceKm));
+    }
+
+    /** Code pays ISO-2 (« GA », « FR », « US ») si le point tombe dans un marché couvert. */
+    public Optional<String> countryCode(double lat, double lng) {
+        for (Gazetteer g : loaded) {
+            Optional<String> cc = g.countryCode(lat, lng);
+            if (cc.isPresent()) return cc;
+        }
+        return Optional.empty();
+    }
+}
@@ -3,6 +3,7 @@
 // ───────────────────────────────────────────────────────────
 package com.mobility.ride.mapper;
 
+import com.mobility.auth.dto.ProfilePicture;
 import com.mobility.auth.repository.view.UserSnippetView;
 import com.mobility.ride.dto.DriverSnippet;
 import com.mobility.ride.dto.RiderSnippet;
@@ -15,13 +16,18 @@ public final class DtoMapper {
     public static DriverSnippet toDriverSnippet(UserSnippetView v) {
         return new DriverSnippet(
                 v.getId(), v.getFirstName(), v.getLastName(),
-                v.getProfilePicture(), v.getProfilePictureMimeType(),
+                photoUrl(v),
                 v.getRating());
     }
 
     public static RiderSnippet toRiderSnippet(UserSnippetView v) {
         return new RiderSnippet(
                 v.getId(), v.getFirstName(), v.getLastName(),
-                v.getProfilePicture(), v.getProfilePictureMimeType());
+                photoUrl(v));
+    }
+
+    private static String photoUrl(UserSnippetView v) {
+        boolean has = v.getProfilePictureKey() != null || Boolean.TRUE.equals(v.getLegacyPicture());
+        return has ? ProfilePicture.publicUrl(v.getId(), v.getProfilePictureKey(), ProfilePicture.THUMB) : null;
     }
 }
@@ -0,0 +1,21 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/model/OutboxChannel.java
+//  v2025-10-16 – canaux de livraison de l’outbox
+//  v2025-10-17 – capture des frais d’annulation / no-show
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.model;
+
+/**
+ * Effet de bord différé, livré après commit par {@code OutboxDispatcher}.
+ */
+public enum OutboxChannel {
+
+    /** Message STOMP : {@code destination} = topic, {@code payload} = corps JSON. */
+    WEBSOCKET,
+
+    /** Notification push de statut (rider + chauffeur) : {@code payload} = rideId / status / ids. */
+    RIDE_STATUS_PUSH,
+
+    /** Capture PSP des frais d’annulation / no-show : {@code payload} = rideId / montant / devise. */
+    CANCELLATION_FEE
+}
@@ -0,0 +1,82 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/model/OutboxMessage.java
+//  v2025-10-16 – outbox transactionnelle (WebSocket, push) des transitions
+//  v2025-10-17 – index (ride_id, id) : recherche du prédécesseur d’une course
+// ─────────────────────────────────────────────────────────────
+package com.mobility.ride.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Effet de bord écrit dans la <b>même transaction</b> que la transition
+ * métier, puis livré après commit par {@code OutboxDispatcher}.
+ *
+ * <p>Réclamation identique à {@link RideTimer} : propriétaire + bail posés
+ * sous {@code SELECT … FOR UPDATE SKIP LOCKED}. Livré ⇒ ligne supprimée ;
+ * en échec ⇒ {@code attempts}++ et nouvel essai à {@code next_attempt_at} ;
+ * au-delà du maximum ⇒ {@code dead_at} renseigné (conservée pour analyse).</p>
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(
+        name = "outbox_messages",
+        indexes = {
+                @Index(name = "idx_outbox_next", columnList = "dead_at, next_attempt_at"),
+                @Index(name = "idx_outbox_ride", columnList = "ride_id, id")
+        }
+)
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private OutboxChannel channel;
+
+    /** Course concernée : messages d’une même course livrés dans l’ordre d’écriture. */
+    @Column(name = "ride_id")
+    private Long rideId;
+
+    /** Topic STOMP (canal WEBSOCKET). */
+    @Column(length = 255)
+    private String destination;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    /* ─────────── Livraison ─────────── */
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private OffsetDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 512)
+    private String lastError;
+
+    @Column(name = "dead_at")
+    private OffsetDateTime deadAt;
+
+    /* ─────────── Réclamation ─────────── */
+
+    @Column(length = 36)
+    private String owner;
+
+    @Column(name = "lease_until")
+    private OffsetDateTime leaseUntil;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+}
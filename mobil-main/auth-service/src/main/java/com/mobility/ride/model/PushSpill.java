@@ -0,0 +1,46 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/model/PushSpill.java
+//  v2025-10-16 – débordement de la file push (PushQueue)
+// ─────────────────────────────────────────────────────────────
+package com.mobility.ride.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Push mis de côté quand la file mémoire est pleine (ou à l’arrêt) ;
+ * réinjecté dans la file dès qu’elle repasse sous son seuil bas.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "push_spill")
+public class PushSpill {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "token", nullable = false, length = 255)
+    private String token;
+
+    @Column(length = 255)
+    private String title;
+
+    @Column(length = 1024)
+    private String body;
+
+    /** Paires clé/valeur sérialisées en JSON. */
+    @Column(name = "data_json", columnDefinition = "TEXT")
+    private String dataJson;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+}
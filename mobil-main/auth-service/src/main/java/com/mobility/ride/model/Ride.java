@@ -1,6 +1,8 @@
 // ─────────────────────────────────────────────────────────────
 //  FILE : src/main/java/com/mobility/ride/model/Ride.java
 //  v2025-09-08 – @Version NOT-NULL + baseline 0  + minor clean-ups
+//  v2025-10-16 – index (rider|driver, status, created_at) pour l’historique
+//  v2025-10-16 – address_attempts + index created_at (rattrapage des adresses)
 // ─────────────────────────────────────────────────────────────
 package com.mobility.ride.model;
 
@@ -34,7 +36,12 @@ import java.util.concurrent.ThreadLocalRandom;
                 @Index(name = "idx_ride_rider_id",  columnList = "rider_id"),
                 @Index(name = "idx_ride_rider_uid", columnList = "rider_uid"),
                 @Index(name = "idx_ride_driver_id", columnList = "driver_id"),
-                @Index(name = "idx_ride_status",    columnList = "status")
+                @Index(name = "idx_ride_status",    columnList = "status"),
+                /* Historique paginé par curseur (RideRepository.find*HistoryPage) */
+                @Index(name = "idx_ride_rider_status_created",  columnList = "rider_id, status, created_at"),
+                @Index(name = "idx_ride_driver_status_created", columnList = "driver_id, status, created_at"),
+                /* Rattrapage des adresses limité aux courses récentes (RideRepository.findAddressPending) */
+                @Index(name = "idx_ride_created_at", columnList = "created_at")
         }
 )
 public class Ride {
@@ -79,6 +86,10 @@ public class Ride {
     @Column(name = "dropoff_address", length = 255)
     private String dropoffAddress;
 
+    /** Tours d’enrichissement épuisés sans adresse complète (NULL = 0). */
+    @Column(name = "address_attempts")
+    private Integer addressAttempts;
+
     /* ───────── Produit & options ─────── */
 
     @Enumerated(EnumType.STRING)
@@ -113,7 +124,7 @@ public class Ride {
     @Column(name = "cancel_reason", length = 32)
     private String cancelReason;
 
-    /* Attente payante */
+    /* Attente payante – figée à la prise en charge / fin / no-show (WaitTimeService.settle) */
     @Column(name = "waiting_sec")
     private Integer waitingSec;                 // secondes
 
@@ -16,8 +16,8 @@ package com.mobility.ride.model;
  *
  * • {@code SCHEDULED} est un état « hors flux temps réel » réservé aux
  *   réservations futures (T > now).
- * • {@code WAITING} démarre quand le chauffeur déclenche « Arrived » ;
- *   la grâce (ex. 2 min) est gérée par WaitTimeService.
+ * • {@code WAITING} : course ARRIVED au-delà de la grâce (2 min) ; statut
+ *   exposé par WaitTimeService à partir de {@code arrivedAt}.
  * • {@code NO_SHOW} est posé automatiquement si le rider ne se présente
  *   pas avant la fin de la grâce.
  */
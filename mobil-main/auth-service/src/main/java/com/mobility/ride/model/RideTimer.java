@@ -0,0 +1,71 @@
+// ─────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/model/RideTimer.java
+//  v2025-10-16 – minuteurs de course persistés (reprise après redémarrage,
+//                répartition entre instances)
+// ─────────────────────────────────────────────────────────────
+package com.mobility.ride.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Échéance durable d’une course (une par {@link RideTimerKind}).
+ *
+ * <p>Une instance « réclame » les lignes proches de l’échéance
+ * ({@code SELECT … FOR UPDATE SKIP LOCKED}) en y posant son identifiant et
+ * un bail ({@code lease_until}). Bail expiré ⇒ la ligne est reprise par
+ * n’importe quelle instance : rien n’est perdu au redémarrage.</p>
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(
+        name = "ride_timers",
+        indexes = @Index(name = "idx_ride_timer_due", columnList = "due_at"),
+        uniqueConstraints = @UniqueConstraint(name = "uk_ride_timer_kind_ride",
+                columnNames = {"kind", "ride_id"})
+)
+public class RideTimer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private RideTimerKind kind;
+
+    @Column(name = "ride_id", nullable = false)
+    private Long rideId;
+
+    @Column(name = "due_at", nullable = false)
+    private OffsetDateTime dueAt;
+
+    /* ─────────── Charge utile (pénalité) ─────────── */
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal fee;
+
+    @Column(length = 8)
+    private String currency;
+
+    /* ─────────── Réclamation ─────────── */
+
+    /** Instance propriétaire (null = libre). */
+    @Column(length = 36)
+    private String owner;
+
+    @Column(name = "lease_until")
+    private OffsetDateTime leaseUntil;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+}
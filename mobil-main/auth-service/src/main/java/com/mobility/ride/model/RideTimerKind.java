@@ -0,0 +1,17 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/model/RideTimerKind.java
+//  v2025-10-16 – familles de minuteurs de course
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.model;
+
+/**
+ * Une course porte au plus un minuteur de chaque famille.
+ */
+public enum RideTimerKind {
+
+    /** Échéance no-show d’une course ARRIVED : grâce + attente maximale ({@code WaitTimeService}). */
+    WAIT_NO_SHOW,
+
+    /** Pénalité no-show d’une course non prise en charge ({@code CancellationPenaltyService}). */
+    NO_SHOW_PENALTY
+}
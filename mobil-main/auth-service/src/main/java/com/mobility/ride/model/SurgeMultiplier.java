@@ -5,6 +5,7 @@ package com.mobility.ride.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
@@ -16,7 +17,8 @@ import java.time.OffsetDateTime;
 @Table(name = "surge_multipliers",
         indexes = {
                 @Index(name = "idx_surge_city_product", columnList = "city_id, product_type"),
-                @Index(name = "idx_surge_window", columnList = "window_start, window_end")
+                @Index(name = "idx_surge_window", columnList = "window_start, window_end"),
+                @Index(name = "idx_surge_updated", columnList = "updated_at")
         },
         uniqueConstraints = @UniqueConstraint(name = "uk_surge_city_product_window",
                 columnNames = {"city_id", "product_type", "window_start"})
@@ -43,4 +45,10 @@ public class SurgeMultiplier {
 
     @Column(name = "window_end", nullable = false)
     private OffsetDateTime windowEnd;
+
+    /** Tenu par MySQL (saisies manuelles comprises) : repère du rafraîchissement incrémental. */
+    @UpdateTimestamp
+    @Column(name = "updated_at", columnDefinition =
+            "datetime(6) default current_timestamp(6) on update current_timestamp(6)")
+    private OffsetDateTime updatedAt;
 }
@@ -0,0 +1,44 @@
+// ───────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/repository/OutboxMessageRepository.java
+//  v2025-10-16 – outbox transactionnelle (OutboxDispatcher)
+//  v2025-10-17 – ordre par course garanti entre lots et entre instances
+// ───────────────────────────────────────────────────────────
+package com.mobility.ride.repository;
+
+import com.mobility.ride.model.OutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /*
+     * Messages à livrer, libres ou au bail expiré, dans l’ordre d’écriture.
+     * Seul le plus ancien message vivant d’une course est éligible : tant
+     * qu’un prédécesseur attend (reprise, bail d’une autre instance), les
+     * suivants restent en file – ordre par course garanti au-delà du lot.
+     * SKIP LOCKED : plusieurs instances vident l’outbox sans se bloquer.
+     */
+    @Query(value = """
+            select *
+              from outbox_messages m
+             where m.dead_at is null
+               and m.next_attempt_at <= :now
+               and (m.lease_until is null or m.lease_until < :now)
+               and not exists (select 1
+                                 from outbox_messages p
+                                where p.ride_id = m.ride_id
+                                  and p.id < m.id
+                                  and p.dead_at is null)
+             order by m.id
+             limit :limit
+               for update skip locked
+           """, nativeQuery = true)
+    List<OutboxMessage> lockDeliverable(@Param("now")   OffsetDateTime now,
+                                        @Param("limit") int limit);
+}
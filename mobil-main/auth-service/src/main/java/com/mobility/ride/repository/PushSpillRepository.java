@@ -0,0 +1,27 @@
+// ───────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/repository/PushSpillRepository.java
+//  v2025-10-16 – débordement de la file push (PushQueue)
+// ───────────────────────────────────────────────────────────
+package com.mobility.ride.repository;
+
+import com.mobility.ride.model.PushSpill;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PushSpillRepository extends JpaRepository<PushSpill, Long> {
+
+    /* Plus anciens d’abord ; SKIP LOCKED : une seule instance réinjecte une ligne */
+    @Query(value = """
+            select *
+              from push_spill
+             order by id
+             limit :limit
+               for update skip locked
+           """, nativeQuery = true)
+    List<PushSpill> lockOldest(@Param("limit") int limit);
+}
@@ -1,12 +1,15 @@
 // ───────────────────────────────────────────────────────────
 //  FILE : src/main/java/com/mobility/ride/repository/RideRepository.java
 //  v2025-10-12 – rider/driver active feeds + near offers + transitions atomiques
+//  v2025-10-14 – findOpenNear* retirées (→ OpenRideIndex)
+//  v2025-10-16 – adresses résolues persistées (updateAddresses / findAddressPending)
+//  v2025-10-16 – historique paginé par curseur (find*HistoryPage)
+//  v2025-10-17 – première page sans curseur (find*HistoryFirstPage), recherches inutilisées retirées
 // ───────────────────────────────────────────────────────────
 package com.mobility.ride.repository;
 
 import com.mobility.ride.model.Ride;
 import com.mobility.ride.model.RideStatus;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -28,7 +31,6 @@ import java.util.Optional;
  * - Feeds “actifs” rider & driver (statuts non-terminaux).
  * - Fenêtres planifiées (rider & driver).
  * - Historique rider & driver.
- * - Offres proches (REQUESTED) pour les chauffeurs, pageable.
  * - Transitions atomiques courantes (assignation, en route, arrivé, à bord, cancel, complete).
  */
 @Repository
@@ -36,8 +38,6 @@ public interface RideRepository extends JpaRepository<Ride, Long> {
 
     /* ═════════════ 1) Recherches simples ═════════════ */
     List<Ride> findAllByRiderId(Long riderId);
-    List<Ride> findAllByRiderIdOrderByCreatedAtDesc(Long riderId);
-    List<Ride> findAllByDriverId(Long driverId);
     List<Ride> findAllByStatus(RideStatus status);
     @Override Optional<Ride> findById(Long id);
 
@@ -113,50 +113,53 @@ public interface RideRepository extends JpaRepository<Ride, Long> {
                                           @Param("from")     OffsetDateTime from,
                                           @Param("to")       OffsetDateTime to);
 
-    /* ═════ 6) Driver offers – rides REQUESTED proches ═════
-       NB: nécessite MySQL/MariaDB avec fonctions géo (ST_Distance_Sphere).
-       Variante pageable pour trier par distance croissante. */
-    @Query(value = """
-          SELECT *
-            FROM rides r
-           WHERE r.status = 'REQUESTED'
-             AND ST_Distance_Sphere(
-                   POINT(r.pickup_lng, r.pickup_lat),
-                   POINT(:lng, :lat)
-                 ) < :radiusKm * 1000
-          """,
-            nativeQuery = true)
-    List<Ride> findOpenNear(@Param("lat")      double lat,
-                            @Param("lng")      double lng,
-                            @Param("radiusKm") double radiusKm);
+    /* Pagination par curseur (created_at, id) – un statut par requête : l’index (…, status, created_at) est parcouru
+       dans l’ordre, LIMIT sans tri ; RideService fusionne les statuts. Première page : mêmes requêtes sans curseur. */
+    @Query("""
+           select r from Ride r
+            where r.riderId = :userId and r.status = :status
+            order by r.createdAt desc, r.id desc
+           """)
+    List<Ride> findRiderHistoryFirstPage(@Param("userId") Long riderId,
+                                         @Param("status") RideStatus status,
+                                         Pageable page);
+
+    @Query("""
+           select r from Ride r
+            where r.driverId = :userId and r.status = :status
+            order by r.createdAt desc, r.id desc
+           """)
+    List<Ride> findDriverHistoryFirstPage(@Param("userId") Long driverId,
+                                          @Param("status") RideStatus status,
+                                          Pageable page);
 
-    @Query(value = """
-          SELECT *
-            FROM rides r
-           WHERE r.status = 'REQUESTED'
-             AND ST_Distance_Sphere(
-                   POINT(r.pickup_lng, r.pickup_lat),
-                   POINT(:lng, :lat)
-                 ) < :radiusKm * 1000
-           ORDER BY ST_Distance_Sphere(
-                     POINT(r.pickup_lng, r.pickup_lat),
-                     POINT(:lng, :lat)
-                    ) ASC
-          """,
-            countQuery = """
-          SELECT COUNT(*)
-            FROM rides r
-           WHERE r.status = 'REQUESTED'
-             AND ST_Distance_Sphere(
-                   POINT(r.pickup_lng, r.pickup_lat),
-                   POINT(:lng, :lat)
-                 ) < :radiusKm * 1000
-          """,
-            nativeQuery = true)
-    Page<Ride> findOpenNearPage(@Param("lat") double lat,
-                                @Param("lng") double lng,
-                                @Param("radiusKm") double radiusKm,
-                                Pageable pageable);
+    @Query("""
+           select r from Ride r
+            where r.riderId = :userId and r.status = :status
+              and (r.createdAt < :at or (r.createdAt = :at and r.id < :id))
+            order by r.createdAt desc, r.id desc
+           """)
+    List<Ride> findRiderHistoryPage(@Param("userId") Long riderId,
+                                    @Param("status") RideStatus status,
+                                    @Param("at")     OffsetDateTime at,
+                                    @Param("id")     Long id,
+                                    Pageable page);
+
+    @Query("""
+           select r from Ride r
+            where r.driverId = :userId and r.status = :status
+              and (r.createdAt < :at or (r.createdAt = :at and r.id < :id))
+            order by r.createdAt desc, r.id desc
+           """)
+    List<Ride> findDriverHistoryPage(@Param("userId") Long driverId,
+                                     @Param("status") RideStatus status,
+                                     @Param("at")     OffsetDateTime at,
+                                     @Param("id")     Long id,
+                                     Pageable page);
+
+    /* ═════ 6) Driver offers – rides REQUESTED proches ═════
+       Servies en mémoire par OpenRideIndex (v2025-10-14) : les anciennes
+       requêtes natives ST_Distance_Sphere (scan complet) ont été retirées. */
 
     /* ═════ 7) Transitions atomiques utiles (anti-concurrence) ═════
        ► Toutes renvoient le nombre de lignes mises à jour (0 = précondition non satisfaite). */
@@ -262,4 +265,43 @@ public interface RideRepository extends JpaRepository<Ride, Long> {
                              @Param("driverId") Long driverId,
                              @Param("ts") OffsetDateTime ts,
                              @Param("fare") BigDecimal finalFare);
+
+    /* ═════ 8) Adresses résolues (RideAddressEnricher) ═════
+       ► N’écrase jamais une adresse déjà posée. */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Transactional
+    @Query("""
+          update Ride r
+             set r.pickupAddress  = coalesce(r.pickupAddress,  :pickup),
+                 r.dropoffAddress = coalesce(r.dropoffAddress, :dropoff)
+           where r.id = :rideId
+          """)
+    int updateAddresses(@Param("rideId")  Long rideId,
+                        @Param("pickup")  String pickupAddress,
+                        @Param("dropoff") String dropoffAddress);
+
+    /* 8.1 Courses récentes encore sans adresse (rattrapage par curseur id décroissant) */
+    @Query("""
+          select r from Ride r
+           where r.id < :beforeId
+             and r.createdAt >= :since
+             and coalesce(r.addressAttempts, 0) < :maxRounds
+             and (r.pickupAddress is null
+                  or (r.dropoffAddress is null and r.dropoffLat is not null))
+           order by r.id desc
+          """)
+    List<Ride> findAddressPending(@Param("beforeId")  Long beforeId,
+                                  @Param("since")     OffsetDateTime since,
+                                  @Param("maxRounds") int maxRounds,
+                                  Pageable page);
+
+    /* 8.2 Un tour d’enrichissement épuisé sans adresse complète */
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Transactional
+    @Query("""
+          update Ride r
+             set r.addressAttempts = coalesce(r.addressAttempts, 0) + 1
+           where r.id = :rideId
+          """)
+    int incrementAddressAttempts(@Param("rideId") Long rideId);
 }
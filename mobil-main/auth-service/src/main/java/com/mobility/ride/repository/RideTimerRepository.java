@@ -0,0 +1,61 @@
+// ───────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/repository/RideTimerRepository.java
+//  v2025-10-16 – minuteurs de course durables (RideTimerService)
+// ───────────────────────────────────────────────────────────
+package com.mobility.ride.repository;
+
+import com.mobility.ride.model.RideTimer;
+import com.mobility.ride.model.RideTimerKind;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RideTimerRepository extends JpaRepository<RideTimer, Long> {
+
+    Optional<RideTimer> findByKindAndRideId(RideTimerKind kind, Long rideId);
+
+    boolean existsByKindAndRideId(RideTimerKind kind, Long rideId);
+
+    List<RideTimer> findAllByKindAndRideIdInAndOwner(RideTimerKind kind, Collection<Long> rideIds, String owner);
+
+    /*
+     * Lignes à échéance avant :until, libres ou au bail expiré.
+     * SKIP LOCKED : deux instances ne se disputent jamais le même lot.
+     */
+    @Query(value = """
+            select *
+              from ride_timers
+             where due_at <= :until
+               and (lease_until is null or lease_until < :now)
+             order by due_at
+             limit :limit
+               for update skip locked
+           """, nativeQuery = true)
+    List<RideTimer> lockClaimable(@Param("until") OffsetDateTime until,
+                                  @Param("now")   OffsetDateTime now,
+                                  @Param("limit") int limit);
+
+    /* Échéances traitées ; une ligne reprogrammée entre-temps (due_at futur) est conservée */
+    @Modifying
+    @Query("""
+           delete from RideTimer t
+            where t.kind    = :kind
+              and t.rideId in :rideIds
+              and t.dueAt  <= :upTo
+           """)
+    int deleteFired(@Param("kind")    RideTimerKind kind,
+                    @Param("rideIds") Collection<Long> rideIds,
+                    @Param("upTo")    OffsetDateTime upTo);
+
+    @Modifying
+    @Query("delete from RideTimer t where t.kind = :kind and t.rideId = :rideId")
+    int deleteByKindAndRideId(@Param("kind") RideTimerKind kind, @Param("rideId") Long rideId);
+}
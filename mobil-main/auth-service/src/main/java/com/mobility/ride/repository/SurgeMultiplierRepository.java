@@ -3,35 +3,59 @@
 // ----------------------------------------------------------------------------
 package com.mobility.ride.repository;
 
-import com.mobility.ride.model.ProductType;
 import com.mobility.ride.model.SurgeMultiplier;
+import com.mobility.ride.repository.view.SurgeWindowView;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.OffsetDateTime;
-import java.util.Optional;
+import java.util.List;
 
 @Repository
 public interface SurgeMultiplierRepository
         extends JpaRepository<SurgeMultiplier, Long> {
 
-    /* Multiplicateur actif à l’instant T */
+    /* ══════════════ Projections « instantané » (SurgeRefreshJob) ══════════════ */
+
+    /* Rechargement complet : fenêtres actives ou débutant avant :until */
     @Query("""
-            select s
+            select s.id          as id,
+                   s.cityId      as cityId,
+                   s.productType as productType,
+                   s.factor      as factor,
+                   s.windowStart as windowStart,
+                   s.windowEnd   as windowEnd
               from SurgeMultiplier s
-             where s.cityId      = :cityId
-               and s.productType = :product
-               and :ts between s.windowStart and s.windowEnd
+             where s.windowEnd   >= :from
+               and s.windowStart <= :until
            """)
-    Optional<SurgeMultiplier> findActive(
-            @Param("cityId")  Long        cityId,
-            @Param("product") ProductType product,
-            @Param("ts")      OffsetDateTime ts
+    List<SurgeWindowView> findWindowsBetween(
+            @Param("from")  OffsetDateTime from,
+            @Param("until") OffsetDateTime until
     );
 
-    /* Dernier multiplicateur connu (pour warm-up cache) */
-    Optional<SurgeMultiplier>
-    findTopByCityIdAndProductTypeOrderByWindowEndDesc(
-            Long cityId, ProductType productType);
+    /*
+     * Incrémental : lignes modifiées depuis :since (créées, prolongées, closes)
+     * + fenêtres entrant dans l’horizon ]:after ; :until]
+     */
+    @Query("""
+            select s.id          as id,
+                   s.cityId      as cityId,
+                   s.productType as productType,
+                   s.factor      as factor,
+                   s.windowStart as windowStart,
+                   s.windowEnd   as windowEnd
+              from SurgeMultiplier s
+             where s.updatedAt > :since
+                or (s.windowStart >  :after
+                and s.windowStart <= :until
+                and s.windowEnd   >= :now)
+           """)
+    List<SurgeWindowView> findChangedOrUpcoming(
+            @Param("since") OffsetDateTime since,
+            @Param("after") OffsetDateTime after,
+            @Param("until") OffsetDateTime until,
+            @Param("now")   OffsetDateTime now
+    );
 }
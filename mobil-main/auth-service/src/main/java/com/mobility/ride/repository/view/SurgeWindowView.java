@@ -0,0 +1,22 @@
+// ───────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/repository/view/SurgeWindowView.java
+// ───────────────────────────────────────────────────────────
+package com.mobility.ride.repository.view;
+
+import com.mobility.ride.model.ProductType;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Fenêtre surge telle que chargée par SurgeRefreshJob :
+ * colonnes utiles seulement, aucune entité managée.
+ */
+public interface SurgeWindowView {
+    Long           getId();
+    Long           getCityId();
+    ProductType    getProductType();
+    BigDecimal     getFactor();
+    OffsetDateTime getWindowStart();
+    OffsetDateTime getWindowEnd();
+}
@@ -1,104 +1,171 @@
 package com.mobility.ride.scheduler;
 
-import com.mobility.ride.model.SurgeMultiplier;
-import com.mobility.ride.model.ProductType;
 import com.mobility.ride.repository.SurgeMultiplierRepository;
-import com.mobility.ride.service.SurgePricingService;
-import lombok.RequiredArgsConstructor;
+import com.mobility.ride.repository.view.SurgeWindowView;
+import com.mobility.ride.service.surge.SurgeSnapshot;
+import com.mobility.ride.service.surge.SurgeSnapshotHolder;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
- * <h2>SurgeRefreshJob – préchauffage périodique du cache “surge”</h2>
+ * <h2>SurgeRefreshJob – chargeur unique de l’instantané “surge”</h2>
  *
  * <p>
- *   À intervalles réguliers, parcourt toutes les combinaisons de
- *   (cityId, productType) pour appeler {@link SurgePricingService#warmUpCache},
- *   garantissant que les clés du cache Caffeine restent chaudes.
+ *   Rafraîchissement <strong>incrémental</strong> toutes les
+ *   {@code app.surge.snapshot.refresh-ms} : une requête de projection ne
+ *   ramène que
  * </p>
- *
- * <p><strong>Contexte :</strong>
- *   – TTL du cache = 30 s (expireAfterWrite)<br>
- *   – Cette tâche s’exécute toutes les 5 minutes pour rafraîchir le cache.
+ * <ul>
+ *   <li>les lignes modifiées depuis le dernier passage
+ *       ({@code updated_at} &gt; repère haut, moins {@code overlap-ms}) –
+ *       créations, prolongations, fenêtres closes ;</li>
+ *   <li>les fenêtres dont {@code window_start} entre dans l’horizon
+ *       (repère haut précédent ; maintenant + {@code lookahead-ms}].</li>
+ * </ul>
+ * <p>
+ *   Les fenêtres préchargées sont activées à leur {@code window_start}
+ *   exact par un minuteur qui annonce le changement de facteur
+ *   ({@link SurgeSnapshotHolder#fireChanges(long)}) ; idem à leur fin.
+ *   Un rechargement complet toutes les {@code full-reload-ms} purge les
+ *   lignes supprimées en base.
  * </p>
+ *
+ * <p><strong>Métriques :</strong> {@code surge.refresh.duration} et
+ *   {@code surge.refresh.rows} (tag {@code mode=full|incremental}).</p>
  */
 @Component
 @Slf4j
-@RequiredArgsConstructor
 public class SurgeRefreshJob {
 
-    /**
-     * Service gérant l’appel à {@code warmUpCache(cityId, productType)}.
-     */
-    private final SurgePricingService surgeService;
-
-    /**
-     * Repository permettant de récupérer les multiplicateurs de tous les
-     * cityId existants en base (au moins un enreg. historique pour chaque ville).
-     */
     private final SurgeMultiplierRepository surgeRepo;
+    private final SurgeSnapshotHolder       holder;
+    private final long                      lookaheadMs;
+    private final long                      overlapMs;
+    private final long                      fullReloadMs;
+
+    private final Timer               fullTimer;
+    private final Timer               incrementalTimer;
+    private final DistributionSummary fullRows;
+    private final DistributionSummary incrementalRows;
+
+    /** Bornes de fenêtres déjà programmées (epoch-ms). */
+    private final Set<Long> scheduled = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService activator =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "surge-activate");
+                t.setDaemon(true);
+                return t;
+            });
 
-    /**
-     * Intervalle : toutes les 5 minutes (300 000 ms).
-     *
-     * <p>
-     *   – La tâche parcourt d’abord tous les cityId distincts trouvés dans {@code surge_multipliers} ;
-     *   – Pour chaque cityId, elle itère sur l’ensemble des {@link ProductType#values()} ;
-     *   – Appelle {@link SurgePricingService#warmUpCache(Long, ProductType)} pour forcer
-     *     la mise en cache des dernières données.
-     * </p>
-     */
-    @Scheduled(fixedRate = 300_000, initialDelay = 10_000)
-    public void refreshAllSurgeCaches() {
-        // 1) Récupérer la liste de tous les cityId distincts pour lesquels on a au moins un multiplicateur en base
-        List<Long> cityIds = fetchDistinctCityIds();
-
-        if (cityIds.isEmpty()) {
-            log.debug("⚡ SurgeRefreshJob – aucun cityId trouvé dans surge_multipliers, arrêt du rafraîchissement");
-            return;
+    /* Repères hauts (thread du job uniquement) */
+    private long lastFullMs       = -1;
+    private long changedSinceMs;
+    private long preloadedUntilMs;
+
+    public SurgeRefreshJob(SurgeMultiplierRepository surgeRepo,
+                           SurgeSnapshotHolder holder,
+                           MeterRegistry metrics,
+                           @Value("${app.surge.snapshot.lookahead-ms:60000}")     long lookaheadMs,
+                           @Value("${app.surge.snapshot.overlap-ms:5000}")        long overlapMs,
+                           @Value("${app.surge.snapshot.full-reload-ms:600000}")  long fullReloadMs) {
+        this.surgeRepo    = surgeRepo;
+        this.holder       = holder;
+        this.lookaheadMs  = lookaheadMs;
+        this.overlapMs    = overlapMs;
+        this.fullReloadMs = fullReloadMs;
+
+        this.fullTimer        = Timer.builder("surge.refresh.duration").tag("mode", "full").register(metrics);
+        this.incrementalTimer = Timer.builder("surge.refresh.duration").tag("mode", "incremental").register(metrics);
+        this.fullRows         = DistributionSummary.builder("surge.refresh.rows").tag("mode", "full").register(metrics);
+        this.incrementalRows  = DistributionSummary.builder("surge.refresh.rows").tag("mode", "incremental").register(metrics);
+    }
+
+    /** Premier chargement avant tout devis. */
+    @PostConstruct
+    void init() {
+        refreshSnapshot();
+    }
+
+    @PreDestroy
+    void stop() {
+        activator.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${app.surge.snapshot.refresh-ms:5000}",
+               initialDelayString = "${app.surge.snapshot.refresh-ms:5000}")
+    public synchronized void refreshSnapshot() {
+        long now   = System.currentTimeMillis();
+        long until = now + lookaheadMs;
+        boolean full = lastFullMs < 0 || now - lastFullMs >= fullReloadMs;
+        try {
+            SurgeSnapshot next = full ? reloadAll(now, until) : reloadChanged(now, until);
+            holder.publish(next);
+            schedule(next, now, until);
+
+            changedSinceMs   = now;
+            preloadedUntilMs = until;
+            if (full) lastFullMs = now;
+        } catch (Exception ex) {
+            log.error("⚡ SurgeRefreshJob – rechargement {} échoué, instantané v{} conservé : {}",
+                    full ? "complet" : "incrémental", holder.current().version(), ex.getMessage(), ex);
         }
+    }
 
-        // 2) Pour chaque ville, itérer sur tous les types de produit
-        for (Long cityId : cityIds) {
-            for (ProductType productType : ProductType.values()) {
+    private SurgeSnapshot reloadAll(long now, long until) {
+        long t0 = System.nanoTime();
+        List<SurgeWindowView> rows = surgeRepo.findWindowsBetween(at(now), at(until));
+        SurgeSnapshot next = SurgeSnapshot.of(rows, holder.nextVersion(), now);
+        fullTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        fullRows.record(rows.size());
+        log.debug("⚡ SurgeRefreshJob – rechargement complet v{} : {} fenêtre(s)", next.version(), rows.size());
+        return next;
+    }
+
+    private SurgeSnapshot reloadChanged(long now, long until) {
+        long t0 = System.nanoTime();
+        List<SurgeWindowView> rows = surgeRepo.findChangedOrUpcoming(
+                at(changedSinceMs - overlapMs), at(preloadedUntilMs), at(until), at(now));
+        SurgeSnapshot next = holder.current().merge(rows, holder.nextVersion(), now);
+        incrementalTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        incrementalRows.record(rows.size());
+        if (!rows.isEmpty())
+            log.debug("⚡ SurgeRefreshJob – v{} : {} ligne(s) modifiée(s) ou à venir", next.version(), rows.size());
+        return next;
+    }
+
+    /** Programme l’annonce des débuts / fins de fenêtres de l’horizon. */
+    private void schedule(SurgeSnapshot snap, long now, long until) {
+        for (long boundary : snap.boundaries(now, until)) {
+            if (!scheduled.add(boundary)) continue;
+            activator.schedule(() -> {
+                scheduled.remove(boundary);
                 try {
-                    surgeService.warmUpCache(cityId, productType);
+                    holder.fireChanges(System.currentTimeMillis());
                 } catch (Exception ex) {
-                    log.error("⚡ SurgeRefreshJob – erreur lors du warmUpCache pour cityId={} / productType={} : {}",
-                            cityId, productType, ex.getMessage(), ex);
+                    log.warn("⚡ SurgeRefreshJob – annonce à {} échouée : {}", boundary, ex.getMessage());
                 }
-            }
+            }, boundary - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
         }
-
-        log.info("⚡ SurgeRefreshJob – cache warm-up terminé pour {} villes et {} produits",
-                cityIds.size(), ProductType.values().length);
     }
 
-    /**
-     * Extrait tous les cityId distincts à partir de la table {@code surge_multipliers}.
-     *
-     * <p>
-     *   Pour éviter un chargement complet inutile, on extrait d’abord toutes les entités,
-     *   puis on déduit la liste de cityId distincts via un flux Java 8.
-     *   Idéalement, on aurait un finder dédié {@code findDistinctCityIds()} dans le repository.
-     * </p>
-     *
-     * @return liste non triée de tous les cityId distincts ayant au moins un multiplicateur enregistré
-     */
-    private List<Long> fetchDistinctCityIds() {
-        // Chargement de l’ensemble des multiplicateurs (taille raisonnable : max ≈ 500 villes × 4 produits)
-        List<SurgeMultiplier> allMultipliers = surgeRepo.findAll();
-
-        // Extraction et déduplication des cityId
-        Set<Long> distinctIds = allMultipliers.stream()
-                .map(SurgeMultiplier::getCityId)
-                .collect(Collectors.toSet());
-
-        return List.copyOf(distinctIds);
+    private static OffsetDateTime at(long epochMs) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneOffset.UTC);
     }
 }
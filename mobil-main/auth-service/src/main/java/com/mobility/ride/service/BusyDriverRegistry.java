@@ -0,0 +1,66 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/BusyDriverRegistry.java
+//  v2025-10-16 – chauffeurs en course (dispatch, surge) tenus en mémoire
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service;
+
+import com.mobility.ride.event.RideStatusChangedEvent;
+import com.mobility.ride.model.Ride;
+import com.mobility.ride.model.RideStatus;
+import com.mobility.ride.repository.RideRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * driverId → rideId des courses en cours (ACCEPTED … IN_PROGRESS).
+ *
+ * <p>Rechargé depuis MySQL au démarrage, puis tenu à jour par
+ * {@link RideStatusChangedEvent} après commit. Un chauffeur « en ligne »
+ * absent de ce registre est disponible.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BusyDriverRegistry {
+
+    public static final Set<RideStatus> BUSY_STATUSES = EnumSet.of(
+            RideStatus.ACCEPTED, RideStatus.EN_ROUTE, RideStatus.ARRIVED,
+            RideStatus.WAITING, RideStatus.IN_PROGRESS);
+
+    private final RideRepository rideRepository;
+
+    private final Map<Long, Long> busy = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void recover() {
+        for (RideStatus s : BUSY_STATUSES)
+            for (Ride r : rideRepository.findAllByStatus(s))
+                if (r.getDriverId() != null) busy.put(r.getDriverId(), r.getId());
+        log.info("🚕 BusyDriverRegistry – {} chauffeur(s) en course", busy.size());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(RideStatusChangedEvent e) {
+        if (BUSY_STATUSES.contains(e.getStatus()) && e.getDriverId() != null)
+            busy.put(e.getDriverId(), e.getRideId());
+        else if (e.getStatus() != RideStatus.REQUESTED && e.getStatus() != RideStatus.SCHEDULED)
+            busy.values().remove(e.getRideId());                 // terminée / annulée
+    }
+
+    public boolean isBusy(long driverId) {
+        return busy.containsKey(driverId);
+    }
+
+    public int size() {
+        return busy.size();
+    }
+}
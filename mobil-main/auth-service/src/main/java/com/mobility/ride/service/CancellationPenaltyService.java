@@ -1,26 +1,41 @@
 package com.mobility.ride.service;
 
+import com.mobility.ride.event.RideStatusChangedEvent;
 import com.mobility.ride.model.Ride;
 import com.mobility.ride.model.RideStatus;         // ← import ajouté
+import com.mobility.ride.model.RideTimer;
+import com.mobility.ride.model.RideTimerKind;
 import com.mobility.ride.repository.RideRepository;
+import com.mobility.ride.service.outbox.OutboxService;
+import com.mobility.ride.service.timer.RideTimerService;
+import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.TaskScheduler;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.OffsetDateTime;
-import java.util.concurrent.ScheduledFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * <h2>Gestion des annulations & pénalités</h2>
  *
  * • Planifie automatiquement un « no-show » H+2 min après création (grâce à scheduleNoShowPenalty).<br>
  * • Permet l’annulation explicite par l’utilisateur (cancelRide).<br>
- * • Vérifie et met à jour le statut du ride avant d’appliquer la pénalité (applyPenalty).
+ * • Vérifie et met à jour le statut du ride avant d’appliquer la pénalité (applyPenalty).<br>
+ * • Les échéances vivent dans {@link RideTimerService} ({@link RideTimerKind#NO_SHOW_PENALTY}) :
+ *   les courses échues au même tick sont traitées en un seul lot.<br>
+ * • La capture du frais no-show est écrite dans l’outbox avec l’annulation
+ *   ({@link OutboxService#cancellationFee}) : un échec PSP est rejoué, pas perdu.
  */
 @Slf4j
 @Service
@@ -33,9 +48,17 @@ public class CancellationPenaltyService {
     /** Montant forfaitaire utilisé pour l’exemple : 3.00 XAF. */
     public static final BigDecimal LATE_CANCEL_FEE = new BigDecimal("3.00");
 
-    private final TaskScheduler  scheduler;
-    private final RideRepository rideRepo;
-    private final PaymentService paymentService;
+    private final RideTimerService timers;
+    private final RideRepository   rideRepo;
+    private final PaymentService   paymentService;
+    private final OutboxService    outbox;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher events;
+
+    @PostConstruct
+    void registerTimers() {
+        timers.register(RideTimerKind.NO_SHOW_PENALTY, this::onNoShowTimers);
+    }
 
     /* ════════════════════════════════════════════════════════════════════════
        1) Planification automatique du no-show
@@ -46,15 +69,12 @@ public class CancellationPenaltyService {
      * @param rideId   ID de la course à surveiller
      * @param fee      montant de la pénalité
      * @param currency devise ISO 4217 (ex. "XAF")
-     * @return ScheduledFuture (peut être annulé si besoin)
      */
-    public ScheduledFuture<?> scheduleNoShowPenalty(Long rideId,
-                                                    BigDecimal fee,
-                                                    String currency) {
-        return scheduler.schedule(
-                () -> applyPenalty(rideId, fee, currency),
-                OffsetDateTime.now().plus(NO_SHOW_GRACE).toInstant()
-        );
+    public void scheduleNoShowPenalty(Long rideId,
+                                      BigDecimal fee,
+                                      String currency) {
+        timers.schedule(RideTimerKind.NO_SHOW_PENALTY, rideId,
+                System.currentTimeMillis() + NO_SHOW_GRACE.toMillis(), fee, currency);
     }
 
     /* ════════════════════════════════════════════════════════════════════════
@@ -68,6 +88,7 @@ public class CancellationPenaltyService {
         // ➊ Mettre à jour le statut en CANCELLED
         ride.setStatus(RideStatus.CANCELLED);
         rideRepo.save(ride);
+        events.publishEvent(new RideStatusChangedEvent(this, ride));
 
         /* ➋ Décide si un frais doit être appliqué.
            ⮕ Gratuit si annulation < 2 min, sinon frais forfaitaire. */
@@ -112,9 +133,39 @@ public class CancellationPenaltyService {
          */
         ride.setStatus(RideStatus.CANCELLED);
         rideRepo.save(ride);
+        events.publishEvent(new RideStatusChangedEvent(this, ride));
 
         /* ➌ Capture du frais no-show */
         paymentService.captureCancellationFee(ride, fee, currency);
         log.warn("🚫 No-show penalty {} {} charged for ride {}", fee, currency, rideId);
     }
+
+    /* ════════════════════════════════════════════════════════════════════════
+       4) Lot d’échéances no-show (thread RideTimerService)
+       ═══════════════════════════════════════════════════════════════════════ */
+    void onNoShowTimers(List<RideTimer> fired) {
+        Map<Long, RideTimer> byRide = fired.stream()
+                .collect(Collectors.toMap(RideTimer::getRideId, Function.identity()));
+        List<Ride> cancelled = new ArrayList<>();
+        tx.executeWithoutResult(st -> {
+            for (Ride ride : rideRepo.findAllById(byRide.keySet())) {
+                if (ride.getStatus() != RideStatus.REQUESTED) {
+                    log.info("Ride {} not in REQUESTED state (current status={}) – skipping no-show penalty",
+                            ride.getId(), ride.getStatus());
+                    continue;
+                }
+                ride.setStatus(RideStatus.CANCELLED);
+                cancelled.add(ride);
+                events.publishEvent(new RideStatusChangedEvent(this, ride));
+
+                /* Capture du frais : committée avec l’annulation, livrée (et rejouée) par l’outbox */
+                RideTimer  t        = byRide.get(ride.getId());
+                BigDecimal fee      = t.getFee()      == null ? LATE_CANCEL_FEE   : t.getFee();
+                String     currency = t.getCurrency() == null ? ride.getCurrency() : t.getCurrency();
+                outbox.cancellationFee(ride, fee, currency);
+                log.info("🚫 No-show penalty {} {} queued for ride {}", fee, currency, ride.getId());
+            }
+            rideRepo.saveAll(cancelled);
+        });
+    }
 }
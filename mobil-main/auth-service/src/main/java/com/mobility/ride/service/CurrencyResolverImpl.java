@@ -1,48 +1,33 @@
 package com.mobility.ride.service;
 
-import com.mobility.ride.config.PricingProperties;
 import com.mobility.ride.geo.CityInfo;
-import com.mobility.ride.geo.GeoLocationService;
+import com.mobility.ride.geo.MarketResolver;
+import com.mobility.ride.service.pricing.PricingTableHolder;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
-
 @Service
 @RequiredArgsConstructor
 public class CurrencyResolverImpl implements CurrencyResolver {
 
-    private final GeoLocationService geoLocationService; // déjà utilisé par PricingController
-    private final PricingProperties  pricing;
+    private final MarketResolver     markets;            // polygones locaux (v2025-10-16)
+    private final PricingTableHolder tables;
 
     @Override
     public String resolve(Double lat, Double lng, Long fallbackCityId) {
         try {
             if (lat != null && lng != null) {
-                CityInfo info = geoLocationService.resolve(new com.mobility.ride.model.LatLng(lat, lng));
+                CityInfo info = markets.resolve(lat, lng).orElse(null);
                 if (info != null && info.currency() != null && !info.currency().isBlank()) return info.currency();
                 if (info != null && info.cityId() != null) return currencyFromCityId(info.cityId());
             }
         } catch (Exception ignore) { /* fallback */ }
 
-        if (fallbackCityId != null) return currencyFromCityId(fallbackCityId);
-
-        // dernier recours : pricing.country.default.currency (ou USD)
-        return Optional.ofNullable(pricing.getCountry())
-                .map(m -> m.get("default"))
-                .map(PricingProperties.Country::getCurrency)
-                .orElse("USD");
+        // ville de secours, sinon bloc « default » (ou USD) – barème compilé
+        return tables.current().currencyOf(fallbackCityId);
     }
 
     private String currencyFromCityId(Long cityId) {
-        return Optional.ofNullable(pricing.getCountry())
-                .flatMap(map -> map.values().stream()
-                        .filter(c -> c.getCityId().equals(cityId))
-                        .findFirst())
-                .map(PricingProperties.Country::getCurrency)
-                .orElseGet(() -> Optional.ofNullable(pricing.getCountry())
-                        .map(m -> m.get("default"))
-                        .map(PricingProperties.Country::getCurrency)
-                        .orElse("USD"));
+        return tables.current().currencyOf(cityId);
     }
 }
@@ -1,10 +1,12 @@
 /* ──────────────────────────────────────────────────────────────
  *  FILE : src/main/java/com/mobility/ride/service/DriverFeedService.java
  *  v2025-08-10 – interface
+ *  v2025-10-15 – toOffer (réutilisé par le feed WebSocket)
  * ────────────────────────────────────────────────────────────── */
 package com.mobility.ride.service;
 
 import com.mobility.ride.dto.RideOfferDto;
+import com.mobility.ride.service.OpenRideIndex.OpenRide;
 import java.util.List;
 
 public interface DriverFeedService {
@@ -12,4 +14,7 @@ public interface DriverFeedService {
     List<RideOfferDto> findOpenRides      (Double lat, Double lng, Double radiusKm);
     List<RideOfferDto> findOpenParcels    (Double lat, Double lng, Double radiusKm);
     List<RideOfferDto> findScheduledRides (Double lat, Double lng, Double radiusKm);
+
+    /** Conversion d’un instantané d’index en offre, distance au chauffeur incluse. */
+    RideOfferDto toOffer(OpenRide ride, double distanceKm);
 }
@@ -1,13 +1,16 @@
 /* ──────────────────────────────────────────────────────────────
  *  FILE : src/main/java/com/mobility/ride/service/DriverFeedServiceImpl.java
  *  v2025-10-11 – fenêtre planifiées : ≤ 25 min
+ *  v2025-10-14 – servi par OpenRideIndex (plus de requête géo SQL)
+ *  v2025-10-15 – toOffer public (feed WebSocket)
+ *  v2025-10-16 – adresses persistées uniquement (plus de géocodage à la lecture)
  * ────────────────────────────────────────────────────────────── */
 package com.mobility.ride.service;
 
 import com.mobility.ride.dto.RideOfferDto;
 import com.mobility.ride.model.ProductType;
-import com.mobility.ride.model.Ride;
-import com.mobility.ride.repository.RideRepository;
+import com.mobility.ride.model.RideStatus;
+import com.mobility.ride.service.OpenRideIndex.OpenRide;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -18,28 +21,26 @@ import java.util.List;
 @RequiredArgsConstructor
 public class DriverFeedServiceImpl implements DriverFeedService {
 
-    private final RideRepository rideRepository;
-    private final GeoService     geoService;
+    private final OpenRideIndex openRides;
 
-    private static final double EARTH_RADIUS_KM   = 6_371;
-    private static final int    ACCEPT_WINDOW_MIN = 25;   // ← fenêtre d’acceptation
+    private static final int ACCEPT_WINDOW_MIN = 25;   // ← fenêtre d’acceptation
 
     /* ───────── 1) Courses immédiates ───────── */
     @Override
     public List<RideOfferDto> findOpenRides(Double lat, Double lng, Double radiusKm) {
-        return rideRepository.findOpenNear(lat, lng, radiusKm)
+        return openRides.near(lat, lng, radiusKm, r -> r.status() == RideStatus.REQUESTED)
                 .stream()
-                .map(r -> mapToDto(r, lat, lng))
+                .map(h -> toOffer(h.ride(), h.distanceKm()))
                 .toList();
     }
 
     /* ───────── 2) Colis immédiats ───────── */
     @Override
     public List<RideOfferDto> findOpenParcels(Double lat, Double lng, Double radiusKm) {
-        return rideRepository.findOpenNear(lat, lng, radiusKm)
+        return openRides.near(lat, lng, radiusKm, r -> r.status() == RideStatus.REQUESTED
+                        && r.productType() == ProductType.DELIVERY)
                 .stream()
-                .filter(r -> r.getProductType() == ProductType.DELIVERY)
-                .map(r -> mapToDto(r, lat, lng))
+                .map(h -> toOffer(h.ride(), h.distanceKm()))
                 .toList();
     }
 
@@ -49,51 +50,39 @@ public class DriverFeedServiceImpl implements DriverFeedService {
         OffsetDateTime now   = OffsetDateTime.now();
         OffsetDateTime limit = now.plusMinutes(ACCEPT_WINDOW_MIN);
 
-        return rideRepository.findScheduledBetween(now, limit)   // ← borne haute
+        return openRides.near(lat, lng, radiusKm, r -> r.status() == RideStatus.SCHEDULED
+                        && r.scheduledAt() != null
+                        && !r.scheduledAt().isBefore(now)
+                        && !r.scheduledAt().isAfter(limit))      // ← borne haute
                 .stream()
-                .filter(r -> distance(lat, lng,
-                        r.getPickupLat(), r.getPickupLng()) <= radiusKm)
-                .map(r -> mapToDto(r, lat, lng))
+                .map(h -> toOffer(h.ride(), h.distanceKm()))
                 .toList();
     }
 
-    /* ───────── Mapping entité ➜ DTO ───────── */
-    private RideOfferDto mapToDto(Ride r, double originLat, double originLng) {
-        double dist = distance(originLat, originLng,
-                r.getPickupLat(), r.getPickupLng());
+    /* ───────── Mapping instantané ➜ DTO ───────── */
+    @Override
+    public RideOfferDto toOffer(OpenRide r, double distanceKm) {
         return RideOfferDto.builder()
-                .rideId        (r.getId())
-                .productType   (r.getProductType().name())
-                .pickupLat     (r.getPickupLat())
-                .pickupLng     (r.getPickupLng())
-                .dropoffLat    (r.getDropoffLat())
-                .dropoffLng    (r.getDropoffLng())
-                .pickupAddress (geoService.reverse(r.getPickupLat(), r.getPickupLng()))
-                .dropoffAddress(geoService.reverse(r.getDropoffLat(), r.getDropoffLng()))
-                .totalFare     (r.getTotalFare().doubleValue())
-                .currency      (r.getCurrency())
-                .createdAt     (r.getCreatedAt().toString())
-                .scheduledAt   (r.getScheduledAt() != null
-                        ? r.getScheduledAt().toString()
+                .rideId        (r.rideId())
+                .productType   (r.productType().name())
+                .pickupLat     (r.pickupLat())
+                .pickupLng     (r.pickupLng())
+                .dropoffLat    (r.dropoffLat())
+                .dropoffLng    (r.dropoffLng())
+                .pickupAddress (r.pickupAddress() != null ? r.pickupAddress()
+                        : GeoService.coordinates(r.pickupLat(), r.pickupLng()))
+                .dropoffAddress(r.dropoffAddress() != null ? r.dropoffAddress()
+                        : GeoService.coordinates(r.dropoffLat(), r.dropoffLng()))
+                .totalFare     (r.totalFare().doubleValue())
+                .currency      (r.currency())
+                .createdAt     (r.createdAt().toString())
+                .scheduledAt   (r.scheduledAt() != null
+                        ? r.scheduledAt().toString()
                         : null)
-                .distanceKm    (dist)
-                .weightKg      (r.getWeightKg() != null
-                        ? r.getWeightKg().doubleValue()
+                .distanceKm    (distanceKm)
+                .weightKg      (r.weightKg() != null
+                        ? r.weightKg().doubleValue()
                         : null)
                 .build();
     }
-
-    /* ───────── Haversine (km) ───────── */
-    private double distance(double lat1, double lon1,
-                            double lat2, double lon2) {
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
-                + Math.cos(Math.toRadians(lat1))
-                * Math.cos(Math.toRadians(lat2))
-                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
-        return EARTH_RADIUS_KM
-                * 2
-                * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-    }
 }
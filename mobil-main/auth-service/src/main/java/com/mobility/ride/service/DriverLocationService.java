@@ -1,29 +1,197 @@
-/* ------------------------------------------------------------------ */
-/* DriverLocationService.java – nouveau                                */
-/* ------------------------------------------------------------------ */
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/DriverLocationService.java
+//  v2025-10-14 – positions chauffeurs réelles (index spatial en mémoire)
+//               • ingestion WS / REST batch → DriverPositionIndex
+//               • expiration des positions périmées
+//               • write-back périodique et groupé vers users.last_lat/last_lon
+// ─────────────────────────────────────────────────────────────────────────────
 package com.mobility.ride.service;
 
+import com.mobility.auth.repository.UserRepository;
 import com.mobility.ride.dto.DriverLocationDto;
+import com.mobility.ride.dto.DriverPositionUpdate;
+import com.mobility.ride.geo.DriverPositionIndex;
+import com.mobility.ride.geo.DriverPositionIndex.Hit;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Source unique des positions « live » des chauffeurs.
+ *
+ * <p>Chaque ping ne touche que la mémoire (index + dernière position à
+ * persister). La colonne {@code users.last_*} n’est écrite que toutes les
+ * {@code app.drivers.location.flush-ms} millisecondes, une seule fois par
+ * chauffeur ayant bougé, dans des transactions de {@code flush-batch} lignes.</p>
+ */
 @Slf4j
 @Service
 public class DriverLocationService {
 
-    /** Demo : renvoie 5 voitures ‘‘placées’’ aléatoirement à ±300 m. */
+    private final DriverPositionIndex index;
+    private final UserRepository      userRepository;
+    private final TransactionTemplate tx;
+
+    /** Positions en attente de write-back (driverId → dernier ping). */
+    private final Map<Long, Hit> pendingFlush = new ConcurrentHashMap<>();
+
+    private final long ttlMs;
+    private final int  flushBatch;
+
+    public DriverLocationService(UserRepository userRepository,
+                                 TransactionTemplate tx,
+                                 MeterRegistry metrics,
+                                 @Value("${app.drivers.location.cell-deg:0.01}") double cellDeg,
+                                 @Value("${app.drivers.location.shards:16}")      int shards,
+                                 @Value("${app.drivers.location.ttl-sec:30}")     long ttlSec,
+                                 @Value("${app.drivers.location.flush-batch:500}") int flushBatch) {
+        this.userRepository = userRepository;
+        this.tx             = tx;
+        this.index          = new DriverPositionIndex(cellDeg, shards);
+        this.ttlMs          = ttlSec * 1_000;
+        this.flushBatch     = flushBatch;
+
+        Gauge.builder("drivers.online", index, DriverPositionIndex::size).register(metrics);
+        Gauge.builder("drivers.location.pending_flush", pendingFlush, Map::size).register(metrics);
+    }
+
+    /* ═════════════ 1) Ingestion ═════════════ */
+
+    public void update(Long driverId, DriverPositionUpdate p) {
+        long now = System.currentTimeMillis();
+        long ts  = p.recordedAt() == null ? now
+                 : Math.min(now, p.recordedAt().toInstant().toEpochMilli());
+        if (ts < now - ttlMs) return;                        // déjà périmé
+
+        int heading = p.heading() == null ? -1 : p.heading();
+        index.upsert(driverId, p.lat(), p.lng(), heading, ts);
+        pendingFlush.merge(driverId,
+                new Hit(driverId, p.lat(), p.lng(), heading, ts, 0.0),
+                (a, b) -> b.updatedAtMs() >= a.updatedAtMs() ? b : a);
+    }
+
+    /** Lot de pings : seule la position la plus récente compte. */
+    public void updateBatch(Long driverId, List<DriverPositionUpdate> batch) {
+        batch.stream()
+             .max(Comparator.comparing(
+                     (DriverPositionUpdate p) -> p.recordedAt() == null ? Instant.MAX
+                                                                        : p.recordedAt().toInstant()))
+             .ifPresent(p -> update(driverId, p));
+    }
+
+    /** Chauffeur hors-ligne : retiré immédiatement de l’index (et de la prochaine écriture). */
+    public void goOffline(Long driverId) {
+        index.remove(driverId);
+        pendingFlush.remove(driverId);
+    }
+
+    /* ═════════════ 2) Requêtes ═════════════ */
+
     public List<DriverLocationDto> findNearby(double lat, double lng, double radiusKm) {
-        return ThreadLocalRandom.current()
-                .doubles(5, -radiusKm / 111.0, radiusKm / 111.0)  // ~°→km
-                .mapToObj(dLat -> DriverLocationDto.of(
-                        String.valueOf(ThreadLocalRandom.current().nextInt(1_000_000)),
-                        lat + dLat,
-                        lng + ThreadLocalRandom.current().nextDouble(-radiusKm / 111.0, radiusKm / 111.0),
-                        ThreadLocalRandom.current().nextInt(0, 360)
-                ))
-                .toList();
+        return index.withinRadius(lat, lng, radiusKm, freshnessCutoff(), 50)
+                    .stream().map(DriverLocationService::toDto).toList();
+    }
+
+    public List<DriverLocationDto> findNearest(double lat, double lng, int k, double maxRadiusKm) {
+        return index.nearest(lat, lng, k, maxRadiusKm, freshnessCutoff())
+                    .stream().map(DriverLocationService::toDto).toList();
+    }
+
+    /** Accès brut (dispatch, surge, …) : résultats triés par distance. */
+    public List<Hit> nearestHits(double lat, double lng, int k, double maxRadiusKm) {
+        return index.nearest(lat, lng, k, maxRadiusKm, freshnessCutoff());
+    }
+
+    public List<Hit> withinRadiusHits(double lat, double lng, double radiusKm) {
+        return index.withinRadius(lat, lng, radiusKm, freshnessCutoff(), 0);
+    }
+
+    public Optional<Hit> positionOf(Long driverId) {
+        Hit h = index.get(driverId);
+        return h == null || h.updatedAtMs() < freshnessCutoff() ? Optional.empty() : Optional.of(h);
+    }
+
+    public int onlineCount() {
+        return index.size();
+    }
+
+    /** Positions fraîches de tous les chauffeurs en ligne (copie, pour agrégats : surge, …). */
+    public List<Hit> onlineSnapshot() {
+        long cutoff = freshnessCutoff();
+        long[] ids  = index.driverIds();
+        List<Hit> out = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Hit h = index.get(id);
+            if (h != null && h.updatedAtMs() >= cutoff) out.add(h);
+        }
+        return out;
+    }
+
+    /* ═════════════ 3) Tâches de fond ═════════════ */
+
+    @Scheduled(fixedDelayString = "${app.drivers.location.evict-ms:5000}")
+    public void evictStale() {
+        int n = index.evictOlderThan(freshnessCutoff(), null);
+        if (n > 0) log.debug("🧹 {} position(s) chauffeur expirée(s)", n);
+    }
+
+    @Scheduled(fixedDelayString = "${app.drivers.location.flush-ms:60000}")
+    public void flushToUsers() {
+        if (pendingFlush.isEmpty()) return;
+
+        List<Hit> drained = new ArrayList<>(pendingFlush.size());
+        for (Iterator<Long> it = pendingFlush.keySet().iterator(); it.hasNext(); ) {
+            Hit h = pendingFlush.remove(it.next());
+            if (h != null) drained.add(h);
+        }
+
+        int written = 0;
+        for (int from = 0; from < drained.size(); from += flushBatch) {
+            List<Hit> chunk = drained.subList(from, Math.min(drained.size(), from + flushBatch));
+            try {
+                Integer n = tx.execute(st -> {
+                    int c = 0;
+                    for (Hit h : chunk)
+                        c += userRepository.updateLastLocation(h.driverId(), h.lat(), h.lng(),
+                                OffsetDateTime.ofInstant(Instant.ofEpochMilli(h.updatedAtMs()), ZoneOffset.UTC));
+                    return c;
+                });
+                written += n == null ? 0 : n;
+            } catch (Exception ex) {
+                /* On remet le lot en attente, sans écraser un ping plus récent */
+                chunk.forEach(h -> pendingFlush.putIfAbsent(h.driverId(), h));
+                log.warn("⚠️  Write-back positions échoué ({} chauffeurs) : {}", chunk.size(), ex.getMessage());
+            }
+        }
+        log.debug("💾 {} position(s) chauffeur persistée(s)", written);
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private long freshnessCutoff() {
+        return System.currentTimeMillis() - ttlMs;
+    }
+
+    private static DriverLocationDto toDto(Hit h) {
+        return DriverLocationDto.of(
+                String.valueOf(h.driverId()),
+                h.lat(),
+                h.lng(),
+                h.heading() < 0 ? null : h.heading());
     }
 }
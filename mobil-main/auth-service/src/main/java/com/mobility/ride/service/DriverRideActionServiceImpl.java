@@ -1,12 +1,14 @@
 /* ──────────────────────────────────────────────────────────────
  *  FILE : src/main/java/com/mobility/ride/service/DriverRideActionServiceImpl.java
  *  v2025-10-11 – accept SCHEDULED ≤ 25 min
+ *  v2025-10-15 – accept refusé si la course est offerte à un autre chauffeur
  * ────────────────────────────────────────────────────────────── */
 package com.mobility.ride.service;
 
 import com.mobility.ride.model.Ride;
 import com.mobility.ride.model.RideStatus;
 import com.mobility.ride.repository.RideRepository;
+import com.mobility.ride.service.dispatch.DispatchEngine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -25,11 +27,15 @@ public class DriverRideActionServiceImpl implements DriverRideActionService {
     private final RideFlowService    rideFlow;
     private final RideLockingService locker;
     private final RideRepository     rideRepository;
+    private final DispatchEngine     dispatch;
 
     /* 1) ACCEPT / DECLINE -------------------------------------------------- */
 
     @Override
     public void accept(Long rideId, Long driverId) {
+        /* ─── Offre exclusive en cours ? (avant le verrou SQL) ─── */
+        dispatch.checkCanAccept(rideId, driverId);
+
         locker.lockRide(rideId, () -> {
 
             /* ─── Contrôle “≤ 25 min” pour les planifiées ─── */
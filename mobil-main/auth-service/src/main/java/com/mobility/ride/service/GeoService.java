@@ -1,5 +1,8 @@
 package com.mobility.ride.service;
 
+import java.util.Locale;
+import java.util.Optional;
+
 public interface GeoService {
 
     /**
@@ -7,4 +10,16 @@ public interface GeoService {
      * Jamais {@code null} (chaine de secours sinon).
      */
     String reverse(Double lat, Double lng);
+
+    /**
+     * Géocodage inverse strict : vide si aucun fournisseur n’a répondu
+     * (permet à l’appelant de réessayer plutôt que de persister le secours).
+     */
+    Optional<String> resolve(Double lat, Double lng);
+
+    /** Libellé de secours « lat,lng » – aucun appel réseau. */
+    static String coordinates(Double lat, Double lng) {
+        if (lat == null || lng == null) return "Adresse inconnue";
+        return String.format(Locale.ROOT, "%.5f,%.5f", lat, lng);
+    }
 }
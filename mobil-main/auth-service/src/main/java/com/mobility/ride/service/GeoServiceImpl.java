@@ -5,30 +5,57 @@
 //         • clé de cache robuste (Locale.ROOT)
 //         • never-null (fallback "lat,lng")
 //         • purge simple + limite taille cache
+//  v1.4 – cache Caffeine (W-TinyLFU) à clé spatiale quantifiée (~10 m)
+//         • single-flight : un seul appel HTTP par cellule en vol
+//         • cache négatif court pour les échecs / ZERO_RESULTS
+//         • snapshot disque rechargé au démarrage (cache chaud)
+//         • resolve() strict (vide si échec) pour l’enrichissement des courses
+//  v1.5 – clients HTTP dédiés Google / OSM (OutboundHttpConfig) ; en-têtes
+//         par défaut portés par la configuration du client
 // ───────────────────────────────────────────────────────────
 package com.mobility.ride.service;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.mobility.ride.geo.GeoGrid;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
 public class GeoServiceImpl implements GeoService {
 
-    private final RestTemplate restTemplate;
+    /** Clients isolés par destination (pool, délais, cloison : app.http.clients). */
+    private final RestTemplate google;
+    private final RestTemplate osm;
 
     /** Clé Google Geocoding (déjà présente dans application-*.yml). */
     @Value("${app.geocoding.api-key:}")
@@ -50,66 +77,159 @@ public class GeoServiceImpl implements GeoService {
     @Value("${geo.reverse.contact:}")
     private String contact;
 
-    /** Cache TTL 24 h (clé = "lat,lng"), limite souple pour éviter la dérive mémoire. */
-    private static final long TTL_MS   = Duration.ofHours(24).toMillis();
-    private static final int  MAX_SIZE = 5000;
-
-    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
-
-    public GeoServiceImpl(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
-        // En-têtes par défaut (utile pour Nominatim)
-        ClientHttpRequestInterceptor ua = (req, body, ex) -> {
-            var h = req.getHeaders();
-            h.addIfAbsent("User-Agent", "mobility-app/1.0 (reverse geocoder)");
-            h.addIfAbsent("Accept", "application/json");
-            // n'injecte pas Accept-Language si déjà présent
-            if (!h.containsKey("Accept-Language")) {
-                h.add("Accept-Language", "fr"); // sera surchargé par paramètre ?language=...
-            }
-            return ex.execute(req, body);
-        };
-        this.restTemplate.getInterceptors().add(ua);
+    /** Fichier snapshot du cache (vide = désactivé). */
+    @Value("${geo.reverse.cache.snapshot-path:}")
+    private String snapshotPath;
+
+    /**
+     * Cache cellule → adresse. La cellule fait {@code quantum-m} mètres de côté :
+     * deux points à quelques mètres l’un de l’autre partagent la même entrée.
+     * {@link AsyncCache#get} garantit un seul chargement par clé en vol.
+     */
+    private final AsyncCache<Long, Resolved> cache;
+    private final ExecutorService            loader;
+    private final double                     cellDeg;
+    private final long                       ttlMs;
+    private final long                       negativeTtlMs;
+
+    public GeoServiceImpl(@Qualifier("googleRestTemplate") RestTemplate google,
+                          @Qualifier("osmRestTemplate")    RestTemplate osm,
+                          MeterRegistry metrics,
+                          @Value("${geo.reverse.cache.quantum-m:10}")       double quantumM,
+                          @Value("${geo.reverse.cache.max-size:200000}")    long   maxSize,
+                          @Value("${geo.reverse.cache.ttl-hours:24}")       long   ttlHours,
+                          @Value("${geo.reverse.cache.negative-ttl-sec:60}") long  negativeTtlSec,
+                          @Value("${geo.reverse.cache.loader-threads:8}")   int    loaderThreads) {
+        this.google        = google;
+        this.osm           = osm;
+        this.cellDeg       = quantumM / (GeoGrid.KM_PER_DEG_LAT * 1_000);
+        this.ttlMs         = TimeUnit.HOURS.toMillis(ttlHours);
+        this.negativeTtlMs = TimeUnit.SECONDS.toMillis(negativeTtlSec);
+
+        AtomicInteger n = new AtomicInteger();
+        this.loader = Executors.newFixedThreadPool(loaderThreads, r -> {
+            Thread t = new Thread(r, "geo-reverse-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new ResolvedExpiry())
+                .executor(loader)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(metrics, cache, "geo.reverse");
     }
 
     @Override
     public String reverse(Double lat, Double lng) {
-        if (lat == null || lng == null) return "Adresse inconnue";
+        // fallback final : jamais null (échec mis en cache négatif, libellé propre au point)
+        return resolve(lat, lng).orElseGet(() -> GeoService.coordinates(lat, lng));
+    }
 
-        // clé de cache stable, insensible au locale (separateur '.')
-        final String key = String.format(Locale.ROOT, "%.5f,%.5f", lat, lng);
+    @Override
+    public Optional<String> resolve(Double lat, Double lng) {
+        if (lat == null || lng == null) return Optional.empty();
 
-        // 1) cache
-        CacheEntry hit = cache.get(key);
-        if (hit != null && !hit.isExpired()) return hit.address;
+        // clé spatiale quantifiée : même cellule ⇒ même entrée, même chargement
+        final long key = GeoGrid.cellKey(lat, lng, cellDeg);
+
+        try {
+            Resolved r = cache.get(key, (k, exec) -> CompletableFuture.supplyAsync(() -> load(k), exec)).join();
+            return r.found() ? Optional.of(r.address()) : Optional.empty();
+        } catch (Exception e) {
+            log.warn("[GeoService] reverse({}) FAIL → {}", GeoService.coordinates(lat, lng), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /* ───────────────────────── Chargement (cache miss) ───────────────────────── */
+
+    /** Résout le centre de la cellule : Google d’abord, OSM ensuite. */
+    private Resolved load(long key) {
+        double lat = (GeoGrid.rowOf(key) + 0.5) * cellDeg - 90.0;
+        double lng = (GeoGrid.colOf(key) + 0.5) * cellDeg - 180.0;
 
         String label = null;
 
-        // 2) Google d’abord (plus précis/rapide)
+        // 1) Google d’abord (plus précis/rapide)
         try {
             label = tryGoogle(lat, lng);
         } catch (Exception e) {
-            log.warn("[GeoService] Google reverse({}) FAIL → {}", key, e.getMessage());
+            log.warn("[GeoService] Google reverse({}) FAIL → {}", GeoService.coordinates(lat, lng), e.getMessage());
         }
 
-        // 3) OSM fallback si nécessaire
+        // 2) OSM fallback si nécessaire
         if (!StringUtils.hasText(label) && osmFallbackEnabled) {
             try {
                 label = tryOsm(lat, lng);
             } catch (Exception e) {
-                log.warn("[GeoService] OSM reverse({}) FAIL → {}", key, e.getMessage());
+                log.warn("[GeoService] OSM reverse({}) FAIL → {}", GeoService.coordinates(lat, lng), e.getMessage());
             }
         }
 
-        // 4) fallback final : jamais null
-        if (!StringUtils.hasText(label)) {
-            label = key;
+        return StringUtils.hasText(label) ? Resolved.hit(label) : Resolved.miss();
+    }
+
+    /* ───────────────────────── Snapshot disque ───────────────────────── */
+
+    /** Recharge le snapshot (entrées positives, âge conservé). */
+    @PostConstruct
+    void loadSnapshot() {
+        if (!StringUtils.hasText(snapshotPath)) return;
+        Path file = Path.of(snapshotPath);
+        if (!Files.isRegularFile(file)) return;
+
+        int loaded = 0;
+        long now   = System.currentTimeMillis();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] p = line.split("\t", 3);
+                if (p.length != 3) continue;
+                long ts = Long.parseLong(p[1]);
+                if (now - ts >= ttlMs) continue;               // déjà expirée
+                cache.put(Long.parseLong(p[0]),
+                        CompletableFuture.completedFuture(new Resolved(p[2], true, ts)));
+                loaded++;
+            }
+            log.info("🗺️  Geo cache : {} adresse(s) rechargée(s) depuis {}", loaded, file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("[GeoService] snapshot illisible ({}) → {}", file, e.getMessage());
+        }
+    }
+
+    /** Écrit les entrées positives (fichier temporaire puis renommage atomique). */
+    @Scheduled(fixedDelayString = "${geo.reverse.cache.snapshot-ms:600000}",
+               initialDelayString = "${geo.reverse.cache.snapshot-ms:600000}")
+    public void writeSnapshot() {
+        if (!StringUtils.hasText(snapshotPath)) return;
+        Path file = Path.of(snapshotPath);
+        int written = 0;
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "geo-reverse", ".tmp");
+            try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<Long, Resolved> e : cache.synchronous().asMap().entrySet()) {
+                    Resolved r = e.getValue();
+                    if (!r.found()) continue;
+                    out.write(e.getKey() + "\t" + r.ts() + "\t" + r.address().replaceAll("[\\t\\r\\n]", " "));
+                    out.newLine();
+                    written++;
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("[GeoService] snapshot : {} adresse(s) → {}", written, file);
+        } catch (IOException e) {
+            log.warn("[GeoService] snapshot non écrit ({}) → {}", file, e.getMessage());
         }
+    }
 
-        // 5) cache + petite purge
-        cache.put(key, new CacheEntry(label));
-        pruneCache();
-        return label;
+    @PreDestroy
+    void shutdown() {
+        writeSnapshot();
+        loader.shutdownNow();
     }
 
     /* ───────────────────────── Internes ───────────────────────── */
@@ -123,7 +243,7 @@ public class GeoServiceImpl implements GeoService {
                 + "&result_type=street_address|route|premise"
                 + "&key=" + enc(googleApiKey);
 
-        GeocodeResponse resp = restTemplate.getForObject(url, GeocodeResponse.class);
+        GeocodeResponse resp = google.getForObject(url, GeocodeResponse.class);
         if (resp == null || resp.results == null || resp.results.isEmpty() || !"OK".equals(resp.status)) {
             return null; // ZERO_RESULTS / OVER_QUERY_LIMIT / REQUEST_DENIED → on laisse le fallback gérer
         }
@@ -140,7 +260,7 @@ public class GeoServiceImpl implements GeoService {
         if (StringUtils.hasText(contact)) {
             url.append("&email=").append(enc(contact)); // recommandé par la policy OSM
         }
-        OsmResponse resp = restTemplate.getForObject(url.toString(), OsmResponse.class);
+        OsmResponse resp = osm.getForObject(url.toString(), OsmResponse.class);
         return (resp != null && StringUtils.hasText(resp.displayName)) ? resp.displayName : null;
     }
 
@@ -148,17 +268,6 @@ public class GeoServiceImpl implements GeoService {
         return URLEncoder.encode(s == null ? "" : s, StandardCharsets.UTF_8);
     }
 
-    private void pruneCache() {
-        if (cache.size() <= MAX_SIZE) return;
-        // 1) jette les expirés
-        cache.entrySet().removeIf(e -> e.getValue().isExpired());
-        // 2) si encore trop gros, purge simple (fail-safe)
-        if (cache.size() > MAX_SIZE) {
-            log.debug("[GeoService] cache size={} > {} → clear()", cache.size(), MAX_SIZE);
-            cache.clear();
-        }
-    }
-
     /* -------- DTO Google -------- */
     @JsonIgnoreProperties(ignoreUnknown = true)
     static class GeocodeResponse {
@@ -178,9 +287,29 @@ public class GeoServiceImpl implements GeoService {
         public String displayName;
     }
 
-    /* -------- Cache TTL -------- */
-    private record CacheEntry(String address, long ts) {
-        CacheEntry(String address) { this(address, System.currentTimeMillis()); }
-        boolean isExpired() { return System.currentTimeMillis() - ts > TTL_MS; }
+    /* -------- Entrée de cache -------- */
+
+    /** Adresse résolue ({@code found}) ou échec mis en cache négatif ; {@code ts} = résolution. */
+    private record Resolved(String address, boolean found, long ts) {
+        static Resolved hit(String address) { return new Resolved(address, true, System.currentTimeMillis()); }
+        static Resolved miss()              { return new Resolved(null, false, System.currentTimeMillis()); }
+    }
+
+    /** TTL long pour les adresses, court pour les échecs ; l’âge d’une entrée rechargée est conservé. */
+    private final class ResolvedExpiry implements Expiry<Long, Resolved> {
+        @Override
+        public long expireAfterCreate(Long key, Resolved r, long currentTime) {
+            long ttl = r.found() ? ttlMs : negativeTtlMs;
+            long age = Math.max(0, System.currentTimeMillis() - r.ts());
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttl - age));
+        }
+        @Override
+        public long expireAfterUpdate(Long key, Resolved r, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, r, currentTime);
+        }
+        @Override
+        public long expireAfterRead(Long key, Resolved r, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
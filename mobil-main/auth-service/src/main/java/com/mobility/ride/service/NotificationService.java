@@ -1,9 +1,8 @@
 package com.mobility.ride.service;
 
-import com.mobility.auth.model.PushToken;
-import com.mobility.auth.model.User;
-import com.mobility.auth.repository.PushTokenRepository;
-import com.mobility.auth.repository.UserRepository;
+import com.mobility.auth.service.PushTokenCache;
+import com.mobility.auth.service.UserDisplayCache;
+import com.mobility.auth.service.UserDisplayCache.UserDisplay;
 import com.mobility.ride.model.Ride;
 import com.mobility.ride.model.RideStatus;
 import com.mobility.ride.service.push.PushGateway;
@@ -12,7 +11,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Service métier de notifications (changement de statut ride + chat).
@@ -23,14 +21,20 @@ import java.util.stream.Collectors;
 public class NotificationService {
 
     private final PushGateway push;
-    private final PushTokenRepository tokenRepo;
-    private final UserRepository userRepo;
+    private final PushTokenCache tokenCache;
+    private final UserDisplayCache userDisplay;
 
     /* ========== RIDE STATUS ========== */
     @Transactional(readOnly = true)
     public void notifyRideStatus(Ride ride) {
         if (ride == null) return;
-        RideStatus s = ride.getStatus();
+        notifyRideStatus(ride.getId(), ride.getStatus(), ride.getRiderId(), ride.getDriverId());
+    }
+
+    /** Variante sans entité (livraison différée par l’outbox). */
+    @Transactional(readOnly = true)
+    public void notifyRideStatus(Long rideId, RideStatus s, Long riderId, Long driverId) {
+        if (rideId == null || s == null) return;
 
         String titleRider;
         String bodyRider;
@@ -41,13 +45,13 @@ public class NotificationService {
         switch (s) {
             case ACCEPTED -> {
                 titleRider  = "Chauffeur trouvé";
-                bodyRider   = "Votre course #" + ride.getId() + " a été acceptée.";
+                bodyRider   = "Votre course #" + rideId + " a été acceptée.";
                 titleDriver = "Course acceptée";
-                bodyDriver  = "Vous avez accepté la course #" + ride.getId();
+                bodyDriver  = "Vous avez accepté la course #" + rideId;
             }
             case EN_ROUTE -> {
                 titleRider  = "Chauffeur en route";
-                bodyRider   = "Il arrive vers vous. Course #" + ride.getId();
+                bodyRider   = "Il arrive vers vous. Course #" + rideId;
                 titleDriver = "Navigation démarrée";
                 bodyDriver  = "En route vers le pickup.";
             }
@@ -65,19 +69,19 @@ public class NotificationService {
             }
             case COMPLETED -> {
                 titleRider  = "Trajet terminé";
-                bodyRider   = "Merci ! Reçu #" + ride.getId();
+                bodyRider   = "Merci ! Reçu #" + rideId;
                 titleDriver = "Course terminée";
                 bodyDriver  = "Bien joué.";
             }
             case CANCELLED -> {
                 titleRider  = "Course annulée";
-                bodyRider   = "Votre course #" + ride.getId() + " a été annulée.";
+                bodyRider   = "Votre course #" + rideId + " a été annulée.";
                 titleDriver = "Course annulée";
                 bodyDriver  = "La course a été annulée.";
             }
             case NO_SHOW -> {
                 titleRider  = "Absence constatée";
-                bodyRider   = "Course #" + ride.getId() + " annulée (no-show).";
+                bodyRider   = "Course #" + rideId + " annulée (no-show).";
                 titleDriver = "No-show";
                 bodyDriver  = "No-show enregistré.";
             }
@@ -86,20 +90,21 @@ public class NotificationService {
 
         Map<String,String> data = Map.of(
                 "type", "ride_status",
-                "rideId", String.valueOf(ride.getId()),
-                "status", ride.getStatus().name()
+                "rideId", String.valueOf(rideId),
+                "status", s.name()
         );
 
+        // Tokens rider + driver en un seul accès au cache
+        Map<Long, List<String>> tokens = tokenCache.tokensOf(Arrays.asList(riderId, driverId));
+
         // Rider
-        if (ride.getRiderId() != null) {
-            List<String> tks = tokensOfUser(ride.getRiderId());
-            push.send(tks, titleRider, bodyRider, data);
+        if (riderId != null) {
+            push.send(tokens.getOrDefault(riderId, List.of()), titleRider, bodyRider, data);
         }
 
         // Driver
-        if (ride.getDriverId() != null) {
-            List<String> tks = tokensOfUser(ride.getDriverId());
-            push.send(tks, titleDriver, bodyDriver, data);
+        if (driverId != null) {
+            push.send(tokens.getOrDefault(driverId, List.of()), titleDriver, bodyDriver, data);
         }
     }
 
@@ -108,23 +113,16 @@ public class NotificationService {
     public void notifyChat(Long toUserId, Long fromUserId, Long rideId, String preview) {
         if (toUserId == null) return;
 
-        User from = (fromUserId == null) ? null : userRepo.findById(fromUserId).orElse(null);
+        UserDisplay from = (fromUserId == null) ? null
+                : userDisplay.of(List.of(fromUserId)).get(fromUserId);
         String fromName = (from == null) ? "Message" :
-                Optional.ofNullable(from.getFirstName()).orElse("Message");
+                Optional.ofNullable(from.firstName()).orElse("Message");
 
         Map<String,String> data = new HashMap<>();
         data.put("type", "chat");
         if (rideId != null) data.put("rideId", String.valueOf(rideId));
 
-        List<String> tks = tokensOfUser(toUserId);
+        List<String> tks = tokenCache.tokensOf(toUserId);
         push.send(tks, fromName, (preview == null || preview.isBlank()) ? "Nouveau message" : preview, data);
     }
-
-    private List<String> tokensOfUser(Long userId) {
-        // Requiert PushTokenRepository#findAllByUserIdIn(List<Long>) — tu l’as déjà (utilisé par l’ancien ChatService)
-        return tokenRepo.findAllByUserIdIn(List.of(userId))
-                .stream()
-                .map(PushToken::getToken)
-                .collect(Collectors.toList());
-    }
 }
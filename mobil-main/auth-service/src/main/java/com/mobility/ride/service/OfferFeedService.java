@@ -0,0 +1,182 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/OfferFeedService.java
+//  v2025-10-15 – feed d’offres chauffeur poussé en WebSocket (plus de polling)
+//               • abonnement par session STOMP (position + rayon)
+//               • grille des abonnés → fan-out limité aux cellules touchées
+//               • deltas ADDED / REMOVED pilotés par OpenRideChangedEvent
+//  v2025-10-16 – REQUESTED → SCHEDULED retire l’offre du feed
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service;
+
+import com.mobility.ride.dto.OfferFeedMessage;
+import com.mobility.ride.dto.OfferSubscribeRequest;
+import com.mobility.ride.event.OpenRideChangedEvent;
+import com.mobility.ride.event.OpenRideChangedEvent.Change;
+import com.mobility.ride.geo.GeoGrid;
+import com.mobility.ride.model.RideStatus;
+import com.mobility.ride.service.OpenRideIndex.OpenRide;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <h2>OfferFeedService</h2>
+ *
+ * <p>Un chauffeur envoie sa position sur {@code /app/offers.subscribe} ; il
+ * reçoit immédiatement un SNAPSHOT puis uniquement les deltas sur
+ * {@code /user/queue/offers}. Chaque abonnement est rattaché à une
+ * <em>session</em> STOMP (un chauffeur connecté sur deux appareils reçoit
+ * le feed correspondant à chacun).</p>
+ *
+ * <p>Index des abonnés : cellule de grille → sessions dont le cercle recouvre
+ * la cellule. Une course qui entre ou sort de l’état ouvert ne touche que
+ * la cellule de son pickup, puis un test de distance exact par abonné.</p>
+ */
+@Slf4j
+@Service
+public class OfferFeedService {
+
+    public static final String DESTINATION = "/queue/offers";
+
+    private static final double DEF_RADIUS_KM = 3.0;
+
+    /** Abonnement d’une session (immuable, remplacé à chaque re-subscribe). */
+    private record Subscription(String sessionId, String user,
+                                double lat, double lng, double radiusKm, long[] cells) { }
+
+    private final SimpMessagingTemplate ws;
+    private final DriverFeedService     feedService;
+    private final double                cellDeg;
+
+    private final Map<String, Subscription> bySession = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>>    cells     = new ConcurrentHashMap<>();
+
+    private final Counter pushed;
+
+    public OfferFeedService(SimpMessagingTemplate ws,
+                            DriverFeedService feedService,
+                            MeterRegistry metrics,
+                            @Value("${app.offers.feed.cell-deg:0.05}") double cellDeg) {
+        this.ws          = ws;
+        this.feedService = feedService;
+        this.cellDeg     = cellDeg;
+        this.pushed      = Counter.builder("offers.feed.pushed").register(metrics);
+        Gauge.builder("offers.feed.subscribers", bySession, Map::size).register(metrics);
+    }
+
+    /* ═════════════ 1) Abonnement ═════════════ */
+
+    /** (Re)abonne la session puis lui pousse un instantané complet. */
+    public void subscribe(String sessionId, String user, OfferSubscribeRequest req) {
+        double radius = req.radiusKm() == null ? DEF_RADIUS_KM : req.radiusKm();
+        Subscription sub = new Subscription(sessionId, user, req.lat(), req.lng(), radius,
+                coveringCells(req.lat(), req.lng(), radius));
+
+        bySession.compute(sessionId, (id, prev) -> {
+            if (prev != null) unlink(prev);
+            for (long c : sub.cells())
+                cells.compute(c, (k, s) -> {
+                    Set<String> set = s != null ? s : ConcurrentHashMap.newKeySet();
+                    set.add(id);
+                    return set;
+                });
+            return sub;
+        });
+
+        send(sub, OfferFeedMessage.snapshot(
+                feedService.findOpenRides(req.lat(), req.lng(), radius)));
+    }
+
+    public void unsubscribe(String sessionId) {
+        bySession.computeIfPresent(sessionId, (id, prev) -> {
+            unlink(prev);
+            return null;
+        });
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent e) {
+        unsubscribe(e.getSessionId());
+    }
+
+    /* ═════════════ 2) Deltas ═════════════ */
+
+    @EventListener
+    public void onOpenRideChanged(OpenRideChangedEvent e) {
+        OpenRide r = e.getRide();
+        boolean immediate = r.status() == RideStatus.REQUESTED;   // feed = courses immédiates
+        // Course planifiée : seul un UPDATED compte (elle quittait le feed : REQUESTED → SCHEDULED)
+        if (!immediate && e.getChange() != Change.UPDATED) return;
+
+        Set<String> sessions = cells.get(GeoGrid.cellKey(r.pickupLat(), r.pickupLng(), cellDeg));
+        if (sessions == null || sessions.isEmpty()) return;
+
+        for (String sessionId : sessions) {
+            Subscription sub = bySession.get(sessionId);
+            if (sub == null) continue;
+            double d = GeoGrid.haversineKm(sub.lat(), sub.lng(), r.pickupLat(), r.pickupLng());
+            if (d > sub.radiusKm()) continue;
+
+            try {
+                send(sub, switch (e.getChange()) {
+                    case ADDED   -> OfferFeedMessage.added(feedService.toOffer(r, d));
+                    case UPDATED -> immediate ? OfferFeedMessage.added(feedService.toOffer(r, d))
+                                              : OfferFeedMessage.removed(r.rideId());
+                    case REMOVED -> OfferFeedMessage.removed(r.rideId());
+                });
+            } catch (Exception ex) {
+                log.warn("⚠️  Offer feed – envoi session {} échoué : {}", sessionId, ex.getMessage());
+            }
+        }
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    /** Envoi ciblé sur la session (et non sur toutes les sessions de l’utilisateur). */
+    private void send(Subscription sub, OfferFeedMessage msg) {
+        ws.convertAndSendToUser(sub.user(), DESTINATION, msg, sessionHeaders(sub.sessionId()));
+        pushed.increment();
+    }
+
+    private static MessageHeaders sessionHeaders(String sessionId) {
+        SimpMessageHeaderAccessor h = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        h.setSessionId(sessionId);
+        h.setLeaveMutable(true);
+        return h.getMessageHeaders();
+    }
+
+    private long[] coveringCells(double lat, double lng, double radiusKm) {
+        double dLat = GeoGrid.latDelta(radiusKm);
+        double dLng = Math.min(180.0, GeoGrid.lngDelta(radiusKm, lat));
+        int r0 = GeoGrid.row(lat - dLat, cellDeg), r1 = GeoGrid.row(lat + dLat, cellDeg);
+        int c0 = GeoGrid.col(lng - dLng, cellDeg), c1 = GeoGrid.col(lng + dLng, cellDeg);
+
+        long[] out = new long[(r1 - r0 + 1) * (c1 - c0 + 1)];
+        int i = 0;
+        for (int r = r0; r <= r1; r++)
+            for (int c = c0; c <= c1; c++)
+                out[i++] = GeoGrid.key(r, c);
+        return out;
+    }
+
+    private void unlink(Subscription sub) {
+        for (long c : sub.cells())
+            cells.computeIfPresent(c, (k, s) -> {
+                s.remove(sub.sessionId());
+                return s.isEmpty() ? null : s;
+            });
+    }
+}
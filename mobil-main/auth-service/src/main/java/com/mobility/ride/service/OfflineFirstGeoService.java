@@ -0,0 +1,60 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/OfflineFirstGeoService.java
+//  v2025-10-16 – géocodage inverse hors-ligne d’abord (gazetteer mmap),
+//               Google / Nominatim (GeoServiceImpl) seulement en secours
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service;
+
+import com.mobility.ride.geo.Gazetteer.Place;
+import com.mobility.ride.geo.OfflineGazetteer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Implémentation {@link GeoService} injectée partout ({@code @Primary}).
+ *
+ * <p>Une rue ou un POI du gazetteer à moins de {@code geo.offline.street-radius-m}
+ * répond en quelques microsecondes, sans réseau ; sinon la requête part vers
+ * {@link GeoServiceImpl} (cache spatial + Google / OSM).</p>
+ */
+@Primary
+@Service
+public class OfflineFirstGeoService implements GeoService {
+
+    private final OfflineGazetteer gazetteer;
+    private final GeoServiceImpl   online;
+
+    private final Counter offlineHits;
+    private final Counter onlineFallbacks;
+
+    public OfflineFirstGeoService(OfflineGazetteer gazetteer,
+                                  GeoServiceImpl online,
+                                  MeterRegistry metrics) {
+        this.gazetteer       = gazetteer;
+        this.online          = online;
+        this.offlineHits     = Counter.builder("geo.reverse.source").tag("source", "offline").register(metrics);
+        this.onlineFallbacks = Counter.builder("geo.reverse.source").tag("source", "online").register(metrics);
+    }
+
+    @Override
+    public String reverse(Double lat, Double lng) {
+        return resolve(lat, lng).orElseGet(() -> GeoService.coordinates(lat, lng));
+    }
+
+    @Override
+    public Optional<String> resolve(Double lat, Double lng) {
+        if (lat == null || lng == null) return Optional.empty();
+
+        Optional<String> local = gazetteer.nearestStreet(lat, lng).map(Place::label);
+        if (local.isPresent()) {
+            offlineHits.increment();
+            return local;
+        }
+        onlineFallbacks.increment();
+        return online.resolve(lat, lng);
+    }
+}
@@ -0,0 +1,283 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/OpenRideIndex.java
+//  v2025-10-14 – index mémoire des courses ouvertes (REQUESTED / SCHEDULED)
+//               • alimenté par RideStatusChangedEvent (AFTER_COMMIT)
+//               • MySQL sollicité uniquement au démarrage (reprise)
+//               • recherche : cellules → bounding-box → haversine
+//  v2025-10-15 – OpenRideChangedEvent (feed d’offres poussé en WebSocket)
+//  v2025-10-16 – adresses résolues après coup (RideAddressEnricher)
+//  v2025-10-17 – événements AFTER_COMMIT désordonnés : @Version + pierres tombales
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mobility.ride.event.OpenRideChangedEvent;
+import com.mobility.ride.event.OpenRideChangedEvent.Change;
+import com.mobility.ride.event.RideStatusChangedEvent;
+import com.mobility.ride.geo.GeoGrid;
+import com.mobility.ride.model.ProductType;
+import com.mobility.ride.model.Ride;
+import com.mobility.ride.model.RideStatus;
+import com.mobility.ride.repository.RideRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * <h2>OpenRideIndex</h2>
+ *
+ * <p>Remplace les requêtes natives {@code ST_Distance_Sphere} (scan complet des
+ * courses REQUESTED à chaque polling chauffeur) par un index en mémoire :</p>
+ * <ul>
+ *   <li>{@code byId}  : rideId → instantané {@link OpenRide} immuable ;</li>
+ *   <li>{@code cells} : cellule de grille → rideIds (pickup).</li>
+ * </ul>
+ *
+ * <p>Toute transition publiée via {@link RideStatusChangedEvent} met l’index
+ * à jour une fois la transaction validée. Un rollback ne laisse donc aucune
+ * trace.</p>
+ *
+ * <p>Rien n’ordonne les événements AFTER_COMMIT de transactions concurrentes :</p>
+ * <ul>
+ *   <li>un instantané plus ancien ({@code @Version} inférieure) que l’entrée
+ *       indexée est ignoré ;</li>
+ *   <li>une course retirée laisse une pierre tombale
+ *       ({@code tombstone-ttl-min}) : aucune transition ne rouvre une course
+ *       fermée, un événement « ouvert » arrivé après le retrait est périmé.
+ *       Les transitions bulk ne portant pas de version, c’est la pierre
+ *       tombale – et non la version – qui tranche.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class OpenRideIndex {
+
+    /** Statuts « ouverts » (visibles dans les feeds chauffeur). */
+    public static final Set<RideStatus> OPEN_STATUSES =
+            EnumSet.of(RideStatus.REQUESTED, RideStatus.SCHEDULED);
+
+    /** Instantané immuable d’une course ouverte. */
+    public record OpenRide(Long           rideId,
+                           RideStatus     status,
+                           ProductType    productType,
+                           double         pickupLat,
+                           double         pickupLng,
+                           Double         dropoffLat,
+                           Double         dropoffLng,
+                           String         pickupAddress,
+                           String         dropoffAddress,
+                           BigDecimal     totalFare,
+                           String         currency,
+                           BigDecimal     weightKg,
+                           OffsetDateTime createdAt,
+                           OffsetDateTime scheduledAt,
+                           long           version) {
+
+        static OpenRide of(Ride r) {
+            return new OpenRide(r.getId(), r.getStatus(), r.getProductType(),
+                    r.getPickupLat(), r.getPickupLng(), r.getDropoffLat(), r.getDropoffLng(),
+                    r.getPickupAddress(), r.getDropoffAddress(),
+                    r.getTotalFare(), r.getCurrency(), r.getWeightKg(),
+                    r.getCreatedAt(), r.getScheduledAt(),
+                    r.getVersion() == null ? 0 : r.getVersion());
+        }
+
+        OpenRide withAddresses(String pickup, String dropoff) {
+            return new OpenRide(rideId, status, productType, pickupLat, pickupLng, dropoffLat, dropoffLng,
+                    pickupAddress  != null ? pickupAddress  : pickup,
+                    dropoffAddress != null ? dropoffAddress : dropoff,
+                    totalFare, currency, weightKg, createdAt, scheduledAt, version);
+        }
+    }
+
+    /** Résultat de recherche : course + distance au point de requête. */
+    public record Hit(OpenRide ride, double distanceKm) { }
+
+    private final RideRepository            rideRepository;
+    private final ApplicationEventPublisher events;
+    private final double                    cellDeg;
+
+    private final Map<Long, OpenRide>  byId  = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+    /** rideIds retirés récemment : un événement « ouvert » en retard ne les réindexe pas. */
+    private final Cache<Long, Boolean> closed;
+
+    public OpenRideIndex(RideRepository rideRepository,
+                         ApplicationEventPublisher events,
+                         @Value("${app.rides.open-index.cell-deg:0.05}")         double cellDeg,
+                         @Value("${app.rides.open-index.tombstone-ttl-min:60}") long   tombstoneTtlMin) {
+        this.rideRepository = rideRepository;
+        this.events         = events;
+        this.cellDeg        = cellDeg;
+        this.closed         = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(tombstoneTtlMin))
+                .build();
+    }
+
+    /* ═════════════ 1) Reprise au démarrage ═════════════ */
+    @PostConstruct
+    void recover() {
+        int n = 0;
+        for (RideStatus s : OPEN_STATUSES) {
+            for (Ride r : rideRepository.findAllByStatus(s)) {
+                if (put(r) != null) n++;
+            }
+        }
+        log.info("📍 OpenRideIndex – {} course(s) ouverte(s) rechargée(s)", n);
+    }
+
+    /* ═════════════ 2) Mise à jour (post-commit) ═════════════ */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(RideStatusChangedEvent e) {
+        Optional<Ride> ride = e.getRide();
+        if (OPEN_STATUSES.contains(e.getStatus()) && ride.isPresent()) {
+            OpenRide[] prev = { null };
+            OpenRide   next = put(ride.get(), prev);
+            if (next != null)
+                events.publishEvent(new OpenRideChangedEvent(this,
+                        prev[0] == null ? Change.ADDED : Change.UPDATED, next));
+        } else if (!OPEN_STATUSES.contains(e.getStatus())) {
+            OpenRide prev = remove(e.getRideId());
+            if (prev != null)
+                events.publishEvent(new OpenRideChangedEvent(this, Change.REMOVED, prev));
+        }
+    }
+
+    /** Adresses résolues en asynchrone : instantané remplacé (même cellule), feed notifié. */
+    public void updateAddresses(Long rideId, String pickup, String dropoff) {
+        OpenRide next = byId.computeIfPresent(rideId, (id, prev) -> prev.withAddresses(pickup, dropoff));
+        if (next != null)
+            events.publishEvent(new OpenRideChangedEvent(this, Change.UPDATED, next));
+    }
+
+    /* ═════════════ 3) Lectures ═════════════ */
+
+    public Optional<OpenRide> get(Long rideId) {
+        return Optional.ofNullable(byId.get(rideId));
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /** Copie des instantanés satisfaisant le filtre (ordre indéterminé). */
+    public List<OpenRide> snapshot(Predicate<OpenRide> filter) {
+        return byId.values().stream().filter(filter).toList();
+    }
+
+    /**
+     * Courses ouvertes dont le pickup est à moins de {@code radiusKm},
+     * triées par distance croissante.
+     */
+    public List<Hit> near(double lat, double lng, double radiusKm, Predicate<OpenRide> filter) {
+        double dLat = GeoGrid.latDelta(radiusKm);
+        double dLng = Math.min(180.0, GeoGrid.lngDelta(radiusKm, lat));
+        double minLat = lat - dLat, maxLat = lat + dLat;
+        double minLng = lng - dLng, maxLng = lng + dLng;
+
+        int r0 = GeoGrid.row(minLat, cellDeg), r1 = GeoGrid.row(maxLat, cellDeg);
+        int c0 = GeoGrid.col(minLng, cellDeg), c1 = GeoGrid.col(maxLng, cellDeg);
+
+        List<Hit> out = new ArrayList<>();
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                Set<Long> ids = cells.get(GeoGrid.key(r, c));
+                if (ids == null) continue;
+                for (Long id : ids) {
+                    OpenRide o = byId.get(id);
+                    if (o == null) continue;
+                    /* bounding-box : rejet sans trigonométrie */
+                    if (o.pickupLat() < minLat || o.pickupLat() > maxLat
+                            || o.pickupLng() < minLng || o.pickupLng() > maxLng) continue;
+                    if (!filter.test(o)) continue;
+                    double d = GeoGrid.haversineKm(lat, lng, o.pickupLat(), o.pickupLng());
+                    if (d <= radiusKm) out.add(new Hit(o, d));
+                }
+            }
+        }
+        out.sort(Comparator.comparingDouble(Hit::distanceKm));
+        return out;
+    }
+
+    /* ═════════════ 4) Internes ═════════════ */
+
+    private OpenRide put(Ride r) {
+        return put(r, new OpenRide[1]);
+    }
+
+    /**
+     * @param prevOut reçoit l’instantané remplacé (ou {@code null})
+     * @return l’instantané indexé, {@code null} si ignoré (course retirée,
+     *         instantané plus ancien que l’entrée en place)
+     */
+    private OpenRide put(Ride r, OpenRide[] prevOut) {
+        if (r.getId() == null || r.getPickupLat() == null || r.getPickupLng() == null) return null;
+        OpenRide next = OpenRide.of(r);
+        long cell = GeoGrid.cellKey(next.pickupLat(), next.pickupLng(), cellDeg);
+
+        boolean[] stale = { false };
+        byId.compute(next.rideId(), (id, prev) -> {
+            if (closed.getIfPresent(id) != null || (prev != null && prev.version() > next.version())) {
+                stale[0] = true;
+                return prev;
+            }
+            prevOut[0] = prev;
+            if (prev != null) {
+                long prevCell = GeoGrid.cellKey(prev.pickupLat(), prev.pickupLng(), cellDeg);
+                if (prevCell != cell) unlink(prevCell, id);
+            }
+            cells.compute(cell, (k, s) -> {
+                Set<Long> set = s != null ? s : ConcurrentHashMap.newKeySet();
+                set.add(id);
+                return set;
+            });
+            return next;
+        });
+        if (stale[0]) {
+            log.debug("📍 OpenRideIndex – instantané périmé ignoré (ride {} v{})", next.rideId(), next.version());
+            return null;
+        }
+        return next;
+    }
+
+    /**
+     * Pose la pierre tombale avant de retirer : un {@link #put} concurrent
+     * passe soit avant (puis est retiré), soit après (et la voit).
+     * @return l’instantané retiré, ou {@code null} s’il n’était pas indexé
+     */
+    private OpenRide remove(Long rideId) {
+        closed.put(rideId, Boolean.TRUE);
+        OpenRide[] removed = { null };
+        byId.computeIfPresent(rideId, (id, prev) -> {
+            unlink(GeoGrid.cellKey(prev.pickupLat(), prev.pickupLng(), cellDeg), id);
+            removed[0] = prev;
+            return null;
+        });
+        return removed[0];
+    }
+
+    private void unlink(long cell, Long rideId) {
+        cells.computeIfPresent(cell, (k, s) -> {
+            s.remove(rideId);
+            return s.isEmpty() ? null : s;
+        });
+    }
+}
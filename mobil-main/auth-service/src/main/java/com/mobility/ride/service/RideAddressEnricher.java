@@ -0,0 +1,236 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/RideAddressEnricher.java
+//  v2025-10-16 – adresses pickup / dropoff résolues une seule fois, en tâche de fond
+//               • déclenché après commit de la création (REQUESTED / SCHEDULED)
+//               • concurrence bornée, reprises avec back-off exponentiel
+//               • rattrapage périodique des courses restées sans adresse
+//  v2025-10-16 – rattrapage borné : fenêtre created_at + nombre de tours par course
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service;
+
+import com.mobility.ride.event.RideStatusChangedEvent;
+import com.mobility.ride.model.Ride;
+import com.mobility.ride.model.RideStatus;
+import com.mobility.ride.repository.RideRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h2>RideAddressEnricher</h2>
+ *
+ * <p>Les lectures (historique, feeds, détail) n’appellent plus jamais le
+ * géocodeur : elles lisent {@code rides.pickup_address / dropoff_address},
+ * renseignées ici une fois pour toutes.</p>
+ *
+ * <ul>
+ *   <li>{@code concurrency} appels simultanés au plus ; file de {@code queue}
+ *       tâches, au-delà la tâche est abandonnée et reprise par le rattrapage ;</li>
+ *   <li>un fournisseur muet ⇒ nouvel essai après {@code retry-backoff-ms × 2ⁿ},
+ *       jusqu’à {@code max-attempts} ;</li>
+ *   <li>le rattrapage parcourt les courses sans adresse par curseur
+ *       (id décroissant), limité aux {@code sweep-window-hours} dernières
+ *       heures, et reboucle en fin de fenêtre ;</li>
+ *   <li>chaque tour épuisé incrémente {@code rides.address_attempts} : après
+ *       {@code sweep-max-rounds} tours la course n’est plus reprise.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+public class RideAddressEnricher {
+
+    /** Courses à enrichir (coordonnées figées au moment de la soumission). */
+    private record Job(Long rideId,
+                       Double pickupLat, Double pickupLng, boolean needPickup,
+                       Double dropoffLat, Double dropoffLng, boolean needDropoff,
+                       int attempt) {
+
+        static Job of(Ride r) {
+            return new Job(r.getId(),
+                    r.getPickupLat(), r.getPickupLng(),
+                    r.getPickupAddress() == null && r.getPickupLat() != null,
+                    r.getDropoffLat(), r.getDropoffLng(),
+                    r.getDropoffAddress() == null && r.getDropoffLat() != null,
+                    0);
+        }
+
+        boolean needed() { return needPickup || needDropoff; }
+
+        Job retry(boolean pickupLeft, boolean dropoffLeft) {
+            return new Job(rideId, pickupLat, pickupLng, pickupLeft,
+                    dropoffLat, dropoffLng, dropoffLeft, attempt + 1);
+        }
+    }
+
+    private final GeoService     geo;
+    private final RideRepository rideRepository;
+    private final OpenRideIndex  openRides;
+
+    private final ThreadPoolExecutor       workers;
+    private final ScheduledExecutorService retries;
+    private final int                      maxAttempts;
+    private final long                     backoffMs;
+    private final int                      sweepBatch;
+    private final int                      sweepMaxRounds;
+    private final Duration                 sweepWindow;
+
+    /** Courses soumises et pas encore terminées (ni doublon, ni course perdue). */
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile long   sweepCursor = Long.MAX_VALUE;
+
+    private final Counter resolved;
+    private final Counter retried;
+    private final Counter failed;
+
+    public RideAddressEnricher(GeoService geo,
+                               RideRepository rideRepository,
+                               OpenRideIndex openRides,
+                               MeterRegistry metrics,
+                               @Value("${app.rides.addresses.concurrency:4}")         int  concurrency,
+                               @Value("${app.rides.addresses.queue:1000}")            int  queue,
+                               @Value("${app.rides.addresses.max-attempts:3}")        int  maxAttempts,
+                               @Value("${app.rides.addresses.retry-backoff-ms:2000}") long backoffMs,
+                               @Value("${app.rides.addresses.sweep-batch:100}")       int  sweepBatch,
+                               @Value("${app.rides.addresses.sweep-max-rounds:3}")    int  sweepMaxRounds,
+                               @Value("${app.rides.addresses.sweep-window-hours:48}") long sweepWindowHours) {
+        this.geo            = geo;
+        this.rideRepository = rideRepository;
+        this.openRides      = openRides;
+        this.maxAttempts    = maxAttempts;
+        this.backoffMs      = backoffMs;
+        this.sweepBatch     = sweepBatch;
+        this.sweepMaxRounds = sweepMaxRounds;
+        this.sweepWindow    = Duration.ofHours(sweepWindowHours);
+
+        AtomicInteger n = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue),
+                r -> daemon(r, "ride-address-" + n.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retries = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "ride-address-retry"));
+
+        this.resolved = Counter.builder("rides.addresses").tag("outcome", "resolved").register(metrics);
+        this.retried  = Counter.builder("rides.addresses").tag("outcome", "retried").register(metrics);
+        this.failed   = Counter.builder("rides.addresses").tag("outcome", "failed").register(metrics);
+    }
+
+    @PreDestroy
+    void stop() {
+        retries.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /* ═════════════ 1) Déclencheurs ═════════════ */
+
+    /** Création validée (REQUESTED / SCHEDULED) : adresses résolues hors transaction. */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(RideStatusChangedEvent e) {
+        if (e.getStatus() != RideStatus.REQUESTED && e.getStatus() != RideStatus.SCHEDULED) return;
+        e.getRide().map(Job::of).filter(Job::needed).ifPresent(this::submit);
+    }
+
+    /** Rattrapage : courses restées sans adresse (file pleine, redémarrage, fournisseur en panne). */
+    @Scheduled(fixedDelayString = "${app.rides.addresses.sweep-ms:60000}",
+               initialDelayString = "${app.rides.addresses.sweep-ms:60000}")
+    public void sweep() {
+        List<Ride> page = rideRepository.findAddressPending(sweepCursor,
+                OffsetDateTime.now().minus(sweepWindow), sweepMaxRounds, PageRequest.of(0, sweepBatch));
+        sweepCursor = page.size() < sweepBatch ? Long.MAX_VALUE : page.get(page.size() - 1).getId();
+
+        int queued = 0;
+        for (Ride r : page) {
+            Job job = Job.of(r);
+            if (job.needed() && submit(job)) queued++;
+        }
+        if (queued > 0) log.debug("🏷️  {} course(s) sans adresse remise(s) en file", queued);
+    }
+
+    /* ═════════════ 2) Traitement ═════════════ */
+
+    private boolean submit(Job job) {
+        if (!inFlight.add(job.rideId())) return false;
+        try {
+            workers.execute(() -> run(job));
+            return true;
+        } catch (RejectedExecutionException full) {
+            inFlight.remove(job.rideId());                     // le rattrapage s’en chargera
+            return false;
+        }
+    }
+
+    private void run(Job job) {
+        boolean again = false;
+        try {
+            String pickup  = job.needPickup()
+                    ? geo.resolve(job.pickupLat(),  job.pickupLng()).orElse(null)  : null;
+            String dropoff = job.needDropoff()
+                    ? geo.resolve(job.dropoffLat(), job.dropoffLng()).orElse(null) : null;
+
+            if (pickup != null || dropoff != null) {
+                rideRepository.updateAddresses(job.rideId(), pickup, dropoff);
+                openRides.updateAddresses(job.rideId(), pickup, dropoff);
+            }
+
+            boolean pickupLeft  = job.needPickup()  && pickup  == null;
+            boolean dropoffLeft = job.needDropoff() && dropoff == null;
+            if (!pickupLeft && !dropoffLeft) {
+                resolved.increment();
+            } else if (job.attempt() + 1 < maxAttempts) {
+                again = true;
+                retried.increment();
+                retries.schedule(() -> {
+                    try {
+                        workers.execute(() -> run(job.retry(pickupLeft, dropoffLeft)));
+                    } catch (RejectedExecutionException full) {
+                        inFlight.remove(job.rideId());
+                    }
+                }, backoffMs << job.attempt(), TimeUnit.MILLISECONDS);
+            } else {
+                failed.increment();
+                roundExhausted(job.rideId());
+                log.debug("Adresse ride #{} non résolue après {} essai(s)", job.rideId(), maxAttempts);
+            }
+        } catch (Exception ex) {
+            failed.increment();
+            roundExhausted(job.rideId());
+            log.warn("⚠️  Enrichissement adresse ride #{} échoué : {}", job.rideId(), ex.getMessage());
+        } finally {
+            if (!again) inFlight.remove(job.rideId());
+        }
+    }
+
+    /** Compte le tour pour que le rattrapage abandonne les échecs permanents. */
+    private void roundExhausted(Long rideId) {
+        try {
+            rideRepository.incrementAddressAttempts(rideId);
+        } catch (Exception ex) {
+            log.debug("address_attempts ride #{} non incrémenté : {}", rideId, ex.getMessage());
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -2,6 +2,10 @@
 //  FILE : src/main/java/com/mobility/ride/service/RideFlowService.java
 //  v2025-10-11 – ouvre automatiquement la room de chat après ACCEPT
 //               + déclenche les notifications push via NotificationService
+//  v2025-10-14 – RideStatusChangedEvent publié à chaque transition
+//  v2025-10-16 – attente figée à la prise en charge / fin / no-show
+//  v2025-10-16 – WebSocket & push via l’outbox (livrés après commit,
+//                hors du verrou de la course)
 // ─────────────────────────────────────────────────────────────────────────────
 package com.mobility.ride.service;
 
@@ -13,15 +17,17 @@ import com.mobility.auth.repository.PaymentMethodRepository;
 import com.mobility.auth.repository.UserRepository;
 import com.mobility.auth.repository.WalletTransactionRepository;
 import com.mobility.ride.dto.*;
+import com.mobility.ride.event.RideStatusChangedEvent;
 import com.mobility.ride.mapper.DtoMapper;
 import com.mobility.ride.model.Ride;
 import com.mobility.ride.model.RideStatus;
 import com.mobility.ride.repository.RideRepository;
+import com.mobility.ride.service.outbox.OutboxService;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -38,31 +44,29 @@ public class RideFlowService {
     private final PaymentMethodRepository     pmRepo;
     private final WalletTransactionRepository txnRepo;
     private final UserRepository              userRepo;
-    private final SimpMessagingTemplate       ws;
+    private final OutboxService               outbox;
+    private final ApplicationEventPublisher   events;
 
     /* ─────────────── Dépendance “lazy” ─────────────── */
     private final WaitTimeService waitTimeSvc;
 
-    /* ─────────────── Notifications push ─────────────── */
-    private final NotificationService notificationService;
-
     @Autowired
     public RideFlowService(RideRepository              rideRepo,
                            PaymentService              paymentSvc,
                            PaymentMethodRepository     pmRepo,
                            WalletTransactionRepository txnRepo,
                            UserRepository              userRepo,
-                           SimpMessagingTemplate       ws,
-                           @Lazy WaitTimeService       waitTimeSvc,
-                           NotificationService         notificationService) {
+                           OutboxService               outbox,
+                           ApplicationEventPublisher   events,
+                           @Lazy WaitTimeService       waitTimeSvc) {
         this.rideRepo            = rideRepo;
         this.paymentSvc          = paymentSvc;
         this.pmRepo              = pmRepo;
         this.txnRepo             = txnRepo;
         this.userRepo            = userRepo;
-        this.ws                  = ws;
+        this.outbox              = outbox;
+        this.events              = events;
         this.waitTimeSvc         = waitTimeSvc;
-        this.notificationService = notificationService;
     }
 
     // ═════════════════ 1) ACCEPT ═══════════════════════════════════════════
@@ -101,16 +105,16 @@ public class RideFlowService {
                 r.getId(), driver, rider, product, r.getAcceptedAt());
 
         /* 5-a. Diffusion temps-réel “match” */
-        ws.convertAndSend("/topic/ride/" + r.getId(), payload);
+        outbox.websocket(r.getId(), "/topic/ride/" + r.getId(), payload);
 
         /* 5-b. Ouvre la room de chat (notif front) */
-        ws.convertAndSend("/topic/ride/" + r.getId() + "/chat/open",
+        outbox.websocket(r.getId(), "/topic/ride/" + r.getId() + "/chat/open",
                 Map.of("rideId", r.getId()));
 
         publishOps(r);  // monitoring interne
 
         /* 6. Notifications push (rider & driver) */
-        notificationService.notifyRideStatus(r);
+        outbox.rideStatusPush(r);
 
         log.info("[FLOW] Ride #{} ACCEPTED by driver #{}", r.getId(), driverId);
     }
@@ -128,7 +132,7 @@ public class RideFlowService {
         publishOps(r);
 
         /* Notifications push */
-        notificationService.notifyRideStatus(r);
+        outbox.rideStatusPush(r);
     }
 
     // ═════════════════ 3) ARRIVED / WAITING ════════════════════════════════
@@ -145,7 +149,7 @@ public class RideFlowService {
         publishOps(r);
 
         /* Notifications push */
-        notificationService.notifyRideStatus(r);
+        outbox.rideStatusPush(r);
     }
 
     // ═════════════════ 4) START RIDE ═══════════════════════════════════════
@@ -157,12 +161,13 @@ public class RideFlowService {
 
         r.setStatus      (RideStatus.IN_PROGRESS);
         r.setPickupRealAt(OffsetDateTime.now());
+        WaitTimeService.settle(r, r.getPickupRealAt());
 
         waitTimeSvc.stopWaitingCountdown(rideId);
         publishOps(r);
 
         /* Notifications push */
-        notificationService.notifyRideStatus(r);
+        outbox.rideStatusPush(r);
     }
 
     // ═════════════════ 5) COMPLETE ═════════════════════════════════════════
@@ -176,12 +181,13 @@ public class RideFlowService {
         r.setDropoffRealAt  (OffsetDateTime.now());
         r.setDistanceKmReal (distanceKm);
         r.setDurationSecReal(durationSec);
+        WaitTimeService.settle(r, r.getDropoffRealAt());
 
         capturePayment(r);
         publishOps(r);
 
         /* Notifications push */
-        notificationService.notifyRideStatus(r);
+        outbox.rideStatusPush(r);
     }
 
     // ═════════════════ 6) CANCEL / NO_SHOW ═════════════════════════════════
@@ -191,9 +197,11 @@ public class RideFlowService {
         if (r.getStatus() == RideStatus.COMPLETED)
             throw new IllegalStateException("Completed ride cannot be cancelled");
 
+        boolean waiting = r.getStatus() == RideStatus.ARRIVED || r.getStatus() == RideStatus.WAITING;
         r.setStatus(reason == CancellationReason.NO_SHOW ? RideStatus.NO_SHOW
                 : RideStatus.CANCELLED);
         r.setCancelledAt(OffsetDateTime.now());
+        if (waiting) WaitTimeService.settle(r, r.getCancelledAt());
         r.setCancelReason(reason.name());
 
         if (reason == CancellationReason.NO_SHOW)
@@ -202,7 +210,7 @@ public class RideFlowService {
         publishOps(r);
 
         /* Notifications push */
-        notificationService.notifyRideStatus(r);
+        outbox.rideStatusPush(r);
     }
 
     /* ───────────────────── Helpers ───────────────────── */
@@ -211,10 +219,14 @@ public class RideFlowService {
                 .orElseThrow(() -> new EntityNotFoundException("RIDE_NOT_FOUND"));
     }
 
-    /** Flux “minimal” vers la console dispatch / monitoring. */
+    /**
+     * Flux “minimal” vers la console dispatch / monitoring
+     * + événement applicatif (index des courses ouvertes, …).
+     */
     private void publishOps(Ride r) {
-        ws.convertAndSend("/topic/driver/ops",
+        outbox.websocket(r.getId(), "/topic/driver/ops",
                 new RideFlowEvent(r.getId(), r.getStatus(), r.getDriverId()));
+        events.publishEvent(new RideStatusChangedEvent(this, r));
     }
 
     /* ───────────────────── Paiement final ───────────────────── */
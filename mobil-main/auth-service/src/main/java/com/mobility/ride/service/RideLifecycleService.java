@@ -18,16 +18,19 @@ import com.mobility.auth.model.enums.WalletTxnType;              // + CASH_PAYME
 import com.mobility.auth.repository.PaymentMethodRepository;
 import com.mobility.auth.repository.UserRepository;
 import com.mobility.auth.repository.WalletTransactionRepository;
+import com.mobility.ride.event.RideStatusChangedEvent;
 import com.mobility.ride.model.Ride;
 import com.mobility.ride.model.RideStatus;
 import com.mobility.ride.repository.RideRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.OffsetDateTime;
 
 @Slf4j
 @Service
@@ -39,6 +42,7 @@ public class RideLifecycleService {
     private final WalletTransactionRepository txnRepo;
     private final UserRepository              userRepo;
     private final PaymentService              paymentSvc;   // Stripe / stub / …
+    private final ApplicationEventPublisher   events;
 
     /* ═══════════════════════════════════════════════════════
        COMPLETE RIDE
@@ -57,6 +61,8 @@ public class RideLifecycleService {
 
         ride.setStatus(RideStatus.COMPLETED);
         ride.setTotalFare(finalFare);
+        WaitTimeService.settle(ride, OffsetDateTime.now());
+        events.publishEvent(new RideStatusChangedEvent(this, ride));
 
         /* ─── 2. Capture / règlement PSP ──────────────────── */
         try {
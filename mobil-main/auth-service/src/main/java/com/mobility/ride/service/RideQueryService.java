@@ -1,8 +1,8 @@
 package com.mobility.ride.service;
 
 import com.mobility.ride.dto.RideResponse;
-import com.mobility.ride.model.Ride;
-import com.mobility.ride.repository.RideRepository;
+import com.mobility.ride.model.RideStatus;
+import com.mobility.ride.service.OpenRideIndex.OpenRide;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -17,52 +17,54 @@ import java.util.List;
  *     autour d’un point (souvent le drop‑off du conducteur).
  * </p>
  * <ul>
- *     <li>Repose sur {@link RideRepository#findOpenNear(double, double, double)}
- *         introduit dans la v2025‑07‑25.</li>
+ *     <li>Repose sur {@link OpenRideIndex} (v2025‑10‑14) : aucune requête SQL,
+ *         l’index est tenu à jour à chaque transition de statut.</li>
  *     <li>Filtre en mémoire les demandes plus vieilles que <em>createdAt &gt; now‑3 min</em>
  *         (évite les vestiges si le scheduler de nettoyage tarde).</li>
- *     <li>Convertit chaque entité {@link Ride} en DTO {@link RideResponse}
- *         enrichi d’adresses lisibles via {@link GeoService#reverse(Double, Double)}.</li>
+ *     <li>Convertit chaque instantané {@link OpenRide} en DTO {@link RideResponse}
+ *         avec les adresses persistées par {@link RideAddressEnricher}
+ *         (secours « lat,lng », jamais d’appel réseau à la lecture).</li>
  * </ul>
  */
 @Service
 @RequiredArgsConstructor
 public class RideQueryService {
 
-    private final RideRepository rideRepo;
-    private final GeoService     geo;          // reverse‑geocoding déjà existant
+    private final OpenRideIndex openRides;
 
     /**
      * Liste les rides encore en statut <code>REQUESTED</code> dans un rayon
      * de <code>radiusKm</code> autour du point <code>(lat,lng)</code>.
      */
     public List<RideResponse> listOpen(double lat, double lng, double radiusKm) {
-        return rideRepo.findOpenNear(lat, lng, radiusKm)
+        OffsetDateTime minCreatedAt = OffsetDateTime.now().minusMinutes(3);
+        return openRides.near(lat, lng, radiusKm, r -> r.status() == RideStatus.REQUESTED
+                        // facultatif : ignorer les demandes trop anciennes (> 3 min)
+                        && r.createdAt().isAfter(minCreatedAt))
                 .stream()
-                // facultatif : ignorer les demandes trop anciennes (> 3 min)
-                .filter(r -> r.getCreatedAt()
-                        .isAfter(OffsetDateTime.now().minusMinutes(3)))
-                .map(this::toDto)
+                .map(h -> toDto(h.ride()))
                 .toList();
     }
 
     /* -------------------------------------------------------- */
     /*    Mapping interne  ➜  DTO exposé au front / driver      */
     /* -------------------------------------------------------- */
-    private RideResponse toDto(Ride r) {
+    private RideResponse toDto(OpenRide r) {
         return RideResponse.builder()
-                .rideId        (r.getId())
-                .status        (r.getStatus().name())
-                .productType   (r.getProductType().name())
-                .pickupLat     (r.getPickupLat())
-                .pickupLng     (r.getPickupLng())
-                .dropoffLat    (r.getDropoffLat())
-                .dropoffLng    (r.getDropoffLng())
-                .pickupAddress (geo.reverse(r.getPickupLat(),  r.getPickupLng()))
-                .dropoffAddress(geo.reverse(r.getDropoffLat(), r.getDropoffLng()))
-                .totalFare     (r.getTotalFare())
-                .currency      (r.getCurrency())
-                .createdAt     (r.getCreatedAt())
+                .rideId        (r.rideId())
+                .status        (r.status().name())
+                .productType   (r.productType().name())
+                .pickupLat     (r.pickupLat())
+                .pickupLng     (r.pickupLng())
+                .dropoffLat    (r.dropoffLat())
+                .dropoffLng    (r.dropoffLng())
+                .pickupAddress (r.pickupAddress() != null ? r.pickupAddress()
+                        : GeoService.coordinates(r.pickupLat(),  r.pickupLng()))
+                .dropoffAddress(r.dropoffAddress() != null ? r.dropoffAddress()
+                        : GeoService.coordinates(r.dropoffLat(), r.dropoffLng()))
+                .totalFare     (r.totalFare())
+                .currency      (r.currency())
+                .createdAt     (r.createdAt())
                 .build();
     }
 }
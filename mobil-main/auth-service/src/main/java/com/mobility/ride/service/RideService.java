@@ -3,14 +3,24 @@
 // v2025-10-13  – affichage fiable (rider/driver/colis), préfetch Users,
 //                feeds actifs, offres proches, transitions driver,
 //                alias listScheduled/listHistory, +completedAt & tri HISTORY.
+// v2025-10-14  – RideStatusChangedEvent à chaque transition,
+//                offres proches servies par OpenRideIndex.
+// v2025-10-16  – adresses lues en base (RideAddressEnricher), plus de
+//                géocodage inverse à chaque lecture.
+// v2025-10-16  – rider/driver lus via UserDisplayCache (projection, plus
+//                d’entités User chargées pour le mapping).
+// v2025-10-16  – historique paginé par curseur (created_at, id), filtré
+//                en SQL : plus de chargement de toutes les courses.
+// v2025-10-17  – première page d’historique sans curseur sentinelle.
 // ─────────────────────────────────────────────────────────────
 package com.mobility.ride.service;
 
-import com.mobility.auth.model.User;
-import com.mobility.auth.repository.UserRepository;
+import com.mobility.auth.service.UserDisplayCache;
+import com.mobility.auth.service.UserDisplayCache.UserDisplay;
 import com.mobility.ride.dto.RequestRideRequest;
 import com.mobility.ride.dto.RideResponse;
 import com.mobility.ride.dto.ScheduleRideRequest;
+import com.mobility.ride.event.RideStatusChangedEvent;
 import com.mobility.ride.model.DeliveryZone;
 import com.mobility.ride.model.Ride;
 import com.mobility.ride.model.RideOption;
@@ -18,14 +28,17 @@ import com.mobility.ride.model.RideStatus;
 import com.mobility.ride.repository.RideRepository;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -37,14 +50,37 @@ public class RideService {
     private final RideRepository       rideRepository;
     private final RideLifecycleService rideLifecycleService;  // paiement + wallet
     private final PaymentService       paymentService;
-    private final GeoService           geoService;
-    private final UserRepository       userRepository;
+    private final UserDisplayCache     userDisplay;
+    private final OpenRideIndex        openRides;
+    private final ApplicationEventPublisher events;
 
     /* ──────── Jeux d’états utiles ──────── */
     private static final Set<RideStatus> ACTIVE_STATUSES = EnumSet.of(
             RideStatus.REQUESTED, RideStatus.ACCEPTED, RideStatus.EN_ROUTE,
             RideStatus.ARRIVED, RideStatus.WAITING, RideStatus.IN_PROGRESS
     );
+    private static final Set<RideStatus> HISTORY_STATUSES = EnumSet.of(
+            RideStatus.COMPLETED, RideStatus.CANCELLED
+    );
+
+    /* ──────── Historique paginé ──────── */
+    public static final int HISTORY_DEFAULT_LIMIT = 50;
+    public static final int HISTORY_MAX_LIMIT     = 100;
+
+    /** Page d’historique ; {@code nextCursor} = {@code null} sur la dernière page. */
+    public record HistoryPage(List<RideResponse> items, String nextCursor) { }
+
+    /** Requête « une page pour un statut » (rider ou driver), après le curseur (at, id). */
+    @FunctionalInterface
+    private interface HistoryQuery {
+        List<Ride> page(Long userId, RideStatus status, OffsetDateTime at, Long id, Pageable page);
+    }
+
+    /** Idem pour la première page (aucun curseur). */
+    @FunctionalInterface
+    private interface HistoryFirstQuery {
+        List<Ride> page(Long userId, RideStatus status, Pageable page);
+    }
 
     /* ═════════════════════ 1) DEMANDE IMMÉDIATE ═════════════════════ */
     @Transactional
@@ -68,6 +104,7 @@ public class RideService {
                 .build();
 
         Ride saved = rideRepository.save(ride);
+        events.publishEvent(new RideStatusChangedEvent(this, saved));
         return toResponseSingle(saved);
     }
 
@@ -95,6 +132,7 @@ public class RideService {
                 .build();
 
         Ride saved = rideRepository.save(ride);
+        events.publishEvent(new RideStatusChangedEvent(this, saved));
 
         // Pré-autorisation non bloquante
         try {
@@ -159,27 +197,32 @@ public class RideService {
         return mapWithPrefetch(rides);
     }
 
-    /* ═════════════════════ 6) HISTORIQUE (rider/driver) ═══════════ */
+    /* ═════════════════════ 6) HISTORIQUE (rider/driver) ═══════════
+       Tri (created_at desc, id desc), curseur opaque = dernière ligne servie.
+       Une requête LIMIT n+1 par statut terminal (index rider|driver, status,
+       created_at), fusion en mémoire de ≤ 2·(n+1) lignes. */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public HistoryPage historyForRider(Long riderId, String cursor, Integer limit) {
+        return history(rideRepository::findRiderHistoryFirstPage, rideRepository::findRiderHistoryPage,
+                riderId, cursor, limit);
+    }
+
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public HistoryPage historyForDriver(Long driverId, String cursor, Integer limit) {
+        return history(rideRepository::findDriverHistoryFirstPage, rideRepository::findDriverHistoryPage,
+                driverId, cursor, limit);
+    }
+
+    /** Première page uniquement (compatibilité). */
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<RideResponse> listHistoryForRider(Long riderId) {
-        var rides = rideRepository.findAllByRiderIdOrderByCreatedAtDesc(riderId).stream()
-                .filter(r -> r.getStatus() == RideStatus.COMPLETED || r.getStatus() == RideStatus.CANCELLED)
-                .sorted(Comparator.comparing(
-                        (Ride r) -> Optional.ofNullable(r.getDropoffRealAt()).orElse(r.getCreatedAt())
-                ).reversed())
-                .toList();
-        return mapWithPrefetch(rides);
+        return historyForRider(riderId, null, null).items();
     }
 
+    /** Première page uniquement (compatibilité). */
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<RideResponse> listHistoryForDriver(Long driverId) {
-        var rides = rideRepository.findAllByDriverId(driverId).stream()
-                .filter(r -> r.getStatus() == RideStatus.COMPLETED || r.getStatus() == RideStatus.CANCELLED)
-                .sorted(Comparator.comparing(
-                        (Ride r) -> Optional.ofNullable(r.getDropoffRealAt()).orElse(r.getCreatedAt())
-                ).reversed())
-                .toList();
-        return mapWithPrefetch(rides);
+        return historyForDriver(driverId, null, null).items();
     }
 
     /* ════ ALIAS (compatibilité anciens contrôleurs) ════ */
@@ -204,12 +247,18 @@ public class RideService {
             throw new IllegalArgumentException("La nouvelle date doit être ≥ 1 minute dans le futur");
 
         ride.setScheduledAt(newTs);
+        events.publishEvent(new RideStatusChangedEvent(this, ride));
     }
 
     /* ═════════════════════ 8) OFFRES PROCHES (driver) ═════════════ */
     @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<RideResponse> listOpenNear(double lat, double lng, double radiusKm) {
-        List<Ride> rides = rideRepository.findOpenNear(lat, lng, radiusKm).stream()
+        List<Long> ids = openRides.near(lat, lng, radiusKm, o -> o.status() == RideStatus.REQUESTED)
+                .stream().map(h -> h.ride().rideId()).toList();
+        if (ids.isEmpty()) return List.of();
+
+        List<Ride> rides = rideRepository.findAllById(ids).stream()
+                .filter(r -> r.getStatus() == RideStatus.REQUESTED)     // index éventuellement en retard
                 .sorted(Comparator.comparing(Ride::getCreatedAt).reversed())
                 .toList();
         return mapWithPrefetch(rides);
@@ -219,31 +268,31 @@ public class RideService {
     @Transactional
     public boolean assignIfAvailable(Long rideId, Long driverId) {
         int updated = rideRepository.assignDriverIfRequested(rideId, driverId, OffsetDateTime.now());
-        return updated > 0;
+        return published(updated, rideId, RideStatus.ACCEPTED, driverId);
     }
 
     @Transactional
     public boolean markEnRoute(Long rideId, Long driverId) {
         int updated = rideRepository.markEnRouteIfAccepted(rideId, driverId, OffsetDateTime.now());
-        return updated > 0;
+        return published(updated, rideId, RideStatus.EN_ROUTE, driverId);
     }
 
     @Transactional
     public boolean markArrived(Long rideId, Long driverId) {
         int updated = rideRepository.markArrivedIfOnTheWay(rideId, driverId, OffsetDateTime.now());
-        return updated > 0;
+        return published(updated, rideId, RideStatus.ARRIVED, driverId);
     }
 
     @Transactional
     public boolean startRide(Long rideId, Long driverId) {
         int updated = rideRepository.markInProgressIfArrived(rideId, driverId, OffsetDateTime.now());
-        return updated > 0;
+        return published(updated, rideId, RideStatus.IN_PROGRESS, driverId);
     }
 
     @Transactional
     public boolean cancelRide(Long rideId, String reason) {
         int updated = rideRepository.cancelIfNotCompleted(rideId, reason, OffsetDateTime.now());
-        return updated > 0;
+        return published(updated, rideId, RideStatus.CANCELLED, null);
     }
 
     /* ═════════════════════ 10) FIN DE COURSE ═════════════════════ */
@@ -274,50 +323,89 @@ public class RideService {
 
     /* ═════════════════════ 11) MAPPING ENTITY ➜ DTO ═══════════════ */
 
-    /** Mapping optimisé pour une entité unique (précharge users via findAllById). */
+    /** Mapping d’une entité unique (rider / driver via UserDisplayCache). */
     private RideResponse toResponseSingle(Ride r) {
-        Set<Long> ids = Stream.of(r.getRiderId(), r.getDriverId())
-                .filter(Objects::nonNull).collect(Collectors.toSet());
-        Map<Long, User> users = ids.isEmpty() ? Collections.emptyMap()
-                : userRepository.findAllById(ids).stream()
-                .collect(Collectors.toMap(User::getId, Function.identity()));
-        return toResponse(r, users);
+        return toResponse(r, userDisplay.of(Arrays.asList(r.getRiderId(), r.getDriverId())));
+    }
+
+    /**
+     * Page d’historique : {@code n + 1} lignes par statut terminal, fusionnées
+     * par (created_at, id) décroissants ; la ligne en trop signale une page
+     * suivante, dont le curseur est la dernière ligne rendue.
+     */
+    private HistoryPage history(HistoryFirstQuery first, HistoryQuery after,
+                                Long userId, String cursor, Integer limit) {
+        int n = limit == null ? HISTORY_DEFAULT_LIMIT : Math.max(1, Math.min(limit, HISTORY_MAX_LIMIT));
+        OffsetDateTime at = null;
+        long id = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 2);
+                at = OffsetDateTime.parse(parts[0]);
+                id = Long.parseLong(parts[1]);
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("INVALID_HISTORY_CURSOR", ex);
+            }
+        }
+
+        Pageable   page  = PageRequest.of(0, n + 1);
+        List<Ride> rides = new ArrayList<>();
+        for (RideStatus status : HISTORY_STATUSES) {
+            rides.addAll(at == null ? first.page(userId, status, page)
+                                    : after.page(userId, status, at, id, page));
+        }
+        rides.sort(Comparator.comparing(Ride::getCreatedAt)
+                .thenComparing(Ride::getId)
+                .reversed());
+
+        String next = null;
+        if (rides.size() > n) {
+            rides = rides.subList(0, n);
+            Ride last = rides.get(n - 1);
+            next = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (last.getCreatedAt() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new HistoryPage(mapWithPrefetch(rides), next);
     }
 
-    /** Mapping optimisé pour une liste (précharge tous les users en 1 fois). */
+    /** Mapping d’une liste (une seule lecture groupée des users absents du cache). */
     private List<RideResponse> mapWithPrefetch(List<Ride> rides) {
         Set<Long> userIds = rides.stream()
                 .flatMap(r -> Stream.of(r.getRiderId(), r.getDriverId()))
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
 
-        Map<Long, User> users = userIds.isEmpty() ? Collections.emptyMap()
-                : userRepository.findAllById(userIds).stream()
-                .collect(Collectors.toMap(User::getId, Function.identity()));
+        Map<Long, UserDisplay> users = userDisplay.of(userIds);
 
         return rides.stream().map(r -> toResponse(r, users)).toList();
     }
 
-    private RideResponse toResponse(Ride r, Map<Long, User> usersById) {
-        // Géocodage (fallback assuré par GeoServiceImpl)
-        String pickupAddr  = geoService.reverse(r.getPickupLat(),  r.getPickupLng());
-        String dropoffAddr = geoService.reverse(r.getDropoffLat(), r.getDropoffLng());
+    private RideResponse toResponse(Ride r, Map<Long, UserDisplay> usersById) {
+        // Adresses persistées par RideAddressEnricher (aucun appel réseau à la lecture)
+        String pickupAddr  = r.getPickupAddress()  != null ? r.getPickupAddress()
+                : GeoService.coordinates(r.getPickupLat(),  r.getPickupLng());
+        String dropoffAddr = r.getDropoffAddress() != null ? r.getDropoffAddress()
+                : GeoService.coordinates(r.getDropoffLat(), r.getDropoffLng());
 
         // Rider / Driver
-        User rider  = (r.getRiderId()  == null) ? null : usersById.get(r.getRiderId());
-        User driver = (r.getDriverId() == null) ? null : usersById.get(r.getDriverId());
+        UserDisplay rider  = (r.getRiderId()  == null) ? null : usersById.get(r.getRiderId());
+        UserDisplay driver = (r.getDriverId() == null) ? null : usersById.get(r.getDriverId());
+
+        String riderName   = rider  == null ? "—"  : rider.displayName();
+        String riderPhone  = rider  == null ? null : rider.phoneNumber();
+        String riderPhoto  = rider  == null ? null : rider.photoUrl();
 
-        String riderName   = displayName(rider);
-        String riderPhone  = rider  == null ? null : rider.getPhoneNumber();
-        String riderPhoto  = photoUrl(rider);
+        String driverName  = driver == null ? "—"  : driver.displayName();
+        String driverPhone = driver == null ? null : driver.phoneNumber();
+        String driverPhoto = driver == null ? null : driver.photoUrl();
 
-        String driverName  = displayName(driver);
-        String driverPhone = driver == null ? null : driver.getPhoneNumber();
-        String driverPhoto = photoUrl(driver);
+        // Attente dérivée de arrivedAt (aucune écriture pendant l’attente)
+        OffsetDateTime now        = OffsetDateTime.now();
+        int            waitingSec = WaitTimeService.waitingSec(r, now);
 
         return RideResponse.builder()
                 .rideId         (r.getId())
-                .status         (r.getStatus().name())
+                .status         (WaitTimeService.effectiveStatus(r, now).name())
                 .pickupLat      (r.getPickupLat())
                 .pickupLng      (r.getPickupLng())
                 .dropoffLat     (r.getDropoffLat())
@@ -330,6 +418,8 @@ public class RideService {
                 .paymentMethodId(r.getPaymentMethodId())
                 .totalFare      (r.getTotalFare())
                 .currency       (r.getCurrency())
+                .waitingSec     (r.getArrivedAt() == null ? null : waitingSec)
+                .waitFee        (r.getArrivedAt() == null ? null : WaitTimeService.waitFee(waitingSec))
                 .weightKg       (r.getWeightKg())
                 .deliveryZone   (r.getDeliveryZone()==null ? null : r.getDeliveryZone().name())
                 .safetyPin      (r.getSafetyPin())
@@ -350,6 +440,13 @@ public class RideService {
 
     /* ───────────────── Helpers ───────────────── */
 
+    /** Transition bulk réussie ⇒ événement (entité non chargée). */
+    private boolean published(int updated, Long rideId, RideStatus status, Long driverId) {
+        if (updated <= 0) return false;
+        events.publishEvent(new RideStatusChangedEvent(this, rideId, status, driverId));
+        return true;
+    }
+
     private List<RideOption> safeOptions(List<String> raw) {
         if (raw == null) return null;
         List<RideOption> list = new ArrayList<>();
@@ -362,22 +459,4 @@ public class RideService {
         return list.isEmpty() ? null : list;
     }
 
-    private String displayName(User u) {
-        if (u == null) return "—";
-        String n = (Optional.ofNullable(u.getFirstName()).orElse("") + " " +
-                Optional.ofNullable(u.getLastName()).orElse("")).trim();
-        return n.isBlank() ? "—" : n;
-    }
-
-    private String photoUrl(User u) {
-        if (u == null) return null;
-        if (u.getProfilePictureKey() != null) {
-            return "/api/v1/users/" + u.getId() + "/photo";
-        } else if (u.getProfilePicture() != null) {
-            String mime = Optional.ofNullable(u.getProfilePictureMimeType()).orElse("image/jpeg");
-            return "data:" + mime + ";base64," +
-                    java.util.Base64.getEncoder().encodeToString(u.getProfilePicture());
-        }
-        return null;
-    }
 }
@@ -1,91 +1,77 @@
 // ============================================================================
 //  SERVICE : SurgePricingService
-//  Gestion et cache du multiplicateur « surge »
+//  Lecture du multiplicateur « surge » (instantané mémoire, sans SQL)
 // ============================================================================
 
 package com.mobility.ride.service;
 
-import com.mobility.ride.config.PricingProperties;
 import com.mobility.ride.dto.SurgeInfoResponse;
 import com.mobility.ride.model.ProductType;
-import com.mobility.ride.model.SurgeMultiplier;
-import com.mobility.ride.repository.SurgeMultiplierRepository;
+import com.mobility.ride.service.surge.SurgeEngine;
+import com.mobility.ride.service.surge.SurgeSnapshot.Window;
+import com.mobility.ride.service.surge.SurgeSnapshotHolder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.OffsetDateTime;
-import java.util.Optional;
+import java.util.Collections;
+import java.util.Map;
+import java.util.OptionalDouble;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SurgePricingService {
 
-    private final SurgeMultiplierRepository repo;
-    private final PricingProperties      pricingProperties;  // ← Injection pour évolution future
+    private final SurgeSnapshotHolder snapshots;    // fenêtres surge_multipliers (SurgeRefreshJob)
+    private final SurgeEngine         engine;       // actif ⇒ fait foi
 
     /**
      * Info complète – utilisée par PricingController.
-     * Le cityId est passé en paramètre, mais on le retrouve aussi dans pricingProperties.
      */
-    @Cacheable(
-            cacheNames = "surge::info",
-            key = "'info:' + #cityId + ':' + #productType.name()"
-    )
-    @Transactional(readOnly = true)
     public SurgeInfoResponse getSurgeInfo(Long cityId, ProductType productType) {
-        // Exemple d’accès futur aux règles de configuration tarifaire :
-        // PricingProperties.Country cfg = pricingProperties.getCountry().get("gabon");
-
-        OffsetDateTime now = OffsetDateTime.now();
-        Optional<SurgeMultiplier> opt = repo.findActive(cityId, productType, now);
+        OptionalDouble computed = engine.factor(cityId, productType);
+        if (computed.isPresent()) {
+            double f = computed.getAsDouble();
+            return new SurgeInfoResponse(cityId, productType, f, f > 1.0, null, null);
+        }
 
-        if (opt.isEmpty()) {
+        Window w = snapshots.current().active(cityId, productType, System.currentTimeMillis());
+        if (w == null) {
             log.trace("No active surge – city={} product={} ⇒ 1.0", cityId, productType);
             return new SurgeInfoResponse(
                     cityId, productType, 1.0, false, null, null
             );
         }
 
-        SurgeMultiplier sm = opt.get();
-        double factor = sm.getFactor() == null
-                ? 1.0
-                : sm.getFactor().doubleValue();
-
         return new SurgeInfoResponse(
                 cityId,
                 productType,
-                factor,
-                factor > 1.0,
-                sm.getWindowStart(),
-                sm.getWindowEnd()
+                w.factor(),
+                w.factor() > 1.0,
+                w.windowStart(),
+                w.windowEnd()
         );
     }
 
     /**
      * Facteur brut (utilisé ailleurs).
      */
-    @Cacheable(
-            cacheNames = "surge::factor",
-            key = "'factor:' + #cityId + ':' + #productType.name()"
-    )
-    @Transactional(readOnly = true)
     public double getSurgeFactor(Long cityId, ProductType productType) {
-        return getSurgeInfo(cityId, productType).factor();
+        OptionalDouble computed = engine.factor(cityId, productType);
+        if (computed.isPresent()) return computed.getAsDouble();
+
+        Window w = snapshots.current().active(cityId, productType, System.currentTimeMillis());
+        return w == null ? 1.0 : w.factor();
     }
 
     /**
-     * Pré-chauffage du cache (Scheduler).
+     * Facteurs de tous les produits d’une ville (devis multi-produits) ;
+     * produit absent ⇒ 1.0.
      */
-    @Transactional(readOnly = true)
-    public void warmUpCache(Long cityId, ProductType productType) {
-        repo.findTopByCityIdAndProductTypeOrderByWindowEndDesc(cityId, productType)
-                .ifPresent(sm -> log.debug(
-                        "⚡ Warm-up surge cache city={} product={} factor={}",
-                        cityId, productType, sm.getFactor()
-                ));
+    public Map<ProductType, Double> getSurgeFactors(Long cityId) {
+        if (engine.isEnabled()) return Collections.unmodifiableMap(engine.factors(cityId));
+        return Collections.unmodifiableMap(
+                snapshots.current().factors(cityId, System.currentTimeMillis()));
     }
 }
@@ -1,15 +1,21 @@
 // ───────────────────────────────────────────────────────────────
 //  FILE : src/main/java/com/mobility/ride/service/UpfrontPriceService.java
 //  v2025-08-03 – Fallback « default » pour cityId et currency
+//  v2025-10-16 – barème compilé (PricingTable) : plus de stream / Optional par devis
+//  v2025-10-16 – quoteAll : devis multi-produits (surge / FX / devise partagés)
 // ───────────────────────────────────────────────────────────────
 package com.mobility.ride.service;
 
-import com.mobility.ride.config.PricingProperties;
+import com.mobility.ride.dto.MultiQuoteRequest;
+import com.mobility.ride.dto.MultiQuoteResponse;
 import com.mobility.ride.dto.PriceQuoteRequest;
 import com.mobility.ride.dto.PriceQuoteResponse;
+import com.mobility.ride.geo.CityInfo;
 import com.mobility.ride.mapper.PricingMapper;
 import com.mobility.ride.model.DeliveryZone;
 import com.mobility.ride.model.ProductType;
+import com.mobility.ride.service.pricing.PricingTable;
+import com.mobility.ride.service.pricing.PricingTableHolder;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,10 +24,10 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.OffsetDateTime;
-import java.util.EnumMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 
 @Slf4j
 @Service
@@ -30,48 +36,19 @@ public class UpfrontPriceService {
 
     private final SurgePricingService surgeService;
     private final PricingMapper       mapper;
-    private final PricingProperties   pricing;
+    private final PricingTableHolder  tables;
     private final ExchangeRateService exchangeRateService;
 
-    /* ─────────────── Barème-secours (si YAML manquant) ─────────────── */
-    private static final Map<ProductType, Double> GLOBAL_RATE_PER_KM = new EnumMap<>(ProductType.class);
-    static {
-        GLOBAL_RATE_PER_KM.put(ProductType.X,        2.90);
-        GLOBAL_RATE_PER_KM.put(ProductType.POOL,     2.03);
-        GLOBAL_RATE_PER_KM.put(ProductType.MOTO,     1.50);
-        GLOBAL_RATE_PER_KM.put(ProductType.COMFORT,  3.20);
-        GLOBAL_RATE_PER_KM.put(ProductType.XL,       4.00);
-        GLOBAL_RATE_PER_KM.put(ProductType.BLACK,    4.50);
-        GLOBAL_RATE_PER_KM.put(ProductType.LUX,      5.80);
-        GLOBAL_RATE_PER_KM.put(ProductType.DELIVERY, 2.90);
-    }
-
     private static BigDecimal money(double v) {
-        return BigDecimal.valueOf(v).setScale(2, RoundingMode.HALF_UP);
+        return BigDecimal.valueOf(v).setScale(PricingTable.MONEY_SCALE, RoundingMode.HALF_UP);
     }
 
-    /** Devise d’origine : front → YAML → bloc <default>. */
-    private String resolveOriginCurrency(PriceQuoteRequest req) {
-
+    /** Devise d’origine : front → barème compilé (ville, sinon bloc <default>). */
+    private static String resolveOriginCurrency(PriceQuoteRequest req, PricingTable table) {
         if (req.currency() != null && !req.currency().isBlank()) {
             return req.currency().toUpperCase();
         }
-
-        /* 1) tente de trouver la ville correspondante */
-        String fromCity = Optional.ofNullable(pricing.getCountry())
-                .flatMap(map -> map.values().stream()
-                        .filter(c -> c.getCityId().equals(req.cityId()))
-                        .findFirst())
-                .map(PricingProperties.Country::getCurrency)
-                .orElse(null);
-
-        if (fromCity != null) return fromCity;
-
-        /* 2) fallback absolu : bloc « default » */
-        return Optional.ofNullable(pricing.getCountry())
-                .map(m -> m.get("default"))
-                .map(PricingProperties.Country::getCurrency)
-                .orElse("USD");                 // ultime secours
+        return table.currencyOf(req.cityId());
     }
 
     /* ============================================================
@@ -80,15 +57,16 @@ public class UpfrontPriceService {
     public PriceQuoteResponse quote(@Valid PriceQuoteRequest req) {
 
         /* ───────── 0) Pré-traitement / validation ───────── */
-        DeliveryZone zone   = Optional.ofNullable(req.deliveryZone()).orElse(DeliveryZone.LOCAL);
-        BigDecimal   weight = Optional.ofNullable(req.weightKg()).orElse(BigDecimal.ZERO);
+        DeliveryZone zone   = req.deliveryZone() != null ? req.deliveryZone() : DeliveryZone.LOCAL;
+        BigDecimal   weight = req.weightKg()     != null ? req.weightKg()     : BigDecimal.ZERO;
 
         if (zone != DeliveryZone.LOCAL) {
             Objects.requireNonNull(req.weightKg(),
                     "Weight (kg) must be provided for interurban and international deliveries");
         }
 
-        String originCurrency = resolveOriginCurrency(req);
+        PricingTable table          = tables.current();          // instantané cohérent
+        String       originCurrency = resolveOriginCurrency(req, table);
 
         /* ════════════════════════════════════════════════
            1) LIVRAISON (INTERURBAIN / INTERNATIONAL)
@@ -119,40 +97,26 @@ public class UpfrontPriceService {
         /* ════════════════════════════════════════════════
            2) COURSE CLASSIQUE (LOCAL)
            ════════════════════════════════════════════════ */
-        PricingProperties.Country cfg = Optional.ofNullable(pricing.getCountry())
-                .flatMap(map -> map.values().stream()
-                        .filter(c -> c.getCityId().equals(req.cityId()))
-                        .findFirst())
-                .orElseGet(() -> {
-                    log.warn("[Pricing] cityId={} absent du YAML → fallback « default »",
-                            req.cityId());
-                    return pricing.getCountry().get("default");
-                });
-
-        /* 2-a) Forfait fixe éventuel */
-        Double flatFare = Optional.ofNullable(cfg.getFlatFare())
-                .map(ff -> ff.get(req.productType().name()))
-                .map(Map::values)
-                .flatMap(v -> v.stream().findFirst())
-                .orElse(null);
-
-        /* 2-b) Tarif par km */
-        double ratePerKm = Optional.ofNullable(cfg.getRatePerKm())
-                .map(r -> r.get(req.productType().name()))
-                .orElseGet(() -> GLOBAL_RATE_PER_KM.getOrDefault(req.productType(), 1.0));
-
-        /* 2-c) Base / surge / total */
-        double base  = flatFare != null ? flatFare : req.distanceKm() * ratePerKm;
-        double surge = surgeService.getSurgeFactor(cfg.getCityId(), req.productType());
+        /* 2-a) Tarif pré-résolu (forfait ou km) – accès tableau, sans stream */
+        PricingTable.Tariff tariff = table.tariff(req.cityId(), req.productType());
+        if (tariff.fallbackCity()) {
+            log.warn("[Pricing] cityId={} absent du YAML → fallback « default »", req.cityId());
+        }
+
+        /* 2-b) Base / surge / total */
+        double base  = tariff.base(req.distanceKm());
+        double surge = surgeService.getSurgeFactor(tariff.cityId(), req.productType());
         double total = base * surge;
 
-        log.debug("💰 quote cityId={} type={} km={} base={}{} surge={}× total={}",
-                cfg.getCityId(), req.productType(),
-                req.distanceKm(), money(base), originCurrency,
-                money(surge), money(total));
+        if (log.isDebugEnabled()) {
+            log.debug("💰 quote cityId={} type={} km={} base={}{} surge={}× total={}",
+                    tariff.cityId(), req.productType(),
+                    req.distanceKm(), money(base), originCurrency,
+                    money(surge), money(total));
+        }
 
         return mapper.toPriceQuoteDto(
-                cfg.getCityId(), req.productType(), req.distanceKm(),
+                tariff.cityId(), req.productType(), req.distanceKm(),
                 Math.round(req.durationMin() * 60),
                 money(base), money(surge), money(total),
                 originCurrency,
@@ -160,4 +124,67 @@ public class UpfrontPriceService {
                 weight, zone
         );
     }
+
+    /* ============================================================
+       DEVIS MULTI-PRODUITS – sélecteur (1 appel au lieu de 8)
+       ============================================================ */
+
+    /**
+     * Chiffre tous les produits demandés pour un même trajet : barème,
+     * devise, surge (une seule requête) et FX résolus une fois, puis simple
+     * arithmétique par produit.
+     *
+     * @param info marché déjà résolu par l’appelant (cityId + devise)
+     */
+    public MultiQuoteResponse quoteAll(MultiQuoteRequest req, CityInfo info) {
+
+        DeliveryZone zone   = req.deliveryZone() != null ? req.deliveryZone() : DeliveryZone.LOCAL;
+        BigDecimal   weight = req.weightKg()     != null ? req.weightKg()     : BigDecimal.ZERO;
+        if (zone != DeliveryZone.LOCAL) {
+            Objects.requireNonNull(req.weightKg(),
+                    "Weight (kg) must be provided for interurban and international deliveries");
+        }
+
+        List<ProductType> products = req.products() == null || req.products().isEmpty()
+                ? List.of(ProductType.values())
+                : req.products();
+
+        PricingTable   table     = tables.current();
+        String         currency  = info.currency() != null && !info.currency().isBlank()
+                ? info.currency().toUpperCase()
+                : table.currencyOf(info.cityId());
+        OffsetDateTime expiresAt = OffsetDateTime.now().plusMinutes(5);
+        long           durSec    = Math.round(req.durationMin() * 60);
+        List<PriceQuoteResponse> quotes = new ArrayList<>(products.size());
+
+        /* 1) LIVRAISON : prix au poids, identique pour chaque produit */
+        if (zone != DeliveryZone.LOCAL) {
+            BigDecimal perKg   = zone == DeliveryZone.INTERURBAIN ? BigDecimal.valueOf(5_000) : BigDecimal.valueOf(10_000);
+            BigDecimal baseXaf = weight.multiply(perKg).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal fx      = currency.equals("XAF") ? BigDecimal.ONE : exchangeRateService.getRate("XAF", currency);
+            BigDecimal total   = baseXaf.multiply(fx).setScale(2, RoundingMode.HALF_UP);
+
+            for (ProductType p : products)
+                quotes.add(mapper.toPriceQuoteDto(info.cityId(), p, req.distanceKm(), durSec,
+                        baseXaf, BigDecimal.ONE, total, currency, expiresAt, weight, zone));
+            return new MultiQuoteResponse(info.cityId(), currency, expiresAt, quotes);
+        }
+
+        /* 2) COURSE LOCALE : une ligne du barème, une requête surge */
+        long cityId = table.tariff(info.cityId(), products.get(0)).cityId();
+        if (!table.knows(info.cityId())) {
+            log.warn("[Pricing] cityId={} absent du YAML → fallback « default »", info.cityId());
+        }
+        Map<ProductType, Double> surges = surgeService.getSurgeFactors(cityId);
+
+        for (ProductType p : products) {
+            PricingTable.Tariff tariff = table.tariff(info.cityId(), p);
+            double base  = tariff.base(req.distanceKm());
+            double surge = surges.getOrDefault(p, 1.0);
+            quotes.add(mapper.toPriceQuoteDto(cityId, p, req.distanceKm(), durSec,
+                    money(base), money(surge), money(base * surge),
+                    currency, expiresAt, weight, zone));
+        }
+        return new MultiQuoteResponse(cityId, currency, expiresAt, quotes);
+    }
 }
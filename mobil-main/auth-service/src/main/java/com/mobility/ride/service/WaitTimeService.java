@@ -2,49 +2,55 @@
 //  FILE : src/main/java/com/mobility/ride/service/WaitTimeService.java
 //  v2025-09-03 – @Lazy RideFlowService  +  @Qualifier("taskScheduler")
 //                pour éliminer le cycle RideFlowService ↔ WaitTimeService
+//  v2025-10-16 – minuteurs sur RideTimerService (roue temporelle),
+//                courses traitées par lots : 1 SELECT + UPDATE en batch JDBC
+//  v2025-10-16 – échéances durables (ride_timers) : survivent au redémarrage
+//  v2025-10-16 – attente & frais calculés à la lecture depuis arrivedAt ;
+//                un seul minuteur par course (échéance no-show)
 // ─────────────────────────────────────────────────────────────
 package com.mobility.ride.service;
 
 import com.mobility.ride.model.Ride;
 import com.mobility.ride.model.RideStatus;
+import com.mobility.ride.model.RideTimer;
+import com.mobility.ride.model.RideTimerKind;
 import com.mobility.ride.repository.RideRepository;
-import jakarta.persistence.EntityNotFoundException;
+import com.mobility.ride.service.timer.RideTimerService;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Duration;
 import java.time.OffsetDateTime;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledFuture;
+import java.util.List;
 
 /**
  * <h2>WaitTimeService</h2>
  *
  * <p>
- *  • Passe automatiquement une course <strong>ARRIVED → WAITING</strong>
- *    après la période de grâce (2 min).<br>
- *  • Incrémente toutes les 30 s :
+ *  • Temps d’attente et frais <strong>dérivés</strong> de {@code arrivedAt} :
+ *    rien n’est écrit pendant l’attente.
  *      <ul>
- *        <li>{@code waitingSec}</li>
- *        <li>{@code waitFee} (arrondi 0,01)</li>
+ *        <li>{@code waitingSec} = temps écoulé au-delà de la grâce (2 min),
+ *            jusqu’à la prise en charge (ou maintenant) ;</li>
+ *        <li>{@code waitFee} = {@link #FEE_PER_MIN} × minutes entamées.</li>
  *      </ul>
- *  • Déclenche un <em>no-show</em> + frais forfaitaire après 7 min.<br>
- *  • Stoppe immédiatement le scheduler si la course sort du flux d’attente.
+ *  • Une course ARRIVED au-delà de la grâce est exposée comme
+ *    <strong>WAITING</strong> ({@link #effectiveStatus}).<br>
+ *  • Valeurs figées sur l’entité à la prise en charge, à la fin de course
+ *    et au no-show ({@link #settle}).<br>
+ *  • Un seul minuteur par course : l’échéance <em>no-show</em>
+ *    (grâce + 7 min) → annulation + frais forfaitaire.
  * </p>
  *
  * <p>
- * <b>Important :</b> on injecte {@link RideFlowService} en <em>lazy</em> et le
- * {@link TaskScheduler} via <code>@Qualifier("taskScheduler")</code> pour
- * éviter tout cycle de dépendances et interférence avec le scheduler STOMP.
+ * <b>Important :</b> on injecte {@link RideFlowService} en <em>lazy</em> pour
+ * éviter tout cycle de dépendances. L’échéance vit dans
+ * {@link RideTimerService} ({@link RideTimerKind#WAIT_NO_SHOW}).
  * </p>
  */
 @Slf4j
@@ -54,18 +60,19 @@ public class WaitTimeService {
 
     /* ─────── Paramètres métier (constants) ─────── */
     public static final Duration   GRACE_PERIOD   = Duration.ofMinutes(2);
-    public static final Duration   TICK_INTERVAL  = Duration.ofSeconds(30);
-    public static final Duration   NO_SHOW_LIMIT  = Duration.ofMinutes(7);
+    public static final Duration   NO_SHOW_LIMIT  = Duration.ofMinutes(7);    // attente payante max
     public static final BigDecimal FEE_PER_MIN    = new BigDecimal("0.30");   // 0,30 €/min
     public static final BigDecimal NO_SHOW_FEE    = new BigDecimal("3.00");   // forfait
 
     /* ─────── Dépendances ─────── */
-    private final @Qualifier("taskScheduler") TaskScheduler scheduler; // ✅ scheduler dédié
+    private final RideTimerService             timers;
     private final RideRepository               rideRepo;
     private final @Lazy RideFlowService        flowSvc;                // ✅ élimine le cycle
 
-    /** Tâches planifiées par rideId (pour annulation propre). */
-    private final Map<Long, ScheduledFuture<?>> tasks = new ConcurrentHashMap<>();
+    @PostConstruct
+    void registerTimers() {
+        timers.register(RideTimerKind.WAIT_NO_SHOW, this::onNoShowDeadlines);
+    }
 
     /* ═══════════════════════════════════════════════════════
        1) startWaitingCountdown – appelé par RideFlow.arrived()
@@ -73,79 +80,77 @@ public class WaitTimeService {
     public void startWaitingCountdown(Long rideId) {
 
         // Évite de programmer deux fois la même course
-        if (tasks.containsKey(rideId)) return;
-
-        ScheduledFuture<?> f = scheduler.scheduleAtFixedRate(
-                new Tick(rideId),
-                OffsetDateTime.now().plus(GRACE_PERIOD).toInstant(),
-                TICK_INTERVAL);
+        if (timers.isScheduled(RideTimerKind.WAIT_NO_SHOW, rideId)) return;
 
-        tasks.put(rideId, f);
+        timers.schedule(RideTimerKind.WAIT_NO_SHOW, rideId,
+                System.currentTimeMillis() + GRACE_PERIOD.plus(NO_SHOW_LIMIT).toMillis());
 
-        log.debug("⏳ WaitTimeService – ride #{} scheduled (grace {}, tick {})",
-                rideId, GRACE_PERIOD, TICK_INTERVAL);
+        log.debug("⏳ WaitTimeService – ride #{} no-show deadline in {}",
+                rideId, GRACE_PERIOD.plus(NO_SHOW_LIMIT));
     }
 
     /* ═══════════════════════════════════════════════════════
        2) stopWaitingCountdown – appelé par RideFlow.startRide()
        ═══════════════════════════════════════════════════════ */
     public void stopWaitingCountdown(Long rideId) {
-        Optional.ofNullable(tasks.remove(rideId)).ifPresent(f -> f.cancel(false));
-        log.debug("✅ WaitTimeService – ride #{} scheduler stopped", rideId);
+        timers.cancel(RideTimerKind.WAIT_NO_SHOW, rideId);
+        log.debug("✅ WaitTimeService – ride #{} no-show deadline cancelled", rideId);
+    }
+
+    /* ═══════════════════════════════════════════════════════
+       3) Calcul à la demande (mapping DTO, transitions)
+       ═══════════════════════════════════════════════════════ */
+
+    /** Secondes d’attente facturables à {@code at} (0 avant la fin de la grâce). */
+    public static int waitingSec(Ride r, OffsetDateTime at) {
+        if (r.getArrivedAt() == null) return r.getWaitingSec() == null ? 0 : r.getWaitingSec();
+        OffsetDateTime end = r.getPickupRealAt() != null ? r.getPickupRealAt()
+                           : r.getCancelledAt()  != null ? r.getCancelledAt()
+                           : at;
+        long sec = Duration.between(r.getArrivedAt().plus(GRACE_PERIOD), end).getSeconds();
+        return (int) Math.max(0, sec);
+    }
+
+    /** Frais d’attente : minute entamée = minute due (arrondi 0,01). */
+    public static BigDecimal waitFee(int waitingSec) {
+        int minutes = (waitingSec + 59) / 60;
+        return FEE_PER_MIN.multiply(BigDecimal.valueOf(minutes)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /** ARRIVED au-delà de la grâce ⇒ WAITING (statut exposé, non persisté). */
+    public static RideStatus effectiveStatus(Ride r, OffsetDateTime at) {
+        if (r.getStatus() == RideStatus.ARRIVED && r.getArrivedAt() != null
+                && at.isAfter(r.getArrivedAt().plus(GRACE_PERIOD)))
+            return RideStatus.WAITING;
+        return r.getStatus();
+    }
+
+    /** Fige {@code waitingSec} / {@code waitFee} sur l’entité (prise en charge, fin, no-show). */
+    public static void settle(Ride r, OffsetDateTime at) {
+        if (r.getArrivedAt() == null) return;
+        int sec = waitingSec(r, at);
+        r.setWaitingSec(sec);
+        r.setWaitFee(waitFee(sec));
     }
 
     /* ═══════════════════════════════════════════════════════
-       3) Tâche périodique interne
+       4) Échéances no-show (thread RideTimerService)
        ═══════════════════════════════════════════════════════ */
-    private class Tick implements Runnable {
-
-        private final Long rideId;
-
-        private Tick(Long rideId) { this.rideId = rideId; }
-
-        @Override
-        @Transactional
-        public void run() {
-            Ride r = rideRepo.findById(rideId)
-                    .orElseThrow(() -> new EntityNotFoundException("RIDE_NOT_FOUND"));
-
-            switch (r.getStatus()) {
-
-                /* ARRIVED → première exécution post-grâce ⇒ passage à WAITING */
-                case ARRIVED -> {
-                    r.setStatus(RideStatus.WAITING);
-                    r.setWaitingSec(0);
-                    r.setWaitFee(BigDecimal.ZERO);
-                    rideRepo.save(r);
-                    log.info("🕒 Ride #{} entered WAITING (fee starts now)", rideId);
-                }
-
-                /* WAITING → incrémente temps & frais, puis check NO_SHOW */
-                case WAITING -> {
-                    int sec = Optional.ofNullable(r.getWaitingSec()).orElse(0)
-                            + (int) TICK_INTERVAL.getSeconds();
-                    r.setWaitingSec(sec);
-
-                    int minutes   = (sec + 59) / 60;   // arrondi à la minute supérieure
-                    BigDecimal fee = FEE_PER_MIN
-                            .multiply(BigDecimal.valueOf(minutes))
-                            .setScale(2, RoundingMode.HALF_UP);
-                    r.setWaitFee(fee);
-
-                    rideRepo.save(r);
-                    log.debug("⌛ Ride #{} waiting {} s → fee {}", rideId, sec, fee);
-
-                    /* No-show automatique ? */
-                    if (sec >= NO_SHOW_LIMIT.toSeconds()) {
-                        log.warn("🚫 Ride #{} no-show – auto-cancel & fee {}", rideId, NO_SHOW_FEE);
-                        stopWaitingCountdown(rideId);
-                        flowSvc.cancelRide(rideId, RideFlowService.CancellationReason.NO_SHOW);
-                    }
-                }
-
-                /* Toute autre transition => on stoppe la tâche */
-                default -> stopWaitingCountdown(rideId);
+    void onNoShowDeadlines(List<RideTimer> fired) {
+        List<Long> rideIds = fired.stream().map(RideTimer::getRideId).toList();
+        int failed = 0;
+        for (Ride r : rideRepo.findAllById(rideIds)) {
+            if (r.getStatus() != RideStatus.ARRIVED && r.getStatus() != RideStatus.WAITING) continue;
+
+            log.warn("🚫 Ride #{} no-show – auto-cancel & fee {}", r.getId(), NO_SHOW_FEE);
+            try {
+                flowSvc.cancelRide(r.getId(), RideFlowService.CancellationReason.NO_SHOW);
+            } catch (Exception ex) {
+                log.error("❌ Ride #{} no-show cancel failed : {}", r.getId(), ex.getMessage(), ex);
+                failed++;
             }
         }
+        /* Échéances conservées ⇒ nouvel essai à l’expiration du bail (statut re-vérifié) */
+        if (failed > 0) throw new IllegalStateException(failed + " no-show cancellation(s) failed");
     }
 }
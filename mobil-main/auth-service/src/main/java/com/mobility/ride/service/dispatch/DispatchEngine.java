@@ -0,0 +1,360 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/dispatch/DispatchEngine.java
+//  v2025-10-15 – dispatch par micro-lots (fenêtre ≈ 2 s, par cellule « ville »)
+//               • affectation biparti coût minimal (distance de prise en charge)
+//               • offre exclusive à un seul chauffeur, avec expiration
+//               • exécuteurs dédiés, cellules traitées en parallèle
+//               • métriques débit / latence (Micrometer)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.dispatch;
+
+import com.mobility.ride.dto.DispatchOfferMessage;
+import com.mobility.ride.event.RideStatusChangedEvent;
+import com.mobility.ride.geo.DriverPositionIndex;
+import com.mobility.ride.geo.GeoGrid;
+import com.mobility.ride.model.RideStatus;
+import com.mobility.ride.service.BusyDriverRegistry;
+import com.mobility.ride.service.DriverFeedService;
+import com.mobility.ride.service.DriverLocationService;
+import com.mobility.ride.service.OpenRideIndex;
+import com.mobility.ride.service.OpenRideIndex.OpenRide;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * <h2>DispatchEngine</h2>
+ *
+ * <p>Toutes les {@code app.dispatch.window-ms} millisecondes :</p>
+ * <ol>
+ *   <li>les courses REQUESTED sans offre en cours sont regroupées par cellule
+ *       de {@code app.dispatch.cell-deg} degrés ;</li>
+ *   <li>chaque cellule est traitée en parallèle : chauffeurs libres et frais
+ *       autour de la cellule, matrice de distances, {@link HungarianSolver} ;</li>
+ *   <li>chaque course retenue est proposée à <b>un seul</b> chauffeur sur
+ *       {@code /user/queue/dispatch}, pendant {@code offer-timeout-ms}.</li>
+ * </ol>
+ *
+ * <p>Pendant ce délai, {@link #checkCanAccept(Long, Long)} refuse tout autre
+ * chauffeur <em>avant</em> la prise du verrou SQL : fini la rafale d’accept
+ * concurrents terminés en 409. Une offre expirée ou refusée libère le
+ * chauffeur, qui ne se verra plus proposer cette course.</p>
+ *
+ * <p>Désactivé par défaut ({@code app.dispatch.enabled=false}) : le flux
+ * « premier arrivé, premier servi » reste alors inchangé.</p>
+ */
+@Slf4j
+@Service
+public class DispatchEngine {
+
+    public static final String DESTINATION = "/queue/dispatch";
+
+    /** Offre exclusive en cours. */
+    public record DispatchOffer(Long rideId, Long driverId, double pickupKm,
+                                long offeredAtMs, long expiresAtMs) { }
+
+    /* ─────────── Dépendances ─────────── */
+    private final OpenRideIndex         openRides;
+    private final DriverLocationService drivers;
+    private final DriverFeedService     feedService;
+    private final BusyDriverRegistry    busyDrivers;
+    private final SimpMessagingTemplate ws;
+
+    /* ─────────── Paramètres ─────────── */
+    private final boolean enabled;
+    private final long    windowMs;
+    private final double  cellDeg;
+    private final double  maxPickupKm;
+    private final long    offerTimeoutMs;
+    private final int     parallelism;
+    private final int     maxBatch;
+
+    /* ─────────── État ─────────── */
+    private final Map<Long, DispatchOffer> offersByRide   = new ConcurrentHashMap<>();
+    private final Map<Long, DispatchOffer> offersByDriver = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>>     refusedBy      = new ConcurrentHashMap<>();   // rideId → driverIds
+
+    private ScheduledExecutorService ticker;
+    private ExecutorService          workers;
+
+    /* ─────────── Métriques ─────────── */
+    private final Timer               tickTimer;
+    private final Timer               solveTimer;
+    private final Timer               offerLatency;      // création ride → offre
+    private final Timer               acceptLatency;     // offre → acceptation
+    private final DistributionSummary batchSize;
+    private final Counter             offersSent;
+    private final Counter             offersAccepted;
+    private final Counter             offersExpired;
+    private final Counter             offersRejected;
+
+    public DispatchEngine(OpenRideIndex openRides,
+                          DriverLocationService drivers,
+                          DriverFeedService feedService,
+                          BusyDriverRegistry busyDrivers,
+                          SimpMessagingTemplate ws,
+                          MeterRegistry metrics,
+                          @Value("${app.dispatch.enabled:false}")         boolean enabled,
+                          @Value("${app.dispatch.window-ms:2000}")        long windowMs,
+                          @Value("${app.dispatch.cell-deg:0.1}")          double cellDeg,
+                          @Value("${app.dispatch.max-pickup-km:5}")       double maxPickupKm,
+                          @Value("${app.dispatch.offer-timeout-ms:15000}") long offerTimeoutMs,
+                          @Value("${app.dispatch.parallelism:4}")         int parallelism,
+                          @Value("${app.dispatch.max-batch:200}")         int maxBatch) {
+        this.openRides      = openRides;
+        this.drivers        = drivers;
+        this.feedService    = feedService;
+        this.busyDrivers    = busyDrivers;
+        this.ws             = ws;
+        this.enabled        = enabled;
+        this.windowMs       = windowMs;
+        this.cellDeg        = cellDeg;
+        this.maxPickupKm    = maxPickupKm;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.parallelism    = parallelism;
+        this.maxBatch       = maxBatch;
+
+        this.tickTimer      = Timer.builder("dispatch.tick").register(metrics);
+        this.solveTimer     = Timer.builder("dispatch.solve").register(metrics);
+        this.offerLatency   = Timer.builder("dispatch.offer.latency").register(metrics);
+        this.acceptLatency  = Timer.builder("dispatch.accept.latency").register(metrics);
+        this.batchSize      = DistributionSummary.builder("dispatch.batch.rides").register(metrics);
+        this.offersSent     = Counter.builder("dispatch.offers").tag("outcome", "sent").register(metrics);
+        this.offersAccepted = Counter.builder("dispatch.offers").tag("outcome", "accepted").register(metrics);
+        this.offersExpired  = Counter.builder("dispatch.offers").tag("outcome", "expired").register(metrics);
+        this.offersRejected = Counter.builder("dispatch.offers").tag("outcome", "rejected").register(metrics);
+        Gauge.builder("dispatch.offers.pending", offersByRide, Map::size).register(metrics);
+    }
+
+    /* ═════════════ 1) Cycle de vie ═════════════ */
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            log.info("🚦 DispatchEngine désactivé (app.dispatch.enabled=false)");
+            return;
+        }
+        AtomicInteger n = new AtomicInteger();
+        ticker  = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "dispatch-tick"));
+        workers = Executors.newFixedThreadPool(parallelism,
+                r -> daemon(r, "dispatch-" + n.incrementAndGet()));
+        ticker.scheduleWithFixedDelay(this::tick, windowMs, windowMs, TimeUnit.MILLISECONDS);
+
+        log.info("🚦 DispatchEngine démarré – fenêtre {} ms, cellule {}°, {} worker(s), {} chauffeur(s) occupé(s)",
+                windowMs, cellDeg, parallelism, busyDrivers.size());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (ticker  != null) ticker.shutdownNow();
+        if (workers != null) workers.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /* ═════════════ 2) Micro-lot ═════════════ */
+
+    void tick() {
+        long t0 = System.nanoTime();
+        try {
+            Map<Long, List<OpenRide>> byCell = openRides
+                    .snapshot(r -> r.status() == RideStatus.REQUESTED && !offersByRide.containsKey(r.rideId()))
+                    .stream()
+                    .collect(Collectors.groupingBy(r -> GeoGrid.cellKey(r.pickupLat(), r.pickupLng(), cellDeg)));
+            if (byCell.isEmpty()) return;
+
+            List<Future<?>> futures = new ArrayList<>(byCell.size());
+            byCell.forEach((cell, rides) -> futures.add(workers.submit(() -> dispatchCell(cell, rides))));
+            for (Future<?> f : futures) {
+                try {
+                    f.get(windowMs, TimeUnit.MILLISECONDS);
+                } catch (Exception ex) {
+                    log.warn("⚠️  Dispatch – cellule en échec : {}", ex.toString());
+                }
+            }
+        } catch (Exception ex) {
+            log.error("❌ Dispatch tick failed", ex);
+        } finally {
+            tickTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void dispatchCell(long cell, List<OpenRide> cellRides) {
+        List<OpenRide> rides = cellRides.stream()
+                .sorted(Comparator.comparing(OpenRide::createdAt,
+                        Comparator.nullsLast(Comparator.naturalOrder())))   // les plus anciennes d’abord
+                .limit(maxBatch)
+                .toList();
+        batchSize.record(rides.size());
+
+        /* Chauffeurs libres autour de la cellule (demi-diagonale + rayon max) */
+        double centerLat = (GeoGrid.rowOf(cell) + 0.5) * cellDeg - 90.0;
+        double centerLng = (GeoGrid.colOf(cell) + 0.5) * cellDeg - 180.0;
+        double halfDiag  = GeoGrid.haversineKm(centerLat, centerLng,
+                centerLat + cellDeg / 2, centerLng + cellDeg / 2);
+        List<DriverPositionIndex.Hit> candidates = drivers
+                .withinRadiusHits(centerLat, centerLng, halfDiag + maxPickupKm).stream()
+                .filter(d -> !busyDrivers.isBusy(d.driverId())
+                          && !offersByDriver.containsKey(d.driverId()))
+                .toList();
+        if (candidates.isEmpty()) return;
+
+        /* Matrice des coûts : distance de prise en charge (km) */
+        double[][] cost = new double[rides.size()][candidates.size()];
+        for (int i = 0; i < rides.size(); i++) {
+            OpenRide r       = rides.get(i);
+            Set<Long> refused = refusedBy.getOrDefault(r.rideId(), Set.of());
+            for (int j = 0; j < candidates.size(); j++) {
+                DriverPositionIndex.Hit d = candidates.get(j);
+                double km = GeoGrid.haversineKm(r.pickupLat(), r.pickupLng(), d.lat(), d.lng());
+                cost[i][j] = km > maxPickupKm || refused.contains(d.driverId())
+                        ? HungarianSolver.INFEASIBLE : km;
+            }
+        }
+
+        int[] assignment = solveTimer.record(() -> HungarianSolver.solve(cost));
+        for (int i = 0; i < assignment.length; i++) {
+            int j = assignment[i];
+            if (j >= 0) offer(rides.get(i), candidates.get(j).driverId(), cost[i][j]);
+        }
+    }
+
+    private void offer(OpenRide ride, long driverId, double pickupKm) {
+        long now = System.currentTimeMillis();
+        DispatchOffer o = new DispatchOffer(ride.rideId(), driverId, pickupKm, now, now + offerTimeoutMs);
+
+        /* Réservation atomique : une cellule voisine a pu prendre ce chauffeur */
+        if (offersByDriver.putIfAbsent(driverId, o) != null) return;
+        if (offersByRide.putIfAbsent(ride.rideId(), o) != null) {
+            offersByDriver.remove(driverId, o);
+            return;
+        }
+
+        try {
+            ws.convertAndSendToUser(String.valueOf(driverId), DESTINATION,
+                    DispatchOfferMessage.offer(feedService.toOffer(ride, pickupKm),
+                            OffsetDateTime.ofInstant(Instant.ofEpochMilli(o.expiresAtMs()), ZoneOffset.UTC)));
+        } catch (Exception ex) {
+            log.warn("⚠️  Dispatch – offre ride #{} → driver #{} non délivrée : {}",
+                    ride.rideId(), driverId, ex.getMessage());
+            release(o);
+            return;
+        }
+
+        offersSent.increment();
+        if (ride.createdAt() != null)
+            offerLatency.record(Duration.between(ride.createdAt().toInstant(), Instant.ofEpochMilli(now)));
+        ticker.schedule(() -> expire(o), offerTimeoutMs, TimeUnit.MILLISECONDS);
+
+        log.debug("📨 Dispatch – ride #{} proposée au driver #{} ({} km)",
+                ride.rideId(), driverId, String.format("%.2f", pickupKm));
+    }
+
+    /* ═════════════ 3) Réponses chauffeur ═════════════ */
+
+    /**
+     * Garde appelée avant l’acceptation : la course est-elle réservée
+     * à un autre chauffeur ?
+     *
+     * @throws IllegalStateException si l’offre exclusive appartient à un autre chauffeur
+     */
+    public void checkCanAccept(Long rideId, Long driverId) {
+        if (!enabled) return;
+        DispatchOffer o = offersByRide.get(rideId);
+        if (o != null && !o.driverId().equals(driverId))
+            throw new IllegalStateException("Ride offered to another driver");
+    }
+
+    /** Refus explicite de l’offre par le chauffeur ciblé. */
+    public boolean reject(Long rideId, Long driverId) {
+        DispatchOffer o = offersByRide.get(rideId);
+        if (o == null || !o.driverId().equals(driverId) || !release(o)) return false;
+        refuse(o);
+        offersRejected.increment();
+        return true;
+    }
+
+    private void expire(DispatchOffer o) {
+        if (!release(o)) return;                               // déjà acceptée / refusée
+        refuse(o);
+        offersExpired.increment();
+        notifyRevoked(o);
+    }
+
+    /* ═════════════ 4) Transitions (post-commit) ═════════════ */
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(RideStatusChangedEvent e) {
+        Long rideId = e.getRideId();
+
+        if (e.getStatus() == RideStatus.REQUESTED) return;
+        refusedBy.remove(rideId);
+
+        DispatchOffer o = offersByRide.get(rideId);
+        if (o == null || !release(o)) return;
+        if (o.driverId().equals(e.getDriverId())) {
+            offersAccepted.increment();
+            acceptLatency.record(System.currentTimeMillis() - o.offeredAtMs(), TimeUnit.MILLISECONDS);
+        } else {
+            notifyRevoked(o);                                    // annulée / prise hors dispatch
+        }
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    /** Libère l’offre (course + chauffeur) ; {@code false} si déjà libérée. */
+    private boolean release(DispatchOffer o) {
+        if (!offersByRide.remove(o.rideId(), o)) return false;
+        offersByDriver.remove(o.driverId(), o);
+        return true;
+    }
+
+    private void refuse(DispatchOffer o) {
+        refusedBy.computeIfAbsent(o.rideId(), k -> ConcurrentHashMap.newKeySet()).add(o.driverId());
+    }
+
+    private void notifyRevoked(DispatchOffer o) {
+        try {
+            ws.convertAndSendToUser(String.valueOf(o.driverId()), DESTINATION,
+                    DispatchOfferMessage.revoked(o.rideId()));
+        } catch (Exception ex) {
+            log.debug("Dispatch – révocation ride #{} non délivrée : {}", o.rideId(), ex.getMessage());
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
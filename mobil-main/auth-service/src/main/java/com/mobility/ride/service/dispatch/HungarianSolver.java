@@ -0,0 +1,104 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/dispatch/HungarianSolver.java
+//  v2025-10-15 – affectation biparti de coût minimal (méthode hongroise)
+//  v2025-10-16 – coûts infinis / NaN ramenés à INFEASIBLE (boucle sans fin)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.dispatch;
+
+import java.util.Arrays;
+
+/**
+ * Méthode hongroise (potentiels + chemins augmentants), O(n²·m).
+ *
+ * <p>Accepte une matrice rectangulaire {@code cost[n][m]} : si {@code n > m}
+ * la matrice est transposée en interne. Un coût {@code >= INFEASIBLE}
+ * (y compris {@code +∞} ou {@code NaN}) signifie « paire interdite » ; elle
+ * n’apparaît jamais dans le résultat.</p>
+ *
+ * <p>Aucune dépendance Spring : appelé depuis les workers du
+ * {@link DispatchEngine} sur des lots de quelques dizaines de lignes.</p>
+ */
+public final class HungarianSolver {
+
+    public static final double INFEASIBLE = 1e9;
+
+    private HungarianSolver() { }
+
+    /**
+     * @return pour chaque ligne, l’indice de colonne affecté ou {@code -1}
+     */
+    public static int[] solve(double[][] cost) {
+        int n = cost.length;
+        if (n == 0) return new int[0];
+        int m = cost[0].length;
+        int[] result = new int[n];
+        Arrays.fill(result, -1);
+        if (m == 0) return result;
+
+        boolean transposed = n > m;
+        double[][] a = bounded(cost, n, m, transposed);
+        int rows = transposed ? m : n;
+        int cols = transposed ? n : m;
+
+        int[] colMatch = assign(a, rows, cols);          // colonne → ligne (1-based, 0 = libre)
+
+        for (int j = 1; j <= cols; j++) {
+            int i = colMatch[j];
+            if (i == 0) continue;
+            int r = transposed ? j - 1 : i - 1;
+            int c = transposed ? i - 1 : j - 1;
+            if (cost[r][c] < INFEASIBLE) result[r] = c;
+        }
+        return result;
+    }
+
+    /** Cœur de l’algorithme (rows ≤ cols), indices 1-based. */
+    private static int[] assign(double[][] a, int rows, int cols) {
+        double[] u   = new double[rows + 1];
+        double[] v   = new double[cols + 1];
+        int[]    p   = new int[cols + 1];
+        int[]    way = new int[cols + 1];
+        double[] minv = new double[cols + 1];
+        boolean[] used = new boolean[cols + 1];
+
+        for (int i = 1; i <= rows; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int    i0    = p[j0], j1 = 0;
+                double delta = Double.POSITIVE_INFINITY;
+                for (int j = 1; j <= cols; j++) {
+                    if (used[j]) continue;
+                    double cur = a[i0 - 1][j - 1] - u[i0] - v[j];
+                    if (cur < minv[j]) { minv[j] = cur; way[j] = j0; }
+                    if (minv[j] < delta) { delta = minv[j]; j1 = j; }
+                }
+                for (int j = 0; j <= cols; j++) {
+                    if (used[j]) { u[p[j]] += delta; v[j] -= delta; }
+                    else         { minv[j] -= delta; }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+        return p;
+    }
+
+    /** Copie (transposée si besoin) où toute paire interdite vaut exactement INFEASIBLE : un +∞ rendrait les potentiels NaN. */
+    private static double[][] bounded(double[][] c, int n, int m, boolean transpose) {
+        double[][] t = transpose ? new double[m][n] : new double[n][m];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < m; j++) {
+                double v = c[i][j] < INFEASIBLE ? c[i][j] : INFEASIBLE;      // NaN → INFEASIBLE
+                if (transpose) t[j][i] = v; else t[i][j] = v;
+            }
+        return t;
+    }
+}
@@ -0,0 +1,314 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/outbox/OutboxDispatcher.java
+//  v2025-10-16 – livraison de l’outbox : lots SKIP LOCKED, workers, reprises
+//  v2025-10-17 – un message par course et par lot : passages enchaînés tant qu’il en reste
+//  v2025-10-17 – canal CANCELLATION_FEE (capture PSP des frais no-show)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mobility.ride.model.OutboxChannel;
+import com.mobility.ride.model.OutboxMessage;
+import com.mobility.ride.model.Ride;
+import com.mobility.ride.repository.OutboxMessageRepository;
+import com.mobility.ride.repository.RideRepository;
+import com.mobility.ride.service.NotificationService;
+import com.mobility.ride.service.PaymentService;
+import com.mobility.ride.service.outbox.OutboxService.CancellationFee;
+import com.mobility.ride.service.outbox.OutboxService.RideStatusPush;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h2>OutboxDispatcher</h2>
+ *
+ * <p>Vide {@code outbox_messages} hors de toute transaction métier :</p>
+ * <ul>
+ *   <li>un thread {@code outbox-poll} réclame un lot de {@code batch-size}
+ *       messages ({@code FOR UPDATE SKIP LOCKED}, bail {@code lease-ms}) –
+ *       toutes les {@code poll-ms}, ou aussitôt après un commit qui en a
+ *       écrit ({@link #wakeUp()}) ;</li>
+ *   <li>le lot est réparti sur {@code workers} threads par course
+ *       ({@code rideId} haché) : les messages d’une course restent livrés
+ *       dans l’ordre ;</li>
+ *   <li>livré ⇒ supprimé ; échec ⇒ nouvel essai avec attente exponentielle
+ *       ({@code backoff-ms} × 2<sup>n</sup>), les messages suivants de la
+ *       même course étant différés d’autant ; au-delà de
+ *       {@code max-attempts} ⇒ {@code dead_at}.</li>
+ * </ul>
+ *
+ * <p>Livraison « au moins une fois » (une instance qui meurt en cours de lot
+ * rend ses messages à l’expiration du bail).</p>
+ *
+ * <p>Métriques : {@code outbox.lag} (écriture → livraison),
+ * {@code outbox.delivered{channel}}, {@code outbox.retries},
+ * {@code outbox.dead}.</p>
+ */
+@Slf4j
+@Component
+public class OutboxDispatcher {
+
+    private final OutboxMessageRepository repo;
+    private final TransactionTemplate     tx;
+    private final SimpMessagingTemplate   ws;
+    private final NotificationService     notifications;
+    private final RideRepository          rides;
+    private final PaymentService          payments;
+    private final ObjectMapper            json;
+
+    private final String node = UUID.randomUUID().toString();
+
+    private final long pollMs;
+    private final int  batchSize;
+    private final int  workers;
+    private final long leaseMs;
+    private final int  maxAttempts;
+    private final long backoffMs;
+
+    private ScheduledExecutorService poller;
+    private ExecutorService          pool;
+    private final AtomicBoolean      wakePending = new AtomicBoolean();
+
+    private final Timer                        lag;
+    private final Counter                      retries;
+    private final Counter                      dead;
+    private final Map<OutboxChannel, Counter>  delivered = new EnumMap<>(OutboxChannel.class);
+
+    /** Résultat d’un message : livré, en échec (avec cause) ou différé derrière un échec. */
+    private record Outcome(OutboxMessage msg, Exception error, OffsetDateTime deferredTo) {
+        boolean ok() { return error == null && deferredTo == null; }
+    }
+
+    public OutboxDispatcher(OutboxMessageRepository repo,
+                            TransactionTemplate tx,
+                            SimpMessagingTemplate ws,
+                            NotificationService notifications,
+                            RideRepository rides,
+                            PaymentService payments,
+                            ObjectMapper json,
+                            MeterRegistry metrics,
+                            @Value("${app.outbox.poll-ms:500}")      long pollMs,
+                            @Value("${app.outbox.batch-size:100}")   int  batchSize,
+                            @Value("${app.outbox.workers:4}")        int  workers,
+                            @Value("${app.outbox.lease-ms:30000}")   long leaseMs,
+                            @Value("${app.outbox.max-attempts:8}")   int  maxAttempts,
+                            @Value("${app.outbox.backoff-ms:1000}")  long backoffMs) {
+        this.repo          = repo;
+        this.tx            = tx;
+        this.ws            = ws;
+        this.notifications = notifications;
+        this.rides         = rides;
+        this.payments      = payments;
+        this.json          = json;
+        this.pollMs        = pollMs;
+        this.batchSize     = batchSize;
+        this.workers       = workers;
+        this.leaseMs       = leaseMs;
+        this.maxAttempts   = maxAttempts;
+        this.backoffMs     = backoffMs;
+
+        this.lag     = Timer.builder("outbox.lag").publishPercentiles(0.5, 0.99).register(metrics);
+        this.retries = Counter.builder("outbox.retries").register(metrics);
+        this.dead    = Counter.builder("outbox.dead").register(metrics);
+        for (OutboxChannel c : OutboxChannel.values())
+            delivered.put(c, Counter.builder("outbox.delivered").tag("channel", c.name()).register(metrics));
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicInteger n = new AtomicInteger();
+        poller = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "outbox-poll"));
+        pool   = Executors.newFixedThreadPool(workers, r -> daemon(r, "outbox-" + n.incrementAndGet()));
+        poller.scheduleWithFixedDelay(this::drain, 0, pollMs, TimeUnit.MILLISECONDS);
+        log.info("📤 OutboxDispatcher démarré – nœud {}, lots de {}, {} worker(s)", node, batchSize, workers);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (poller != null) poller.shutdownNow();
+        if (pool   != null) pool.shutdownNow();
+    }
+
+    /** Demande un passage immédiat (coalescé : un seul en attente). */
+    public void wakeUp() {
+        if (poller != null && wakePending.compareAndSet(false, true))
+            poller.execute(() -> {
+                wakePending.set(false);
+                drain();
+            });
+    }
+
+    /* ═════════════ 1) Boucle de livraison (thread outbox-poll) ═════════════ */
+
+    void drain() {
+        try {
+            int n;
+            do {
+                List<OutboxMessage> batch = claim();
+                n = batch.size();
+                if (n > 0) settle(dispatch(batch));
+            } while (n > 0);          // le successeur d’une course n’est éligible qu’au lot suivant
+        } catch (Exception ex) {
+            log.warn("⚠️  OutboxDispatcher – passage échoué : {}", ex.getMessage());
+        }
+    }
+
+    private List<OutboxMessage> claim() {
+        List<OutboxMessage> rows = tx.execute(st -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            List<OutboxMessage> locked = repo.lockDeliverable(now, batchSize);
+            for (OutboxMessage m : locked) {
+                m.setOwner(node);
+                m.setLeaseUntil(now.plus(Duration.ofMillis(leaseMs)));
+            }
+            return repo.saveAll(locked);
+        });
+        return rows == null ? List.of() : rows;
+    }
+
+    /** Répartit le lot par course sur les workers et attend la fin. */
+    private List<Outcome> dispatch(List<OutboxMessage> batch) throws InterruptedException {
+        List<List<OutboxMessage>> parts = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) parts.add(new ArrayList<>());
+        for (OutboxMessage m : batch) {
+            long key = m.getRideId() == null ? m.getId() : m.getRideId();
+            parts.get((int) Math.floorMod(key, (long) workers)).add(m);
+        }
+
+        List<Callable<List<Outcome>>> tasks = new ArrayList<>();
+        for (List<OutboxMessage> part : parts)
+            if (!part.isEmpty()) tasks.add(() -> deliverInOrder(part));
+
+        List<Outcome> out = new ArrayList<>(batch.size());
+        for (Future<List<Outcome>> f : pool.invokeAll(tasks)) {
+            try {
+                out.addAll(f.get());
+            } catch (Exception ex) {
+                log.error("❌ OutboxDispatcher – worker en échec : {}", ex.getMessage(), ex);
+            }
+        }
+        return out;
+    }
+
+    private List<Outcome> deliverInOrder(List<OutboxMessage> part) {
+        List<Outcome>             out     = new ArrayList<>(part.size());
+        Map<Long, OffsetDateTime> blocked = new HashMap<>();        // rideId → reprise
+        for (OutboxMessage m : part) {
+            OffsetDateTime resume = m.getRideId() == null ? null : blocked.get(m.getRideId());
+            if (resume != null) {
+                out.add(new Outcome(m, null, resume));
+                continue;
+            }
+            try {
+                deliver(m);
+                out.add(new Outcome(m, null, null));
+                delivered.get(m.getChannel()).increment();
+                if (m.getCreatedAt() != null)
+                    lag.record(Duration.between(m.getCreatedAt(), OffsetDateTime.now()));
+            } catch (Exception ex) {
+                out.add(new Outcome(m, ex, null));
+                if (m.getRideId() != null) blocked.put(m.getRideId(), nextAttempt(m.getAttempts() + 1));
+            }
+        }
+        return out;
+    }
+
+    /* ═════════════ 2) Livraison par canal ═════════════ */
+
+    private void deliver(OutboxMessage m) throws Exception {
+        switch (m.getChannel()) {
+            case WEBSOCKET -> ws.convertAndSend(m.getDestination(), json.readTree(m.getPayload()));
+            case RIDE_STATUS_PUSH -> {
+                RideStatusPush p = json.readValue(m.getPayload(), RideStatusPush.class);
+                notifications.notifyRideStatus(p.rideId(), p.status(), p.riderId(), p.driverId());
+            }
+            case CANCELLATION_FEE -> {
+                CancellationFee f = json.readValue(m.getPayload(), CancellationFee.class);
+                Ride ride = rides.findById(f.rideId())
+                        .orElseThrow(() -> new EntityNotFoundException("RIDE_NOT_FOUND"));
+                payments.captureCancellationFee(ride, f.amount(), f.currency());
+                log.warn("🚫 Cancellation fee {} {} charged for ride {}", f.amount(), f.currency(), f.rideId());
+            }
+        }
+    }
+
+    /* ═════════════ 3) Bilan du lot ═════════════ */
+
+    private void settle(List<Outcome> outcomes) {
+        List<Long>          done  = new ArrayList<>();
+        List<OutboxMessage> again = new ArrayList<>();
+        for (Outcome o : outcomes) {
+            OutboxMessage m = o.msg();
+            if (o.ok()) { done.add(m.getId()); continue; }
+
+            m.setOwner(null);
+            m.setLeaseUntil(null);
+            if (o.deferredTo() != null) {
+                m.setNextAttemptAt(o.deferredTo());
+            } else {
+                int attempts = m.getAttempts() + 1;
+                m.setAttempts(attempts);
+                m.setLastError(truncate(o.error().getClass().getSimpleName() + ": " + o.error().getMessage()));
+                if (attempts >= maxAttempts) {
+                    m.setDeadAt(OffsetDateTime.now());
+                    dead.increment();
+                    log.error("☠️ Outbox #{} ({}) abandonné après {} essai(s) : {}",
+                            m.getId(), m.getChannel(), attempts, m.getLastError());
+                } else {
+                    m.setNextAttemptAt(nextAttempt(attempts));
+                    retries.increment();
+                    log.warn("⚠️  Outbox #{} ({}) en échec, essai {} / {} : {}",
+                            m.getId(), m.getChannel(), attempts, maxAttempts, m.getLastError());
+                }
+            }
+            again.add(m);
+        }
+        tx.executeWithoutResult(st -> {
+            if (!done.isEmpty())  repo.deleteAllByIdInBatch(done);
+            if (!again.isEmpty()) repo.saveAll(again);
+        });
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private OffsetDateTime nextAttempt(int attempts) {
+        long delay = backoffMs << Math.min(attempts - 1, 16);
+        return OffsetDateTime.now().plus(Duration.ofMillis(delay));
+    }
+
+    private static String truncate(String s) {
+        return s == null || s.length() <= 512 ? s : s.substring(0, 512);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,98 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/outbox/OutboxService.java
+//  v2025-10-16 – écriture des effets de bord dans la transaction métier
+//  v2025-10-17 – capture des frais no-show via l’outbox (reprises PSP)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mobility.ride.model.OutboxChannel;
+import com.mobility.ride.model.OutboxMessage;
+import com.mobility.ride.model.Ride;
+import com.mobility.ride.model.RideStatus;
+import com.mobility.ride.repository.OutboxMessageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * <h2>OutboxService</h2>
+ *
+ * <p>Remplace les appels directs {@code ws.convertAndSend} /
+ * {@code notificationService.notifyRideStatus} des transitions : le
+ * message est inséré dans {@code outbox_messages} par la transaction
+ * appelante (obligatoire), puis livré après commit par
+ * {@link OutboxDispatcher}. Le verrou de la course n’est donc plus tenu
+ * pendant un appel réseau, et un rollback n’émet rien.</p>
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    /** Charge utile du canal {@link OutboxChannel#RIDE_STATUS_PUSH}. */
+    public record RideStatusPush(Long rideId, RideStatus status, Long riderId, Long driverId) { }
+
+    /** Charge utile du canal {@link OutboxChannel#CANCELLATION_FEE}. */
+    public record CancellationFee(Long rideId, BigDecimal amount, String currency) { }
+
+    private final OutboxMessageRepository repo;
+    private final ObjectMapper            json;
+    private final OutboxDispatcher        dispatcher;
+
+    /** Message STOMP vers {@code destination}, corps sérialisé en JSON. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void websocket(Long rideId, String destination, Object payload) {
+        enqueue(OutboxChannel.WEBSOCKET, rideId, destination, payload);
+    }
+
+    /** Push « changement de statut » au rider et au chauffeur de la course. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void rideStatusPush(Ride r) {
+        enqueue(OutboxChannel.RIDE_STATUS_PUSH, r.getId(), null,
+                new RideStatusPush(r.getId(), r.getStatus(), r.getRiderId(), r.getDriverId()));
+    }
+
+    /**
+     * Capture des frais d’annulation de {@code r} : écrite avec l’annulation,
+     * rejouée par le dispatcher tant que le PSP échoue.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void cancellationFee(Ride r, BigDecimal amount, String currency) {
+        enqueue(OutboxChannel.CANCELLATION_FEE, r.getId(), null,
+                new CancellationFee(r.getId(), amount, currency));
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private void enqueue(OutboxChannel channel, Long rideId, String destination, Object payload) {
+        String body;
+        try {
+            body = json.writeValueAsString(payload);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Outbox payload not serializable: " + ex.getMessage(), ex);
+        }
+        repo.save(OutboxMessage.builder()
+                .channel(channel)
+                .rideId(rideId)
+                .destination(destination)
+                .payload(body)
+                .nextAttemptAt(OffsetDateTime.now())
+                .build());
+        wakeAfterCommit();
+    }
+
+    /** Réveille le dispatcher dès le commit (sans attendre le prochain poll). */
+    private void wakeAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCommit() { dispatcher.wakeUp(); }
+        });
+    }
+}
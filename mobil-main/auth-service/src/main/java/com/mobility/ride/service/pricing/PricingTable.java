@@ -0,0 +1,177 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/pricing/PricingTable.java
+//  v2025-10-16 – barème compilé : cityId × ProductType → tarif (immuable)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.pricing;
+
+import com.mobility.ride.config.PricingProperties;
+import com.mobility.ride.model.ProductType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h2>PricingTable</h2>
+ *
+ * <p>Compilation de {@link PricingProperties} en tableaux denses :</p>
+ * <ul>
+ *   <li>{@code cityIds} trié → indice de ville par recherche dichotomique
+ *       (aucun boxing, aucun stream) ;</li>
+ *   <li>{@code tariffs[ville][ProductType.ordinal()]} → {@link Tariff}
+ *       pré-résolu (forfait, tarif au km, devise, commission).</li>
+ * </ul>
+ *
+ * <p>Un cityId absent retombe sur le bloc {@code default} ; un produit sans
+ * tarif sur le barème global de secours. Instance immuable : un rechargement
+ * construit une nouvelle table, publiée atomiquement par
+ * {@link PricingTableHolder}.</p>
+ */
+public final class PricingTable {
+
+    /** Échelle monétaire des devis (inchangée : 2 décimales). */
+    public static final int MONEY_SCALE = 2;
+
+    /** Barème-secours (si YAML manquant). */
+    static final Map<ProductType, Double> GLOBAL_RATE_PER_KM = new EnumMap<>(ProductType.class);
+    static {
+        GLOBAL_RATE_PER_KM.put(ProductType.X,        2.90);
+        GLOBAL_RATE_PER_KM.put(ProductType.POOL,     2.03);
+        GLOBAL_RATE_PER_KM.put(ProductType.MOTO,     1.50);
+        GLOBAL_RATE_PER_KM.put(ProductType.COMFORT,  3.20);
+        GLOBAL_RATE_PER_KM.put(ProductType.XL,       4.00);
+        GLOBAL_RATE_PER_KM.put(ProductType.BLACK,    4.50);
+        GLOBAL_RATE_PER_KM.put(ProductType.LUX,      5.80);
+        GLOBAL_RATE_PER_KM.put(ProductType.DELIVERY, 2.90);
+    }
+
+    private static final double DEFAULT_SHARE = 0.20;
+    private static final ProductType[] PRODUCTS = ProductType.values();
+
+    /**
+     * Tarif pré-résolu.
+     *
+     * @param flatFare       forfait fixe, {@code NaN} si tarification au km
+     * @param fallbackCity   vrai si le cityId demandé était absent du YAML
+     */
+    public record Tariff(long        cityId,
+                         String      market,
+                         ProductType productType,
+                         String      currency,
+                         double      ratePerKm,
+                         double      flatFare,
+                         double      platformShare,
+                         boolean     fallbackCity) {
+
+        public boolean hasFlatFare() { return !Double.isNaN(flatFare); }
+
+        /** Prix de base (avant surge). */
+        public double base(double distanceKm) {
+            return hasFlatFare() ? flatFare : distanceKm * ratePerKm;
+        }
+
+        Tariff asFallback() {
+            return new Tariff(cityId, market, productType, currency, ratePerKm, flatFare, platformShare, true);
+        }
+    }
+
+    private final long[]     cityIds;      // trié
+    private final Tariff[][] tariffs;      // [indice ville][ordinal produit]
+    private final Tariff[]   defaults;     // bloc « default », marqué fallbackCity
+    private final String     defaultCurrency;
+    private final long       version;
+
+    private PricingTable(long[] cityIds, Tariff[][] tariffs, Tariff[] defaults,
+                         String defaultCurrency, long version) {
+        this.cityIds         = cityIds;
+        this.tariffs         = tariffs;
+        this.defaults        = defaults;
+        this.defaultCurrency = defaultCurrency;
+        this.version         = version;
+    }
+
+    /* ═════════════ 1) Lectures (O(log villes), sans allocation) ═════════════ */
+
+    public Tariff tariff(Long cityId, ProductType product) {
+        int i = cityId == null ? -1 : Arrays.binarySearch(cityIds, cityId);
+        return i >= 0 ? tariffs[i][product.ordinal()] : defaults[product.ordinal()];
+    }
+
+    /** Devise de la ville, sinon celle du bloc {@code default} (ou USD). */
+    public String currencyOf(Long cityId) {
+        int i = cityId == null ? -1 : Arrays.binarySearch(cityIds, cityId);
+        return i >= 0 ? tariffs[i][0].currency() : defaultCurrency;
+    }
+
+    public boolean knows(Long cityId) {
+        return cityId != null && Arrays.binarySearch(cityIds, cityId) >= 0;
+    }
+
+    public int  cityCount() { return cityIds.length; }
+    public long version()   { return version; }
+
+    /* ═════════════ 2) Compilation ═════════════ */
+
+    public static PricingTable compile(PricingProperties props, long version) {
+        Map<String, PricingProperties.Country> countries =
+                props == null || props.getCountry() == null ? Map.of() : props.getCountry();
+
+        PricingProperties.Country def = countries.get("default");
+        String defaultCurrency = def != null && def.getCurrency() != null ? def.getCurrency() : "USD";
+        long   defaultCityId   = def != null && def.getCityId()   != null ? def.getCityId()   : 0L;
+
+        Tariff[] defaults = new Tariff[PRODUCTS.length];
+        for (ProductType p : PRODUCTS)
+            defaults[p.ordinal()] = tariffOf("default", defaultCityId, defaultCurrency, def, p).asFallback();
+
+        /* Villes : premier bloc déclaré gagnant en cas de cityId dupliqué (comme le stream historique) */
+        List<Map.Entry<String, PricingProperties.Country>> cities = new ArrayList<>();
+        for (Map.Entry<String, PricingProperties.Country> e : countries.entrySet()) {
+            Long id = e.getValue().getCityId();
+            if (id == null) continue;
+            if (cities.stream().noneMatch(c -> c.getValue().getCityId().equals(id))) cities.add(e);
+        }
+        cities.sort(Map.Entry.comparingByValue((a, b) -> Long.compare(a.getCityId(), b.getCityId())));
+
+        long[]     ids  = new long[cities.size()];
+        Tariff[][] rows = new Tariff[cities.size()][PRODUCTS.length];
+        for (int i = 0; i < cities.size(); i++) {
+            String                    name = cities.get(i).getKey();
+            PricingProperties.Country c    = cities.get(i).getValue();
+            String cur = c.getCurrency() != null ? c.getCurrency() : defaultCurrency;
+            ids[i] = c.getCityId();
+            for (ProductType p : PRODUCTS)
+                rows[i][p.ordinal()] = tariffOf(name, c.getCityId(), cur, c, p);
+        }
+        return new PricingTable(ids, rows, defaults, defaultCurrency, version);
+    }
+
+    private static Tariff tariffOf(String market, long cityId, String currency,
+                                   PricingProperties.Country c, ProductType p) {
+        String key = p.name();
+
+        /* Forfait fixe éventuel : première valeur déclarée pour le produit */
+        double flat = Double.NaN;
+        if (c != null && c.getFlatFare() != null) {
+            Map<String, Double> ff = c.getFlatFare().get(key);
+            if (ff != null && !ff.isEmpty()) {
+                Double v = ff.values().iterator().next();
+                if (v != null) flat = v;
+            }
+        }
+
+        Double rate = c == null || c.getRatePerKm() == null ? null : c.getRatePerKm().get(key);
+        if (rate == null) rate = GLOBAL_RATE_PER_KM.getOrDefault(p, 1.0);
+
+        Double share = null;
+        if (c != null && c.getPlatformShare() != null) {
+            share = c.getPlatformShare().get(key);
+            if (share == null) share = c.getPlatformShare().get("default");
+        }
+
+        return new Tariff(cityId, market, p, currency, rate, flat,
+                share == null ? DEFAULT_SHARE : share, false);
+    }
+}
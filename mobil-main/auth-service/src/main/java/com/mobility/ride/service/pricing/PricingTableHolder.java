@@ -0,0 +1,94 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/pricing/PricingTableHolder.java
+//  v2025-10-16 – barème compilé au démarrage + rechargement à chaud
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.pricing;
+
+import com.mobility.ride.config.PricingProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Détient la {@link PricingTable} courante (référence volatile, lecture sans verrou).
+ *
+ * <p>Rechargement à chaud : si {@code pricing.reload.file} désigne un YAML
+ * externe (racine {@code pricing:}), sa date de modification est surveillée
+ * toutes les {@code pricing.reload.check-ms} ; un fichier invalide est
+ * ignoré et l’ancienne table reste en service.</p>
+ */
+@Slf4j
+@Component
+public class PricingTableHolder {
+
+    private final PricingProperties properties;
+    private final String            reloadFile;
+    private final AtomicLong        versions = new AtomicLong();
+
+    private volatile PricingTable table;
+    private volatile long         lastModified = -1;
+
+    public PricingTableHolder(PricingProperties properties,
+                              @Value("${pricing.reload.file:}") String reloadFile) {
+        this.properties = properties;
+        this.reloadFile = reloadFile;
+    }
+
+    @PostConstruct
+    void init() {
+        publish(properties, "application.yml");
+        checkForChanges();
+    }
+
+    public PricingTable current() {
+        return table;
+    }
+
+    /** Compile et publie un nouveau barème (appel direct, ex. back-office). */
+    public PricingTable reload(PricingProperties fresh) {
+        return publish(fresh, "reload");
+    }
+
+    @Scheduled(fixedDelayString = "${pricing.reload.check-ms:30000}",
+               initialDelayString = "${pricing.reload.check-ms:30000}")
+    public void checkForChanges() {
+        if (!StringUtils.hasText(reloadFile)) return;
+        Path file = Path.of(reloadFile);
+        try {
+            if (!Files.isRegularFile(file)) return;
+            long mtime = Files.getLastModifiedTime(file).toMillis();
+            if (mtime == lastModified) return;
+
+            YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+            yaml.setResources(new FileSystemResource(file));
+            Properties props = yaml.getObject();
+            PricingProperties fresh = new Binder(new MapConfigurationPropertySource(props))
+                    .bind("pricing", PricingProperties.class)
+                    .orElseThrow(() -> new IllegalStateException("no 'pricing' root"));
+
+            publish(fresh, file.toString());
+            lastModified = mtime;
+        } catch (Exception ex) {
+            log.warn("⚠️  Barème {} non rechargé (ancienne table conservée) : {}", file, ex.getMessage());
+        }
+    }
+
+    private PricingTable publish(PricingProperties props, String source) {
+        PricingTable next = PricingTable.compile(props, versions.incrementAndGet());
+        table = next;
+        log.info("💶 Barème v{} compilé depuis {} – {} ville(s)", next.version(), source, next.cityCount());
+        return next;
+    }
+}
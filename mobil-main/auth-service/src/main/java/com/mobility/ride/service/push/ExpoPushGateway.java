@@ -1,7 +1,7 @@
 package com.mobility.ride.service.push;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
@@ -10,35 +10,51 @@ import org.springframework.web.client.RestTemplate;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Passerelle Expo : lots de {@code maxBatch} messages (100 max côté Expo)
+ * par requête, sur le client HTTP/2 dédié {@code expoRestTemplate}
+ * (connexions persistantes, multiplexées – voir {@code OutboundHttpConfig}).
+ * Les tickets de réponse sont transmis à {@link ExpoReceiptService}.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class ExpoPushGateway implements PushGateway {
 
-    private final RestTemplate rest;
-
-    @Value("${app.push.expo.api:https://exp.host/--/api/v2/push/send}")
-    private String expoApi;
-
-    @Value("${app.push.expo.maxBatch:90}")
-    private int maxBatch;
+    private final RestTemplate       rest;
+    private final ExpoReceiptService receipts;
+    private final String             expoApi;
+    private final int                maxBatch;
 
     /** Payload minimal attendu par Expo */
     private record ExpoMsg(String to, String title, String body, Map<String,String> data) {}
 
+    public ExpoPushGateway(ExpoReceiptService receipts,
+                           @Qualifier("expoRestTemplate") RestTemplate rest,
+                           @Value("${app.push.expo.api:https://exp.host/--/api/v2/push/send}") String expoApi,
+                           @Value("${app.push.expo.maxBatch:100}")                            int    maxBatch) {
+        this.receipts = receipts;
+        this.rest     = rest;
+        this.expoApi  = expoApi;
+        this.maxBatch = Math.max(1, Math.min(100, maxBatch));
+    }
+
     @Override
     public void send(List<String> tokens, String title, String body, Map<String, String> data) {
         if (tokens == null || tokens.isEmpty()) return;
+        sendAll(tokens.stream().map(tok -> PushMessage.of(tok, title, body, data)).toList());
+    }
 
-        List<List<String>> batches = chunk(tokens, Math.max(1, maxBatch));
+    @Override
+    public void sendAll(List<PushMessage> messages) {
+        if (messages == null || messages.isEmpty()) return;
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.setAccept(List.of(MediaType.APPLICATION_JSON));
 
-        for (List<String> batch : batches) {
+        for (List<PushMessage> batch : chunk(messages, maxBatch)) {
             List<ExpoMsg> payload = batch.stream()
-                    .map(tok -> new ExpoMsg(tok, title, body, data))
+                    .map(m -> new ExpoMsg(m.to(), m.title(), m.body(), m.data()))
                     .collect(Collectors.toList());
 
             HttpEntity<List<ExpoMsg>> req = new HttpEntity<>(payload, headers);
@@ -48,7 +64,8 @@ public class ExpoPushGateway implements PushGateway {
                 if (!res.getStatusCode().is2xxSuccessful()) {
                     log.warn("Expo push failed HTTP={} body={}", res.getStatusCode(), res.getBody());
                 } else {
-                    log.debug("Expo push OK ({} tokens)", batch.size());
+                    log.debug("Expo push OK ({} messages)", batch.size());
+                    receipts.onTickets(batch, res.getBody());
                 }
             } catch (Exception e) {
                 log.warn("Expo push error: {}", e.getMessage());
@@ -0,0 +1,160 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/push/ExpoReceiptService.java
+//  v2025-10-16 – reçus Expo : élagage des tokens DeviceNotRegistered
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.push;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mobility.auth.service.PushTokenCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <h2>ExpoReceiptService</h2>
+ *
+ * <p>Expo répond à l’envoi par un <em>ticket</em> par message ; l’issue
+ * réelle (reçu) n’est disponible qu’ensuite via {@code getReceipts}.</p>
+ * <ul>
+ *   <li>ticket en erreur {@code DeviceNotRegistered} ⇒ token élagué
+ *       immédiatement ({@link #onTickets}) ;</li>
+ *   <li>ticket OK ⇒ conservé en mémoire ; après {@code delay-min}, les reçus
+ *       sont demandés par paquets de 1000 ids et les tokens
+ *       {@code DeviceNotRegistered} élagués ({@link PushTokenCache#prune}).</li>
+ * </ul>
+ *
+ * <p>Suivi « au mieux » : borné à {@code max-pending} tickets, perdu au
+ * redémarrage (Expo ne garde les reçus que 24 h).</p>
+ */
+@Slf4j
+@Component
+public class ExpoReceiptService {
+
+    private static final String DEVICE_NOT_REGISTERED = "DeviceNotRegistered";
+    private static final int    RECEIPTS_PER_CALL     = 1000;          // limite Expo
+    private static final long   RECEIPT_TTL_MS        = Duration.ofHours(24).toMillis();
+
+    /** Ticket en attente de reçu. */
+    private record Ticket(String token, long sentAtMs) { }
+
+    private final PushTokenCache tokens;
+    private final ObjectMapper   json;
+    private final RestTemplate   rest;
+    private final String         receiptsApi;
+    private final long           delayMs;
+    private final int            maxPending;
+
+    private final Map<String, Ticket> pending = new ConcurrentHashMap<>();
+    private final Counter             pruned;
+
+    public ExpoReceiptService(PushTokenCache tokens,
+                              ObjectMapper json,
+                              MeterRegistry metrics,
+                              @Qualifier("expoRestTemplate") RestTemplate rest,
+                              @Value("${app.push.expo.receipts.api:https://exp.host/--/api/v2/push/getReceipts}") String receiptsApi,
+                              @Value("${app.push.expo.receipts.delay-min:15}")       long delayMin,
+                              @Value("${app.push.expo.receipts.max-pending:100000}") int  maxPending) {
+        this.tokens      = tokens;
+        this.json        = json;
+        this.rest        = rest;
+        this.receiptsApi = receiptsApi;
+        this.delayMs     = Duration.ofMinutes(delayMin).toMillis();
+        this.maxPending  = maxPending;
+
+        this.pruned = Counter.builder("push.tokens.pruned").register(metrics);
+        Gauge.builder("push.receipts.pending", pending, Map::size).register(metrics);
+    }
+
+    /* ═════════════ 1) Tickets (thread d’envoi) ═════════════ */
+
+    /**
+     * @param batch   messages envoyés, dans l’ordre de la requête
+     * @param tickets corps de la réponse Expo ({@code {"data":[…]}})
+     */
+    public void onTickets(List<PushMessage> batch, String tickets) {
+        if (tickets == null || tickets.isBlank()) return;
+        try {
+            JsonNode data = json.readTree(tickets).path("data");
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < data.size() && i < batch.size(); i++) {
+                JsonNode t     = data.get(i);
+                String   token = batch.get(i).to();
+                if ("ok".equals(t.path("status").asText())) {
+                    String id = t.path("id").asText(null);
+                    if (id != null && pending.size() < maxPending) pending.put(id, new Ticket(token, now));
+                } else if (DEVICE_NOT_REGISTERED.equals(t.path("details").path("error").asText())) {
+                    prune(token);
+                }
+            }
+        } catch (Exception ex) {
+            log.debug("Expo tickets illisibles : {}", ex.getMessage());
+        }
+    }
+
+    /* ═════════════ 2) Reçus (planifié) ═════════════ */
+
+    @Scheduled(fixedDelayString = "${app.push.expo.receipts.poll-ms:300000}",
+               initialDelayString = "${app.push.expo.receipts.poll-ms:300000}")
+    public void checkReceipts() {
+        long now = System.currentTimeMillis();
+        pending.values().removeIf(t -> now - t.sentAtMs() > RECEIPT_TTL_MS);
+
+        List<String> due = new ArrayList<>();
+        pending.forEach((id, t) -> { if (now - t.sentAtMs() >= delayMs) due.add(id); });
+
+        for (int from = 0; from < due.size(); from += RECEIPTS_PER_CALL) {
+            List<String> ids = due.subList(from, Math.min(due.size(), from + RECEIPTS_PER_CALL));
+            try {
+                fetch(ids);
+            } catch (Exception ex) {
+                log.warn("Expo receipts error: {}", ex.getMessage());
+                return;                                    // nouvel essai au prochain passage
+            }
+        }
+    }
+
+    private void fetch(List<String> ids) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+
+        String body = rest.exchange(receiptsApi, HttpMethod.POST,
+                new HttpEntity<>(Map.of("ids", ids), headers), String.class).getBody();
+        JsonNode data = json.readTree(body == null ? "{}" : body).path("data");
+
+        for (String id : ids) {
+            JsonNode r = data.get(id);
+            if (r == null) continue;                       // pas encore disponible
+            Ticket t = pending.remove(id);
+            if (t != null && "error".equals(r.path("status").asText())
+                    && DEVICE_NOT_REGISTERED.equals(r.path("details").path("error").asText()))
+                prune(t.token());
+        }
+    }
+
+    private void prune(String token) {
+        try {
+            tokens.prune(token);
+            pruned.increment();
+        } catch (Exception ex) {
+            log.warn("Push token prune failed: {}", ex.getMessage());
+        }
+    }
+}
@@ -22,4 +22,13 @@ public interface PushGateway {
      * @param data    Paires clé/valeur supplémentaires (type, rideId, status…)
      */
     void send(List<String> tokens, String title, String body, Map<String, String> data);
+
+    /**
+     * Envoi d’un lot de messages hétérogènes (destinataires, titres différents).
+     * Par défaut un {@link #send} par message ; les passerelles capables
+     * d’envoyer un lot en une requête (Expo : 100 messages) le redéfinissent.
+     */
+    default void sendAll(List<PushMessage> messages) {
+        for (PushMessage m : messages) send(List.of(m.to()), m.title(), m.body(), m.data());
+    }
 }
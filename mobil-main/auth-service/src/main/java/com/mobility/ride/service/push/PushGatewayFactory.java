@@ -2,15 +2,14 @@ package com.mobility.ride.service.push;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 
 /**
  * Expose dynamiquement la passerelle active (expo | fcm | stub).
  * Pour FCM, tu ajouteras plus tard une FcmPushGateway et un case "fcm".
+ * Alimentée par {@link PushQueue} (point d’entrée {@code @Primary}).
  */
 @Component
-@Primary
 @RequiredArgsConstructor
 public class PushGatewayFactory implements PushGateway {
 
@@ -33,4 +32,9 @@ public class PushGatewayFactory implements PushGateway {
     public void send(java.util.List<String> tokens, String title, String body, java.util.Map<String, String> data) {
         active().send(tokens, title, body, data);
     }
+
+    @Override
+    public void sendAll(java.util.List<PushMessage> messages) {
+        active().sendAll(messages);
+    }
 }
@@ -0,0 +1,17 @@
+package com.mobility.ride.service.push;
+
+import java.util.Map;
+
+/**
+ * Un push destiné à <b>un</b> device : unité de file et de lot
+ * ({@link PushQueue}, {@link PushGateway#sendAll}).
+ *
+ * @param to         device token (Expo : ExponentPushToken[...])
+ * @param enqueuedAt horodatage de mise en file (ms), pour la latence
+ */
+public record PushMessage(String to, String title, String body, Map<String, String> data, long enqueuedAt) {
+
+    public static PushMessage of(String to, String title, String body, Map<String, String> data) {
+        return new PushMessage(to, title, body, data, System.currentTimeMillis());
+    }
+}
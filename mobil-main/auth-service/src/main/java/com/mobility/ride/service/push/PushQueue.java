@@ -0,0 +1,294 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/push/PushQueue.java
+//  v2025-10-16 – file push bornée, lots inter-utilisateurs, débordement en table
+//  v2025-10-17 – génération de débordement (course spill / refill), arrêt sans perte
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.push;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mobility.ride.model.PushSpill;
+import com.mobility.ride.repository.PushSpillRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h2>PushQueue – point d’entrée asynchrone de l’envoi push</h2>
+ *
+ * <p>{@link #send} ne fait que déposer un {@link PushMessage} par device
+ * dans une file mémoire bornée ({@code app.push.queue.capacity}) et rend
+ * la main : plus aucun appel HTTP sur le thread de la requête.</p>
+ * <ul>
+ *   <li>un thread {@code push-batcher} regroupe les messages, tous
+ *       utilisateurs confondus, en lots de {@code batch-size} (100 = maximum
+ *       Expo) pendant au plus {@code linger-ms} ;</li>
+ *   <li>les lots partent sur un pool dédié ({@code senders} threads, file
+ *       bornée : à saturation le batcher envoie lui-même, ce qui freine la
+ *       collecte) vers la passerelle active ({@link PushGatewayFactory}) ;</li>
+ *   <li>file pleine – ou arrêt de l’instance – ⇒ les messages sont écrits
+ *       dans {@code push_spill}, puis réinjectés dès que la file repasse
+ *       sous la moitié de sa capacité.</li>
+ * </ul>
+ *
+ * <p>Métriques : {@code push.queue.depth}, {@code push.queue.spilled},
+ * {@code push.batch.size}, {@code push.send.duration} (requête passerelle),
+ * {@code push.latency} (mise en file → envoi).</p>
+ */
+@Slf4j
+@Component
+@Primary
+public class PushQueue implements PushGateway {
+
+    private final PushGatewayFactory  gateway;
+    private final PushSpillRepository spillRepo;
+    private final TransactionTemplate txNew;
+    private final ObjectMapper        json;
+
+    private final int  capacity;
+    private final int  batchSize;
+    private final long lingerMs;
+    private final int  senders;
+
+    private final BlockingQueue<PushMessage> queue;
+    /** Incrémentée après chaque débordement validé ; refill() vide la table jusqu’à la génération lue. */
+    private final AtomicLong                 spillGeneration = new AtomicLong();
+    private long                             drainedGeneration = -1;                 // batcher ; -1 ⇒ vérifié au démarrage
+    private volatile boolean                 running;
+
+    private Thread             batcher;
+    private ThreadPoolExecutor pool;
+
+    private final DistributionSummary batchSizes;
+    private final Timer               sendDuration;
+    private final Timer               latency;
+    private final Counter             spilled;
+
+    public PushQueue(PushGatewayFactory gateway,
+                     PushSpillRepository spillRepo,
+                     PlatformTransactionManager txManager,
+                     ObjectMapper json,
+                     MeterRegistry metrics,
+                     @Value("${app.push.queue.capacity:10000}") int  capacity,
+                     @Value("${app.push.queue.batch-size:100}") int  batchSize,
+                     @Value("${app.push.queue.linger-ms:50}")   long lingerMs,
+                     @Value("${app.push.queue.senders:2}")      int  senders) {
+        this.gateway   = gateway;
+        this.spillRepo = spillRepo;
+        this.json      = json;
+        this.capacity  = capacity;
+        this.batchSize = Math.max(1, Math.min(100, batchSize));
+        this.lingerMs  = lingerMs;
+        this.senders   = senders;
+        this.queue     = new ArrayBlockingQueue<>(capacity);
+
+        /* Débordement écrit hors de la transaction (souvent read-only) de l’appelant */
+        this.txNew = new TransactionTemplate(txManager);
+        this.txNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        Gauge.builder("push.queue.depth", queue, BlockingQueue::size).register(metrics);
+        this.batchSizes   = DistributionSummary.builder("push.batch.size").register(metrics);
+        this.sendDuration = Timer.builder("push.send.duration").publishPercentiles(0.5, 0.99).register(metrics);
+        this.latency      = Timer.builder("push.latency").publishPercentiles(0.5, 0.99).register(metrics);
+        this.spilled      = Counter.builder("push.queue.spilled").register(metrics);
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicInteger n = new AtomicInteger();
+        pool = new ThreadPoolExecutor(senders, senders, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(senders * 2),
+                r -> daemon(r, "push-send-" + n.incrementAndGet()),
+                (task, ex) -> {                                  // saturé ⇒ le batcher envoie lui-même
+                    if (ex.isShutdown()) spill(((SendTask) task).batch);
+                    else task.run();
+                });
+        running = true;
+        batcher = daemon(this::loop, "push-batcher");
+        batcher.start();
+        log.info("📨 PushQueue démarrée – capacité {}, lots de {}, linger {} ms, {} sender(s)",
+                capacity, batchSize, lingerMs, senders);
+    }
+
+    /**
+     * Arrêt sans perte : le batcher remet son dernier lot avant la fermeture
+     * du pool ; les lots encore en file du pool au-delà du délai de grâce
+     * sont écrits dans {@code push_spill}, comme le reste de la file.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (batcher != null) {
+            batcher.interrupt();
+            batcher.join(5_000);
+        }
+        if (pool != null) {
+            pool.shutdown();
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS))
+                for (Runnable task : pool.shutdownNow()) spill(((SendTask) task).batch);
+        }
+        List<PushMessage> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) spill(rest);                    // rien de perdu au redéploiement
+    }
+
+    /* ═════════════ 1) Entrée (tout thread) ═════════════ */
+
+    @Override
+    public void send(List<String> tokens, String title, String body, Map<String, String> data) {
+        if (tokens == null || tokens.isEmpty()) return;
+        List<PushMessage> overflow = null;
+        for (String tok : tokens) {
+            PushMessage m = PushMessage.of(tok, title, body, data);
+            if (!queue.offer(m)) {
+                if (overflow == null) overflow = new ArrayList<>();
+                overflow.add(m);
+            }
+        }
+        if (overflow != null) spill(overflow);
+    }
+
+    @Override
+    public void sendAll(List<PushMessage> messages) {
+        List<PushMessage> overflow = new ArrayList<>();
+        for (PushMessage m : messages) if (!queue.offer(m)) overflow.add(m);
+        if (!overflow.isEmpty()) spill(overflow);
+    }
+
+    /* ═════════════ 2) Collecte (thread push-batcher) ═════════════ */
+
+    private void loop() {
+        while (running) {
+            List<PushMessage> batch = new ArrayList<>(batchSize);
+            try {
+                PushMessage first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    refill();
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + lingerMs;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || wait <= 0) break;
+                    PushMessage m = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (m == null) break;
+                    batch.add(m);
+                }
+                pool.execute(new SendTask(batch));
+                if (queue.size() < capacity / 2) refill();
+            } catch (InterruptedException ie) {
+                if (!batch.isEmpty()) spill(batch);             // arrêt : lot en cours de collecte
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                log.error("❌ PushQueue – collecte en échec : {}", ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /** Lot remis au pool ; récupérable par {@link #stop()} s’il n’est jamais parti. */
+    private final class SendTask implements Runnable {
+        final List<PushMessage> batch;
+
+        SendTask(List<PushMessage> batch) { this.batch = batch; }
+
+        @Override
+        public void run() { deliver(batch); }
+    }
+
+    private void deliver(List<PushMessage> batch) {
+        long t0 = System.nanoTime();
+        try {
+            gateway.sendAll(batch);
+        } catch (Exception ex) {
+            log.warn("⚠️  PushQueue – lot de {} en échec : {}", batch.size(), ex.getMessage());
+        }
+        sendDuration.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        batchSizes.record(batch.size());
+        long now = System.currentTimeMillis();
+        for (PushMessage m : batch) latency.record(Math.max(0, now - m.enqueuedAt()), TimeUnit.MILLISECONDS);
+    }
+
+    /* ═════════════ 3) Débordement (push_spill) ═════════════ */
+
+    private void spill(List<PushMessage> messages) {
+        try {
+            List<PushSpill> rows = new ArrayList<>(messages.size());
+            for (PushMessage m : messages)
+                rows.add(PushSpill.builder()
+                        .token(m.to())
+                        .title(m.title())
+                        .body(m.body())
+                        .dataJson(m.data() == null ? null : json.writeValueAsString(m.data()))
+                        .build());
+            txNew.executeWithoutResult(st -> spillRepo.saveAll(rows));
+            spilled.increment(rows.size());
+            spillGeneration.incrementAndGet();
+            log.warn("⚠️  PushQueue pleine – {} message(s) mis de côté", rows.size());
+        } catch (Exception ex) {
+            log.error("❌ PushQueue – débordement impossible, {} message(s) perdu(s) : {}",
+                    messages.size(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Réinjecte les messages mis de côté tant que la file a de la place.
+     * La génération est lue avant la requête : un débordement validé pendant
+     * celle-ci la fait avancer, et la table sera relue au passage suivant.
+     */
+    private void refill() {
+        long generation = spillGeneration.get();
+        if (generation == drainedGeneration) return;
+        try {
+            int room = capacity / 2 - queue.size();
+            if (room <= 0) return;
+            List<PushSpill> rows = txNew.execute(st -> {
+                List<PushSpill> locked = spillRepo.lockOldest(Math.min(room, batchSize * 10));
+                spillRepo.deleteAllInBatch(locked);
+                return locked;
+            });
+            if (rows == null || rows.isEmpty()) {
+                drainedGeneration = generation;
+                return;
+            }
+            List<PushMessage> back = new ArrayList<>(rows.size());
+            for (PushSpill r : rows)
+                back.add(PushMessage.of(r.getToken(), r.getTitle(), r.getBody(),
+                        r.getDataJson() == null ? null
+                                : json.readValue(r.getDataJson(), new TypeReference<Map<String, String>>() { })));
+            sendAll(back);
+            log.info("📨 PushQueue – {} message(s) réinjecté(s)", back.size());
+        } catch (Exception ex) {
+            log.warn("⚠️  PushQueue – réinjection échouée : {}", ex.getMessage());
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,65 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/surge/SlidingWindowCounter.java
+//  v2025-10-16 – compteur à fenêtre glissante, sans verrou
+//  v2025-10-16 – événement plus vieux que l’époque de son seau ignoré
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.surge;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteur d’événements sur les {@code window} dernières millisecondes.
+ *
+ * <p>Anneau de seaux {@link LongAdder} (incréments répartis entre cellules,
+ * aucune contention entre threads) ; chaque seau porte l’époque qu’il
+ * représente. Un seau périmé est réinitialisé par le premier écrivain qui
+ * gagne le CAS sur son époque.</p>
+ *
+ * <p>Précision : un incrément concurrent à la réinitialisation d’un seau peut
+ * être perdu – acceptable pour un signal de demande agrégé.</p>
+ */
+public final class SlidingWindowCounter {
+
+    private final long            bucketMs;
+    private final LongAdder[]     buckets;
+    private final AtomicLongArray epochs;       // numéro de seau absolu (now / bucketMs)
+
+    /**
+     * @param windowMs durée de la fenêtre
+     * @param bucketMs granularité (la fenêtre glisse par pas de {@code bucketMs})
+     */
+    public SlidingWindowCounter(long windowMs, long bucketMs) {
+        if (bucketMs <= 0 || windowMs < bucketMs)
+            throw new IllegalArgumentException("windowMs must be >= bucketMs > 0");
+        int n = (int) ((windowMs + bucketMs - 1) / bucketMs);
+        this.bucketMs = bucketMs;
+        this.buckets  = new LongAdder[n];
+        this.epochs   = new AtomicLongArray(n);
+        for (int i = 0; i < n; i++) {
+            buckets[i] = new LongAdder();
+            epochs.set(i, -1);
+        }
+    }
+
+    public void add(long nowMs, long delta) {
+        long epoch = nowMs / bucketMs;
+        int  i     = (int) (epoch % buckets.length);
+        long seen  = epochs.get(i);
+        if (seen > epoch) return;                   // seau déjà recyclé : événement hors fenêtre
+        if (seen < epoch && epochs.compareAndSet(i, seen, epoch))
+            buckets[i].reset();
+        buckets[i].add(delta);
+    }
+
+    /** Somme des seaux encore dans la fenêtre à {@code nowMs}. */
+    public long sum(long nowMs) {
+        long epoch = nowMs / bucketMs;
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            long e = epochs.get(i);
+            if (e > epoch - buckets.length && e <= epoch) total += buckets[i].sum();
+        }
+        return total;
+    }
+}
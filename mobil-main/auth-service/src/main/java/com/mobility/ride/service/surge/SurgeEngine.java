@@ -0,0 +1,386 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/surge/SurgeEngine.java
+//  v2025-10-16 – surge calculé en continu (demande / offre par ville)
+//               • demande : courses REQUESTED, fenêtre glissante sans verrou
+//               • offre   : chauffeurs en ligne, frais et libres
+//               • instantané mémoire lu par SurgePricingService (zéro SQL)
+//               • fenêtres persistées en tâche de fond (audit)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.surge;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mobility.ride.event.RideStatusChangedEvent;
+import com.mobility.ride.event.SurgeWindowChangedEvent;
+import com.mobility.ride.geo.CityInfo;
+import com.mobility.ride.geo.DriverPositionIndex.Hit;
+import com.mobility.ride.geo.GeoGrid;
+import com.mobility.ride.geo.MarketResolver;
+import com.mobility.ride.model.ProductType;
+import com.mobility.ride.model.Ride;
+import com.mobility.ride.model.RideStatus;
+import com.mobility.ride.model.SurgeMultiplier;
+import com.mobility.ride.repository.SurgeMultiplierRepository;
+import com.mobility.ride.service.BusyDriverRegistry;
+import com.mobility.ride.service.DriverLocationService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h2>SurgeEngine</h2>
+ *
+ * <p>Toutes les {@code tick-ms} :</p>
+ * <ol>
+ *   <li>offre : chauffeurs en ligne non occupés ({@link BusyDriverRegistry}),
+ *       comptés par ville ;</li>
+ *   <li>pression : demandes de la ville sur {@code window-sec} ÷ offre ;</li>
+ *   <li>facteur : {@code 1 + sensitivity × (pression − threshold)}, borné à
+ *       [1 ; {@code max-factor}], lissé (EWMA) puis arrondi au dixième ;
+ *       appliqué aux produits demandés dans la fenêtre ;</li>
+ *   <li>publication : nouvel instantané immuable, {@link SurgeWindowChangedEvent}
+ *       pour chaque facteur modifié, persistance asynchrone.</li>
+ * </ol>
+ *
+ * <p>L’offre n’est pas ventilée par produit (un chauffeur n’a pas de
+ * {@link ProductType}) : la pression est calculée à la maille ville.</p>
+ *
+ * <p>Désactivé par défaut ({@code app.surge.engine.enabled=false}) : seules
+ * les fenêtres {@code surge_multipliers} saisies font foi.</p>
+ */
+@Slf4j
+@Service
+public class SurgeEngine {
+
+    private static final ProductType[] PRODUCTS = ProductType.values();
+
+    /* ─────────── Dépendances ─────────── */
+
+    private final DriverLocationService     drivers;
+    private final BusyDriverRegistry        busyDrivers;
+    private final MarketResolver            markets;
+    private final SurgeMultiplierRepository repo;
+    private final ApplicationEventPublisher events;
+
+    /* ─────────── Configuration ─────────── */
+
+    private final boolean enabled;
+    private final long    tickMs;
+    private final long    windowMs;
+    private final long    bucketMs;
+    private final double  threshold;
+    private final double  sensitivity;
+    private final double  maxFactor;
+    private final int     minDemand;
+    private final double  smoothing;
+    private final long    horizonMs;
+    private final double  cellDeg;
+
+    /* ─────────── État ─────────── */
+
+    /** (cityId, produit) → demandes récentes. */
+    private final Map<Long, SlidingWindowCounter> demand = new ConcurrentHashMap<>();
+    /** Cellule → cityId (évite un géocodage par chauffeur et par tick). */
+    private final Cache<Long, Long>               cityOfCell;
+    /** Facteurs lissés non arrondis (thread du ticker uniquement). */
+    private final Map<Long, Double>               ewma = new HashMap<>();
+    /** Fenêtres ouvertes en base (thread de persistance uniquement). */
+    private final Map<Long, SurgeMultiplier>      openRows = new HashMap<>();
+
+    /** Instantané publié : clé → facteur > 1 (lecture sans verrou). */
+    private volatile Map<Long, Double> snapshot = Map.of();
+
+    private ScheduledExecutorService ticker;
+    private ExecutorService          persister;
+
+    private final Timer tickTimer;
+
+    public SurgeEngine(DriverLocationService drivers,
+                       BusyDriverRegistry busyDrivers,
+                       MarketResolver markets,
+                       SurgeMultiplierRepository repo,
+                       ApplicationEventPublisher events,
+                       MeterRegistry metrics,
+                       @Value("${app.surge.engine.enabled:false}")         boolean enabled,
+                       @Value("${app.surge.engine.tick-ms:30000}")         long tickMs,
+                       @Value("${app.surge.engine.window-sec:300}")        long windowSec,
+                       @Value("${app.surge.engine.bucket-sec:10}")         long bucketSec,
+                       @Value("${app.surge.engine.threshold:1.0}")         double threshold,
+                       @Value("${app.surge.engine.sensitivity:0.5}")       double sensitivity,
+                       @Value("${app.surge.engine.max-factor:3.0}")        double maxFactor,
+                       @Value("${app.surge.engine.min-demand:3}")          int minDemand,
+                       @Value("${app.surge.engine.smoothing:0.5}")         double smoothing,
+                       @Value("${app.surge.engine.persist-horizon-sec:300}") long horizonSec,
+                       @Value("${app.surge.engine.cell-deg:0.05}")         double cellDeg) {
+        this.drivers     = drivers;
+        this.busyDrivers = busyDrivers;
+        this.markets     = markets;
+        this.repo        = repo;
+        this.events      = events;
+        this.enabled     = enabled;
+        this.tickMs      = tickMs;
+        this.windowMs    = windowSec * 1_000;
+        this.bucketMs    = bucketSec * 1_000;
+        this.threshold   = threshold;
+        this.sensitivity = sensitivity;
+        this.maxFactor   = maxFactor;
+        this.minDemand   = minDemand;
+        this.smoothing   = smoothing;
+        this.horizonMs   = horizonSec * 1_000;
+        this.cellDeg     = cellDeg;
+
+        this.cityOfCell = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(Duration.ofHours(1))
+                .build();
+        this.tickTimer = Timer.builder("surge.engine.tick").register(metrics);
+        Gauge.builder("surge.engine.active", this, e -> e.snapshot.size()).register(metrics);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            log.info("📈 SurgeEngine désactivé (app.surge.engine.enabled=false)");
+            return;
+        }
+        ticker    = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "surge-tick"));
+        persister = Executors.newSingleThreadExecutor(r -> daemon(r, "surge-persist"));
+        ticker.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        log.info("📈 SurgeEngine démarré – tick {} ms, fenêtre {} s, facteur max {}",
+                tickMs, windowMs / 1_000, maxFactor);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (ticker != null) ticker.shutdownNow();
+        if (persister != null) {
+            persister.shutdown();                      // laisse finir la dernière écriture
+            try {
+                persister.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /* ═════════════ 1) Lectures ═════════════ */
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Facteur calculé ; vide si le moteur est désactivé. */
+    public OptionalDouble factor(Long cityId, ProductType product) {
+        if (!enabled) return OptionalDouble.empty();
+        if (cityId == null || product == null) return OptionalDouble.of(1.0);
+        return OptionalDouble.of(snapshot.getOrDefault(SurgeSnapshot.key(cityId, product), 1.0));
+    }
+
+    /** Facteurs > 1 de la ville (produit absent ⇒ 1.0). */
+    public Map<ProductType, Double> factors(Long cityId) {
+        Map<ProductType, Double> out = new EnumMap<>(ProductType.class);
+        if (cityId == null) return out;
+        Map<Long, Double> snap = snapshot;
+        for (ProductType p : PRODUCTS) {
+            Double f = snap.get(SurgeSnapshot.key(cityId, p));
+            if (f != null) out.put(p, f);
+        }
+        return out;
+    }
+
+    /* ═════════════ 2) Demande (post-commit) ═════════════ */
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(RideStatusChangedEvent e) {
+        if (!enabled || e.getStatus() != RideStatus.REQUESTED) return;
+        Optional<Ride> ride = e.getRide();
+        if (ride.isEmpty() || ride.get().getProductType() == null) return;
+
+        Ride r = ride.get();
+        Long cityId = cityOf(r.getPickupLat(), r.getPickupLng());
+        if (cityId == null) return;
+        demand.computeIfAbsent(SurgeSnapshot.key(cityId, r.getProductType()),
+                        k -> new SlidingWindowCounter(windowMs, bucketMs))
+              .add(System.currentTimeMillis(), 1);
+    }
+
+    /* ═════════════ 3) Calcul ═════════════ */
+
+    void tick() {
+        try {
+            tickTimer.record(this::compute);
+        } catch (Exception ex) {
+            log.error("❌ SurgeEngine tick en échec", ex);
+        }
+    }
+
+    private void compute() {
+        long now = System.currentTimeMillis();
+
+        /* Offre : chauffeurs libres par ville */
+        Map<Long, Integer> idle = new HashMap<>();
+        for (Hit h : drivers.onlineSnapshot()) {
+            if (busyDrivers.isBusy(h.driverId())) continue;
+            Long cityId = cityOf(h.lat(), h.lng());
+            if (cityId != null) idle.merge(cityId, 1, Integer::sum);
+        }
+
+        /* Demande par ville (tous produits) et par (ville, produit) */
+        Map<Long, Long> perKey  = new HashMap<>();
+        Map<Long, Long> perCity = new HashMap<>();
+        demand.forEach((k, c) -> {
+            long n = c.sum(now);
+            if (n == 0) return;
+            perKey.put(k, n);
+            perCity.merge(SurgeSnapshot.cityOf(k), n, Long::sum);
+        });
+
+        /* Facteurs lissés : toute clé en demande ou encore au-dessus de 1 */
+        Map<Long, Double> prev = snapshot;
+        Map<Long, Double> next = new HashMap<>();
+        List<Long> keys = new ArrayList<>(perKey.keySet());
+        for (Long k : ewma.keySet()) if (!perKey.containsKey(k)) keys.add(k);
+
+        for (Long k : keys) {
+            long   cityId = SurgeSnapshot.cityOf(k);
+            long   load   = perCity.getOrDefault(cityId, 0L);
+            double raw    = 1.0;
+            if (perKey.containsKey(k) && load >= minDemand) {
+                double pressure = (double) load / Math.max(1, idle.getOrDefault(cityId, 0));
+                raw = clamp(1.0 + sensitivity * (pressure - threshold));
+            }
+            double smoothed = smoothing * ewma.getOrDefault(k, 1.0) + (1 - smoothing) * raw;
+            double rounded  = Math.round(smoothed * 10) / 10.0;
+            if (rounded <= 1.0) ewma.remove(k);
+            else {
+                ewma.put(k, smoothed);
+                next.put(k, rounded);
+            }
+        }
+
+        /* Publication */
+        Map<Long, Double> changed = new HashMap<>();
+        next.forEach((k, f) -> { if (!f.equals(prev.get(k))) changed.put(k, f); });
+        prev.keySet().forEach(k -> { if (!next.containsKey(k)) changed.put(k, 1.0); });
+        snapshot = Collections.unmodifiableMap(next);
+        if (changed.isEmpty() && next.isEmpty()) return;
+
+        OffsetDateTime start = OffsetDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneOffset.UTC);
+        OffsetDateTime end   = start.plus(Duration.ofMillis(horizonMs));
+        changed.forEach((k, f) -> events.publishEvent(new SurgeWindowChangedEvent(
+                this, SurgeSnapshot.cityOf(k), SurgeSnapshot.productOf(k), factorOf(f),
+                start, f > 1.0 ? end : start)));
+        if (!changed.isEmpty())
+            log.info("📈 Surge : {} facteur(s) modifié(s), {} actif(s)", changed.size(), next.size());
+
+        Map<Long, Double> active = Map.copyOf(next);
+        persister.execute(() -> persist(now, changed, active));
+    }
+
+    private double clamp(double f) {
+        return Math.max(1.0, Math.min(maxFactor, f));
+    }
+
+    /* ═════════════ 4) Persistance (audit) ═════════════ */
+
+    /**
+     * Une ligne par fenêtre : ouverte au changement de facteur, close
+     * (windowEnd = instant − 1 ms) au changement suivant, prolongée tant que
+     * le facteur tient. Les fenêtres d’une même clé ne se chevauchent jamais.
+     */
+    private void persist(long now, Map<Long, Double> changed, Map<Long, Double> active) {
+        OffsetDateTime at      = OffsetDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneOffset.UTC);
+        OffsetDateTime horizon = at.plus(Duration.ofMillis(horizonMs));
+        OffsetDateTime renewAt = at.plus(Duration.ofMillis(2 * tickMs));
+
+        List<Long>            keys = new ArrayList<>();
+        List<SurgeMultiplier> rows = new ArrayList<>();
+
+        changed.forEach((k, f) -> {
+            SurgeMultiplier open = openRows.remove(k);
+            if (open != null) {
+                open.setWindowEnd(at.minusNanos(1_000_000));
+                keys.add(null);
+                rows.add(open);
+            }
+            if (f > 1.0) {
+                keys.add(k);
+                rows.add(SurgeMultiplier.builder()
+                        .cityId(SurgeSnapshot.cityOf(k))
+                        .productType(SurgeSnapshot.productOf(k))
+                        .factor(factorOf(f))
+                        .windowStart(at)
+                        .windowEnd(horizon)
+                        .build());
+            }
+        });
+        active.keySet().forEach(k -> {
+            SurgeMultiplier open = openRows.get(k);
+            if (open != null && !changed.containsKey(k) && open.getWindowEnd().isBefore(renewAt)) {
+                open.setWindowEnd(horizon);
+                keys.add(k);
+                rows.add(open);
+            }
+        });
+        if (rows.isEmpty()) return;
+
+        try {
+            List<SurgeMultiplier> saved = repo.saveAll(rows);
+            for (int i = 0; i < saved.size(); i++)
+                if (keys.get(i) != null) openRows.put(keys.get(i), saved.get(i));
+        } catch (Exception ex) {
+            openRows.clear();                 // repartira de fenêtres neuves
+            log.warn("⚠️  Persistance surge échouée ({} ligne(s)) : {}", rows.size(), ex.getMessage());
+        }
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private Long cityOf(Double lat, Double lng) {
+        if (lat == null || lng == null) return null;
+        long cell = GeoGrid.cellKey(lat, lng, cellDeg);
+        Long cached = cityOfCell.getIfPresent(cell);
+        if (cached != null) return cached < 0 ? null : cached;
+        Long cityId = markets.resolve(lat, lng).map(CityInfo::cityId).orElse(null);
+        cityOfCell.put(cell, cityId == null ? -1L : cityId);
+        return cityId;
+    }
+
+    private static BigDecimal factorOf(double f) {
+        return BigDecimal.valueOf(f).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,177 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/surge/SurgeSnapshot.java
+//  v2025-10-16 – fenêtres surge courantes et imminentes, indexées cityId × produit
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.surge;
+
+import com.mobility.ride.model.ProductType;
+import com.mobility.ride.repository.view.SurgeWindowView;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Instantané immuable des multiplicateurs {@code surge_multipliers}.
+ *
+ * <p>Chaque fenêtre garde ses bornes : une lecture à l’instant T ne retient
+ * que les fenêtres qui le couvrent. Une fenêtre chargée en avance s’active
+ * donc exactement à {@code windowStart}, et une fenêtre échue cesse de
+ * s’appliquer sans attendre le rechargement suivant.</p>
+ *
+ * <p>Publié par {@link SurgeSnapshotHolder} ; lu sans verrou.</p>
+ */
+public final class SurgeSnapshot {
+
+    /** Fenêtre chargée ; bornes aussi en epoch-ms pour comparer sans allocation. */
+    public record Window(long id, long key, double factor,
+                         OffsetDateTime windowStart, OffsetDateTime windowEnd,
+                         long startMs, long endMs) {
+
+        boolean covers(long nowMs) {
+            return startMs <= nowMs && nowMs <= endMs;
+        }
+
+        static Window of(SurgeWindowView sm) {
+            return new Window(sm.getId(), SurgeSnapshot.key(sm.getCityId(), sm.getProductType()),
+                    sm.getFactor() == null ? 1.0 : sm.getFactor().doubleValue(),
+                    sm.getWindowStart(), sm.getWindowEnd(),
+                    sm.getWindowStart().toInstant().toEpochMilli(),
+                    sm.getWindowEnd().toInstant().toEpochMilli());
+        }
+    }
+
+    public static final SurgeSnapshot EMPTY = new SurgeSnapshot(Map.of(), 0, 0);
+
+    private static final ProductType[] PRODUCTS     = ProductType.values();
+    private static final int           PRODUCT_BITS = 4;
+
+    static {
+        if (PRODUCTS.length > 1 << PRODUCT_BITS) throw new IllegalStateException("too many products");
+    }
+
+    private final Map<Long, Window[]> windows;      // clé → fenêtres triées par début
+    private final long                version;
+    private final long                loadedAtMs;
+
+    private SurgeSnapshot(Map<Long, Window[]> windows, long version, long loadedAtMs) {
+        this.windows    = windows;
+        this.version    = version;
+        this.loadedAtMs = loadedAtMs;
+    }
+
+    /* ═════════════ 1) Lectures ═════════════ */
+
+    /** Fenêtre active (facteur le plus fort si plusieurs se chevauchent), sinon {@code null}. */
+    public Window active(Long cityId, ProductType product, long nowMs) {
+        if (cityId == null || product == null) return null;
+        return active(windows.get(key(cityId, product)), nowMs);
+    }
+
+    /** Facteurs actifs de la ville (produit absent ⇒ 1.0). */
+    public Map<ProductType, Double> factors(Long cityId, long nowMs) {
+        Map<ProductType, Double> out = new EnumMap<>(ProductType.class);
+        if (cityId == null) return out;
+        for (ProductType p : PRODUCTS) {
+            Window w = active(windows.get(key(cityId, p)), nowMs);
+            if (w != null) out.put(p, w.factor());
+        }
+        return out;
+    }
+
+    public long version()    { return version; }
+    public long loadedAtMs() { return loadedAtMs; }
+    public int  size()       { return windows.size(); }
+    public boolean isEmpty() { return windows.isEmpty(); }
+
+    public Window activeByKey(long key, long nowMs) {
+        return active(windows.get(key), nowMs);
+    }
+
+    /** Clé → facteur effectif à {@code nowMs}, pour les clés ayant une fenêtre active. */
+    public Map<Long, Double> effective(long nowMs) {
+        Map<Long, Double> out = new HashMap<>();
+        windows.forEach((k, ws) -> {
+            Window w = active(ws, nowMs);
+            if (w != null) out.put(k, w.factor());
+        });
+        return out;
+    }
+
+    /** Instants ]from ; until] où un facteur effectif peut changer (débuts, fins + 1 ms). */
+    public TreeSet<Long> boundaries(long fromMs, long untilMs) {
+        TreeSet<Long> out = new TreeSet<>();
+        for (Window[] ws : windows.values())
+            for (Window w : ws) {
+                if (w.startMs() > fromMs     && w.startMs() <= untilMs)     out.add(w.startMs());
+                if (w.endMs() + 1 > fromMs   && w.endMs() + 1 <= untilMs)   out.add(w.endMs() + 1);
+            }
+        return out;
+    }
+
+    /* ═════════════ 2) Construction ═════════════ */
+
+    public static SurgeSnapshot of(Collection<SurgeWindowView> rows, long version, long loadedAtMs) {
+        Map<Long, Window> byId = new HashMap<>();
+        for (SurgeWindowView v : rows) if (valid(v)) byId.put(v.getId(), Window.of(v));
+        return build(byId.values(), version, loadedAtMs);
+    }
+
+    /**
+     * Nouvel instantané = celui-ci + lignes modifiées (remplacées par id),
+     * sans les fenêtres échues avant {@code loadedAtMs}.
+     */
+    public SurgeSnapshot merge(Collection<SurgeWindowView> changed, long version, long loadedAtMs) {
+        Map<Long, Window> byId = new HashMap<>();
+        for (Window[] ws : windows.values())
+            for (Window w : ws) byId.put(w.id(), w);
+        for (SurgeWindowView v : changed) if (valid(v)) byId.put(v.getId(), Window.of(v));
+        byId.values().removeIf(w -> w.endMs() < loadedAtMs);
+        return build(byId.values(), version, loadedAtMs);
+    }
+
+    private static SurgeSnapshot build(Collection<Window> all, long version, long loadedAtMs) {
+        Map<Long, List<Window>> grouped = new HashMap<>();
+        for (Window w : all) grouped.computeIfAbsent(w.key(), k -> new ArrayList<>()).add(w);
+
+        Map<Long, Window[]> out = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((k, list) -> {
+            Window[] arr = list.toArray(Window[]::new);
+            Arrays.sort(arr, Comparator.comparingLong(Window::startMs));
+            out.put(k, arr);
+        });
+        return new SurgeSnapshot(Map.copyOf(out), version, loadedAtMs);
+    }
+
+    private static boolean valid(SurgeWindowView v) {
+        return v.getId() != null && v.getCityId() != null && v.getProductType() != null
+            && v.getWindowStart() != null && v.getWindowEnd() != null;
+    }
+
+    /** Clé compacte (cityId, produit), partagée avec {@link SurgeEngine}. */
+    public static long key(long cityId, ProductType p) {
+        return cityId << PRODUCT_BITS | p.ordinal();
+    }
+
+    public static long cityOf(long key)           { return key >>> PRODUCT_BITS; }
+    public static ProductType productOf(long key) { return PRODUCTS[(int) (key & ((1 << PRODUCT_BITS) - 1))]; }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private static Window active(Window[] ws, long nowMs) {
+        if (ws == null) return null;
+        Window best = null;
+        for (Window w : ws) {
+            if (w.startMs() > nowMs) break;
+            if (w.covers(nowMs) && (best == null || w.factor() > best.factor())) best = w;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,96 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/surge/SurgeSnapshotHolder.java
+//  v2025-10-16 – instantané surge versionné (référence volatile, lecture sans verrou)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.surge;
+
+import com.mobility.ride.event.SurgeWindowChangedEvent;
+import com.mobility.ride.service.surge.SurgeSnapshot.Window;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Détient le {@link SurgeSnapshot} courant.
+ *
+ * <p>Un seul écrivain ({@code SurgeRefreshJob}) construit un nouvel
+ * instantané et le publie atomiquement ; les devis ne lisent qu’une
+ * référence volatile et ne touchent jamais MySQL. Chaque publication
+ * porte un numéro de version.</p>
+ *
+ * <p>{@link #fireChanges(long)} compare les facteurs effectifs au dernier
+ * état annoncé et émet un {@link SurgeWindowChangedEvent} par facteur
+ * modifié : appelé à chaque publication et aux bornes des fenêtres.</p>
+ */
+@Slf4j
+@Component
+public class SurgeSnapshotHolder {
+
+    private final ApplicationEventPublisher events;
+    private final AtomicLong                versions = new AtomicLong();
+
+    private volatile SurgeSnapshot snapshot = SurgeSnapshot.EMPTY;
+
+    /** Derniers facteurs annoncés (clé → facteur effectif). */
+    private Map<Long, Double> announced = Map.of();
+
+    public SurgeSnapshotHolder(ApplicationEventPublisher events, MeterRegistry metrics) {
+        this.events = events;
+        Gauge.builder("surge.snapshot.version", this, h -> h.snapshot.version()).register(metrics);
+        Gauge.builder("surge.snapshot.age_ms", this,
+                h -> h.snapshot.loadedAtMs() == 0 ? -1 : System.currentTimeMillis() - h.snapshot.loadedAtMs())
+             .register(metrics);
+    }
+
+    public SurgeSnapshot current() {
+        return snapshot;
+    }
+
+    public long nextVersion() {
+        return versions.incrementAndGet();
+    }
+
+    /** Publie {@code next} puis annonce les facteurs modifiés. */
+    public void publish(SurgeSnapshot next) {
+        snapshot = next;
+        fireChanges(next.loadedAtMs());
+    }
+
+    /** Émet un événement par facteur effectif différent du dernier annoncé. */
+    public synchronized int fireChanges(long nowMs) {
+        SurgeSnapshot     snap = snapshot;
+        Map<Long, Double> now  = snap.effective(nowMs);
+
+        Set<Long> keys = new HashSet<>(announced.keySet());
+        keys.addAll(now.keySet());
+        int changed = 0;
+        for (long k : keys) {
+            double before = announced.getOrDefault(k, 1.0);
+            double after  = now.getOrDefault(k, 1.0);
+            if (before == after) continue;
+
+            Window w = snap.activeByKey(k, nowMs);
+            events.publishEvent(new SurgeWindowChangedEvent(this,
+                    SurgeSnapshot.cityOf(k), SurgeSnapshot.productOf(k),
+                    BigDecimal.valueOf(after).setScale(2, RoundingMode.HALF_UP),
+                    w == null ? null : w.windowStart(),
+                    w == null ? null : w.windowEnd()));
+            changed++;
+        }
+        announced = new HashMap<>(now);
+        if (changed > 0)
+            log.info("⚡ Surge v{} – {} clé(s) indexée(s), {} facteur(s) modifié(s)",
+                    snap.version(), snap.size(), changed);
+        return changed;
+    }
+}
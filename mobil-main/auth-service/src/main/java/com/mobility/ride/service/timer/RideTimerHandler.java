@@ -0,0 +1,22 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/timer/RideTimerHandler.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.timer;
+
+import com.mobility.ride.model.RideTimer;
+
+import java.util.List;
+
+/**
+ * Traitement d’un lot de minuteurs expirés d’une même famille.
+ * Enregistré via {@link RideTimerService#register}.
+ *
+ * <p>Une exception laisse les lignes en base : elles seront reprises à
+ * l’expiration du bail. Le traitement doit donc rester idempotent.</p>
+ */
+@FunctionalInterface
+public interface RideTimerHandler {
+
+    /** @param timers échéances atteintes (lot borné, une par course) */
+    void onExpired(List<RideTimer> timers);
+}
@@ -0,0 +1,313 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/timer/RideTimerService.java
+//  v2025-10-16 – minuteurs de course sur roue temporelle, traitement par lots
+//  v2025-10-16 – échéances durables (table ride_timers) : reprise au
+//                redémarrage, répartition entre instances (SKIP LOCKED)
+//  v2025-10-17 – bail compté depuis max(échéance, maintenant) : une ligne en
+//                retard n’est plus réclamée avec un bail déjà expiré
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.timer;
+
+import com.mobility.ride.model.RideTimer;
+import com.mobility.ride.model.RideTimerKind;
+import com.mobility.ride.repository.RideTimerRepository;
+import com.mobility.ride.service.timer.TimingWheel.Expired;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h2>RideTimerService</h2>
+ *
+ * <p>Source de vérité : la table {@code ride_timers} (une ligne par famille
+ * et par course). La {@link TimingWheel} n’est plus qu’un cache des
+ * échéances proches réclamées par <b>cette</b> instance :</p>
+ * <ul>
+ *   <li>{@link #schedule} écrit la ligne dans la transaction de l’appelant ;
+ *       une échéance à moins de {@code horizon-ms} est réclamée aussitôt et
+ *       ajoutée à la roue après commit ;</li>
+ *   <li>toutes les {@code poll-ms}, un lot de lignes dues dans l’horizon,
+ *       libres ou au bail expiré, est verrouillé
+ *       ({@code FOR UPDATE SKIP LOCKED}), marqué à notre nom avec un bail de
+ *       {@code lease-ms} après l’échéance – après maintenant si elle est
+ *       déjà passée (reprise, lot en échec) –, puis placé dans la roue ;</li>
+ *   <li>un thread {@code ride-timers} fait tourner la roue ; les échéances
+ *       d’un tick sont regroupées par {@link RideTimerKind} et livrées par
+ *       lots de {@code batch-size} au {@link RideTimerHandler} de la famille,
+ *       puis supprimées (sauf si reprogrammées entre-temps).</li>
+ * </ul>
+ *
+ * <p>Livraison « au moins une fois » : instance arrêtée ou lot en échec ⇒
+ * le bail expire et la ligne est reprise ailleurs (ou au redémarrage).</p>
+ *
+ * <p>Métriques : {@code ride.timers.lag} (échéance → traitement),
+ * {@code ride.timers.pending}, {@code ride.timers.fired{kind}},
+ * {@code ride.timers.batch}, {@code ride.timers.claimed}.</p>
+ */
+@Slf4j
+@Service
+public class RideTimerService {
+
+    /** Clé de la roue : une échéance par (famille, course). */
+    record Key(RideTimerKind kind, long rideId) { }
+
+    private final RideTimerRepository repo;
+    private final TransactionTemplate tx;
+
+    /** Identifiant de cette instance (propriétaire des lignes réclamées). */
+    private final String node = UUID.randomUUID().toString();
+
+    private final long tickMs;
+    private final int  batchSize;
+    private final int  workers;
+    private final long pollMs;
+    private final long horizonMs;
+    private final long leaseMs;
+
+    private final TimingWheel<Key>                         wheel;
+    private final Map<RideTimerKind, RideTimerHandler>     handlers = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService ticker;
+    private ScheduledExecutorService poller;
+    private ExecutorService          pool;
+
+    private final Timer                            lag;
+    private final DistributionSummary              batches;
+    private final Counter                          claimed;
+    private final Map<RideTimerKind, Counter>      fired = new EnumMap<>(RideTimerKind.class);
+
+    public RideTimerService(RideTimerRepository repo,
+                            TransactionTemplate tx,
+                            MeterRegistry metrics,
+                            @Value("${app.rides.timers.tick-ms:250}")      long tickMs,
+                            @Value("${app.rides.timers.wheel-size:512}")   int  wheelSize,
+                            @Value("${app.rides.timers.batch-size:200}")   int  batchSize,
+                            @Value("${app.rides.timers.workers:2}")        int  workers,
+                            @Value("${app.rides.timers.poll-ms:1000}")     long pollMs,
+                            @Value("${app.rides.timers.horizon-ms:30000}") long horizonMs,
+                            @Value("${app.rides.timers.lease-ms:60000}")   long leaseMs) {
+        this.repo      = repo;
+        this.tx        = tx;
+        this.tickMs    = tickMs;
+        this.batchSize = batchSize;
+        this.workers   = workers;
+        this.pollMs    = pollMs;
+        this.horizonMs = horizonMs;
+        this.leaseMs   = leaseMs;
+        this.wheel     = new TimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+
+        this.lag     = Timer.builder("ride.timers.lag").publishPercentiles(0.5, 0.99).register(metrics);
+        this.batches = DistributionSummary.builder("ride.timers.batch").register(metrics);
+        this.claimed = Counter.builder("ride.timers.claimed").register(metrics);
+        for (RideTimerKind k : RideTimerKind.values())
+            fired.put(k, Counter.builder("ride.timers.fired").tag("kind", k.name()).register(metrics));
+        Gauge.builder("ride.timers.pending", wheel, TimingWheel::size).register(metrics);
+    }
+
+    @PostConstruct
+    void start() {
+        AtomicInteger n = new AtomicInteger();
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "ride-timers"));
+        poller = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "ride-timers-poll"));
+        pool   = Executors.newFixedThreadPool(workers, r -> daemon(r, "ride-timers-" + n.incrementAndGet()));
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        poller.scheduleWithFixedDelay(this::poll, 0, pollMs, TimeUnit.MILLISECONDS);   // 1er passage = reprise
+        log.info("⏱️ RideTimerService démarré – nœud {}, tick {} ms, horizon {} ms, lots de {}",
+                node, tickMs, horizonMs, batchSize);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (poller != null) poller.shutdownNow();
+        if (ticker != null) ticker.shutdownNow();
+        if (pool   != null) pool.shutdownNow();
+    }
+
+    /* ═════════════ 1) API ═════════════ */
+
+    /** Enregistre le traitement d’une famille (appelé au démarrage par le service propriétaire). */
+    public void register(RideTimerKind kind, RideTimerHandler handler) {
+        if (handlers.putIfAbsent(kind, handler) != null)
+            throw new IllegalStateException("Handler already registered for " + kind);
+    }
+
+    /** Programme (ou reprogramme) l’échéance {@code kind} de la course. */
+    public void schedule(RideTimerKind kind, Long rideId, long dueAtMs) {
+        schedule(kind, rideId, dueAtMs, null, null);
+    }
+
+    /**
+     * Idem, avec une pénalité conservée sur la ligne. Joint la transaction
+     * de l’appelant : l’échéance n’existe que si celle-ci commit.
+     */
+    public void schedule(RideTimerKind kind, Long rideId, long dueAtMs, BigDecimal fee, String currency) {
+        boolean near = dueAtMs <= System.currentTimeMillis() + horizonMs;
+        tx.executeWithoutResult(st -> {
+            RideTimer t = repo.findByKindAndRideId(kind, rideId)
+                    .orElseGet(() -> RideTimer.builder().kind(kind).rideId(rideId).build());
+            t.setFee(fee);
+            t.setCurrency(currency);
+            repo.save(place(t, dueAtMs, near));
+        });
+        Key key = new Key(kind, rideId);
+        afterCommit(() -> {
+            if (near) wheel.schedule(key, dueAtMs);
+            else      wheel.cancel(key);                       // réclamée plus tard par poll()
+        });
+    }
+
+    public boolean cancel(RideTimerKind kind, Long rideId) {
+        Integer n = tx.execute(st -> repo.deleteByKindAndRideId(kind, rideId));
+        Key key = new Key(kind, rideId);
+        afterCommit(() -> wheel.cancel(key));
+        return n != null && n > 0;
+    }
+
+    public boolean isScheduled(RideTimerKind kind, Long rideId) {
+        return wheel.isScheduled(new Key(kind, rideId)) || repo.existsByKindAndRideId(kind, rideId);
+    }
+
+    /* ═════════════ 2) Réclamation (thread ride-timers-poll) ═════════════ */
+
+    void poll() {
+        try {
+            int n;
+            do {
+                long now = System.currentTimeMillis();
+                List<RideTimer> rows = tx.execute(st -> {
+                    List<RideTimer> locked = repo.lockClaimable(at(now + horizonMs), at(now), batchSize);
+                    for (RideTimer t : locked) place(t, ms(t.getDueAt()), true);
+                    return repo.saveAll(locked);
+                });
+                n = rows == null ? 0 : rows.size();
+                for (int i = 0; i < n; i++) {
+                    RideTimer t = rows.get(i);
+                    wheel.schedule(new Key(t.getKind(), t.getRideId()), ms(t.getDueAt()));
+                }
+                if (n > 0) {
+                    claimed.increment(n);
+                    log.debug("⏱️ {} minuteur(s) réclamé(s)", n);
+                }
+            } while (n == batchSize);
+        } catch (Exception ex) {
+            log.warn("⚠️  RideTimerService – réclamation échouée : {}", ex.getMessage());
+        }
+    }
+
+    /* ═════════════ 3) Rotation ═════════════ */
+
+    void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            List<Expired<Key>> expired = wheel.advance(now);
+            if (expired.isEmpty()) return;
+
+            Map<RideTimerKind, List<Long>> byKind = new EnumMap<>(RideTimerKind.class);
+            for (Expired<Key> e : expired) {
+                lag.record(Math.max(0, now - e.deadlineMs()), TimeUnit.MILLISECONDS);
+                byKind.computeIfAbsent(e.key().kind(), k -> new ArrayList<>()).add(e.key().rideId());
+            }
+            byKind.forEach((kind, ids) -> {
+                fired.get(kind).increment(ids.size());
+                for (int from = 0; from < ids.size(); from += batchSize)
+                    dispatch(kind, ids.subList(from, Math.min(ids.size(), from + batchSize)));
+            });
+        } catch (Exception ex) {
+            log.error("❌ RideTimerService – tick en échec", ex);
+        }
+    }
+
+    private void dispatch(RideTimerKind kind, List<Long> rideIds) {
+        RideTimerHandler h = handlers.get(kind);
+        if (h == null) {
+            log.warn("⚠️  {} minuteur(s) {} sans traitement enregistré", rideIds.size(), kind);
+            return;
+        }
+        List<Long> batch = List.copyOf(rideIds);
+        batches.record(batch.size());
+        pool.execute(() -> fire(kind, h, batch));
+    }
+
+    /** Lignes toujours dues et toujours à nous → traitement → suppression. */
+    private void fire(RideTimerKind kind, RideTimerHandler h, List<Long> rideIds) {
+        try {
+            OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+            List<RideTimer> rows = repo.findAllByKindAndRideIdInAndOwner(kind, rideIds, node).stream()
+                    .filter(t -> !t.getDueAt().isAfter(now))
+                    .toList();
+            if (rows.isEmpty()) return;
+
+            h.onExpired(rows);
+
+            List<Long> done = rows.stream().map(RideTimer::getRideId).toList();
+            tx.executeWithoutResult(st -> repo.deleteFired(kind, done, now));
+        } catch (Exception ex) {
+            /* Lignes conservées : reprises à l’expiration du bail */
+            log.error("❌ Minuteurs {} en échec ({} course(s)) : {}", kind, rideIds.size(), ex.getMessage(), ex);
+        }
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    /**
+     * Pose l’échéance ; proche ⇒ réclamée par cette instance, sinon laissée
+     * libre. Le bail court depuis l’échéance, ou depuis maintenant si elle
+     * est passée : sinon {@code lockClaimable} la rendrait à chaque passage.
+     */
+    private RideTimer place(RideTimer t, long dueAtMs, boolean claim) {
+        t.setDueAt(at(dueAtMs));
+        t.setOwner(claim ? node : null);
+        t.setLeaseUntil(claim ? at(Math.max(dueAtMs, System.currentTimeMillis()) + leaseMs) : null);
+        return t;
+    }
+
+    private static void afterCommit(Runnable r) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            r.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override public void afterCommit() { r.run(); }
+        });
+    }
+
+    private static OffsetDateTime at(long epochMs) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneOffset.UTC);
+    }
+
+    private static long ms(OffsetDateTime t) {
+        return t.toInstant().toEpochMilli();
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,155 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/main/java/com/mobility/ride/service/timer/TimingWheel.java
+//  v2025-10-16 – roue temporelle hachée : planification / annulation en O(1)
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Roue temporelle hachée (à la Varghese &amp; Lauck), une échéance par clé.
+ *
+ * <p>{@code wheelSize} seaux de {@code tickMs} ; une échéance au-delà d’un
+ * tour complet porte un compteur de tours restants. {@link #schedule} et
+ * {@link #cancel} ne font qu’une insertion dans une table et une file
+ * (aucun verrou, appelables depuis n’importe quel thread) ;
+ * {@link #advance(long)} est appelé par <b>un seul</b> thread, le seul à
+ * toucher aux seaux (listes doublement chaînées, retrait en O(1)).</p>
+ *
+ * <p>Replanifier une clé remplace son échéance précédente.</p>
+ *
+ * @param <K> clé du minuteur (equals / hashCode stables)
+ */
+public final class TimingWheel<K> {
+
+    /** Échéance expirée, rendue par {@link #advance(long)}. */
+    public record Expired<K>(K key, long deadlineMs) { }
+
+    private static final class Node<K> {
+        final K    key;
+        final long deadlineMs;
+        long       rounds;
+        Node<K>    prev, next;
+        Bucket<K>  bucket;
+        volatile boolean cancelled;
+
+        Node(K key, long deadlineMs) {
+            this.key        = key;
+            this.deadlineMs = deadlineMs;
+        }
+    }
+
+    private static final class Bucket<K> {
+        Node<K> head, tail;
+
+        void add(Node<K> n) {
+            n.bucket = this;
+            if (head == null) head = tail = n;
+            else { tail.next = n; n.prev = tail; tail = n; }
+        }
+
+        void remove(Node<K> n) {
+            if (n.prev != null) n.prev.next = n.next; else head = n.next;
+            if (n.next != null) n.next.prev = n.prev; else tail = n.prev;
+            n.prev = n.next = null;
+            n.bucket = null;
+        }
+    }
+
+    private final long        tickMs;
+    private final Bucket<K>[] wheel;
+    private final int         mask;
+    private final long        startMs;
+
+    private final ConcurrentHashMap<K, Node<K>> live    = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Node<K>> inserts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Node<K>> cancels = new ConcurrentLinkedQueue<>();
+
+    /** Prochain tick à traiter (thread de {@link #advance} uniquement). */
+    private long tick;
+
+    /**
+     * @param tickMs    résolution (une échéance expire au plus {@code tickMs} en retard)
+     * @param wheelSize nombre de seaux (arrondi à la puissance de 2 supérieure)
+     * @param startMs   origine des ticks (en général « maintenant »)
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 0) throw new IllegalArgumentException("tickMs and wheelSize must be > 0");
+        int n = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickMs  = tickMs;
+        this.wheel   = new Bucket[n];
+        this.mask    = n - 1;
+        this.startMs = startMs;
+        for (int i = 0; i < n; i++) wheel[i] = new Bucket<>();
+    }
+
+    /* ═════════════ 1) Planification (tout thread) ═════════════ */
+
+    public void schedule(K key, long deadlineMs) {
+        Node<K> n   = new Node<>(key, deadlineMs);
+        Node<K> old = live.put(key, n);
+        if (old != null) discard(old);
+        inserts.add(n);
+    }
+
+    /** @return vrai si une échéance était en attente pour cette clé */
+    public boolean cancel(K key) {
+        Node<K> n = live.remove(key);
+        if (n == null) return false;
+        discard(n);
+        return true;
+    }
+
+    public boolean isScheduled(K key) {
+        return live.containsKey(key);
+    }
+
+    public int size() {
+        return live.size();
+    }
+
+    /* ═════════════ 2) Avance (thread unique) ═════════════ */
+
+    /** Fait avancer la roue jusqu’à {@code nowMs} ; retourne les échéances expirées. */
+    public List<Expired<K>> advance(long nowMs) {
+        List<Expired<K>> out = new ArrayList<>();
+        for (Node<K> n; (n = cancels.poll()) != null; )
+            if (n.bucket != null) n.bucket.remove(n);
+        for (Node<K> n; (n = inserts.poll()) != null; )
+            if (!n.cancelled) place(n);
+
+        while (startMs + (tick + 1) * tickMs <= nowMs) {
+            long      tickEnd = startMs + (tick + 1) * tickMs;
+            Bucket<K> bucket  = wheel[(int) (tick & mask)];
+            for (Node<K> n = bucket.head; n != null; ) {
+                Node<K> next = n.next;
+                if (n.rounds <= 0 && n.deadlineMs < tickEnd) {
+                    bucket.remove(n);
+                    if (live.remove(n.key, n)) out.add(new Expired<>(n.key, n.deadlineMs));
+                } else {
+                    n.rounds--;
+                }
+                n = next;
+            }
+            tick++;
+        }
+        return out;
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private void place(Node<K> n) {
+        long target = Math.max((n.deadlineMs - startMs) / tickMs, tick);   // échu ⇒ tick courant
+        n.rounds = (target - tick) / wheel.length;
+        wheel[(int) (target & mask)].add(n);
+    }
+
+    private void discard(Node<K> n) {
+        n.cancelled = true;
+        cancels.add(n);
+    }
+}
@@ -0,0 +1,66 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/auth/service/AvatarPipelineTest.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.auth.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvatarPipelineTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void longThinImageDecodesOnlyItsCentralSquare() throws IOException {
+        // bandeau 8000×16 : seul le carré central (rouge) doit être lu
+        BufferedImage src = new BufferedImage(8000, 16, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = src.createGraphics();
+        g.setColor(Color.BLUE);
+        g.fillRect(0, 0, 8000, 16);
+        g.setColor(Color.RED);
+        g.fillRect(3992, 0, 16, 16);
+        g.dispose();
+        Path file = write(src);
+
+        BufferedImage img = AvatarPipeline.decode(file, 1024, 1_000_000);
+
+        assertEquals(16, img.getWidth());
+        assertEquals(16, img.getHeight());
+        assertEquals(Color.RED.getRGB(), img.getRGB(0, 0));
+        assertEquals(Color.RED.getRGB(), img.getRGB(15, 15));
+    }
+
+    @Test
+    void largeSquareIsSubsampledFromItsSide() throws IOException {
+        Path file = write(new BufferedImage(5000, 3000, BufferedImage.TYPE_INT_RGB));
+
+        BufferedImage img = AvatarPipeline.decode(file, 1024, 20_000_000);
+
+        assertEquals(1500, img.getWidth());       // côté 3000, pas de 2
+        assertEquals(1500, img.getHeight());
+    }
+
+    @Test
+    void imagesAboveThePixelCapAreRefused() throws IOException {
+        Path file = write(new BufferedImage(2000, 600, BufferedImage.TYPE_INT_RGB));
+
+        IOException ex = assertThrows(IOException.class, () -> AvatarPipeline.decode(file, 1024, 1_000_000));
+        assertTrue(ex.getMessage().contains("2000×600"));
+    }
+
+    private Path write(BufferedImage img) throws IOException {
+        Path file = dir.resolve("photo.png");
+        ImageIO.write(img, "png", file.toFile());
+        return file;
+    }
+}
@@ -0,0 +1,112 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/ride/geo/DriverPositionIndexTest.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+import com.mobility.ride.geo.DriverPositionIndex.Hit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DriverPositionIndexTest {
+
+    private static final double LAT = 0.4162, LNG = 9.4673;      // Libreville
+
+    private DriverPositionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DriverPositionIndex(0.01, 8);
+    }
+
+    @Test
+    void withinRadiusKeepsOnlyDriversInsideSortedByDistance() {
+        index.upsert(1, LAT + 0.005, LNG, 0, 1_000);              // ≈ 0,56 km
+        index.upsert(2, LAT + 0.02,  LNG, 0, 1_000);              // ≈ 2,2 km
+        index.upsert(3, LAT + 0.002, LNG, 0, 1_000);              // ≈ 0,22 km
+        index.upsert(4, LAT + 0.2,   LNG, 0, 1_000);              // ≈ 22 km
+
+        List<Hit> hits = index.withinRadius(LAT, LNG, 3.0, 0, 0);
+        assertEquals(List.of(3L, 1L, 2L), ids(hits));
+        assertEquals(2, index.withinRadius(LAT, LNG, 3.0, 0, 2).size());
+    }
+
+    @Test
+    void withinRadiusIgnoresStalePositions() {
+        index.upsert(1, LAT, LNG, 0, 1_000);
+        index.upsert(2, LAT, LNG + 0.001, 0, 5_000);
+        assertEquals(List.of(2L), ids(index.withinRadius(LAT, LNG, 1.0, 2_000, 0)));
+    }
+
+    @Test
+    void upsertMovesDriverAcrossCellsAndIgnoresOlderPings() {
+        index.upsert(7, LAT, LNG, 90, 2_000);
+        index.upsert(7, LAT + 0.5, LNG, 90, 1_000);               // ping en retard : ignoré
+        assertEquals(LAT, index.get(7).lat(), 1e-12);
+
+        index.upsert(7, LAT + 0.5, LNG, 180, 3_000);
+        assertEquals(1, index.size());
+        assertTrue(index.withinRadius(LAT, LNG, 5.0, 0, 0).isEmpty());
+        assertEquals(180, index.get(7).heading());
+    }
+
+    @Test
+    void removeAndEvictionDropDrivers() {
+        index.upsert(1, LAT, LNG, 0, 1_000);
+        index.upsert(2, LAT, LNG, 0, 9_000);
+        assertTrue(index.remove(1));
+        assertFalse(index.remove(1));
+
+        index.upsert(3, LAT, LNG, 0, 2_000);
+        List<Long> evicted = new ArrayList<>();
+        assertEquals(1, index.evictOlderThan(5_000, evicted::add));
+        assertEquals(List.of(3L), evicted);
+        assertNull(index.get(3));
+        assertNotNull(index.get(2));
+    }
+
+    @Test
+    void nearestReturnsTheKClosestWithinMaxRadius() {
+        index.upsert(1, LAT + 0.03, LNG, 0, 1_000);
+        index.upsert(2, LAT, LNG + 0.001, 0, 1_000);
+        index.upsert(3, LAT - 0.01, LNG, 0, 1_000);
+        index.upsert(4, LAT + 1.0, LNG, 0, 1_000);                // hors rayon
+
+        assertEquals(List.of(2L, 3L), ids(index.nearest(LAT, LNG, 2, 10.0, 0)));
+        assertEquals(List.of(2L, 3L, 1L), ids(index.nearest(LAT, LNG, 10, 10.0, 0)));
+        assertTrue(index.nearest(LAT, LNG, 0, 10.0, 0).isEmpty());
+    }
+
+    @Test
+    void nearestAgreesWithBruteForce() {
+        Random rnd = new Random(42);
+        List<double[]> points = new ArrayList<>();
+        for (int id = 0; id < 500; id++) {
+            double lat = LAT + (rnd.nextDouble() - 0.5) * 0.4;
+            double lng = LNG + (rnd.nextDouble() - 0.5) * 0.4;
+            points.add(new double[] { id, lat, lng });
+            index.upsert(id, lat, lng, 0, 1_000);
+        }
+        for (int q = 0; q < 50; q++) {
+            double lat = LAT + (rnd.nextDouble() - 0.5) * 0.3;
+            double lng = LNG + (rnd.nextDouble() - 0.5) * 0.3;
+            List<Long> expected = points.stream()
+                    .filter(p -> GeoGrid.haversineKm(lat, lng, p[1], p[2]) <= 8.0)
+                    .sorted(Comparator.comparingDouble(p -> GeoGrid.haversineKm(lat, lng, p[1], p[2])))
+                    .limit(5)
+                    .map(p -> (long) p[0])
+                    .toList();
+            assertEquals(expected, ids(index.nearest(lat, lng, 5, 8.0, 0)));
+        }
+    }
+
+    private static List<Long> ids(List<Hit> hits) {
+        return hits.stream().map(Hit::driverId).toList();
+    }
+}
@@ -0,0 +1,49 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/ride/geo/GazetteerBuilder.java
+//  v2025-10-16 – outil hors-ligne : TSV (lat⇥lng⇥CC⇥libellé) → fichier .mgz
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Construit un gazetteer pour {@link Gazetteer#open}. Hors du code livré :
+ * lancé depuis le classpath de test, ex.
+ * {@code mvn -q exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.mobility.ride.geo.GazetteerBuilder
+ * -Dexec.args="in.tsv out.mgz 0.01 0.1"}.
+ */
+public final class GazetteerBuilder {
+
+    private GazetteerBuilder() { }
+
+    /** {@code GazetteerBuilder <in.tsv> <out.mgz> [cellDeg=0.01] [countryCellDeg=0.1]} */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2)
+            throw new IllegalArgumentException("usage: GazetteerBuilder <in.tsv> <out.mgz> [cellDeg] [countryCellDeg]");
+        double cellDeg        = args.length > 2 ? Double.parseDouble(args[2]) : 0.01;
+        double countryCellDeg = args.length > 3 ? Double.parseDouble(args[3]) : 0.1;
+
+        Gazetteer.write(Path.of(args[1]), cellDeg, countryCellDeg, readTsv(Path.of(args[0])));
+    }
+
+    /** Lignes {@code lat⇥lng⇥CC⇥libellé} ; libellé vide ou ligne incomplète ignorés. */
+    static List<Gazetteer.Entry> readTsv(Path tsv) throws IOException {
+        List<Gazetteer.Entry> entries = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(tsv, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] p = line.split("\t", 4);
+                if (p.length < 4 || p[3].isBlank()) continue;
+                entries.add(new Gazetteer.Entry(Double.parseDouble(p[0]), Double.parseDouble(p[1]), p[2], p[3].strip()));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,139 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/ride/geo/GazetteerTest.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+import com.mobility.ride.geo.Gazetteer.Entry;
+import com.mobility.ride.geo.Gazetteer.Place;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GazetteerTest {
+
+    @TempDir
+    Path dir;
+
+    private static final List<Entry> LIBREVILLE = List.of(
+            new Entry(0.3924, 9.4536, "GA", "Boulevard Triomphal"),
+            new Entry(0.4162, 9.4673, "GA", "Rue Pecqueur"),
+            new Entry(0.4590, 9.4120, "GA", "Aéroport Léon-Mba"),
+            new Entry(0.4165, 9.4680, "ga", "Rue Pecqueur"),          // libellé dupliqué
+            new Entry(1.0000, 10.000, "GQ", "Ebebiyín"));
+
+    @Test
+    void nearestRoundTripsLabelsAndCountryCodes() throws IOException {
+        Gazetteer g = build(LIBREVILLE, 0.01, 0.1);
+        assertEquals(5, g.size());
+
+        Place p = g.nearest(0.4163, 9.4675, 1.0).orElseThrow();
+        assertEquals("Rue Pecqueur", p.label());
+        assertEquals("GA", p.countryCode());
+        assertTrue(p.distanceKm() < 0.05);
+
+        assertEquals("Aéroport Léon-Mba", g.nearest(0.4585, 9.4125, 1.0).orElseThrow().label());
+        assertEquals("Ebebiyín", g.nearest(1.0, 10.0, 0.5).orElseThrow().label());
+    }
+
+    @Test
+    void nearestRespectsMaxDistance() throws IOException {
+        Gazetteer g = build(LIBREVILLE, 0.01, 0.1);
+        assertTrue(g.nearest(0.0, 9.0, 5.0).isEmpty());
+        // ≈ 2,7 km entre la requête et le Boulevard Triomphal
+        assertTrue(g.nearest(0.3924, 9.4780, 2.0).isEmpty());
+        assertTrue(g.nearest(0.3924, 9.4780, 3.0).isPresent());
+    }
+
+    @Test
+    void nearestCrossesCellBoundaries() throws IOException {
+        // Point juste de l’autre côté d’une frontière de cellule (0.01°)
+        Gazetteer g = build(List.of(new Entry(0.4201, 9.4699, "GA", "Voisin")), 0.01, 0.1);
+        assertEquals("Voisin", g.nearest(0.4199, 9.4701, 0.5).orElseThrow().label());
+    }
+
+    @Test
+    void countryCodeOfASingleCountryCell() throws IOException {
+        Gazetteer g = build(LIBREVILLE, 0.01, 0.1);           // « ga » / « GA » : même pays
+
+        assertEquals("GA", g.countryCode(0.41, 9.46).orElseThrow());
+        assertEquals("GA", g.countryCode(0.35, 9.45).orElseThrow());   // loin de tout point, même cellule
+        assertEquals("GQ", g.countryCode(1.0, 10.0).orElseThrow());
+        assertTrue(g.countryCode(-30.0, 20.0).isEmpty());
+    }
+
+    @Test
+    void mixedCellsUseTheNearestPoint() throws IOException {
+        List<Entry> entries = new ArrayList<>(LIBREVILLE);
+        entries.add(new Entry(0.4100, 9.4000, "CM", "Frontière"));  // minoritaire dans la cellule GA
+        Gazetteer g = build(entries, 0.01, 0.1);
+
+        assertEquals("CM", g.countryCode(0.4101, 9.4001).orElseThrow());
+        assertEquals("GA", g.countryCode(0.4163, 9.4675).orElseThrow());
+        // Cellule mixte, aucun point à moins de BORDER_NEAREST_KM : pas de réponse majoritaire
+        assertTrue(g.countryCode(0.4900, 9.4900).isEmpty());
+    }
+
+    @Test
+    void nearestAgreesWithBruteForce() throws IOException {
+        Random rnd = new Random(3);
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++)
+            entries.add(new Entry(rnd.nextDouble() * 0.5, 9.2 + rnd.nextDouble() * 0.5, "GA", "p" + i));
+        Gazetteer g = build(entries, 0.01, 0.1);
+
+        for (int q = 0; q < 200; q++) {
+            double lat = rnd.nextDouble() * 0.5, lng = 9.2 + rnd.nextDouble() * 0.5;
+            // Coordonnées stockées en float : même arrondi pour la référence
+            Entry expected = entries.stream()
+                    .min((a, b) -> Double.compare(dist(lat, lng, a), dist(lat, lng, b)))
+                    .orElseThrow();
+            Place got = g.nearest(lat, lng, 5.0).orElseThrow();
+            assertEquals(dist(lat, lng, expected), got.distanceKm(), 1e-9);
+        }
+    }
+
+    @Test
+    void rejectsForeignFiles() throws IOException {
+        Path bogus = dir.resolve("bogus.mgz");
+        Files.write(bogus, new byte[64]);
+        assertThrows(IllegalArgumentException.class, () -> Gazetteer.open(bogus));
+    }
+
+    @Test
+    void builderReadsTsvAndSkipsIncompleteLines() throws IOException {
+        Path tsv = dir.resolve("in.tsv");
+        Files.writeString(tsv, """
+                0.4162\t9.4673\tGA\tRue Pecqueur
+                0.4590\t9.4120\tGA\t
+                broken line
+                0.3924\t9.4536\tGA\t  Boulevard Triomphal\s
+                """, StandardCharsets.UTF_8);
+        Path out = dir.resolve("out.mgz");
+        GazetteerBuilder.main(new String[] { tsv.toString(), out.toString() });
+
+        Gazetteer g = Gazetteer.open(out);
+        assertEquals(2, g.size());
+        assertEquals("Boulevard Triomphal", g.nearest(0.3924, 9.4536, 0.1).orElseThrow().label());
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private Gazetteer build(List<Entry> entries, double cellDeg, double countryCellDeg) throws IOException {
+        Path file = Files.createTempFile(dir, "gz", ".mgz");
+        Gazetteer.write(file, cellDeg, countryCellDeg, entries);
+        return Gazetteer.open(file);
+    }
+
+    private static double dist(double lat, double lng, Entry e) {
+        return GeoGrid.haversineKm(lat, lng, (float) e.lat(), (float) e.lng());
+    }
+}
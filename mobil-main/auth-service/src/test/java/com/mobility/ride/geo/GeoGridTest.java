@@ -0,0 +1,50 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/ride/geo/GeoGridTest.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeoGridTest {
+
+    private static final double CELL = 0.01;
+
+    @Test
+    void keyRoundTripsRowAndColumn() {
+        int[][] cases = { {0, 0}, {17_999, 35_999}, {9_041, 18_946}, {1, Integer.MAX_VALUE} };
+        for (int[] rc : cases) {
+            long key = GeoGrid.key(rc[0], rc[1]);
+            assertEquals(rc[0], GeoGrid.rowOf(key));
+            assertEquals(rc[1], GeoGrid.colOf(key));
+        }
+    }
+
+    @Test
+    void cellKeyFloorsNegativeCoordinates() {
+        // Libreville (0.41, 9.46) et un point juste au sud de l’équateur
+        assertEquals(GeoGrid.row(0.41, CELL), GeoGrid.row(0.415, CELL));
+        assertNotEquals(GeoGrid.row(0.0, CELL), GeoGrid.row(-0.0001, CELL));
+        assertEquals(GeoGrid.row(0.0, CELL) - 1, GeoGrid.row(-0.0001, CELL));
+        assertEquals(0, GeoGrid.col(-180.0, CELL));
+    }
+
+    @Test
+    void haversineMatchesKnownDistances() {
+        assertEquals(0.0, GeoGrid.haversineKm(0.41, 9.46, 0.41, 9.46), 1e-9);
+        // 1° de latitude ≈ 111,2 km
+        assertEquals(111.2, GeoGrid.haversineKm(0, 0, 1, 0), 0.1);
+        // Paris → Londres ≈ 343,5 km
+        assertEquals(343.5, GeoGrid.haversineKm(48.8566, 2.3522, 51.5074, -0.1278), 1.0);
+    }
+
+    @Test
+    void boundingBoxContainsTheRadius() {
+        double lat = 60.0, radiusKm = 5.0;
+        double dLat = GeoGrid.latDelta(radiusKm);
+        double dLng = GeoGrid.lngDelta(radiusKm, lat);
+        assertTrue(GeoGrid.haversineKm(lat, 0, lat + dLat, 0) >= radiusKm - 1e-6);
+        assertTrue(GeoGrid.haversineKm(lat, 0, lat, dLng) >= radiusKm - 1e-6);
+    }
+}
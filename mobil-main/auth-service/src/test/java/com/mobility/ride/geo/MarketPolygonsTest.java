@@ -0,0 +1,135 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/ride/geo/MarketPolygonsTest.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.geo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarketPolygonsTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final Map<String, CityInfo> PRICING = Map.of(
+            "gabon",  new CityInfo(10L, "XAF"),
+            "france", new CityInfo(1L,  "EUR"),
+            "usa",    new CityInfo(20L, "USD"));
+
+    /** Pays 0..10 × 0..10 avec un trou (lac), une ville et un micro-marché. */
+    private static final String NESTED = """
+            { "type": "FeatureCollection", "features": [
+              { "type": "Feature", "properties": { "market": "gabon" },
+                "geometry": { "type": "Polygon", "coordinates": [
+                  [[0,0],[10,0],[10,10],[0,10],[0,0]],
+                  [[6,6],[8,6],[8,8],[6,8],[6,6]] ] } },
+              { "type": "Feature", "properties": { "market": "gabon", "cityId": 11 },
+                "geometry": { "type": "Polygon", "coordinates": [[[1,1],[3,1],[3,3],[1,3],[1,1]]] } },
+              { "type": "Feature", "properties": { "market": "enclave", "cityId": 99, "currency": "EUR" },
+                "geometry": { "type": "Polygon", "coordinates": [
+                  [[5.002,5.002],[5.004,5.002],[5.004,5.004],[5.002,5.004],[5.002,5.002]]] } }
+            ] }""";
+
+    @Test
+    void smallestContainingPolygonWins() throws IOException {
+        MarketPolygons p = load(NESTED);
+        assertEquals(3, p.size());
+        assertEquals(Optional.of(new CityInfo(11L, "XAF")), p.locate(2, 2));         // ville
+        assertEquals(Optional.of(new CityInfo(10L, "XAF")), p.locate(4, 4));         // pays
+        assertEquals(Optional.of(new CityInfo(99L, "EUR")), p.locate(5.003, 5.003)); // enclave
+        assertTrue(p.locate(-1, 5).isEmpty());
+        assertTrue(p.locate(5, 10.5).isEmpty());
+    }
+
+    @Test
+    void holesAreExcluded() throws IOException {
+        MarketPolygons p = load(NESTED);
+        assertTrue(p.locate(7, 7).isEmpty());
+        assertTrue(p.locate(5.9, 7).isPresent());
+    }
+
+    @Test
+    void multiPolygonCoversEveryPart() throws IOException {
+        MarketPolygons p = load("""
+                { "type": "FeatureCollection", "features": [
+                  { "type": "Feature", "properties": { "market": "france" },
+                    "geometry": { "type": "MultiPolygon", "coordinates": [
+                      [[[0,0],[1,0],[1,1],[0,1],[0,0]]],
+                      [[[20,20],[21,20],[21,21],[20,21],[20,20]]] ] } }
+                ] }""");
+        assertEquals(Optional.of(new CityInfo(1L, "EUR")), p.locate(0.5, 0.5));
+        assertEquals(Optional.of(new CityInfo(1L, "EUR")), p.locate(20.5, 20.5));
+        assertTrue(p.locate(10, 10).isEmpty());
+    }
+
+    @Test
+    void unknownMarketsAndGeometriesAreSkipped() throws IOException {
+        MarketPolygons p = load("""
+                { "type": "FeatureCollection", "features": [
+                  { "type": "Feature", "properties": { "market": "atlantis" },
+                    "geometry": { "type": "Polygon", "coordinates": [[[0,0],[1,0],[1,1],[0,0]]] } },
+                  { "type": "Feature", "properties": { "market": "usa" },
+                    "geometry": { "type": "Point", "coordinates": [0,0] } }
+                ] }""");
+        assertTrue(p.isEmpty());
+        assertEquals(2, p.skipped().size());
+    }
+
+    @Test
+    void uniformRejectsBoxesTouchedByABorder() throws IOException {
+        MarketPolygons p = load(NESTED);
+        assertTrue(p.uniform(4.0, 4.0, 4.01, 4.01));                  // plein pays
+        assertTrue(p.uniform(20, 20, 20.01, 20.01));                  // hors de tout marché
+        assertFalse(p.uniform(9.995, 5.0, 10.005, 5.01));             // frontière du pays
+        assertFalse(p.uniform(2.995, 2.0, 3.005, 2.01));              // frontière de la ville
+        assertFalse(p.uniform(6.995, 5.995, 7.005, 6.005));           // bord du trou
+        assertFalse(p.uniform(2.995, 2.995, 3.005, 3.005));           // sommet dans la boîte
+    }
+
+    @Test
+    void uniformDetectsAPolygonInsideTheBoxWithoutTouchingItsCorners() throws IOException {
+        MarketPolygons p = load(NESTED);
+        // Les 4 coins sont dans le pays, l’enclave est strictement à l’intérieur
+        assertEquals(p.locate(5.0, 5.0), p.locate(5.01, 5.01));
+        assertFalse(p.uniform(5.0, 5.0, 5.01, 5.01));
+    }
+
+    @Test
+    void segmentBoxIntersection() {
+        // Traverse la boîte sans extrémité dedans
+        assertTrue(MarketPolygons.segmentHitsBox(-1, 0.5, 2, 0.5, 0, 0, 1, 1));
+        assertTrue(MarketPolygons.segmentHitsBox(-0.2, 0.5, 0.5, -0.2, 0, 0, 1, 1));
+        // Entièrement dedans / touche un coin
+        assertTrue(MarketPolygons.segmentHitsBox(0.2, 0.2, 0.4, 0.4, 0, 0, 1, 1));
+        assertTrue(MarketPolygons.segmentHitsBox(1, 1, 2, 3, 0, 0, 1, 1));
+        // Passe à côté / parallèle dehors
+        assertFalse(MarketPolygons.segmentHitsBox(-1, 1.5, 1.5, 3, 0, 0, 1, 1));
+        assertFalse(MarketPolygons.segmentHitsBox(-1, 2, 3, 2, 0, 0, 1, 1));
+        assertFalse(MarketPolygons.segmentHitsBox(1.5, 0.5, 1.5, 0.5, 0, 0, 1, 1));
+    }
+
+    @Test
+    void sampleFileResolvesConfiguredMarkets() throws IOException {
+        MarketPolygons p;
+        try (InputStream in = getClass().getResourceAsStream("/geo/markets.sample.geojson")) {
+            assertNotNull(in, "geo/markets.sample.geojson absent du classpath");
+            p = MarketPolygons.fromGeoJson(JSON.readTree(in), 0.5, PRICING::get);
+        }
+        assertTrue(p.skipped().isEmpty());
+        assertEquals(Optional.of(new CityInfo(10L, "XAF")), p.locate(0.3901, 9.4544));   // Libreville
+        assertEquals(Optional.of(new CityInfo(10L, "XAF")), p.locate(-1.63, 13.58));     // Franceville
+        assertEquals(Optional.of(new CityInfo(1L,  "EUR")), p.locate(48.8566, 2.3522));  // Paris
+        assertEquals(Optional.of(new CityInfo(20L, "USD")), p.locate(40.7128, -74.0060)); // New York
+        assertTrue(p.locate(0.0, 0.0).isEmpty());                                          // golfe de Guinée
+    }
+
+    private static MarketPolygons load(String geoJson) throws IOException {
+        return MarketPolygons.fromGeoJson(JSON.readTree(geoJson), 0.5, PRICING::get);
+    }
+}
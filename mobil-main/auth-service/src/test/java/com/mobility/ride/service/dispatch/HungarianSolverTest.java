@@ -0,0 +1,129 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/ride/service/dispatch/HungarianSolverTest.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.dispatch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static com.mobility.ride.service.dispatch.HungarianSolver.INFEASIBLE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HungarianSolverTest {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    @Test
+    void squareMatrixFindsTheOptimum() {
+        double[][] cost = {
+                { 4, 1, 3 },
+                { 2, 0, 5 },
+                { 3, 2, 2 },
+        };
+        int[] a = HungarianSolver.solve(cost);
+        assertArrayEquals(new int[] { 1, 0, 2 }, a);
+        assertEquals(5.0, total(cost, a), 1e-9);
+    }
+
+    @Test
+    void moreColumnsThanRowsAssignsEveryRow() {
+        double[][] cost = {
+                { 9, 2, 7, 8 },
+                { 6, 4, 3, 7 },
+        };
+        assertArrayEquals(new int[] { 1, 2 }, HungarianSolver.solve(cost));
+    }
+
+    @Test
+    void moreRowsThanColumnsLeavesTheWorstRowsUnassigned() {
+        double[][] cost = {
+                { 5, 9 },
+                { 1, 8 },
+                { 7, 2 },
+        };
+        assertArrayEquals(new int[] { -1, 0, 1 }, HungarianSolver.solve(cost));
+    }
+
+    @Test
+    void forbiddenPairsNeverAppear() {
+        double[][] cost = {
+                { INFEASIBLE, 1 },
+                { INF,        INF },
+                { 3,          INFEASIBLE },
+        };
+        assertArrayEquals(new int[] { 1, -1, 0 }, HungarianSolver.solve(cost));
+    }
+
+    @Test
+    void allForbiddenYieldsNoAssignment() {
+        double[][] cost = { { INF, INFEASIBLE }, { INF, INF } };
+        assertArrayEquals(new int[] { -1, -1 }, HungarianSolver.solve(cost));
+    }
+
+    @Test
+    void emptyInputs() {
+        assertEquals(0, HungarianSolver.solve(new double[0][0]).length);
+        assertArrayEquals(new int[] { -1, -1 }, HungarianSolver.solve(new double[2][0]));
+    }
+
+    @Test
+    void matchesBruteForceOnSmallRandomMatrices() {
+        Random rnd = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            int n = 1 + rnd.nextInt(5), m = 1 + rnd.nextInt(5);
+            double[][] cost = new double[n][m];
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < m; j++)
+                    cost[i][j] = rnd.nextInt(6) == 0 ? (rnd.nextBoolean() ? INF : INFEASIBLE)
+                                                     : rnd.nextInt(100);
+
+            int[] a = HungarianSolver.solve(cost);
+            boolean[] taken = new boolean[m];
+            int assigned = 0;
+            for (int i = 0; i < n; i++) {
+                if (a[i] < 0) continue;
+                assertTrue(cost[i][a[i]] < INFEASIBLE, "paire interdite affectée");
+                assertFalse(taken[a[i]], "colonne affectée deux fois");
+                taken[a[i]] = true;
+                assigned++;
+            }
+
+            double[] best = bruteForce(cost);                 // { paires, coût }
+            assertEquals((int) best[0], assigned, "nombre d’affectations (round " + round + ")");
+            assertEquals(best[1], total(cost, a), 1e-6, "coût (round " + round + ")");
+        }
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private static double total(double[][] cost, int[] a) {
+        double s = 0;
+        for (int i = 0; i < a.length; i++) if (a[i] >= 0) s += cost[i][a[i]];
+        return s;
+    }
+
+    /** Maximise le nombre de paires autorisées, puis minimise leur coût. */
+    private static double[] bruteForce(double[][] cost) {
+        double[] best = { -1, Double.MAX_VALUE };
+        explore(cost, 0, new boolean[cost[0].length], 0, 0, best);
+        return best;
+    }
+
+    private static void explore(double[][] cost, int row, boolean[] used, int pairs, double sum, double[] best) {
+        if (row == cost.length) {
+            if (pairs > best[0] || (pairs == best[0] && sum < best[1])) {
+                best[0] = pairs;
+                best[1] = sum;
+            }
+            return;
+        }
+        explore(cost, row + 1, used, pairs, sum, best);              // ligne non affectée
+        for (int j = 0; j < used.length; j++) {
+            if (used[j] || cost[row][j] >= INFEASIBLE) continue;
+            used[j] = true;
+            explore(cost, row + 1, used, pairs + 1, sum + cost[row][j], best);
+            used[j] = false;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/ride/service/pricing/PricingTableTest.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.pricing;
+
+import com.mobility.ride.config.PricingProperties;
+import com.mobility.ride.model.ProductType;
+import com.mobility.ride.service.pricing.PricingTable.Tariff;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingTableTest {
+
+    @Test
+    void knownCityResolvesItsOwnTariff() {
+        PricingTable t = PricingTable.compile(props(), 7);
+        Tariff x = t.tariff(10L, ProductType.X);
+
+        assertEquals("gabon", x.market());
+        assertEquals("XAF", x.currency());
+        assertEquals(800.0, x.ratePerKm(), 1e-9);
+        assertEquals(0.15, x.platformShare(), 1e-9);              // commission « default » du marché
+        assertFalse(x.fallbackCity());
+        assertFalse(x.hasFlatFare());
+        assertEquals(4_000.0, x.base(5.0), 1e-9);
+        assertEquals(7, t.version());
+    }
+
+    @Test
+    void productSpecificShareAndFlatFareWin() {
+        PricingTable t = PricingTable.compile(props(), 1);
+        Tariff moto = t.tariff(10L, ProductType.MOTO);
+
+        assertEquals(0.10, moto.platformShare(), 1e-9);
+        assertTrue(moto.hasFlatFare());
+        assertEquals(2_000.0, moto.base(42.0), 1e-9);              // forfait : distance ignorée
+    }
+
+    @Test
+    void missingProductRateFallsBackToTheGlobalTable() {
+        Tariff lux = PricingTable.compile(props(), 1).tariff(10L, ProductType.LUX);
+        assertEquals(PricingTable.GLOBAL_RATE_PER_KM.get(ProductType.LUX), lux.ratePerKm(), 1e-9);
+    }
+
+    @Test
+    void unknownOrNullCityUsesTheDefaultBlock() {
+        PricingTable t = PricingTable.compile(props(), 1);
+        for (Long id : new Long[] { 999L, null }) {
+            Tariff d = t.tariff(id, ProductType.X);
+            assertTrue(d.fallbackCity());
+            assertEquals("default", d.market());
+            assertEquals("USD", d.currency());
+            assertEquals(2.90, d.ratePerKm(), 1e-9);
+            assertEquals("USD", t.currencyOf(id));
+            assertFalse(t.knows(id));
+        }
+        assertEquals("EUR", t.currencyOf(1L));
+        assertTrue(t.knows(1L));
+        assertEquals(3, t.cityCount());                             // default (0), france (1), gabon (10)
+    }
+
+    @Test
+    void firstDeclaredBlockWinsOnDuplicateCityId() {
+        PricingProperties p = props();
+        p.getCountry().put("libreville_bis", country(10L, "EUR", Map.of("X", 1.0)));
+        Tariff x = PricingTable.compile(p, 1).tariff(10L, ProductType.X);
+        assertEquals("gabon", x.market());
+        assertEquals(800.0, x.ratePerKm(), 1e-9);
+    }
+
+    @Test
+    void emptyConfigurationStillPricesEveryProduct() {
+        PricingTable t = PricingTable.compile(null, 1);
+        for (ProductType p : ProductType.values()) {
+            Tariff tariff = t.tariff(5L, p);
+            assertEquals("USD", tariff.currency());
+            assertEquals(PricingTable.GLOBAL_RATE_PER_KM.get(p), tariff.ratePerKm(), 1e-9);
+            assertEquals(0.20, tariff.platformShare(), 1e-9);
+        }
+        assertEquals(0, t.cityCount());
+    }
+
+    @Test
+    void lookupFindsEveryCityAmongMany() {
+        List<Long> ids = new ArrayList<>();
+        for (long i = 1; i <= 300; i++) ids.add(i * 7);
+        Collections.shuffle(ids, new Random(11));
+
+        PricingProperties p = new PricingProperties();
+        Map<String, PricingProperties.Country> countries = new LinkedHashMap<>();
+        for (Long id : ids) countries.put("c" + id, country(id, "C" + id, Map.of("X", id.doubleValue())));
+        p.setCountry(countries);
+
+        PricingTable t = PricingTable.compile(p, 1);
+        for (Long id : ids) {
+            Tariff x = t.tariff(id, ProductType.X);
+            assertEquals(id.doubleValue(), x.ratePerKm(), 1e-9);
+            assertEquals("c" + id, x.market());
+        }
+        assertTrue(t.tariff(8L, ProductType.X).fallbackCity());
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private static PricingProperties props() {
+        Map<String, PricingProperties.Country> countries = new LinkedHashMap<>();
+        countries.put("default", country(0L, "USD", Map.of("X", 2.90)));
+        countries.put("france",  country(1L, "EUR", Map.of("X", 1.90)));
+
+        PricingProperties.Country gabon = country(10L, "XAF", Map.of("X", 800.0, "MOTO", 300.0));
+        gabon.setFlatFare(Map.of("MOTO", Map.of("intra_city", 2_000.0)));
+        gabon.setPlatformShare(Map.of("default", 0.15, "MOTO", 0.10));
+        countries.put("gabon", gabon);
+
+        PricingProperties p = new PricingProperties();
+        p.setCountry(countries);
+        return p;
+    }
+
+    private static PricingProperties.Country country(Long cityId, String currency, Map<String, Double> rates) {
+        PricingProperties.Country c = new PricingProperties.Country();
+        c.setCityId(cityId);
+        c.setCurrency(currency);
+        c.setRatePerKm(rates);
+        return c;
+    }
+}
@@ -0,0 +1,87 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/ride/service/surge/SlidingWindowCounterTest.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.surge;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowCounterTest {
+
+    /** Fenêtre 1 s, seaux de 100 ms → 10 seaux. */
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(1_000, 100);
+
+    @Test
+    void sumsEventsInsideTheWindow() {
+        counter.add(0, 1);
+        counter.add(50, 2);
+        counter.add(420, 3);
+        assertEquals(6, counter.sum(500));
+        assertEquals(6, counter.sum(999));
+    }
+
+    @Test
+    void windowSlidesBucketByBucket() {
+        counter.add(0, 1);                      // époque 0
+        counter.add(150, 10);                   // époque 1
+        assertEquals(11, counter.sum(999));     // époque 9 : 0..9 visibles
+        assertEquals(10, counter.sum(1_000));   // époque 10 : l’époque 0 sort
+        assertEquals(0, counter.sum(1_100));
+    }
+
+    @Test
+    void recycledBucketIsResetForItsNewEpoch() {
+        counter.add(30, 5);                     // seau 0, époque 0
+        counter.add(1_030, 2);                  // seau 0, époque 10
+        assertEquals(2, counter.sum(1_050));
+        counter.add(2_010, 1);                  // seau 0, époque 20
+        assertEquals(1, counter.sum(2_010));
+    }
+
+    @Test
+    void lateEventForARecycledBucketIsDropped() {
+        counter.add(1_030, 2);                  // seau 0, époque 10
+        counter.add(30, 5);                     // époque 0 : plus d’une fenêtre de retard
+        assertEquals(2, counter.sum(1_050));
+    }
+
+    @Test
+    void futureBucketsAreIgnoredWhenQueryingThePast() {
+        counter.add(100, 1);
+        counter.add(900, 4);
+        assertEquals(1, counter.sum(500));
+    }
+
+    @Test
+    void partialLastBucketRoundsTheRingUp() {
+        SlidingWindowCounter c = new SlidingWindowCounter(1_050, 100);   // 11 seaux
+        c.add(0, 1);
+        assertEquals(1, c.sum(1_099));
+        assertEquals(0, c.sum(1_100));
+    }
+
+    @Test
+    void rejectsInvalidGeometry() {
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowCounter(1_000, 0));
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowCounter(50, 100));
+    }
+
+    @Test
+    void concurrentAddsInOneBucketAreNotLost() throws InterruptedException {
+        counter.add(0, 0);                      // époque fixée avant la course
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread th = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) counter.add(10, 1);
+            });
+            threads.add(th);
+            th.start();
+        }
+        for (Thread th : threads) th.join();
+        assertEquals(80_000, counter.sum(10));
+    }
+}
@@ -0,0 +1,115 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/ride/service/timer/RideTimerServiceTest.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.timer;
+
+import com.mobility.ride.model.RideTimer;
+import com.mobility.ride.model.RideTimerKind;
+import com.mobility.ride.repository.RideTimerRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RideTimerServiceTest {
+
+    private static final long LEASE_MS = 60_000;
+
+    /** Lignes de ride_timers ; lockClaimable reproduit le filtre SQL (bail libre ou expiré). */
+    private final List<RideTimer> table = new ArrayList<>();
+    private int claimedRows;
+
+    private final SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+    private final RideTimerService    timers  = new RideTimerService(
+            fakeRepository(), new TransactionTemplate(noopTransactions()), metrics,
+            250, 512, 200, 1, 1_000, 30_000, LEASE_MS);
+
+    @Test
+    void overdueRowIsClaimedOnlyOnce() {
+        RideTimer row = row(7L, OffsetDateTime.now(ZoneOffset.UTC).minusMinutes(5));   // reprise après panne
+
+        timers.poll();
+        timers.poll();
+
+        assertEquals(1, claimedRows);
+        assertEquals(1, (int) metrics.get("ride.timers.claimed").counter().count());
+        assertTrue(row.getLeaseUntil().isAfter(OffsetDateTime.now(ZoneOffset.UTC).plusSeconds(30)),
+                "bail compté depuis maintenant, pas depuis l’échéance");
+        assertTrue(timers.isScheduled(RideTimerKind.NO_SHOW_PENALTY, 7L));
+    }
+
+    @Test
+    void upcomingRowKeepsItsLeaseAfterTheDeadline() {
+        OffsetDateTime due = OffsetDateTime.now(ZoneOffset.UTC).plusSeconds(10);
+        RideTimer row = row(8L, due);
+
+        timers.poll();
+        timers.poll();
+
+        assertEquals(1, claimedRows);
+        assertEquals(due.toInstant().toEpochMilli() + LEASE_MS, row.getLeaseUntil().toInstant().toEpochMilli());
+    }
+
+    @Test
+    void expiredLeaseIsReclaimed() {
+        RideTimer row = row(9L, OffsetDateTime.now(ZoneOffset.UTC).minusMinutes(5));
+        timers.poll();
+        row.setLeaseUntil(OffsetDateTime.now(ZoneOffset.UTC).minusSeconds(1));   // propriétaire disparu
+
+        timers.poll();
+
+        assertEquals(2, claimedRows);
+    }
+
+    /* ═════════════ Helpers ═════════════ */
+
+    private RideTimer row(Long rideId, OffsetDateTime dueAt) {
+        RideTimer t = RideTimer.builder().kind(RideTimerKind.NO_SHOW_PENALTY).rideId(rideId).dueAt(dueAt).build();
+        table.add(t);
+        return t;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RideTimerRepository fakeRepository() {
+        return (RideTimerRepository) Proxy.newProxyInstance(
+                RideTimerRepository.class.getClassLoader(),
+                new Class<?>[] { RideTimerRepository.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "lockClaimable" -> {
+                        OffsetDateTime until = (OffsetDateTime) args[0], now = (OffsetDateTime) args[1];
+                        List<RideTimer> out = table.stream()
+                                .filter(t -> !t.getDueAt().isAfter(until))
+                                .filter(t -> t.getLeaseUntil() == null || t.getLeaseUntil().isBefore(now))
+                                .limit((int) args[2])
+                                .toList();
+                        claimedRows += out.size();
+                        yield out;
+                    }
+                    case "saveAll"                      -> new ArrayList<>((List<RideTimer>) args[0]);
+                    case "existsByKindAndRideId"        -> false;
+                    case "hashCode"                     -> System.identityHashCode(proxy);
+                    case "equals"                       -> proxy == args[0];
+                    case "toString"                     -> "FakeRideTimerRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static PlatformTransactionManager noopTransactions() {
+        return new PlatformTransactionManager() {
+            @Override public TransactionStatus getTransaction(TransactionDefinition d) { return new SimpleTransactionStatus(); }
+            @Override public void commit(TransactionStatus s)   { }
+            @Override public void rollback(TransactionStatus s) { }
+        };
+    }
+}
@@ -0,0 +1,153 @@
+// ─────────────────────────────────────────────────────────────────────────────
+//  FILE : src/test/java/com/mobility/ride/service/timer/TimingWheelTest.java
+// ─────────────────────────────────────────────────────────────────────────────
+package com.mobility.ride.service.timer;
+
+import com.mobility.ride.service.timer.TimingWheel.Expired;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    /** Origine non nulle : les calculs de tick doivent être relatifs à startMs. */
+    private static final long T0   = 1_700_000_000_000L;
+    private static final long TICK = 100;
+
+    /** 8 seaux × 100 ms = 800 ms par tour. */
+    private final TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, T0);
+
+    @Test
+    void expiresAtTheEndOfTheDeadlineTick() {
+        wheel.schedule("a", T0 + 250);                      // tick 2 : [200 ; 300[
+        assertTrue(wheel.advance(T0 + 299).isEmpty());
+        assertEquals(List.of(new Expired<>("a", T0 + 250)), wheel.advance(T0 + 300));
+        assertFalse(wheel.isScheduled("a"));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlinesBeyondOneRevolutionWaitForTheirRound() {
+        wheel.schedule("far", T0 + 2_550);                  // tick 25 = seau 1, 3 tours
+        for (long now = T0; now < T0 + 2_600; now += TICK)
+            assertTrue(wheel.advance(now).isEmpty(), "expiré trop tôt à +" + (now - T0));
+        assertEquals(List.of("far"), keys(wheel.advance(T0 + 2_600)));
+    }
+
+    @Test
+    void largeJumpProcessesEveryTickOnce() {
+        wheel.schedule("near", T0 + 120);
+        wheel.schedule("far",  T0 + 5_010);                 // 6 tours et quelques
+        assertEquals(List.of("near"), keys(wheel.advance(T0 + 5_000)));
+        assertEquals(List.of("far"),  keys(wheel.advance(T0 + 5_100)));
+    }
+
+    @Test
+    void cancelPreventsExpiry() {
+        wheel.schedule("a", T0 + 150);
+        wheel.schedule("b", T0 + 150);
+        assertTrue(wheel.cancel("a"));
+        assertFalse(wheel.cancel("a"));
+        assertFalse(wheel.cancel("unknown"));
+        assertEquals(List.of("b"), keys(wheel.advance(T0 + 1_000)));
+    }
+
+    @Test
+    void cancelAfterPlacementRemovesTheNode() {
+        wheel.schedule("a", T0 + 950);
+        wheel.advance(T0 + 100);                            // nœud placé dans son seau
+        wheel.cancel("a");
+        assertTrue(wheel.advance(T0 + 5_000).isEmpty());
+    }
+
+    @Test
+    void rescheduleReplacesThePreviousDeadline() {
+        wheel.schedule("a", T0 + 150);
+        wheel.advance(T0 + 100);
+        wheel.schedule("a", T0 + 1_750);                    // repoussé (autre seau, 2 tours)
+        assertEquals(1, wheel.size());
+        assertTrue(wheel.advance(T0 + 1_700).isEmpty());
+        assertEquals(List.of(new Expired<>("a", T0 + 1_750)), wheel.advance(T0 + 1_800));
+
+        wheel.schedule("b", T0 + 5_000);
+        wheel.schedule("b", T0 + 1_850);                    // avancé
+        assertEquals(List.of("b"), keys(wheel.advance(T0 + 1_900)));
+        assertTrue(wheel.advance(T0 + 6_000).isEmpty());
+    }
+
+    @Test
+    void pastDeadlineExpiresOnTheCurrentTick() {
+        wheel.advance(T0 + 1_000);                          // tick courant : 10
+        wheel.schedule("late", T0 + 400);
+        assertTrue(wheel.advance(T0 + 1_099).isEmpty());
+        assertEquals(List.of("late"), keys(wheel.advance(T0 + 1_100)));
+    }
+
+    @Test
+    void wheelSizeIsRoundedToAPowerOfTwo() {
+        TimingWheel<Integer> w = new TimingWheel<>(TICK, 5, T0);       // → 8 seaux
+        w.schedule(1, T0 + 850);                                       // tick 8 = seau 0, 1 tour
+        assertTrue(w.advance(T0 + 800).isEmpty());
+        assertEquals(List.of(1), w.advance(T0 + 900).stream().map(Expired::key).toList());
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<>(0, 8, T0));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<>(TICK, 0, T0));
+    }
+
+    @Test
+    void matchesAReferenceModelAcrossManyRevolutions() {
+        Random rnd = new Random(5);
+        Map<String, Long> expected = new HashMap<>();               // clé → instant d’expiration attendu
+        long now = T0;
+        for (int step = 0; step < 2_000; step++) {
+            int op = rnd.nextInt(10);
+            String key = "k" + rnd.nextInt(60);
+            if (op < 5) {
+                long deadline = now + rnd.nextInt(20_000) - 200;     // jusqu’à 25 tours, parfois échu
+                wheel.schedule(key, deadline);
+                long tick = Math.max(Math.floorDiv(deadline - T0, TICK), (now - T0) / TICK);   // échu ⇒ tick courant
+                expected.put(key, T0 + (tick + 1) * TICK);
+            } else if (op < 7) {
+                assertEquals(expected.remove(key) != null, wheel.cancel(key));
+            } else {
+                now += rnd.nextInt(700);
+                long tickEnd = T0 + ((now - T0) / TICK) * TICK;     // fin du dernier tick traité
+                List<String> due = new ArrayList<>();
+                for (Map.Entry<String, Long> e : expected.entrySet())
+                    if (e.getValue() <= tickEnd) due.add(e.getKey());
+                due.forEach(expected::remove);
+
+                List<Expired<String>> fired = wheel.advance(now);
+                assertEquals(due.stream().sorted().toList(), keys(fired).stream().sorted().toList(),
+                        "étape " + step);
+                for (Expired<String> x : fired) assertTrue(x.deadlineMs() < tickEnd);
+            }
+            assertEquals(expected.size(), wheel.size());
+        }
+    }
+
+    @Test
+    void concurrentSchedulesAreAllDelivered() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int base = t * 1_000;
+            Thread th = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) wheel.schedule("t" + (base + i), T0 + 50 + i);
+            });
+            threads.add(th);
+            th.start();
+        }
+        for (Thread th : threads) th.join();
+        assertEquals(4_000, wheel.advance(T0 + 2_000).size());
+        assertEquals(0, wheel.size());
+    }
+
+    private static <K> List<K> keys(List<Expired<K>> expired) {
+        return expired.stream().map(Expired::key).toList();
+    }
+}